@@ -0,0 +1,23 @@
+package com.jaiswal.cache;
+
+/**
+ * Kinds of per-user data whose changes invalidate cached results. Each has its
+ * own generation counter in {@link CacheVersionService}.
+ */
+public enum CacheDataType {
+
+    RECEIPTS("r"),
+    CATEGORIES("c"),
+    // Insights persisted after the receipt write itself: anomalies and budget forecasts
+    INSIGHTS("i");
+
+    private final String keyPrefix;
+
+    CacheDataType(String keyPrefix) {
+        this.keyPrefix = keyPrefix;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+}
@@ -0,0 +1,69 @@
+package com.jaiswal.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-cache settings for the two-tier cache, bound from {@code app.cache}.
+ * Caches without an explicit entry fall back to {@link #defaults}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    private String invalidationChannel = "spendora:cache:invalidation";
+
+    // Codec used to write Redis values ("smile" or "json"); both are always readable
+    private String codec = "smile";
+
+    // Encoded values at or above this many bytes are deflated
+    private int compressionThreshold = 1024;
+
+    // Cross-node single-flight: how long a loader may hold a key, and how often waiters re-check Redis
+    private Duration leaseTtl = Duration.ofSeconds(30);
+    private Duration leasePollInterval = Duration.ofMillis(50);
+
+    // Background refreshes of soft-expired entries run on this bounded pool; overflow is dropped
+    private int refreshThreads = 4;
+    private int refreshQueueCapacity = 100;
+
+    private CacheSpec defaults = CacheSpec.builder()
+            .ttl(Duration.ofMinutes(30))
+            .localTtl(Duration.ofMinutes(5))
+            .localMaxWeight(10_000L)
+            .build();
+
+    private Map<String, CacheSpec> caches = new HashMap<>();
+
+    public CacheSpec specFor(String cacheName) {
+        CacheSpec spec = caches.get(cacheName);
+        if (spec == null) {
+            return defaults;
+        }
+
+        return CacheSpec.builder()
+                .ttl(spec.getTtl() != null ? spec.getTtl() : defaults.getTtl())
+                .localTtl(spec.getLocalTtl() != null ? spec.getLocalTtl() : defaults.getLocalTtl())
+                .localMaxWeight(spec.getLocalMaxWeight() != null ? spec.getLocalMaxWeight() : defaults.getLocalMaxWeight())
+                .softTtl(spec.getSoftTtl() != null ? spec.getSoftTtl() : defaults.getSoftTtl())
+                .build();
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheSpec {
+        private Duration ttl;           // Redis (L2) entry TTL
+        private Duration localTtl;      // in-heap (L1) entry TTL, kept shorter than ttl
+        private Long localMaxWeight;    // L1 bound, see CacheValueWeigher for the unit
+        private Duration softTtl;       // after this, serve stale and refresh in the background; unset disables
+    }
+}
@@ -0,0 +1,103 @@
+package com.jaiswal.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit counters for one two-tier cache. Every lookup lands in exactly one of
+ * L1 hit, L2 hit or miss. Misses served through {@link SingleFlightLoader} are
+ * further split into loads (value computed here) and coalesced (value taken
+ * from a concurrent computation on this or another node).
+ * <p>
+ * For caches with a soft TTL, refresh lag is the time from an entry's soft
+ * expiry until its background refresh was stored, i.e. how long readers were
+ * served stale data.
+ */
+public class CacheTierStatistics {
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder refreshesRejected = new LongAdder();
+    private final LongAdder refreshLagMillis = new LongAdder();
+    private final LongAccumulator maxRefreshLagMillis = new LongAccumulator(Math::max, 0);
+
+    void recordL1Hit() {
+        l1Hits.increment();
+    }
+
+    void recordL2Hit() {
+        l2Hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordLoad() {
+        loads.increment();
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordStaleHit() {
+        staleHits.increment();
+    }
+
+    void recordRefresh(long lagMillis) {
+        refreshes.increment();
+        refreshLagMillis.add(lagMillis);
+        maxRefreshLagMillis.accumulate(lagMillis);
+    }
+
+    void recordRefreshFailure() {
+        refreshFailures.increment();
+    }
+
+    void recordRefreshRejected() {
+        refreshesRejected.increment();
+    }
+
+    public Map<String, Object> snapshot(long l1Size) {
+        long l1 = l1Hits.sum();
+        long l2 = l2Hits.sum();
+        long miss = misses.sum();
+        long requests = l1 + l2 + miss;
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("requests", requests);
+        snapshot.put("l1Hits", l1);
+        snapshot.put("l2Hits", l2);
+        snapshot.put("misses", miss);
+        snapshot.put("l1HitRatio", ratio(l1, requests));
+        // L2 ratio is measured against the lookups that reached Redis
+        snapshot.put("l2HitRatio", ratio(l2, l2 + miss));
+        snapshot.put("overallHitRatio", ratio(l1 + l2, requests));
+        snapshot.put("loads", loads.sum());
+        snapshot.put("coalesced", coalesced.sum());
+        long refreshCount = refreshes.sum();
+        if (refreshCount > 0 || staleHits.sum() > 0) {
+            snapshot.put("staleHits", staleHits.sum());
+            snapshot.put("refreshes", refreshCount);
+            snapshot.put("refreshFailures", refreshFailures.sum());
+            snapshot.put("refreshesRejected", refreshesRejected.sum());
+            snapshot.put("avgRefreshLagMs", refreshCount == 0 ? 0 : refreshLagMillis.sum() / refreshCount);
+            snapshot.put("maxRefreshLagMs", maxRefreshLagMillis.get());
+        }
+        snapshot.put("l1EstimatedSize", l1Size);
+        return snapshot;
+    }
+
+    private double ratio(long hits, long total) {
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,17 @@
+package com.jaiswal.cache;
+
+/**
+ * Encodes cached values to bytes for Redis. Implementations are identified by a
+ * stable one-byte id written into every entry header, so a node can always read
+ * entries written by a node configured with a different codec.
+ */
+public interface CacheValueCodec {
+
+    byte getId();
+
+    String getName();
+
+    byte[] encode(Object value) throws Exception;
+
+    Object decode(byte[] bytes) throws Exception;
+}
@@ -0,0 +1,176 @@
+package com.jaiswal.cache;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis value serializer for the cache. Every entry starts with a 4-byte header:
+ * <pre>
+ *   [0] magic 0xCA   [1] format version   [2] codec id   [3] flags
+ * </pre>
+ * followed, for deflated entries, by the uncompressed length (int) and the body.
+ * <p>
+ * Values are written with the configured codec and deflated once they exceed
+ * the compression threshold. Reads dispatch on the codec id, so nodes can switch
+ * codecs in a rolling upgrade; entries without the magic byte are the pre-header
+ * JSON format and are still readable.
+ */
+public class CacheValueSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte FORMAT_VERSION = 1;
+
+    private static final int HEADER_LENGTH = 4;
+    private static final byte FLAG_DEFLATED = 0x01;
+    private static final byte FLAG_NULL_VALUE = 0x02;
+
+    private final CacheValueCodec writeCodec;
+    private final Map<Byte, CacheValueCodec> codecs = new HashMap<>();
+    private final CacheValueCodec legacyCodec = new JsonCacheValueCodec();
+    private final int compressionThreshold;
+
+    public CacheValueSerializer(CacheValueCodec writeCodec, List<CacheValueCodec> readableCodecs,
+                                int compressionThreshold) {
+        this.writeCodec = writeCodec;
+        this.compressionThreshold = compressionThreshold;
+        readableCodecs.forEach(codec -> codecs.put(codec.getId(), codec));
+        codecs.put(writeCodec.getId(), writeCodec);
+    }
+
+    /**
+     * Serializer writing with the codec named {@code codecName} ("smile" or "json")
+     * and able to read both.
+     */
+    public static CacheValueSerializer forCodec(String codecName, int compressionThreshold) {
+        List<CacheValueCodec> codecs = List.of(new SmileCacheValueCodec(), new JsonCacheValueCodec());
+        CacheValueCodec writeCodec = codecs.stream()
+                .filter(codec -> codec.getName().equalsIgnoreCase(codecName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown cache codec: " + codecName));
+        return new CacheValueSerializer(writeCodec, codecs, compressionThreshold);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null || value instanceof NullValue) {
+            return new byte[]{MAGIC, FORMAT_VERSION, writeCodec.getId(), FLAG_NULL_VALUE};
+        }
+
+        byte[] body;
+        try {
+            body = writeCodec.encode(value);
+        } catch (Exception e) {
+            throw new SerializationException("Could not encode cache value with " + writeCodec.getName(), e);
+        }
+
+        if (body.length >= compressionThreshold) {
+            byte[] deflated = deflate(body);
+            // Already-dense payloads can grow when deflated; only keep a real saving
+            if (deflated.length + Integer.BYTES < body.length) {
+                return ByteBuffer.allocate(HEADER_LENGTH + Integer.BYTES + deflated.length)
+                        .put(MAGIC).put(FORMAT_VERSION).put(writeCodec.getId()).put(FLAG_DEFLATED)
+                        .putInt(body.length)
+                        .put(deflated)
+                        .array();
+            }
+        }
+
+        return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                .put(MAGIC).put(FORMAT_VERSION).put(writeCodec.getId()).put((byte) 0)
+                .put(body)
+                .array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return decode(legacyCodec, bytes);
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[1] > FORMAT_VERSION) {
+            throw new SerializationException("Unsupported cache entry format version: " + bytes[1]);
+        }
+
+        CacheValueCodec codec = codecs.get(bytes[2]);
+        if (codec == null) {
+            throw new SerializationException("Unknown cache codec id: " + bytes[2]);
+        }
+
+        byte flags = bytes[3];
+        if ((flags & FLAG_NULL_VALUE) != 0) {
+            return NullValue.INSTANCE;
+        }
+
+        byte[] body;
+        if ((flags & FLAG_DEFLATED) != 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            int length = buffer.getInt();
+            body = inflate(bytes, HEADER_LENGTH + Integer.BYTES, length);
+        } else {
+            body = Arrays.copyOfRange(bytes, HEADER_LENGTH, bytes.length);
+        }
+        return decode(codec, body);
+    }
+
+    private Object decode(CacheValueCodec codec, byte[] body) {
+        try {
+            return codec.decode(body);
+        } catch (Exception e) {
+            throw new SerializationException("Could not decode cache value with " + codec.getName(), e);
+        }
+    }
+
+    private byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] inflate(byte[] input, int offset, int uncompressedLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, input.length - offset);
+            byte[] output = new byte[uncompressedLength];
+            int total = 0;
+            while (total < uncompressedLength && !inflater.finished()) {
+                int count = inflater.inflate(output, total, uncompressedLength - total);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += count;
+            }
+            if (total != uncompressedLength) {
+                throw new SerializationException("Truncated compressed cache entry");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt compressed cache entry", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
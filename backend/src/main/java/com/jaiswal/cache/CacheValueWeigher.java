@@ -0,0 +1,53 @@
+package com.jaiswal.cache;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.jaiswal.model.dto.AnalyticsDTO;
+import com.jaiswal.model.dto.ReportDTO;
+import org.springframework.data.domain.Page;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Weighs L1 entries by roughly how many DTOs they hold, so one yearly report
+ * with thousands of receipts cannot sit in the near-cache at the cost of a
+ * single user lookup.
+ */
+public class CacheValueWeigher implements Weigher<String, Object> {
+
+    @Override
+    public int weigh(String key, Object value) {
+        return 1 + elementCount(value);
+    }
+
+    private int elementCount(Object value) {
+        if (value instanceof TimestampedValue entry) {
+            return elementCount(entry.getValue());
+        }
+        if (value instanceof Page<?> page) {
+            return page.getNumberOfElements();
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            return map.size();
+        }
+        if (value instanceof ReportDTO report) {
+            return size(report.getReceipts()) + size(report.getCategoryBreakdown());
+        }
+        if (value instanceof AnalyticsDTO analytics) {
+            return size(analytics.getSpendingTrends()) + size(analytics.getCategoryBreakdown())
+                    + size(analytics.getMonthlyComparisons()) + size(analytics.getInsights());
+        }
+        return 0;
+    }
+
+    private int size(Collection<?> collection) {
+        return collection != null ? collection.size() : 0;
+    }
+
+    private int size(Map<?, ?> map) {
+        return map != null ? map.size() : 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.jaiswal.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Per-user generation counters for cached data.
+ * <p>
+ * Cache keys embed the current version of every data type the cache depends on
+ * (see {@link #DEPENDENCIES}), e.g. {@code 42:r7:c2}. A write bumps the user's
+ * counter with a Redis {@code INCR}; from then on lookups build a new key and
+ * the superseded entries are never read again and simply expire. Invalidation
+ * is O(1) and never touches other users' entries.
+ * <p>
+ * Used from SpEL as {@code @cacheVersions.userKey('receipts', #userId)}.
+ * <p>
+ * Receipt data also has a counter per calendar month ({@link #monthKey}), for
+ * values derived from a single month's receipts: an edit only moves on the
+ * months its receipt was dated in before and after the change.
+ */
+@Slf4j
+@Component("cacheVersions")
+public class CacheVersionService {
+
+    /** Name used for version invalidations on the cache pub/sub channel. */
+    static final String VERSIONS = "cacheVersions";
+
+    private static final String KEY_PREFIX = "spendora:cache-version:";
+
+    /** Which user data each cache's values are derived from. */
+    private static final Map<String, Set<CacheDataType>> DEPENDENCIES = Map.ofEntries(
+            Map.entry("receipts", EnumSet.of(CacheDataType.RECEIPTS)),
+            Map.entry("searchResults", EnumSet.of(CacheDataType.RECEIPTS)),
+            Map.entry("spendingTrends", EnumSet.of(CacheDataType.RECEIPTS)),
+            Map.entry("taxReports", EnumSet.of(CacheDataType.RECEIPTS)),
+            Map.entry("monthlyComparison", EnumSet.of(CacheDataType.RECEIPTS)),
+            // Category names/colours are resolved into these results
+            Map.entry("analytics", EnumSet.of(CacheDataType.RECEIPTS, CacheDataType.CATEGORIES, CacheDataType.INSIGHTS)),
+            Map.entry("categoryBreakdown", EnumSet.of(CacheDataType.RECEIPTS, CacheDataType.CATEGORIES)),
+            // CategoryDTO carries the current month's spending
+            Map.entry("categories", EnumSet.of(CacheDataType.CATEGORIES, CacheDataType.RECEIPTS))
+    );
+
+    private final StringRedisTemplate redisTemplate;
+    private final TwoTierCacheManager cacheManager;
+
+    // Versions are read on every cached call; keep them on heap and rely on pub/sub to
+    // drop bumped ones, with a short expiry as a safety net for lost messages
+    private final Cache<String, Long> localVersions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofSeconds(30))
+            .build();
+
+    public CacheVersionService(StringRedisTemplate redisTemplate, TwoTierCacheManager cacheManager) {
+        this.redisTemplate = redisTemplate;
+        this.cacheManager = cacheManager;
+        cacheManager.addLocalInvalidationListener(VERSIONS, localVersions::invalidate);
+    }
+
+    /**
+     * Builds the user-scoped part of a cache key for {@code cacheName}.
+     */
+    public String userKey(String cacheName, String userId) {
+        Set<CacheDataType> dataTypes = DEPENDENCIES.get(cacheName);
+        if (dataTypes == null) {
+            throw new IllegalArgumentException("No cache dependencies declared for cache: " + cacheName);
+        }
+
+        StringBuilder key = new StringBuilder(userId);
+        for (CacheDataType dataType : dataTypes) {
+            key.append(':').append(dataType.getKeyPrefix()).append(currentVersion(userId, dataType));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Builds the user-scoped key for a value derived only from the user's
+     * receipts dated in {@code month}, e.g. {@code 42:2024-02:m3}.
+     */
+    public String monthKey(String userId, YearMonth month) {
+        return userId + ':' + month + ":m" + currentVersion(monthVersionKey(userId, month));
+    }
+
+    public long currentVersion(String userId, CacheDataType dataType) {
+        return currentVersion(versionKey(userId, dataType));
+    }
+
+    private long currentVersion(String versionKey) {
+        return localVersions.get(versionKey, key -> {
+            String version = redisTemplate.opsForValue().get(key);
+            return version != null ? Long.parseLong(version) : 0L;
+        });
+    }
+
+    /**
+     * Invalidates every cached result derived from the user's {@code dataType}.
+     */
+    public void bump(String userId, CacheDataType dataType) {
+        Long version = bump(versionKey(userId, dataType));
+        log.debug("Bumped {} cache version for user {} to {}", dataType, userId, version);
+    }
+
+    /**
+     * Invalidates cached results derived from the user's receipts dated in
+     * the months of {@code receiptDates}; null dates are ignored.
+     */
+    public void bumpMonths(String userId, LocalDate... receiptDates) {
+        Arrays.stream(receiptDates)
+                .filter(Objects::nonNull)
+                .map(YearMonth::from)
+                .distinct()
+                .forEach(month -> bump(monthVersionKey(userId, month)));
+    }
+
+    private Long bump(String key) {
+        Long version = redisTemplate.opsForValue().increment(key);
+        if (version != null) {
+            localVersions.put(key, version);
+        } else {
+            localVersions.invalidate(key);
+        }
+        cacheManager.publishEviction(VERSIONS, key);
+        return version;
+    }
+
+    private String versionKey(String userId, CacheDataType dataType) {
+        return KEY_PREFIX + userId + ":" + dataType.name();
+    }
+
+    private String monthVersionKey(String userId, YearMonth month) {
+        return versionKey(userId, CacheDataType.RECEIPTS) + ":" + month;
+    }
+}
@@ -0,0 +1,39 @@
+package com.jaiswal.cache;
+
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+/**
+ * The original {@link GenericJackson2JsonRedisSerializer} format, plus the
+ * java.time and {@code Page} support the cached DTOs need. Kept as a selectable
+ * codec and to read entries written before the codec header existed.
+ */
+public class JsonCacheValueCodec implements CacheValueCodec {
+
+    public static final byte ID = 2;
+
+    private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer()
+            .configure(mapper -> mapper
+                    .registerModule(new JavaTimeModule())
+                    .registerModule(new PageJacksonModule()));
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return serializer.serialize(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return serializer.deserialize(bytes);
+    }
+}
@@ -0,0 +1,103 @@
+package com.jaiswal.cache;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes {@link Page} values as {@code {content, number, size, totalElements}}
+ * and reads them back as {@link PageImpl}, which Jackson cannot construct on its
+ * own. Needed for the cached receipt pages.
+ */
+public class PageJacksonModule extends SimpleModule {
+
+    public PageJacksonModule() {
+        super("PageJacksonModule");
+        addSerializer(Page.class, new PageSerializer());
+        addDeserializer(Page.class, new PageDeserializer());
+        addDeserializer(PageImpl.class, new PageDeserializer());
+    }
+
+    @SuppressWarnings("rawtypes")
+    static class PageSerializer extends StdSerializer<Page> {
+
+        PageSerializer() {
+            super(Page.class);
+        }
+
+        @Override
+        public void serialize(Page page, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            writeFields(page, gen, provider);
+            gen.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(Page page, JsonGenerator gen, SerializerProvider provider,
+                                      TypeSerializer typeSerializer) throws IOException {
+            WritableTypeId typeId = typeSerializer.writeTypePrefix(gen,
+                    typeSerializer.typeId(page, PageImpl.class, JsonToken.START_OBJECT));
+            writeFields(page, gen, provider);
+            typeSerializer.writeTypeSuffix(gen, typeId);
+        }
+
+        private void writeFields(Page<?> page, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeFieldName("content");
+            provider.defaultSerializeValue(new ArrayList<>(page.getContent()), gen);
+            gen.writeNumberField("number", page.getNumber());
+            gen.writeNumberField("size", page.getSize());
+            gen.writeNumberField("totalElements", page.getTotalElements());
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    static class PageDeserializer extends StdDeserializer<PageImpl> {
+
+        PageDeserializer() {
+            super(PageImpl.class);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public PageImpl deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            List<Object> content = new ArrayList<>();
+            int number = 0;
+            int size = 0;
+            long totalElements = 0;
+
+            JsonToken token = p.currentToken();
+            if (token == JsonToken.START_OBJECT) {
+                token = p.nextToken();
+            }
+            for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "content" -> content = (List<Object>) ctxt.readValue(p, Object.class);
+                    case "number" -> number = p.getIntValue();
+                    case "size" -> size = p.getIntValue();
+                    case "totalElements" -> totalElements = p.getLongValue();
+                    default -> p.skipChildren();
+                }
+            }
+
+            Pageable pageable = size > 0 ? PageRequest.of(number, size) : Pageable.unpaged();
+            return new PageImpl<>(content != null ? content : new ArrayList<>(), pageable, totalElements);
+        }
+    }
+}
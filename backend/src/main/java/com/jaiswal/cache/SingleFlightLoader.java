@@ -0,0 +1,190 @@
+package com.jaiswal.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent cache misses so each key is computed once cluster-wide.
+ * <p>
+ * Within a node, the first caller for a key becomes the leader and later
+ * callers wait on its future. Across nodes, the leader must also win a short
+ * Redis lease ({@code SET NX PX}); a node that loses polls Redis until the
+ * winner's value lands there. When Redis is unreachable, or the lease outlives
+ * its TTL without a value appearing, the caller computes the value itself, so
+ * coalescing can add latency but never blocks indefinitely.
+ * <p>
+ * Background refreshes of soft-expired entries never wait: they are skipped if
+ * the key is already refreshing on this node or another node holds its lease.
+ */
+@Slf4j
+class SingleFlightLoader {
+
+    private static final String LEASE_PREFIX = "spendora:cache-lease:";
+
+    // Only the node that took the lease may release it
+    private static final RedisScript<Long> RELEASE_LEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String nodeId;
+    private final Duration leaseTtl;
+    private final Duration pollInterval;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    SingleFlightLoader(StringRedisTemplate redisTemplate, String nodeId, Duration leaseTtl, Duration pollInterval) {
+        this.redisTemplate = redisTemplate;
+        this.nodeId = nodeId;
+        this.leaseTtl = leaseTtl;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Returns the value for {@code key}, computing it with {@code loader} only if
+     * no other caller on any node is already doing so.
+     *
+     * @param remoteLookup reads the shared tier, used to pick up another node's result
+     * @param store        writes a freshly computed value to the cache
+     */
+    Object load(String cacheName, String key, Supplier<ValueWrapper> remoteLookup,
+                Callable<?> loader, Consumer<Object> store, CacheTierStatistics statistics) throws Exception {
+        String flightKey = cacheName + "::" + key;
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(flightKey, flight);
+        if (existing != null) {
+            statistics.recordCoalesced();
+            return await(existing);
+        }
+
+        try {
+            Object value = loadAcrossCluster(flightKey, remoteLookup, loader, store, statistics);
+            flight.complete(value);
+            return value;
+        } catch (Exception e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, flight);
+        }
+    }
+
+    /**
+     * Recomputes {@code key} on {@code executor} and stores the result, unless a
+     * refresh of it is already queued here or running on another node.
+     */
+    void refreshAsync(String cacheName, String key, Callable<?> loader, Consumer<Object> store,
+                      Executor executor, CacheTierStatistics statistics) {
+        String flightKey = cacheName + "::" + key;
+        if (!refreshing.add(flightKey)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                String leaseKey = LEASE_PREFIX + flightKey;
+                try {
+                    if (!tryAcquireLease(leaseKey)) {
+                        return;
+                    }
+                    try {
+                        store.accept(loader.call());
+                    } finally {
+                        releaseLease(leaseKey);
+                    }
+                } catch (Exception e) {
+                    statistics.recordRefreshFailure();
+                    log.warn("Background refresh of {} failed, serving the stale value until hard expiry", flightKey, e);
+                } finally {
+                    refreshing.remove(flightKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(flightKey);
+            statistics.recordRefreshRejected();
+            log.debug("Refresh pool saturated, skipping refresh of {}", flightKey);
+        }
+    }
+
+    private Object loadAcrossCluster(String flightKey, Supplier<ValueWrapper> remoteLookup, Callable<?> loader,
+                                     Consumer<Object> store, CacheTierStatistics statistics) throws Exception {
+        String leaseKey = LEASE_PREFIX + flightKey;
+        long deadline = System.nanoTime() + leaseTtl.toNanos();
+
+        while (!tryAcquireLease(leaseKey)) {
+            // Another node holds the lease: wait for its value to show up in Redis
+            Thread.sleep(pollInterval.toMillis());
+
+            ValueWrapper cached = remoteLookup.get();
+            if (cached != null) {
+                statistics.recordCoalesced();
+                return cached.get();
+            }
+            if (System.nanoTime() > deadline) {
+                log.warn("Lease {} held past its TTL without a result, computing locally", leaseKey);
+                return compute(loader, store, statistics);
+            }
+        }
+
+        try {
+            // The previous lease holder may have stored the value just before we got the lease
+            ValueWrapper cached = remoteLookup.get();
+            if (cached != null) {
+                statistics.recordCoalesced();
+                return cached.get();
+            }
+            return compute(loader, store, statistics);
+        } finally {
+            releaseLease(leaseKey);
+        }
+    }
+
+    private Object compute(Callable<?> loader, Consumer<Object> store, CacheTierStatistics statistics) throws Exception {
+        statistics.recordLoad();
+        Object value = loader.call();
+        store.accept(value);
+        return value;
+    }
+
+    private Object await(CompletableFuture<Object> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    private boolean tryAcquireLease(String leaseKey) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(leaseKey, nodeId, leaseTtl));
+        } catch (Exception e) {
+            log.warn("Could not acquire cache lease {}, computing without cross-node coalescing", leaseKey, e);
+            return true;
+        }
+    }
+
+    private void releaseLease(String leaseKey) {
+        try {
+            redisTemplate.execute(RELEASE_LEASE, List.of(leaseKey), nodeId);
+        } catch (Exception e) {
+            log.warn("Could not release cache lease {}, it will expire", leaseKey, e);
+        }
+    }
+}
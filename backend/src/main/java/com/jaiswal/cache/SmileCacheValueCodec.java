@@ -0,0 +1,64 @@
+package com.jaiswal.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * Binary Jackson (Smile) codec. Field names and repeated string values such as
+ * merchant names and category ids are written once per entry and back-referenced
+ * afterwards, which is where most of the saving over JSON comes from for lists
+ * of receipt DTOs.
+ */
+public class SmileCacheValueCodec implements CacheValueCodec {
+
+    public static final byte ID = 1;
+
+    private final ObjectMapper mapper;
+
+    public SmileCacheValueCodec() {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+
+        mapper = new ObjectMapper(factory);
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new PageJacksonModule());
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        // Nodes on an older build may read entries that carry fields they do not know yet
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        mapper.activateDefaultTyping(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.jaiswal.")
+                        .allowIfSubType("java.util.")
+                        .allowIfSubType("java.math.")
+                        .allowIfSubType("java.time.")
+                        .allowIfSubType("org.springframework.data.domain.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL, JsonTypeInfo.As.PROPERTY);
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return "smile";
+    }
+
+    @Override
+    public byte[] encode(Object value) throws Exception {
+        return mapper.writerFor(Object.class).writeValueAsBytes(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) throws Exception {
+        return mapper.readValue(bytes, Object.class);
+    }
+}
@@ -0,0 +1,18 @@
+package com.jaiswal.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stored form of entries in caches with a soft TTL: the cached value plus the
+ * time it was computed, so readers can tell a fresh entry from a stale one
+ * that should be refreshed in the background.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimestampedValue {
+    private Object value;
+    private long writtenAt;     // epoch millis
+}
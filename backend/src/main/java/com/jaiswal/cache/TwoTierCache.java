@@ -0,0 +1,236 @@
+package com.jaiswal.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link Cache} that reads through a per-node Caffeine near-cache (L1) into
+ * the shared Redis cache (L2).
+ * <p>
+ * Writes go to both tiers and are broadcast through {@link TwoTierCacheManager}
+ * so other nodes drop their L1 copy; the next read there falls through to L2.
+ * Loads through {@link #get(Object, Callable)} (i.e. {@code @Cacheable(sync = true)})
+ * are single-flight across the cluster, see {@link SingleFlightLoader}.
+ * <p>
+ * Caches with a soft TTL store {@link TimestampedValue}s. Past the soft TTL a
+ * loader-backed read still returns the cached value immediately and queues one
+ * background refresh; only once Redis drops the entry at the hard TTL does a
+ * read block on the loader.
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+
+    // Caffeine does not store nulls, cached null results are kept as this marker
+    private static final Object NULL_VALUE = new Object();
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final Cache redisCache;
+    private final TwoTierCacheManager manager;
+    private final Duration softTtl;     // null when stale-while-revalidate is off
+    private final CacheTierStatistics statistics = new CacheTierStatistics();
+
+    TwoTierCache(String name,
+                 com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+                 Cache redisCache,
+                 TwoTierCacheManager manager,
+                 Duration softTtl) {
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.manager = manager;
+        this.softTtl = softTtl;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper stored = lookup(key);
+        return stored != null ? new SimpleValueWrapper(unwrap(stored.get())) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+
+        Object value = wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper stored = lookup(key);
+        if (stored != null) {
+            if (stored.get() instanceof TimestampedValue entry) {
+                refreshIfStale(key, entry, valueLoader);
+            }
+            return (T) unwrap(stored.get());
+        }
+
+        String localKey = localKey(key);
+        try {
+            return (T) manager.getSingleFlightLoader().load(name, localKey,
+                    () -> {
+                        ValueWrapper remote = readRemote(key);
+                        if (remote == null) {
+                            return null;
+                        }
+                        localCache.put(localKey, toStoreValue(remote.get()));
+                        return new SimpleValueWrapper(unwrap(remote.get()));
+                    },
+                    valueLoader,
+                    value -> put(key, value),
+                    statistics);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object stored = wrap(value);
+        redisCache.put(key, stored);
+        localCache.put(localKey(key), toStoreValue(stored));
+        manager.publishEviction(name, localKey(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object stored = wrap(value);
+        ValueWrapper existing = redisCache.putIfAbsent(key, stored);
+        if (existing == null) {
+            localCache.put(localKey(key), toStoreValue(stored));
+            manager.publishEviction(name, localKey(key));
+            return null;
+        }
+        return new SimpleValueWrapper(unwrap(existing.get()));
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        localCache.invalidate(localKey(key));
+        manager.publishEviction(name, localKey(key));
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        localCache.invalidateAll();
+        manager.publishClear(name);
+    }
+
+    // Returns the stored form, i.e. a TimestampedValue for soft-TTL caches
+    private ValueWrapper lookup(Object key) {
+        String localKey = localKey(key);
+
+        Object local = localCache.getIfPresent(localKey);
+        if (local != null) {
+            statistics.recordL1Hit();
+            return new SimpleValueWrapper(fromStoreValue(local));
+        }
+
+        ValueWrapper remote = readRemote(key);
+        if (remote != null) {
+            statistics.recordL2Hit();
+            localCache.put(localKey, toStoreValue(remote.get()));
+            return remote;
+        }
+
+        statistics.recordMiss();
+        return null;
+    }
+
+    private void refreshIfStale(Object key, TimestampedValue entry, Callable<?> valueLoader) {
+        if (softTtl == null) {
+            return;
+        }
+        long softExpiresAt = entry.getWrittenAt() + softTtl.toMillis();
+        if (System.currentTimeMillis() < softExpiresAt) {
+            return;
+        }
+
+        statistics.recordStaleHit();
+        manager.getSingleFlightLoader().refreshAsync(name, localKey(key), valueLoader,
+                value -> {
+                    put(key, value);
+                    statistics.recordRefresh(System.currentTimeMillis() - softExpiresAt);
+                },
+                manager.getRefreshExecutor(), statistics);
+    }
+
+    private Object wrap(Object value) {
+        return softTtl != null ? new TimestampedValue(value, System.currentTimeMillis()) : value;
+    }
+
+    // Also accepts plain values, e.g. written before a soft TTL was configured for this cache
+    private Object unwrap(Object stored) {
+        return stored instanceof TimestampedValue entry ? entry.getValue() : stored;
+    }
+
+    private ValueWrapper readRemote(Object key) {
+        try {
+            return redisCache.get(key);
+        } catch (SerializationException e) {
+            // Written by a codec or format this node cannot read (e.g. mid rolling upgrade): recompute
+            log.warn("Discarding unreadable entry {}::{}: {}", name, key, e.getMessage());
+            redisCache.evict(key);
+            return null;
+        }
+    }
+
+    // Invalidation received from another node; L2 is already up to date there
+    void evictLocal(String key) {
+        localCache.invalidate(key);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    public CacheTierStatistics getStatistics() {
+        return statistics;
+    }
+
+    long localSize() {
+        return localCache.estimatedSize();
+    }
+
+    // RedisCache converts keys to strings too, so both tiers and the pub/sub messages agree
+    private String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Object toStoreValue(Object value) {
+        return value != null ? value : NULL_VALUE;
+    }
+
+    private Object fromStoreValue(Object value) {
+        return value == NULL_VALUE ? null : value;
+    }
+}
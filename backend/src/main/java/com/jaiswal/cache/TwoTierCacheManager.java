@@ -0,0 +1,176 @@
+package com.jaiswal.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * {@link CacheManager} that layers a bounded Caffeine near-cache on each node
+ * over the shared {@link RedisCacheManager}.
+ * <p>
+ * L1 coherence across nodes is kept with Redis pub/sub: every put, evict and
+ * clear is published on {@link CacheProperties#getInvalidationChannel()} and
+ * the other nodes drop the affected L1 entries when they receive it.
+ * <p>
+ * The manager also owns the bounded pool that refreshes soft-expired entries.
+ * It is deliberately not a bean, so Boot's auto-configured {@code taskExecutor}
+ * does not back off.
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, MessageListener, DisposableBean {
+
+    private static final String CLEAR_ALL = "*";
+
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final CacheProperties properties;
+    private final CacheValueWeigher weigher = new CacheValueWeigher();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<String>> localInvalidationListeners = new ConcurrentHashMap<>();
+    private final SingleFlightLoader singleFlightLoader;
+    private final ExecutorService refreshExecutor;
+
+    public TwoTierCacheManager(RedisCacheManager redisCacheManager,
+                               StringRedisTemplate redisTemplate,
+                               CacheProperties properties) {
+        this.redisCacheManager = redisCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.properties = properties;
+        this.refreshExecutor = createRefreshExecutor(properties);
+        this.singleFlightLoader = new SingleFlightLoader(
+                redisTemplate, nodeId, properties.getLeaseTtl(), properties.getLeasePollInterval());
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * Per-tier hit ratios for every cache created so far, keyed by cache name.
+     */
+    public Map<String, Map<String, Object>> getStatistics() {
+        Map<String, Map<String, Object>> statistics = new TreeMap<>();
+        caches.forEach((name, cache) -> statistics.put(name, cache.getStatistics().snapshot(cache.localSize())));
+        return statistics;
+    }
+
+    /**
+     * Registers node-local state (not a {@link TwoTierCache}) that should be
+     * invalidated when another node publishes an eviction under {@code name}.
+     */
+    void addLocalInvalidationListener(String name, Consumer<String> listener) {
+        localInvalidationListeners.put(name, listener);
+    }
+
+    SingleFlightLoader getSingleFlightLoader() {
+        return singleFlightLoader;
+    }
+
+    ExecutorService getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        refreshExecutor.shutdown();
+        refreshExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    void publishEviction(String cacheName, String key) {
+        publish(cacheName, key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(cacheName, CLEAR_ALL);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return; // malformed, or our own write echoed back
+        }
+
+        Consumer<String> listener = localInvalidationListeners.get(parts[1]);
+        if (listener != null) {
+            listener.accept(parts[2]);
+            return;
+        }
+
+        TwoTierCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return; // never read on this node, nothing to drop
+        }
+
+        if (CLEAR_ALL.equals(parts[2])) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+
+    private void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(properties.getInvalidationChannel(), nodeId + "\n" + cacheName + "\n" + key);
+        } catch (Exception e) {
+            // Other nodes fall back to their L1 TTL; never fail the write over it
+            log.warn("Failed to publish cache invalidation for {}::{}", cacheName, key, e);
+        }
+    }
+
+    private TwoTierCache createCache(String name) {
+        CacheProperties.CacheSpec spec = properties.specFor(name);
+
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumWeight(spec.getLocalMaxWeight())
+                .weigher(weigher)
+                .expireAfterWrite(spec.getLocalTtl())
+                .build();
+
+        log.debug("Creating two-tier cache '{}' (ttl={}, softTtl={}, localTtl={}, localMaxWeight={})",
+                name, spec.getTtl(), spec.getSoftTtl(), spec.getLocalTtl(), spec.getLocalMaxWeight());
+        return new TwoTierCache(name, localCache, redisCacheManager.getCache(name), this, spec.getSoftTtl());
+    }
+
+    // Refreshes beyond the queue capacity are rejected; those entries just stay stale a little longer
+    private static ExecutorService createRefreshExecutor(CacheProperties properties) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(
+                properties.getRefreshThreads(), properties.getRefreshThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getRefreshQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -1,7 +1,10 @@
 package com.jaiswal.config;
 
+import com.jaiswal.cache.CacheProperties;
+import com.jaiswal.cache.CacheValueSerializer;
+import com.jaiswal.cache.TwoTierCacheManager;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.CacheManager;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -11,16 +14,19 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheProperties.class)
 public class CacheConfig {
 
     @Value("${spring.data.redis.host:localhost}")
@@ -50,23 +56,35 @@ public class CacheConfig {
     }
 
     @Bean
-    public CacheManager cacheManager() {
+    public TwoTierCacheManager cacheManager(CacheProperties cacheProperties, StringRedisTemplate stringRedisTemplate) {
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30))
+                .entryTtl(cacheProperties.getDefaults().getTtl())
                 .serializeKeysWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
-                        .fromSerializer(new GenericJackson2JsonRedisSerializer()));
+                        .fromSerializer(CacheValueSerializer.forCodec(
+                                cacheProperties.getCodec(), cacheProperties.getCompressionThreshold())));
 
+        // Per-cache TTLs live under app.cache.caches in application.yml
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
-        cacheConfigurations.put("receipts", defaultConfig.entryTtl(Duration.ofMinutes(15)));
-        cacheConfigurations.put("categories", defaultConfig.entryTtl(Duration.ofHours(1)));
-        cacheConfigurations.put("users", defaultConfig.entryTtl(Duration.ofMinutes(30)));
-        cacheConfigurations.put("analytics", defaultConfig.entryTtl(Duration.ofMinutes(10)));
+        cacheProperties.getCaches().keySet().forEach(name ->
+                cacheConfigurations.put(name, defaultConfig.entryTtl(cacheProperties.specFor(name).getTtl())));
 
-        return RedisCacheManager.builder(redisConnectionFactory())
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(redisConnectionFactory())
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoTierCacheManager(redisCacheManager, stringRedisTemplate, cacheProperties);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(TwoTierCacheManager cacheManager,
+                                                                            CacheProperties cacheProperties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory());
+        container.addMessageListener(cacheManager, new ChannelTopic(cacheProperties.getInvalidationChannel()));
+        return container;
     }
 }
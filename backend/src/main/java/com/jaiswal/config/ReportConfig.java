@@ -0,0 +1,10 @@
+package com.jaiswal.config;
+
+import com.jaiswal.report.ReportProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReportProperties.class)
+public class ReportConfig {
+}
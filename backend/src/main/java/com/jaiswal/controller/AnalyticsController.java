@@ -2,7 +2,13 @@ package com.jaiswal.controller;
 
 import com.jaiswal.model.dto.AnalyticsDTO;
 import com.jaiswal.model.dto.ApiResponse;
+import com.jaiswal.model.dto.PivotDTO;
+import com.jaiswal.model.dto.RecurringChargeDTO;
+import com.jaiswal.model.dto.SpendingForecastDTO;
 import com.jaiswal.service.AnalyticsService;
+import com.jaiswal.service.ForecastService;
+import com.jaiswal.service.PivotService;
+import com.jaiswal.service.RecurringChargeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -29,6 +35,9 @@ import java.util.List;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final ForecastService forecastService;
+    private final RecurringChargeService recurringChargeService;
+    private final PivotService pivotService;
 
     @Operation(summary = "Get comprehensive analytics", description = "Get complete analytics data for a date range")
     @GetMapping
@@ -51,13 +60,17 @@ public class AnalyticsController {
         return ResponseEntity.ok(ApiResponse.success("Analytics data retrieved successfully", analytics));
     }
 
-    @Operation(summary = "Get spending trends", description = "Get daily spending trends for the specified period")
+    @Operation(summary = "Get spending trends", description = "Get spending trends for the specified period, in day, week or month buckets chosen to fit the point budget")
     @GetMapping("/spending-trends")
     public ResponseEntity<ApiResponse<List<AnalyticsDTO.SpendingTrend>>> getSpendingTrends(
             @Parameter(description = "Start date for trends")
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
             @Parameter(description = "End date for trends")
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @Parameter(description = "Maximum number of points to return")
+            @RequestParam(required = false) Integer maxPoints,
+            @Parameter(description = "Select daily points with LTTB, keeping peaks, instead of aggregating into buckets")
+            @RequestParam(defaultValue = "false") boolean downsample,
             @AuthenticationPrincipal UserDetails userDetails) {
 
         if (startDate == null) {
@@ -67,7 +80,8 @@ public class AnalyticsController {
             endDate = LocalDate.now();
         }
 
-        List<AnalyticsDTO.SpendingTrend> trends = analyticsService.getSpendingTrends(getUserId(userDetails), startDate, endDate);
+        List<AnalyticsDTO.SpendingTrend> trends = analyticsService.getSpendingTrends(getUserId(userDetails), startDate, endDate,
+                maxPoints, downsample);
         return ResponseEntity.ok(ApiResponse.success("Spending trends retrieved successfully", trends));
     }
 
@@ -140,6 +154,46 @@ public class AnalyticsController {
         return ResponseEntity.ok(ApiResponse.success("Spending summary retrieved successfully", analytics.getSpendingSummary()));
     }
 
+    @Operation(summary = "Get spending forecast", description = "Get projected end-of-month and end-of-year spend, in total and per category, against any budgets")
+    @GetMapping("/forecast")
+    public ResponseEntity<ApiResponse<SpendingForecastDTO>> getForecast(@AuthenticationPrincipal UserDetails userDetails) {
+        SpendingForecastDTO forecast = forecastService.getForecast(getUserId(userDetails));
+        return ResponseEntity.ok(ApiResponse.success("Spending forecast retrieved successfully", forecast));
+    }
+
+    @Operation(summary = "Get recurring charges", description = "Get detected subscriptions and bills with their frequency, confidence and next expected date")
+    @GetMapping("/recurring-charges")
+    public ResponseEntity<ApiResponse<List<RecurringChargeDTO>>> getRecurringCharges(@AuthenticationPrincipal UserDetails userDetails) {
+        List<RecurringChargeDTO> charges = recurringChargeService.getRecurringCharges(getUserId(userDetails));
+        return ResponseEntity.ok(ApiResponse.success("Recurring charges retrieved successfully", charges));
+    }
+
+    @Operation(summary = "Pivot spending", description = "Group spending by any combination of dimensions with sum, count, average and percentile measures; the response includes the query plan and latency")
+    @GetMapping("/pivot")
+    public ResponseEntity<ApiResponse<PivotDTO>> getPivot(
+            @Parameter(description = "Dimensions to group by, e.g. CATEGORY,MONTH")
+            @RequestParam List<PivotDTO.Dimension> dimensions,
+            @Parameter(description = "Measures to compute, e.g. SUM,COUNT,P90")
+            @RequestParam(defaultValue = "SUM,COUNT") List<PivotDTO.Measure> measures,
+            @Parameter(description = "Start date")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @Parameter(description = "End date")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @Parameter(description = "Maximum number of rows")
+            @RequestParam(defaultValue = "100") int limit,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        if (startDate == null) {
+            startDate = LocalDate.now().withDayOfMonth(1);
+        }
+        if (endDate == null) {
+            endDate = LocalDate.now();
+        }
+
+        PivotDTO pivot = pivotService.pivot(getUserId(userDetails), dimensions, measures, startDate, endDate, limit);
+        return ResponseEntity.ok(ApiResponse.success("Pivot retrieved successfully", pivot));
+    }
+
     private String getUserId(UserDetails userDetails) {
         return ((com.jaiswal.model.document.User) userDetails).getId();
     }
@@ -0,0 +1,30 @@
+package com.jaiswal.controller;
+
+import com.jaiswal.cache.TwoTierCacheManager;
+import com.jaiswal.model.dto.ApiResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+@RequiredArgsConstructor
+@Tag(name = "Cache Administration", description = "APIs for inspecting the two-tier cache")
+@SecurityRequirement(name = "bearerAuth")
+public class CacheAdminController {
+
+    private final TwoTierCacheManager cacheManager;
+
+    @Operation(summary = "Get cache statistics", description = "Get L1 (heap) and L2 (Redis) hit ratios for each cache on this node")
+    @GetMapping("/statistics")
+    public ResponseEntity<ApiResponse<Map<String, Map<String, Object>>>> getStatistics() {
+        return ResponseEntity.ok(ApiResponse.success("Cache statistics retrieved successfully", cacheManager.getStatistics()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.jaiswal.controller;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.dto.ApiResponse;
+import com.jaiswal.model.dto.PercentileRankDTO;
+import com.jaiswal.model.dto.SegmentInsightDTO;
+import com.jaiswal.model.dto.SimilarSpendersDTO;
+import com.jaiswal.service.AnonymizationService;
+import com.jaiswal.service.CommunityService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/community")
+@RequiredArgsConstructor
+@Validated
+@Tag(name = "Community", description = "APIs for comparing spending with the community")
+@SecurityRequirement(name = "bearerAuth")
+public class CommunityController {
+
+    private final CommunityService communityService;
+    private final AnonymizationService anonymizationService;
+
+    @Operation(summary = "Get percentile ranks", description = "Rank the user's monthly spend, overall and per category, against other users")
+    @GetMapping("/percentile-ranks")
+    public ResponseEntity<ApiResponse<List<PercentileRankDTO>>> getPercentileRanks(
+            @Parameter(description = "Month to compare (yyyy-MM)")
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth period,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        // Default to the last complete month
+        if (period == null) {
+            period = YearMonth.now().minusMonths(1);
+        }
+
+        List<PercentileRankDTO> ranks = communityService.getPercentileRanks(getUserId(userDetails), period);
+        return ResponseEntity.ok(ApiResponse.success("Percentile ranks retrieved successfully", ranks));
+    }
+
+    @Operation(summary = "Compare with a segment", description = "Compare the user's monthly spend with users in a demographic segment; omitted dimensions cover every value")
+    @GetMapping("/segments")
+    public ResponseEntity<ApiResponse<SegmentInsightDTO>> getSegmentComparison(
+            @Parameter(description = "Age group") @RequestParam(required = false) String ageGroup,
+            @Parameter(description = "Region") @RequestParam(required = false) String region,
+            @Parameter(description = "Income range") @RequestParam(required = false) String incomeRange,
+            @Parameter(description = "User segment") @RequestParam(required = false) String userSegment,
+            @Parameter(description = "Category name; all categories if omitted") @RequestParam(required = false) String category,
+            @Parameter(description = "Month to compare (yyyy-MM)")
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth period,
+            @AuthenticationPrincipal UserDetails userDetails) {
+
+        if (period == null) {
+            period = YearMonth.now().minusMonths(1);
+        }
+
+        CommunityInsight.DemographicFilters segment = CommunityInsight.DemographicFilters.builder()
+                .ageGroup(ageGroup)
+                .region(region)
+                .incomeRange(incomeRange)
+                .userSegment(userSegment)
+                .build();
+        SegmentInsightDTO comparison = communityService.getSegmentComparison(getUserId(userDetails), segment, category, period);
+        return ResponseEntity.ok(ApiResponse.success("Segment comparison retrieved successfully", comparison));
+    }
+
+    @Operation(summary = "Compare with similar spenders", description = "Compare the user's category mix and monthly spend with the users whose spending is most alike")
+    @GetMapping("/similar-spenders")
+    public ResponseEntity<ApiResponse<SimilarSpendersDTO>> getSimilarSpenders(@AuthenticationPrincipal UserDetails userDetails) {
+        SimilarSpendersDTO comparison = anonymizationService.compareWithSimilarSpenders(getUserId(userDetails));
+        return ResponseEntity.ok(ApiResponse.success("Similar spender comparison retrieved successfully", comparison));
+    }
+
+    private String getUserId(UserDetails userDetails) {
+        return ((com.jaiswal.model.document.User) userDetails).getId();
+    }
+}
@@ -1,32 +1,77 @@
 package com.jaiswal.controller;
 
+import com.jaiswal.model.dto.ReceiptDTO;
 import com.jaiswal.model.dto.ReportDTO;
+import com.jaiswal.model.dto.ReportJobDTO;
+import com.jaiswal.model.dto.ReportJobRequest;
+import com.jaiswal.report.ExportStreamExecutor;
+import com.jaiswal.report.ReportExport;
+import com.jaiswal.report.ReportJob;
+import com.jaiswal.report.ReportTemplateRegistry;
+import com.jaiswal.service.ReportJobService;
 import com.jaiswal.service.ReportService;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reports")
+@Validated
 public class ReportController {
 
     private final ReportService reportService;
+    private final ReportJobService reportJobService;
+    private final ReportTemplateRegistry reportTemplates;
+    private final ExportStreamExecutor exportStreamExecutor;
 
     @Autowired
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService, ReportJobService reportJobService,
+                            ReportTemplateRegistry reportTemplates, ExportStreamExecutor exportStreamExecutor) {
         this.reportService = reportService;
+        this.reportJobService = reportJobService;
+        this.reportTemplates = reportTemplates;
+        this.exportStreamExecutor = exportStreamExecutor;
     }
 
     @GetMapping("/monthly")
-    public ResponseEntity<ReportDTO> getMonthlyReport(@RequestParam String userId, @RequestParam String month) {
-        return ResponseEntity.ok(reportService.getMonthlyReport(userId, month));
+    public ResponseEntity<ReportDTO> getMonthlyReport(@RequestParam String userId, @RequestParam int year,
+                                                      @RequestParam int month) {
+        return ResponseEntity.ok(reportService.getMonthlyReport(userId, year, month));
     }
 
     @GetMapping("/yearly")
-    public ResponseEntity<ReportDTO> getYearlyReport(@RequestParam String userId, @RequestParam String year) {
+    public ResponseEntity<ReportDTO> getYearlyReport(@RequestParam String userId, @RequestParam int year) {
         return ResponseEntity.ok(reportService.getYearlyReport(userId, year));
     }
 
+    @GetMapping("/receipts")
+    public ResponseEntity<Page<ReceiptDTO>> getReportReceipts(
+            @RequestParam String userId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int size) {
+        return ResponseEntity.ok(reportService.getReportReceipts(userId, startDate, endDate, PageRequest.of(page, size)));
+    }
+
     @PostMapping("/custom")
     public ResponseEntity<ReportDTO> getCustomReport(@RequestBody ReportDTO request) {
         return ResponseEntity.ok(reportService.getCustomReport(request));
@@ -37,12 +82,58 @@ public class ReportController {
         return ResponseEntity.ok(reportService.getTaxReport(userId));
     }
 
+    @GetMapping("/tax/receipts")
+    public ResponseEntity<Page<ReceiptDTO>> getTaxReportReceipts(
+            @RequestParam String userId,
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(500) int size) {
+        return ResponseEntity.ok(reportService.getTaxReportReceipts(userId, PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/templates")
+    public ResponseEntity<Map<String, List<String>>> getTemplates() {
+        return ResponseEntity.ok(reportTemplates.getTemplateNames());
+    }
+
+    // Written on the export pool under the export stream timeout; other async requests keep the MVC defaults
     @GetMapping("/export")
-    public ResponseEntity<byte[]> exportReport(@RequestParam String userId, @RequestParam String type) {
-        byte[] file = reportService.exportReport(userId, type);
+    public WebAsyncTask<Void> exportReport(@RequestParam String userId, @RequestParam String type,
+                                           @RequestParam(required = false) String template,
+                                           HttpServletResponse response) {
+        ReportExport export = reportService.exportReport(userId, type, template);
+        return exportStreamExecutor.task(() -> {
+            response.setContentType(export.getContentType());
+            response.setHeader("Content-Disposition", "attachment; filename=report." + export.getExtension());
+            OutputStream out = response.getOutputStream();
+            export.getBody().writeTo(out);
+            out.flush();
+            return null;
+        });
+    }
+
+    @PostMapping("/jobs")
+    public ResponseEntity<ReportJobDTO> submitReportJob(@Valid @RequestBody ReportJobRequest request) {
+        ReportJobDTO job = reportJobService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ReportJobDTO> getReportJob(@PathVariable String jobId, @RequestParam String userId) {
+        return ResponseEntity.ok(reportJobService.getJobStatus(userId, jobId));
+    }
+
+    // The job id changes with the report's content, so it doubles as the artifact's ETag
+    @GetMapping("/jobs/{jobId}/download")
+    public ResponseEntity<Resource> downloadReportJob(@PathVariable String jobId, @RequestParam String userId) {
+        ReportJob job = reportJobService.getJob(userId, jobId);
+        if (job.getStatus() != ReportJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename=report." + type)
-                .body(file);
+                .contentType(MediaType.parseMediaType(job.getContentType()))
+                .contentLength(job.getSizeBytes())
+                .eTag(job.getId())
+                .header("Content-Disposition", "attachment; filename=report." + job.getType())
+                .body(new FileSystemResource(job.getArtifact()));
     }
 }
-
@@ -0,0 +1,152 @@
+package com.jaiswal.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers each {@link ReceiptChangedEvent} to every
+ * {@link ReceiptChangeListener} on a bounded pool of its own, so a burst of
+ * receipt changes neither queues behind nor overflows the shared task
+ * executor. When the queue is full the publishing thread applies the change
+ * itself, and nothing a listener throws reaches the publisher.
+ * <p>
+ * A change a listener fails to apply marks the user for a rebuild of that
+ * listener's view: a Redis sorted set per listener, scored by the time of the
+ * latest mark. So do changes arriving before the listener is ready, and
+ * changes for a user already marked, since applying an increment while the
+ * view is being rebuilt could count the receipt twice. A scheduled sweep
+ * rebuilds marked users from their receipts and unmarks a user only if no
+ * change has marked them again meanwhile; rebuilds are idempotent, so two
+ * instances sweeping the same user is harmless.
+ */
+@Slf4j
+@Component
+public class ReceiptChangeDispatcher implements DisposableBean {
+
+    private static final String REBUILD_PREFIX = "spendora:receipt-change:rebuild:";
+
+    // Unmarks the user only if the mark is still the one the rebuild started from
+    private static final RedisScript<Long> UNMARK = new DefaultRedisScript<>(
+            "if redis.call('zscore', KEYS[1], ARGV[1]) == ARGV[2] then return redis.call('zrem', KEYS[1], ARGV[1]) else return 0 end",
+            Long.class);
+
+    private final Map<String, ReceiptChangeListener> listeners = new LinkedHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final ThreadPoolExecutor executor;
+
+    @Value("${app.receipts.change-listeners.rebuild-batch-size:100}")
+    private int rebuildBatchSize;
+
+    public ReceiptChangeDispatcher(List<ReceiptChangeListener> listeners, StringRedisTemplate redisTemplate,
+                                   @Value("${app.receipts.change-listeners.threads:2}") int threads,
+                                   @Value("${app.receipts.change-listeners.queue-capacity:500}") int queueCapacity) {
+        listeners.forEach(listener -> this.listeners.put(ClassUtils.getUserClass(listener).getSimpleName(), listener));
+        this.redisTemplate = redisTemplate;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "receipt-change-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @EventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        listeners.forEach((name, listener) -> executor.execute(() -> deliver(name, listener, event)));
+    }
+
+    @Scheduled(fixedDelayString = "${app.receipts.change-listeners.rebuild-interval:PT1M}")
+    public void rebuildMarked() {
+        listeners.forEach((name, listener) -> {
+            try {
+                if (listener.isReady()) {
+                    rebuildMarked(name, listener);
+                }
+            } catch (Exception e) {
+                log.error("Failed to rebuild {} for marked users", name, e);
+            }
+        });
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void deliver(String name, ReceiptChangeListener listener, ReceiptChangedEvent event) {
+        String userId = event.getUserId();
+        try {
+            if (!listener.isReady() || isMarked(name, userId)) {
+                mark(name, userId);
+                return;
+            }
+            listener.onReceiptChanged(event);
+        } catch (Exception e) {
+            log.error("{} failed to apply receipt {}; user {} will be rebuilt", name, event.getReceiptId(), userId, e);
+            mark(name, userId);
+        }
+    }
+
+    private void rebuildMarked(String name, ReceiptChangeListener listener) {
+        Set<ZSetOperations.TypedTuple<String>> marked = redisTemplate.opsForZSet()
+                .rangeByScoreWithScores(REBUILD_PREFIX + name, 0, System.currentTimeMillis(), 0, rebuildBatchSize);
+        if (marked == null) {
+            return;
+        }
+        for (ZSetOperations.TypedTuple<String> entry : marked) {
+            String userId = entry.getValue();
+            try {
+                listener.rebuild(userId);
+                redisTemplate.execute(UNMARK, List.of(REBUILD_PREFIX + name), userId, score(entry.getScore()));
+                log.info("Rebuilt {} for user {}", name, userId);
+            } catch (Exception e) {
+                // Left marked, so it is retried on the next sweep
+                log.error("Rebuilding {} failed for user: {}", name, userId, e);
+            }
+        }
+    }
+
+    private boolean isMarked(String name, String userId) {
+        try {
+            return redisTemplate.opsForZSet().score(REBUILD_PREFIX + name, userId) != null;
+        } catch (Exception e) {
+            log.warn("Could not check whether user {} is marked for a {} rebuild", userId, name, e);
+            return false;
+        }
+    }
+
+    private void mark(String name, String userId) {
+        try {
+            redisTemplate.opsForZSet().add(REBUILD_PREFIX + name, userId, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("Could not mark user {} for a {} rebuild", userId, name, e);
+        }
+    }
+
+    // As Redis renders a score; marks are whole milliseconds
+    private String score(Double score) {
+        return Long.toString(score.longValue());
+    }
+}
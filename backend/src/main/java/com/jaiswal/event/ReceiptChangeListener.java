@@ -0,0 +1,25 @@
+package com.jaiswal.event;
+
+/**
+ * A per-user view derived from receipts and kept current from
+ * {@link ReceiptChangedEvent}s, which {@link ReceiptChangeDispatcher} delivers.
+ * A change that cannot be applied is not retried on its own: the dispatcher
+ * records the user, and the user's view is later rebuilt from their receipts.
+ */
+public interface ReceiptChangeListener {
+
+    // Applies one change; throws if it could not be applied
+    void onReceiptChanged(ReceiptChangedEvent event);
+
+    /**
+     * Recomputes the user's view from their receipts as they are now,
+     * replacing what it holds. Running it again, or on two nodes at once,
+     * gives the same result.
+     */
+    void rebuild(String userId);
+
+    // False until the view has been built for all users; changes until then are left to rebuilds
+    default boolean isReady() {
+        return true;
+    }
+}
@@ -0,0 +1,52 @@
+package com.jaiswal.event;
+
+import com.jaiswal.model.document.Receipt;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Published by ReceiptService after a receipt's spend changes. {@code before}
+ * and {@code after} are the receipt's spend-relevant fields on either side of
+ * the change; either is null when the receipt did not count as spend (not yet
+ * processed, or deleted), so listeners can apply the change as a delta.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ReceiptChangedEvent {
+
+    private final String userId;
+    private final String receiptId;
+    private final Snapshot before;
+    private final Snapshot after;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Snapshot {
+        private LocalDate date;
+        private String categoryId;
+        private String merchantName;
+        private BigDecimal totalAmount;
+
+        // Null for receipts that do not count as spend yet
+        public static Snapshot of(Receipt receipt) {
+            if (receipt.getDate() == null || receipt.getTotalAmount() == null) {
+                return null;
+            }
+            return Snapshot.builder()
+                    .date(receipt.getDate())
+                    .categoryId(receipt.getCategoryId())
+                    .merchantName(receipt.getMerchantName())
+                    .totalAmount(receipt.getTotalAmount())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.jaiswal.exception;
+
+public class ExportCapacityExceededException extends RuntimeException {
+    public ExportCapacityExceededException(String message) {
+        super(message);
+    }
+}
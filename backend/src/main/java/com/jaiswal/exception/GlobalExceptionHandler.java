@@ -2,6 +2,8 @@ package com.jaiswal.exception;
 
 import com.jaiswal.model.dto.ApiResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -31,6 +33,23 @@ public class GlobalExceptionHandler {
                 .body(ApiResponse.error(ex.getMessage(), "VALIDATION_ERROR"));
     }
 
+    @ExceptionHandler(ExportCapacityExceededException.class)
+    public ResponseEntity<ApiResponse<Void>> handleExportCapacityExceeded(ExportCapacityExceededException ex) {
+        log.warn("Export rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(ApiResponse.error(ex.getMessage(), "EXPORT_CAPACITY_EXCEEDED"));
+    }
+
+    // The streaming export pool is sized to the export limit and turns away bodies beyond its queue
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<ApiResponse<Void>> handleTaskRejected(TaskRejectedException ex) {
+        log.warn("Export rejected: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(ApiResponse.error("Too many exports are running; try again shortly", "EXPORT_CAPACITY_EXCEEDED"));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiResponse<Void>> handleMethodArgumentNotValid(MethodArgumentNotValidException ex) {
         List<String> errors = ex.getBindingResult()
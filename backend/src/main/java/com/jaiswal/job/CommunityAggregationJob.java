@@ -0,0 +1,367 @@
+package com.jaiswal.job;
+
+import com.jaiswal.model.document.AggregationCheckpoint;
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.User;
+import com.jaiswal.repository.AggregationCheckpointRepository;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.UserRepository;
+import com.jaiswal.service.AnonymizationService;
+import com.jaiswal.service.CommunityAggregate;
+import com.jaiswal.service.InsightCubeService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Scheduled community aggregation, partitioned by user.
+ * <p>
+ * Users are hashed into a fixed number of shards, each aggregated into a
+ * {@link CommunityAggregate} whose sketches, HyperLogLogs and moments all
+ * merge exactly. The users are streamed once and routed to their shards in
+ * batches, which run in parallel across shards and in order within one.
+ * Each finished shard is checkpointed, so a run interrupted by a crash
+ * resumes with the remaining shards. Once all shards are in, the partials
+ * are merged and published as the community insight.
+ * <p>
+ * Alongside the receipt-level aggregate, each user's monthly spend per
+ * category is added to per-category distributions, which back the percentile
+ * rank API, and to the insight cube cell of the user's demographic segment.
+ * A Mongo job lock keeps the run on a single node at a time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommunityAggregationJob {
+
+    static final String JOB_NAME = "community-aggregation";
+
+    private final UserRepository userRepository;
+    private final ReceiptRepository receiptRepository;
+    private final CategoryRepository categoryRepository;
+    private final AggregationRunRepository aggregationRunRepository;
+    private final AggregationCheckpointRepository aggregationCheckpointRepository;
+    private final JobLockService jobLockService;
+    private final AnonymizationService anonymizationService;
+    private final InsightCubeService insightCubeService;
+
+    @Value("${app.community.aggregation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.community.aggregation.shards:16}")
+    private int shardCount;
+
+    @Value("${app.community.aggregation.parallelism:0}") // 0 = available processors
+    private int parallelism;
+
+    @Value("${app.community.aggregation.interval:PT24H}")
+    private Duration interval;
+
+    @Value("${app.community.aggregation.lock-ttl:PT30M}")
+    private Duration lockTtl;
+
+    @Value("${app.community.aggregation.user-batch-size:500}")
+    private int userBatchSize;
+
+    // Months (including the current one) covered by the per-category spend distributions
+    @Value("${app.community.aggregation.distribution-months:3}")
+    private int distributionMonths;
+
+    /**
+     * Checked frequently so an interrupted run resumes soon after the crash;
+     * a new run only starts once the last completed one is older than the interval.
+     */
+    @Scheduled(cron = "${app.community.aggregation.cron:0 */15 * * * *}")
+    public void runIfDue() {
+        if (!enabled || !jobLockService.tryAcquire(JOB_NAME, lockTtl)) {
+            return;
+        }
+
+        try {
+            Optional<AggregationRun> run = runToExecute();
+            if (run.isPresent()) {
+                execute(run.get());
+            }
+        } catch (Exception e) {
+            log.error("Community aggregation run failed, it will resume on the next trigger", e);
+        } finally {
+            jobLockService.release(JOB_NAME);
+        }
+    }
+
+    public static int shardOf(String userId, int shardCount) {
+        // String.hashCode is specified by the JLS, so every node assigns the same shard
+        return Math.floorMod(userId.hashCode(), shardCount);
+    }
+
+    private Optional<AggregationRun> runToExecute() {
+        Optional<AggregationRun> latest = aggregationRunRepository.findTopByJobNameOrderByStartedAtDesc(JOB_NAME);
+
+        if (latest.isPresent() && latest.get().getStatus() == AggregationRun.RunStatus.RUNNING) {
+            log.info("Resuming community aggregation run {}", latest.get().getId());
+            return latest;
+        }
+        if (latest.isPresent() && latest.get().getCompletedAt() != null
+                && latest.get().getCompletedAt().isAfter(LocalDateTime.now().minus(interval))) {
+            return Optional.empty();
+        }
+
+        return Optional.of(aggregationRunRepository.save(AggregationRun.builder()
+                .id(UUID.randomUUID().toString())
+                .jobName(JOB_NAME)
+                .shardCount(shardCount)
+                .status(AggregationRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build()));
+    }
+
+    void execute(AggregationRun run) throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+
+        Set<Integer> completedShards = aggregationCheckpointRepository.findByRunId(run.getId()).stream()
+                .map(AggregationCheckpoint::getShard)
+                .collect(Collectors.toSet());
+        List<Integer> pendingShards = IntStream.range(0, run.getShardCount())
+                .filter(shard -> !completedShards.contains(shard))
+                .boxed()
+                .collect(Collectors.toList());
+
+        if (!pendingShards.isEmpty()) {
+            aggregateShards(run, pendingShards);
+        }
+
+        CommunityAggregate total = new CommunityAggregate();
+        long userCount = 0;
+        for (AggregationCheckpoint checkpoint : aggregationCheckpointRepository.findByRunId(run.getId())) {
+            total.merge(checkpoint.getPartial());
+            userCount += checkpoint.getUserCount();
+        }
+        // The new cube is written under this run's generation and only served once the insight naming it is published
+        insightCubeService.saveCells(run.getId(), total.getCubeCells().values());
+        anonymizationService.publishCommunityInsight(total, run.getId());
+        insightCubeService.deleteOtherGenerations(run.getId());
+
+        run.setStatus(AggregationRun.RunStatus.COMPLETED);
+        run.setCompletedAt(LocalDateTime.now());
+        aggregationRunRepository.save(run);
+        aggregationCheckpointRepository.deleteByRunId(run.getId());
+
+        log.info("Community aggregation run {} finished: {} shards ({} resumed), {} users, {} receipts in {} ms",
+                run.getId(), run.getShardCount(), completedShards.size(), userCount,
+                total.getReceiptCount(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Streams the users once, routing each to its pending shard. A shard's
+     * batches are chained, so its partial is only updated by one thread at a
+     * time; at most two batches per thread are in flight, so the stream never
+     * runs far ahead of the aggregation.
+     */
+    private void aggregateShards(AggregationRun run, List<Integer> pendingShards)
+            throws InterruptedException, ExecutionException {
+        int threads = Math.min(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+                pendingShards.size());
+        // Anchored to the run start so resumed shards use the same window
+        YearMonth firstPeriod = YearMonth.from(run.getStartedAt()).minusMonths(distributionMonths - 1L);
+        Map<Integer, ShardProgress> shards = new TreeMap<>();
+        pendingShards.forEach(shard -> shards.put(shard, new ShardProgress(shard)));
+
+        Deque<Future<?>> inFlight = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            try (Stream<User> users = userRepository.streamAllIdsAndDemographics()) {
+                Iterator<User> iterator = users.iterator();
+                while (iterator.hasNext()) {
+                    User user = iterator.next();
+                    ShardProgress shard = shards.get(shardOf(user.getId(), run.getShardCount()));
+                    if (shard == null || !shard.add(user)) {
+                        continue;
+                    }
+                    if (inFlight.size() == threads * 2) {
+                        inFlight.poll().get();
+                        renewLock();
+                    }
+                    inFlight.add(shard.submit(executor, firstPeriod));
+                }
+            }
+            for (ShardProgress shard : shards.values()) {
+                shard.submit(executor, firstPeriod).get();
+                checkpoint(run, shard);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void checkpoint(AggregationRun run, ShardProgress shard) {
+        aggregationCheckpointRepository.save(AggregationCheckpoint.builder()
+                .id(run.getId() + ":" + shard.shard)
+                .runId(run.getId())
+                .shard(shard.shard)
+                .userCount(shard.userCount)
+                .partial(shard.partial)
+                .completedAt(LocalDateTime.now())
+                .build());
+        renewLock();
+        log.debug("Community aggregation shard {}/{} done: {} users, {} receipts",
+                shard.shard, run.getShardCount(), shard.userCount, shard.partial.getReceiptCount());
+    }
+
+    // Extend the lease while batches keep completing; stop if another node has taken over
+    private void renewLock() {
+        if (!jobLockService.tryAcquire(JOB_NAME, lockTtl)) {
+            throw new IllegalStateException("Lost the " + JOB_NAME + " job lock");
+        }
+    }
+
+    private void aggregateUsers(Map<String, CommunityInsight.DemographicFilters> segments, CommunityAggregate partial,
+                                YearMonth firstPeriod) {
+        Map<String, String> categoryNames = categoryRepository.findNamesByUserIdIn(segments.keySet()).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName, (first, second) -> first));
+
+        // Receipts arrive grouped by user, so each user's totals are complete when the user changes
+        UserSpend userSpend = new UserSpend(null, null);
+        try (Stream<Receipt> receipts = receiptRepository.streamForCommunityAggregationByUserIdIn(segments.keySet())) {
+            Iterator<Receipt> iterator = receipts.iterator();
+            while (iterator.hasNext()) {
+                Receipt receipt = iterator.next();
+                partial.add(receipt);
+                if (!Objects.equals(receipt.getUserId(), userSpend.userId)) {
+                    userSpend.flushInto(partial);
+                    userSpend = new UserSpend(receipt.getUserId(), segments.get(receipt.getUserId()));
+                }
+                userSpend.add(receipt, categoryNames, firstPeriod);
+            }
+        }
+        userSpend.flushInto(partial);
+    }
+
+    /**
+     * One shard's partial and the batch of its users being collected. Each
+     * submitted batch runs after the shard's previous one.
+     */
+    private class ShardProgress {
+
+        private final int shard;
+        private final CommunityAggregate partial = new CommunityAggregate();
+        private Map<String, CommunityInsight.DemographicFilters> batch = new HashMap<>();
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private long userCount;
+
+        ShardProgress(int shard) {
+            this.shard = shard;
+        }
+
+        // True once the batch is full
+        boolean add(User user) {
+            batch.put(user.getId(), segmentOf(user));
+            userCount++;
+            return batch.size() == userBatchSize;
+        }
+
+        Future<Void> submit(ExecutorService executor, YearMonth firstPeriod) {
+            Map<String, CommunityInsight.DemographicFilters> users = batch;
+            batch = new HashMap<>();
+            if (!users.isEmpty()) {
+                tail = tail.thenRunAsync(() -> aggregateUsers(users, partial, firstPeriod), executor);
+            }
+            return tail;
+        }
+    }
+
+    private CommunityInsight.DemographicFilters segmentOf(User user) {
+        User.Demographics demographics = user.getDemographics();
+        if (demographics == null) {
+            return new CommunityInsight.DemographicFilters();
+        }
+        return CommunityInsight.DemographicFilters.builder()
+                .ageGroup(demographics.getAgeGroup())
+                .region(demographics.getRegion())
+                .incomeRange(demographics.getIncomeRange())
+                .userSegment(demographics.getUserSegment())
+                .build();
+    }
+
+    /**
+     * One user's spend per month and category within the distribution window,
+     * keyed by shared category so categories folded into one count once.
+     */
+    private static class UserSpend {
+
+        private final String userId;
+        private final CommunityInsight.DemographicFilters segment;
+        private final Map<YearMonth, Map<String, Spend>> totals = new HashMap<>();
+
+        UserSpend(String userId, CommunityInsight.DemographicFilters segment) {
+            this.userId = userId;
+            this.segment = segment;
+        }
+
+        void add(Receipt receipt, Map<String, String> categoryNames, YearMonth firstPeriod) {
+            BigDecimal amount = receipt.getTotalAmount();
+            if (receipt.getDate() == null || amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return;
+            }
+            YearMonth period = YearMonth.from(receipt.getDate());
+            if (period.isBefore(firstPeriod)) {
+                return;
+            }
+
+            Map<String, Spend> byCategory = totals.computeIfAbsent(period, key -> new HashMap<>());
+            byCategory.computeIfAbsent(CommunityAggregate.ALL_CATEGORIES, key -> new Spend()).add(amount);
+
+            String category = receipt.getCategoryId() != null ? categoryNames.get(receipt.getCategoryId()) : null;
+            if (category != null) {
+                byCategory.computeIfAbsent(CommunityAggregate.sharedCategoryKey(category), key -> new Spend()).add(amount);
+            }
+        }
+
+        void flushInto(CommunityAggregate partial) {
+            totals.forEach((period, byCategory) -> byCategory.forEach((categoryKey, spend) ->
+                    partial.addUserSpend(segment, period.toString(), categoryKey,
+                            spend.amount, spend.receipts)));
+        }
+    }
+
+    private static class Spend {
+
+        private BigDecimal amount = BigDecimal.ZERO;
+        private long receipts;
+
+        void add(BigDecimal value) {
+            amount = amount.add(value);
+            receipts++;
+        }
+    }
+}
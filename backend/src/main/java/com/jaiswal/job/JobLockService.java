@@ -0,0 +1,71 @@
+package com.jaiswal.job;
+
+import com.jaiswal.model.document.JobLock;
+import com.jaiswal.repository.JobLockRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Cluster-wide mutual exclusion for scheduled jobs, backed by the
+ * {@code job_locks} collection. Locks are leases: a holder that dies simply
+ * lets {@code lockedUntil} pass, and long-running holders extend the lease by
+ * acquiring again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class JobLockService {
+
+    private final JobLockRepository jobLockRepository;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Takes or extends the lock on {@code jobName} for {@code ttl}. Returns
+     * false if another node holds an unexpired lease.
+     */
+    public boolean tryAcquire(String jobName, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            JobLock lock = jobLockRepository.findById(jobName)
+                    .orElseGet(() -> JobLock.builder().name(jobName).build());
+
+            boolean heldByOther = lock.getOwner() != null && !nodeId.equals(lock.getOwner())
+                    && lock.getLockedUntil() != null && lock.getLockedUntil().isAfter(now);
+            if (heldByOther) {
+                return false;
+            }
+
+            if (!nodeId.equals(lock.getOwner())) {
+                lock.setLockedAt(now);
+            }
+            lock.setOwner(nodeId);
+            lock.setLockedUntil(now.plus(ttl));
+            jobLockRepository.save(lock);
+            return true;
+        } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+            // Another node took or renewed the lock between our read and write
+            return false;
+        }
+    }
+
+    public void release(String jobName) {
+        try {
+            jobLockRepository.findById(jobName)
+                    .filter(lock -> nodeId.equals(lock.getOwner()))
+                    .ifPresent(lock -> {
+                        lock.setOwner(null);
+                        lock.setLockedUntil(LocalDateTime.now());
+                        jobLockRepository.save(lock);
+                    });
+        } catch (Exception e) {
+            log.warn("Could not release job lock {}, it will expire", jobName, e);
+        }
+    }
+}
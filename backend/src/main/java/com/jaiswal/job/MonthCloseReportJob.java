@@ -0,0 +1,213 @@
+package com.jaiswal.job;
+
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.User;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.UserRepository;
+import com.jaiswal.service.ReportPartialService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Pre-generates every active user's report partial for the month that just
+ * closed, so the reports opened on the 1st are served from the
+ * {@code reportPartials} cache instead of all aggregating at once.
+ * <p>
+ * Active users are read from a cursor in id order and handed out in chunks
+ * to a small pool. Chunks are dispatched no faster than
+ * {@code max-users-per-second} and at most {@code parallelism} are in flight,
+ * so the job leaves Mongo capacity for live traffic. Chunks are checkpointed
+ * in dispatch order: the run records the last user of each chunk once it and
+ * every earlier chunk are done, and a run interrupted by a crash resumes
+ * after that user. Redoing a chunk only rewrites the same cache entries.
+ * A Mongo job lock keeps the run on a single node at a time.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MonthCloseReportJob {
+
+    static final String JOB_NAME = "month-close-reports";
+
+    private final UserRepository userRepository;
+    private final AggregationRunRepository aggregationRunRepository;
+    private final JobLockService jobLockService;
+    private final ReportPartialService reportPartialService;
+
+    @Value("${app.reports.month-close.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reports.month-close.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${app.reports.month-close.parallelism:2}")
+    private int parallelism;
+
+    @Value("${app.reports.month-close.max-users-per-second:200}") // 0 = unthrottled
+    private int maxUsersPerSecond;
+
+    // Users who have not logged in for this long are left to generate on demand
+    @Value("${app.reports.month-close.active-within:P90D}")
+    private Duration activeWithin;
+
+    @Value("${app.reports.month-close.lock-ttl:PT30M}")
+    private Duration lockTtl;
+
+    /**
+     * Checked frequently so the run starts soon after a month closes and an
+     * interrupted run resumes soon after the crash; each closed month is
+     * pre-generated once.
+     */
+    @Scheduled(cron = "${app.reports.month-close.cron:0 */10 * * * *}")
+    public void runIfDue() {
+        if (!enabled || !jobLockService.tryAcquire(JOB_NAME, lockTtl)) {
+            return;
+        }
+
+        try {
+            Optional<AggregationRun> run = runToExecute(YearMonth.now().minusMonths(1));
+            if (run.isPresent()) {
+                execute(run.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("Month-close report run failed, it will resume on the next trigger", e);
+        } finally {
+            jobLockService.release(JOB_NAME);
+        }
+    }
+
+    Optional<AggregationRun> runToExecute(YearMonth closedMonth) {
+        Optional<AggregationRun> latest = aggregationRunRepository.findTopByJobNameOrderByStartedAtDesc(JOB_NAME);
+
+        if (latest.isPresent() && closedMonth.toString().equals(latest.get().getPeriod())) {
+            if (latest.get().getStatus() == AggregationRun.RunStatus.COMPLETED) {
+                return Optional.empty();
+            }
+            log.info("Resuming month-close report run {} for {} after user {}",
+                    latest.get().getId(), closedMonth, latest.get().getResumeAfter());
+            return latest;
+        }
+
+        // A run still unfinished for an earlier month is dropped; its month is no longer the one opened on the 1st
+        return Optional.of(aggregationRunRepository.save(AggregationRun.builder()
+                .id(UUID.randomUUID().toString())
+                .jobName(JOB_NAME)
+                .period(closedMonth.toString())
+                .status(AggregationRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build()));
+    }
+
+    void execute(AggregationRun run) throws InterruptedException, ExecutionException {
+        long start = System.currentTimeMillis();
+        YearMonth month = YearMonth.parse(run.getPeriod());
+        // Anchored to the run start so a resumed run walks the same users
+        LocalDateTime activeSince = run.getStartedAt().minus(activeWithin);
+        long resumedAt = run.getProcessedUsers();
+
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (Stream<User> users = run.getResumeAfter() == null
+                ? userRepository.streamActiveUserIds(activeSince)
+                : userRepository.streamActiveUserIdsAfter(activeSince, run.getResumeAfter())) {
+            long nextDispatch = System.nanoTime();
+            Iterator<User> iterator = users.iterator();
+            List<String> userIds = new ArrayList<>(chunkSize);
+            while (iterator.hasNext()) {
+                userIds.add(iterator.next().getId());
+                if (userIds.size() < chunkSize && iterator.hasNext()) {
+                    continue;
+                }
+
+                // Oldest first, so the checkpoint only ever moves past chunks that are done
+                if (inFlight.size() == parallelism) {
+                    checkpoint(run, inFlight.poll());
+                }
+                long wait = nextDispatch - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                nextDispatch = Math.max(nextDispatch, System.nanoTime()) + pause(userIds.size());
+
+                List<String> chunk = userIds;
+                inFlight.add(new Chunk(chunk.get(chunk.size() - 1), executor.submit(() -> generate(chunk, month))));
+                userIds = new ArrayList<>(chunkSize);
+            }
+            while (!inFlight.isEmpty()) {
+                checkpoint(run, inFlight.poll());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        run.setStatus(AggregationRun.RunStatus.COMPLETED);
+        run.setCompletedAt(LocalDateTime.now());
+        aggregationRunRepository.save(run);
+
+        log.info("Month-close report run {} for {} finished: {} users ({} resumed) in {} ms",
+                run.getId(), month, run.getProcessedUsers(), resumedAt, System.currentTimeMillis() - start);
+    }
+
+    private int generate(List<String> userIds, YearMonth month) {
+        int failed = 0;
+        for (String userId : userIds) {
+            try {
+                // Cached under the month's version key; the monthly report reads the same entry
+                reportPartialService.getMonthPartial(userId, month);
+            } catch (Exception e) {
+                // Left to generate on demand
+                log.warn("Could not pre-generate the {} report for user {}", month, userId, e);
+                failed++;
+            }
+        }
+        return userIds.size() - failed;
+    }
+
+    private void checkpoint(AggregationRun run, Chunk chunk) throws InterruptedException, ExecutionException {
+        run.setResumeAfter(chunk.lastUserId);
+        run.setProcessedUsers(run.getProcessedUsers() + chunk.generated.get());
+        aggregationRunRepository.save(run);
+
+        // Extend the lease while chunks keep completing; stop if another node has taken over
+        if (!jobLockService.tryAcquire(JOB_NAME, lockTtl)) {
+            throw new IllegalStateException("Lost the " + JOB_NAME + " job lock");
+        }
+    }
+
+    private long pause(int users) {
+        return maxUsersPerSecond > 0 ? TimeUnit.SECONDS.toNanos(users) / maxUsersPerSecond : 0;
+    }
+
+    private static class Chunk {
+
+        private final String lastUserId;
+        private final Future<Integer> generated;
+
+        Chunk(String lastUserId, Future<Integer> generated) {
+            this.lastUserId = lastUserId;
+            this.generated = generated;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.jaiswal.model.document;
+
+import com.jaiswal.service.CommunityAggregate;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Merged partial result of one completed shard of an {@link AggregationRun}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "aggregation_checkpoints")
+public class AggregationCheckpoint {
+
+    @Id
+    private String id; // runId:shard
+
+    @Indexed
+    private String runId;
+
+    private int shard;
+
+    private long userCount;
+
+    private CommunityAggregate partial;
+
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,51 @@
+package com.jaiswal.model.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One execution of a partitioned aggregation job. A run left {@code RUNNING}
+ * by a crashed node is resumed by the next trigger, skipping the shards that
+ * already have an {@link AggregationCheckpoint}. Jobs that walk users in id
+ * order instead record the last user done in {@code resumeAfter}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "aggregation_runs")
+@CompoundIndex(def = "{'jobName': 1, 'startedAt': -1}")
+public class AggregationRun {
+
+    @Id
+    private String id;
+
+    private String jobName;
+
+    private int shardCount;
+
+    // The month a per-period job covers (yyyy-MM)
+    private String period;
+
+    // Users are done up to and including this id
+    private String resumeAfter;
+
+    private long processedUsers;
+
+    private RunStatus status;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime completedAt;
+
+    public enum RunStatus {
+        RUNNING, COMPLETED
+    }
+}
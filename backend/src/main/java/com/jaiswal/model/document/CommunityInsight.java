@@ -1,5 +1,6 @@
 package com.jaiswal.model.document;
 
+import com.jaiswal.util.QuantileSketch;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,6 +14,7 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -44,6 +46,12 @@ public class CommunityInsight {
 
     private DemographicFilters filters;
 
+    // Per-category, per-month distributions of users' spend, for percentile ranks
+    private List<SpendDistribution> distributions;
+
+    // Generation of the insight cube cells published with this insight, if any
+    private String cubeGeneration;
+
     @CreatedDate
     private LocalDateTime generatedAt;
 
@@ -64,6 +72,21 @@ public class CommunityInsight {
         private Map<String, BigDecimal> percentiles;
     }
 
+    /**
+     * Distribution of per-user spend in one category over one month. Each
+     * user who spent in the category that month contributes one value.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class SpendDistribution {
+        private String categoryKey;     // normalized name, shared across users' own categories
+        private String category;        // display name
+        private String period;          // yyyy-MM
+        private QuantileSketch sketch;
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
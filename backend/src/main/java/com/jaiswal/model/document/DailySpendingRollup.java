@@ -0,0 +1,46 @@
+package com.jaiswal.model.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One user's spend in one category on one day, kept current by applying each
+ * receipt change as an increment. Day and category are the finest grain the
+ * analytics read without going back to receipts. Amounts are stored as
+ * decimals, so repeated increments and decrements sum exactly.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "daily_spending_rollups")
+@CompoundIndex(def = "{'userId': 1, 'date': 1}")
+public class DailySpendingRollup {
+
+    @Id
+    private String id; // userId:yyyy-MM-dd:categoryId
+
+    private String userId;
+
+    private LocalDate date;
+
+    private String categoryId; // null for uncategorized receipts
+
+    @Field(targetType = FieldType.DECIMAL128)
+    private BigDecimal totalAmount;
+
+    private long receiptCount;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,48 @@
+package com.jaiswal.model.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * A personal insight computed when receipts are written (e.g. an unusually
+ * large purchase) or regenerated into the user's summary feed after they
+ * change, so reading insights never recomputes them.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "insights")
+@CompoundIndex(def = "{'userId': 1, 'date': -1}")
+public class Insight {
+
+    @Id
+    private String id;
+
+    private String userId;
+
+    // The receipt that triggered it, for insights about a single receipt
+    @Indexed(sparse = true)
+    private String receiptId;
+
+    private String type;
+    private String title;
+    private String description;
+    private String icon;
+    private Map<String, Object> data;
+
+    // Date of the spending the insight is about
+    private LocalDate date;
+
+    private LocalDateTime createdAt;
+}
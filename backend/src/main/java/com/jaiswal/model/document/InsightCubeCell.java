@@ -0,0 +1,80 @@
+package com.jaiswal.model.document;
+
+import com.jaiswal.util.RunningStatistics;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+/**
+ * One cell of the community insight cube: the spend of every user in a
+ * demographic segment, for one category (or "all") and month. Only the finest
+ * cells, with all four segment dimensions set, are stored; coarser views are
+ * rolled up from them by merging, never recomputed from receipts.
+ * <p>
+ * Cells of one aggregation run share a generation, so a new cube is written
+ * alongside the one being served and swapped in when the insight is published.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "insight_cube_cells")
+@CompoundIndex(def = "{'generation': 1, 'period': 1, 'categoryKey': 1}")
+public class InsightCubeCell {
+
+    public static final String UNKNOWN = "unknown";
+
+    @Id
+    private String id; // generation:cellKey
+
+    private String generation;
+
+    private String ageGroup;
+    private String region;
+    private String incomeRange;
+    private String userSegment;
+
+    private String categoryKey;
+    private String category;
+    private String period; // yyyy-MM
+
+    private long receiptCount;
+
+    @Builder.Default
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    // One value per user: that user's total spend in the cell
+    @Builder.Default
+    private RunningStatistics userSpend = new RunningStatistics();
+
+    public long getUserCount() {
+        return userSpend.getCount();
+    }
+
+    public void merge(InsightCubeCell other) {
+        receiptCount += other.receiptCount;
+        totalAmount = totalAmount.add(other.totalAmount);
+        userSpend.merge(other.userSpend);
+    }
+
+    public static String cellKey(CommunityInsight.DemographicFilters segment, String categoryKey, String period) {
+        return String.join("|", dimension(segment.getAgeGroup()), dimension(segment.getRegion()),
+                dimension(segment.getIncomeRange()), dimension(segment.getUserSegment()), categoryKey, period);
+    }
+
+    // Self-reported values are free text; "North East " and "north-east" land in the same cell
+    public static String dimension(String value) {
+        if (value == null) {
+            return UNKNOWN;
+        }
+        String normalized = value.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9+]+", "-").replaceAll("(^-|-$)", "");
+        return normalized.isEmpty() ? UNKNOWN : normalized;
+    }
+}
@@ -0,0 +1,36 @@
+package com.jaiswal.model.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease held by the node currently running a scheduled job. A lock whose
+ * {@code lockedUntil} has passed is free to take over; the version field makes
+ * concurrent takeovers fail on all but one node.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "job_locks")
+public class JobLock {
+
+    @Id
+    private String name;
+
+    private String owner;
+
+    private LocalDateTime lockedAt;
+
+    private LocalDateTime lockedUntil;
+
+    @Version
+    private Long version;
+}
@@ -0,0 +1,107 @@
+package com.jaiswal.model.document;
+
+import com.jaiswal.util.EwmaStatistics;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A user's candidate recurring charges: receipts bucketed by canonical
+ * merchant and rounded amount, each bucket tracking the intervals between its
+ * receipts. Updated by the recurring-charge detector as each receipt is
+ * processed; concurrent updates are resolved with the version field.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "recurring_charges")
+public class RecurringChargeState {
+
+    @Id
+    private String userId;
+
+    @Version
+    private Long version;
+
+    // Keyed by canonical merchant and amount bucket; bounded, dropping the buckets seen least recently
+    @Builder.Default
+    private Map<String, RecurringCharge> charges = new HashMap<>();
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RecurringCharge {
+        private String merchant;        // canonical
+        private String merchantName;    // as last seen on a receipt
+        private String categoryId;
+
+        @Builder.Default
+        private EwmaStatistics amount = new EwmaStatistics();
+
+        // Days between consecutive receipts, with skipped periods divided out
+        @Builder.Default
+        private EwmaStatistics intervalDays = new EwmaStatistics();
+
+        private long occurrences;
+        private LocalDate firstDate;
+        private LocalDate lastDate;
+
+        // Null until the intervals match a frequency
+        private Frequency frequency;
+        private double confidence;
+        private LocalDate nextExpectedDate;
+    }
+
+    public enum Frequency {
+        WEEKLY(7, 2, 3),
+        MONTHLY(30.44, 4, 2),
+        ANNUAL(365.25, 15, 1);
+
+        private final double days;
+        private final double toleranceDays;
+        private final int minIntervals;
+
+        Frequency(double days, double toleranceDays, int minIntervals) {
+            this.days = days;
+            this.toleranceDays = toleranceDays;
+            this.minIntervals = minIntervals;
+        }
+
+        public double getDays() {
+            return days;
+        }
+
+        public double getToleranceDays() {
+            return toleranceDays;
+        }
+
+        public int getMinIntervals() {
+            return minIntervals;
+        }
+
+        // Calendar arithmetic, so monthly charges keep their day of the month
+        public LocalDate next(LocalDate date) {
+            switch (this) {
+                case WEEKLY:
+                    return date.plusWeeks(1);
+                case MONTHLY:
+                    return date.plusMonths(1);
+                default:
+                    return date.plusYears(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.jaiswal.model.document;
+
+import com.jaiswal.util.EwmaStatistics;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A user's running spending baselines, updated by the anomaly engine as each
+ * receipt is processed: per-transaction amounts per category and per canonical
+ * merchant, and monthly totals per category. Concurrent updates are resolved
+ * with the version field.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "spending_baselines")
+public class SpendingBaseline {
+
+    @Id
+    private String userId;
+
+    @Version
+    private Long version;
+
+    // Keyed by category key
+    @Builder.Default
+    private Map<String, EwmaStatistics> categoryAmounts = new HashMap<>();
+
+    // Keyed by canonical merchant name; bounded, dropping the least seen merchants
+    @Builder.Default
+    private Map<String, EwmaStatistics> merchantAmounts = new HashMap<>();
+
+    // Keyed by category key
+    @Builder.Default
+    private Map<String, MonthlyTotal> monthlyTotals = new HashMap<>();
+
+    private LocalDateTime updatedAt;
+
+    /**
+     * The running total of the current month, plus the baseline of completed
+     * months' totals it is compared against.
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MonthlyTotal {
+        private String period; // yyyy-MM
+        private double total;
+
+        @Builder.Default
+        private EwmaStatistics history = new EwmaStatistics();
+    }
+}
@@ -0,0 +1,39 @@
+package com.jaiswal.model.document;
+
+import com.jaiswal.service.ForecastSeries;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A user's incremental forecasting state, one {@link ForecastSeries} per
+ * category plus one for total spend, updated as each receipt is processed.
+ * Concurrent updates are resolved with the version field.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "spending_forecasts")
+public class SpendingForecastState {
+
+    @Id
+    private String userId;
+
+    @Version
+    private Long version;
+
+    // Keyed by category id, plus ForecastService.TOTAL
+    @Builder.Default
+    private Map<String, ForecastSeries> series = new HashMap<>();
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,39 @@
+package com.jaiswal.model.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One user's spend per category for one month, kept current by applying each
+ * receipt change as an increment. Categories are keyed by normalized name so
+ * profiles of different users share dimensions.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "spending_profiles")
+@CompoundIndex(def = "{'period': 1, 'userId': 1}")
+public class SpendingProfile {
+
+    @Id
+    private String id; // userId:period
+
+    private String userId;
+
+    private String period; // yyyy-MM
+
+    @Builder.Default
+    private Map<String, Double> categoryTotals = new HashMap<>();
+
+    private LocalDateTime updatedAt;
+}
@@ -57,6 +57,9 @@ public class User implements UserDetails {
 
     private UserPreferences preferences;
 
+    // Optional, self-reported; used only to place the user in community insight segments
+    private Demographics demographics;
+
     @Builder.Default
     private boolean enabled = true;
 
@@ -138,4 +141,15 @@ public class User implements UserDetails {
         @Builder.Default
         private String theme = "light";
     }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Demographics {
+        private String ageGroup;
+        private String region;
+        private String incomeRange;
+        private String userSegment;
+    }
 }
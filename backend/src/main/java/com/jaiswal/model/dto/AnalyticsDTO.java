@@ -1,5 +1,6 @@
 package com.jaiswal.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -57,6 +58,10 @@ public class AnalyticsDTO {
         private LocalDate date;
         private BigDecimal amount;
         private Integer transactionCount;
+
+        // DAY, WEEK or MONTH: the bucket starting at date; absent for daily points
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String resolution;
     }
 
     @Data
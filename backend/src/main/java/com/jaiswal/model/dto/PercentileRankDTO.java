@@ -0,0 +1,23 @@
+package com.jaiswal.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PercentileRankDTO {
+
+    private String category;
+    private String categoryKey;
+    private String period;          // yyyy-MM
+    private BigDecimal amount;
+    private Double percentile;      // share of compared users spending less, 0-100
+    private Long comparedUsers;
+    private String description;
+}
@@ -0,0 +1,73 @@
+package com.jaiswal.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PivotDTO {
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private List<Dimension> dimensions;
+    private List<Measure> measures;
+
+    // Largest first by the first of SUM or COUNT requested
+    private List<Row> rows;
+    private Integer totalRows;
+    private Boolean truncated;
+
+    private Plan plan;
+
+    public enum Dimension {
+        CATEGORY,
+        MERCHANT,        // canonical merchant name
+        PAYMENT_METHOD,
+        WEEKDAY,
+        WEEK,            // ISO week, e.g. 2026-W42
+        MONTH,
+        ITEM_CATEGORY    // measures then apply to line items rather than receipts
+    }
+
+    public enum Measure {
+        SUM,
+        COUNT,
+        AVERAGE,
+        MEDIAN,
+        P75,
+        P90,
+        P95
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        private Map<String, String> keys;       // dimension name to value
+        private Map<String, Double> values;     // measure name to value
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Plan {
+        private String source;          // DAILY_ROLLUPS or RECEIPTS
+        private String reason;
+        private Long documentsRead;     // rollups read, or groups returned by the receipt aggregation
+        private List<String> pipeline;  // the generated aggregation, for RECEIPTS
+        private Long latencyMs;
+    }
+}
@@ -0,0 +1,35 @@
+package com.jaiswal.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecurringChargeDTO {
+
+    private String merchantName;
+    private String categoryId;
+    private String categoryName;
+
+    private String frequency;       // WEEKLY, MONTHLY or ANNUAL
+    private Double confidence;      // 0-1
+    private BigDecimal averageAmount;
+    private BigDecimal monthlyCost;
+
+    private Long occurrences;
+    private LocalDate firstChargeDate;
+    private LocalDate lastChargeDate;
+    private LocalDate nextExpectedDate;
+
+    // False once the next charge is overdue by more than the frequency allows
+    private Boolean active;
+}
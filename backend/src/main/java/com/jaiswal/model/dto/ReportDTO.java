@@ -28,6 +28,7 @@ public class ReportDTO {
     // Added missing fields for ReportService compatibility
     private BigDecimal totalAmount;
     private Map<String, BigDecimal> categoryBreakdown;
+    // Not filled by ReportService; a report's receipts are paged from /api/reports/receipts
     private List<ReceiptDTO> receipts;
 
     private ReportSummary summary;
@@ -0,0 +1,26 @@
+package com.jaiswal.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobDTO {
+
+    private String jobId;
+    private String status;
+    private String type;
+    private String template;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private Long sizeBytes;
+    private String error;
+    // Set once the report is ready
+    private String downloadUrl;
+}
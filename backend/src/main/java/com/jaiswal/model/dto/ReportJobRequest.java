@@ -0,0 +1,29 @@
+package com.jaiswal.model.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobRequest {
+
+    @NotBlank(message = "User ID is required")
+    private String userId;
+
+    @NotBlank(message = "Export type is required")
+    private String type;
+
+    // One of the type's templates; null for the type's default export
+    private String template;
+
+    // Inclusive; both null to export all of the user's receipts
+    private LocalDate startDate;
+    private LocalDate endDate;
+}
@@ -0,0 +1,37 @@
+package com.jaiswal.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SegmentInsightDTO {
+
+    // Segment dimensions; absent where the cell is rolled up over every value
+    private String ageGroup;
+    private String region;
+    private String incomeRange;
+    private String userSegment;
+
+    private String category;
+    private String period;          // yyyy-MM
+
+    // Too few users in the segment to publish anything about it
+    private boolean suppressed;
+
+    private Long userCount;
+    private BigDecimal averageSpend;
+    private BigDecimal standardDeviation;
+    private Double averageReceipts;
+
+    private BigDecimal yourSpend;
+    private BigDecimal differencePercentage;
+}
@@ -0,0 +1,40 @@
+package com.jaiswal.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SimilarSpendersDTO {
+
+    // Too few similar users (or no spend of your own) to compare against
+    private boolean suppressed;
+
+    private Integer cohortSize;
+    private Integer months;
+    private Double averageSimilarity;
+
+    private BigDecimal yourMonthlySpend;
+    private BigDecimal cohortMonthlySpend;
+
+    private List<CategoryShare> categories;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryShare {
+        private String category;
+        private Double yourShare;       // percent of your spend
+        private Double cohortShare;     // average percent of the cohort's spend
+    }
+}
@@ -0,0 +1,45 @@
+package com.jaiswal.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SpendingForecastDTO {
+
+    private LocalDate asOf;
+    private String period; // yyyy-MM
+
+    private SeriesForecast total;
+    private List<SeriesForecast> categories;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class SeriesForecast {
+        private String categoryId;
+        private String categoryName;
+
+        private BigDecimal monthToDate;
+        private BigDecimal monthEndForecast;
+        private BigDecimal yearToDate;
+        private BigDecimal yearEndForecast;
+
+        private BigDecimal monthlyBudget;
+        private BigDecimal yearlyBudget;
+        private Boolean overMonthlyBudget;   // projected month end above the monthly budget
+        private Boolean overYearlyBudget;
+    }
+}
@@ -36,6 +36,7 @@ public class UserDTO {
     private String profileImageUrl;
     private Set<String> roles;
     private UserPreferencesDTO preferences;
+    private DemographicsDTO demographics;
     private LocalDateTime createdAt;
     private LocalDateTime lastLoginAt;
 
@@ -51,4 +52,15 @@ public class UserDTO {
         private boolean pushNotifications;
         private String theme;
     }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DemographicsDTO {
+        private String ageGroup;
+        private String region;
+        private String incomeRange;
+        private String userSegment;
+    }
 }
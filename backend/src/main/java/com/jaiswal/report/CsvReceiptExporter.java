@@ -0,0 +1,66 @@
+package com.jaiswal.report;
+
+import com.jaiswal.model.document.Receipt;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * RFC 4180 CSV. Text cells that a spreadsheet would evaluate as a formula
+ * are prefixed with a quote, so a merchant name cannot inject one.
+ */
+@Component
+public class CsvReceiptExporter implements ReceiptTableExporter {
+
+    @Override
+    public String type() {
+        return "csv";
+    }
+
+    @Override
+    public String contentType() {
+        return "text/csv; charset=UTF-8";
+    }
+
+    @Override
+    public void write(Iterator<Receipt> receipts, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        while (receipts.hasNext()) {
+            Receipt receipt = receipts.next();
+            writer.write(text(receipt.getId()));
+            writer.write(',');
+            writer.write(receipt.getDate() != null ? receipt.getDate().toString() : "");
+            writer.write(',');
+            writer.write(text(receipt.getMerchantName()));
+            writer.write(',');
+            writer.write(text(receipt.getCategoryId()));
+            writer.write(',');
+            writer.write(text(receipt.getDescription()));
+            writer.write(',');
+            writer.write(receipt.getTotalAmount() != null ? receipt.getTotalAmount().toPlainString() : "");
+            writer.write(',');
+            writer.write(receipt.getStatus() != null ? receipt.getStatus().name() : "");
+            writer.write("\r\n");
+        }
+        writer.flush();
+    }
+
+    static String text(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String cell = "=+-@\t\r".indexOf(value.charAt(0)) >= 0 ? "'" + value : value;
+        if (cell.indexOf(',') < 0 && cell.indexOf('"') < 0 && cell.indexOf('\n') < 0 && cell.indexOf('\r') < 0) {
+            return cell;
+        }
+        return '"' + cell.replace("\"", "\"\"") + '"';
+    }
+}
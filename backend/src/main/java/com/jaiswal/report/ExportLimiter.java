@@ -0,0 +1,47 @@
+package com.jaiswal.report;
+
+import com.jaiswal.exception.ExportCapacityExceededException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many heavy exports run at once, so a burst of multi-year exports
+ * queues briefly and is then turned away rather than exhausting heap, swap
+ * disk and request threads together.
+ */
+@Component
+public class ExportLimiter {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutMillis;
+
+    public ExportLimiter(ReportProperties properties) {
+        this.permits = new Semaphore(properties.getExport().getMaxConcurrent(), true);
+        this.acquireTimeoutMillis = properties.getExport().getAcquireTimeout().toMillis();
+    }
+
+    /**
+     * Takes a slot, waiting up to the configured timeout; callers must
+     * {@link #release()} it once the export has finished.
+     */
+    public void acquire() {
+        try {
+            if (permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ExportCapacityExceededException("Too many exports in progress; try again shortly");
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int availableSlots() {
+        return permits.availablePermits();
+    }
+}
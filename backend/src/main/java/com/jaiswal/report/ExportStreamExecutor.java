@@ -0,0 +1,58 @@
+package com.jaiswal.report;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streamed exports are written on their own pool sized to the export limit,
+ * rather than on the shared task executor with its two core threads. Export
+ * endpoints hand their writes over as a {@link WebAsyncTask}, so the pool and
+ * the stream timeout apply to exports only and every other async request
+ * keeps the MVC defaults. The component is not an {@code Executor} itself,
+ * so Boot's auto-configured {@code taskExecutor} does not back off.
+ */
+@Component
+public class ExportStreamExecutor implements DisposableBean {
+
+    private final ExecutorService pool;
+    private final AsyncTaskExecutor taskExecutor;
+    private final long timeoutMillis;
+
+    public ExportStreamExecutor(ReportProperties properties) {
+        int threads = properties.getExport().getMaxConcurrent();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "export-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.taskExecutor = new ConcurrentTaskExecutor(pool);
+        this.timeoutMillis = properties.getExport().getStreamTimeout().toMillis();
+    }
+
+    /**
+     * Wraps a write so that it runs on the export pool and is timed out
+     * after the configured stream timeout.
+     */
+    public <T> WebAsyncTask<T> task(Callable<T> write) {
+        return new WebAsyncTask<>(timeoutMillis, taskExecutor, write);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package com.jaiswal.report;
+
+import com.jaiswal.exception.ValidationException;
+import lombok.RequiredArgsConstructor;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
+import net.sf.jasperreports.engine.JasperExportManager;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import net.sf.jasperreports.export.SimpleExporterInput;
+import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
+import net.sf.jasperreports.export.SimpleXlsxReportConfiguration;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fills a template and renders it straight to an output stream. The fill
+ * runs under a swap-file virtualizer: only the most recent pages stay on
+ * heap and the rest are serialized to a temporary file, so heap per export
+ * is bounded by the page window rather than by the number of receipts.
+ */
+@Component
+@RequiredArgsConstructor
+public class JasperStreamingExporter {
+
+    private final ReportProperties properties;
+
+    public static String contentType(String format) {
+        return format.equals("pdf") ? "application/pdf"
+                : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    public void export(JasperReport template, Map<String, Object> parameters, JRDataSource dataSource,
+                       String type, OutputStream out) throws JRException {
+        String format = type.toLowerCase(Locale.ROOT);
+        if (!format.equals("pdf") && !format.equals("xlsx")) {
+            throw new ValidationException("Unsupported export type: " + type);
+        }
+
+        ReportProperties.Export settings = properties.getExport();
+        JRSwapFileVirtualizer virtualizer = new JRSwapFileVirtualizer(settings.getMaxPagesInMemory(),
+                new JRSwapFile(settings.getSwapDirectory(), settings.getSwapBlockSize(), settings.getSwapMinGrowCount()), true);
+        try {
+            Map<String, Object> fillParameters = new HashMap<>(parameters);
+            fillParameters.put(JRParameter.REPORT_VIRTUALIZER, virtualizer);
+            JasperPrint print = JasperFillManager.fillReport(template, fillParameters, dataSource);
+            // No more pages are added; exporting only reads them back from the swap file
+            virtualizer.setReadOnly(true);
+
+            if (format.equals("pdf")) {
+                JasperExportManager.exportReportToPdfStream(print, out);
+            } else {
+                JRXlsxExporter exporter = new JRXlsxExporter();
+                exporter.setExporterInput(new SimpleExporterInput(print));
+                exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+
+                SimpleXlsxReportConfiguration configuration = new SimpleXlsxReportConfiguration();
+                configuration.setOnePagePerSheet(false);
+                configuration.setDetectCellType(true);
+                exporter.setConfiguration(configuration);
+
+                exporter.exportReport();
+            }
+        } finally {
+            virtualizer.cleanup();
+        }
+    }
+}
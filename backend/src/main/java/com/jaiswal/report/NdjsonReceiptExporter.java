@@ -0,0 +1,55 @@
+package com.jaiswal.report;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.jaiswal.model.document.Receipt;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Newline-delimited JSON, one object per receipt, written with a streaming
+ * generator so no receipt is held after its line.
+ */
+@Component
+public class NdjsonReceiptExporter implements ReceiptTableExporter {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Override
+    public String type() {
+        return "ndjson";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/x-ndjson";
+    }
+
+    @Override
+    public void write(Iterator<Receipt> receipts, OutputStream out) throws IOException {
+        JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        while (receipts.hasNext()) {
+            Receipt receipt = receipts.next();
+            generator.writeStartObject();
+            generator.writeStringField("id", receipt.getId());
+            generator.writeStringField("date", receipt.getDate() != null ? receipt.getDate().toString() : null);
+            generator.writeStringField("merchantName", receipt.getMerchantName());
+            generator.writeStringField("categoryId", receipt.getCategoryId());
+            generator.writeStringField("description", receipt.getDescription());
+            if (receipt.getTotalAmount() != null) {
+                generator.writeNumberField("totalAmount", receipt.getTotalAmount());
+            } else {
+                generator.writeNullField("totalAmount");
+            }
+            generator.writeStringField("status", receipt.getStatus() != null ? receipt.getStatus().name() : null);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.close();
+    }
+}
@@ -0,0 +1,49 @@
+package com.jaiswal.report;
+
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.dto.ReceiptDTO;
+import net.sf.jasperreports.engine.JRDataSource;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRField;
+import org.apache.commons.beanutils.PropertyUtils;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Forward-only Jasper data source over a receipt cursor. Each receipt is read
+ * when the fill reaches it and dropped after, so a fill never holds all of a
+ * user's receipts. Fields resolve by name as {@link ReceiptDTO} properties,
+ * as they did with the bean collection data source. Closing it closes the cursor.
+ */
+public class ReceiptCursorDataSource implements JRDataSource, AutoCloseable {
+
+    private final Stream<Receipt> receipts;
+    private final Iterator<Receipt> cursor;
+    private ReceiptDTO current;
+
+    public ReceiptCursorDataSource(Stream<Receipt> receipts) {
+        this.receipts = receipts;
+        this.cursor = receipts.iterator();
+    }
+
+    @Override
+    public boolean next() {
+        current = cursor.hasNext() ? ReceiptDTO.from(cursor.next()) : null;
+        return current != null;
+    }
+
+    @Override
+    public Object getFieldValue(JRField field) throws JRException {
+        try {
+            return PropertyUtils.getProperty(current, field.getName());
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new JRException("Receipt has no readable property " + field.getName(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        receipts.close();
+    }
+}
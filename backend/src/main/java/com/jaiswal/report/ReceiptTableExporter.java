@@ -0,0 +1,26 @@
+package com.jaiswal.report;
+
+import com.jaiswal.model.document.Receipt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Writes receipts as a plain table, one row per receipt, straight from a
+ * cursor to the output: rows are written as they are read, so memory stays
+ * constant however many receipts are exported. Used for spreadsheet and data
+ * exports where Jasper's page layout adds nothing.
+ */
+public interface ReceiptTableExporter {
+
+    List<String> COLUMNS = List.of("id", "date", "merchantName", "categoryId", "description", "totalAmount", "status");
+
+    // Export type this writes, as passed to the export endpoint (csv, ndjson, xlsx)
+    String type();
+
+    String contentType();
+
+    void write(Iterator<Receipt> receipts, OutputStream out) throws IOException;
+}
@@ -0,0 +1,85 @@
+package com.jaiswal.report;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Finished report files on local disk, named by job id. A report is written
+ * to a temporary file and moved into place once complete, so a stored
+ * artifact is never partial. Artifacts older than the retention period are
+ * deleted by {@link #deleteExpired()}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportArtifactStore {
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private final ReportProperties properties;
+
+    private Path directory;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(properties.getJobs().getDirectory());
+        Files.createDirectories(directory);
+    }
+
+    public Optional<Path> find(String jobId, String extension) {
+        Path artifact = directory.resolve(jobId + "." + extension);
+        return Files.isRegularFile(artifact) ? Optional.of(artifact) : Optional.empty();
+    }
+
+    public Path write(String jobId, String extension, StreamingResponseBody body) throws IOException {
+        Path partial = Files.createTempFile(directory, jobId, PARTIAL_SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                body.writeTo(out);
+            }
+            return Files.move(partial, directory.resolve(jobId + "." + extension),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes artifacts, and partial files left by a crash, last written
+     * before the retention period. Returns how many files were deleted.
+     */
+    public int deleteExpired() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(properties.getJobs().getRetention()));
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0 && Files.deleteIfExists(file)) {
+                        deleted++;
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not delete expired report artifact {}", file, e);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list report artifacts in {}", directory, e);
+        }
+        return deleted;
+    }
+}
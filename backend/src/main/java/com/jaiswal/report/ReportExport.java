@@ -0,0 +1,18 @@
+package com.jaiswal.report;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * An export ready to stream: its content type and file extension, and the
+ * body that writes it.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ReportExport {
+
+    private final String contentType;
+    private final String extension;
+    private final StreamingResponseBody body;
+}
@@ -0,0 +1,64 @@
+package com.jaiswal.report;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A report generation requested through the jobs API. The id is derived
+ * from what the report contains (see {@code ReportJobService}), so identical
+ * requests share one job. Status fields are written by the generating
+ * thread and read by status requests.
+ */
+@Getter
+public class ReportJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String userId;
+    private final String type;
+    private final String template;
+    private final LocalDate startDate;
+    private final LocalDate endDate;
+    private final String contentType;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime completedAt;
+    private volatile Path artifact;
+    private volatile long sizeBytes;
+    private volatile String error;
+
+    public ReportJob(String id, String userId, String type, String template, LocalDate startDate, LocalDate endDate,
+                     String contentType) {
+        this.id = id;
+        this.userId = userId;
+        this.type = type;
+        this.template = template;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.contentType = contentType;
+    }
+
+    public void running() {
+        status = Status.RUNNING;
+    }
+
+    public void completed(Path artifact, long sizeBytes) {
+        this.artifact = artifact;
+        this.sizeBytes = sizeBytes;
+        this.completedAt = LocalDateTime.now();
+        this.status = Status.COMPLETED;
+    }
+
+    public void failed(String error) {
+        this.error = error;
+        this.completedAt = LocalDateTime.now();
+        this.status = Status.FAILED;
+    }
+}
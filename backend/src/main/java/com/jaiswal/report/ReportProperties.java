@@ -0,0 +1,67 @@
+package com.jaiswal.report;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Report export settings, bound from {@code app.reports}.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.reports")
+public class ReportProperties {
+
+    // Compiled templates, produced at build time from src/main/reports/*.jrxml
+    private String templateLocation = "classpath*:reports/*.jasper";
+
+    // Template names usable for each export type (pdf, xlsx); the first is the type's default
+    private Map<String, List<String>> templates = new LinkedHashMap<>();
+
+    // Month partials one composed report fetches at once; with the queue full the requesting thread fetches itself
+    private int composeParallelism = 4;
+    private int composeQueueCapacity = 48;
+
+    // Longest range a custom report may cover; each month is one partial fetch and one cache entry
+    private int maxCustomReportMonths = 60;
+
+    private Export export = new Export();
+
+    private Jobs jobs = new Jobs();
+
+    @Data
+    public static class Export {
+
+        // Heavy exports running at once across this node, and how long a request waits for a slot
+        private int maxConcurrent = 4;
+        private Duration acquireTimeout = Duration.ofSeconds(5);
+
+        // Longest a streamed export may take to write before the response is timed out
+        private Duration streamTimeout = Duration.ofMinutes(10);
+
+        // Filled pages kept on heap per export; older ones are swapped to a file in swapDirectory
+        private int maxPagesInMemory = 50;
+        private String swapDirectory = System.getProperty("java.io.tmpdir");
+        private int swapBlockSize = 4096;
+        private int swapMinGrowCount = 100;
+
+        // Rows a native XLSX export keeps on heap before flushing them to its temporary file
+        private int xlsxRowWindow = 100;
+    }
+
+    @Data
+    public static class Jobs {
+
+        // Report jobs generating at once on this node, and how many more may wait before submissions are turned away
+        private int threads = 2;
+        private int queueCapacity = 50;
+
+        // Finished reports are stored here and deleted once older than retention
+        private String directory = System.getProperty("java.io.tmpdir") + "/spendora-reports";
+        private Duration retention = Duration.ofHours(24);
+        private Duration sweepInterval = Duration.ofMinutes(15);
+    }
+}
@@ -0,0 +1,83 @@
+package com.jaiswal.report;
+
+import com.jaiswal.exception.ValidationException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.util.JRLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compiled Jasper templates by name. The build compiles every
+ * {@code src/main/reports/*.jrxml} to a {@code .jasper} file; they are
+ * deserialized once at startup into an immutable map, so exports never
+ * compile a template or generate classes on the request path. Which
+ * templates each export type may use is configured in {@link ReportProperties}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportTemplateRegistry {
+
+    private final ReportProperties properties;
+
+    private volatile Map<String, JasperReport> templates = Map.of();
+
+    @PostConstruct
+    void load() throws IOException {
+        Map<String, JasperReport> loaded = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(properties.getTemplateLocation())) {
+            String name = StringUtils.stripFilenameExtension(resource.getFilename());
+            try (InputStream in = resource.getInputStream()) {
+                loaded.put(name, (JasperReport) JRLoader.loadObject(in));
+            } catch (JRException e) {
+                throw new IllegalStateException("Unreadable compiled report template: " + resource, e);
+            }
+        }
+        properties.getTemplates().forEach((type, names) -> names.stream()
+                .filter(name -> !loaded.containsKey(name))
+                .forEach(name -> log.warn("Report template {} configured for {} exports was not found at {}",
+                        name, type, properties.getTemplateLocation())));
+
+        templates = Map.copyOf(loaded);
+        log.info("Loaded {} report templates: {}", templates.size(), templates.keySet());
+    }
+
+    /**
+     * The template named {@code name} for an export type, or the type's
+     * default when {@code name} is null.
+     */
+    public JasperReport get(String exportType, String name) {
+        List<String> allowed = properties.getTemplates().get(exportType.toLowerCase(Locale.ROOT));
+        if (allowed == null || allowed.isEmpty()) {
+            throw new ValidationException("Unsupported export type: " + exportType);
+        }
+        String templateName = name != null ? name : allowed.get(0);
+        if (!allowed.contains(templateName)) {
+            throw new ValidationException("Template " + templateName + " is not available for " + exportType + " exports");
+        }
+
+        JasperReport template = templates.get(templateName);
+        if (template == null) {
+            throw new IllegalStateException("Report template not loaded: " + templateName);
+        }
+        return template;
+    }
+
+    // Template names per export type, defaults first
+    public Map<String, List<String>> getTemplateNames() {
+        return properties.getTemplates();
+    }
+}
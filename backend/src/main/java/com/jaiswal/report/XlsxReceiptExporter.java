@@ -0,0 +1,98 @@
+package com.jaiswal.report;
+
+import com.jaiswal.model.document.Receipt;
+import lombok.RequiredArgsConstructor;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * XLSX through POI's streaming workbook: only the last {@code xlsxRowWindow}
+ * rows are kept on heap and earlier ones are flushed to a compressed
+ * temporary file, which is deleted once the workbook has been written.
+ */
+@Component
+@RequiredArgsConstructor
+public class XlsxReceiptExporter implements ReceiptTableExporter {
+
+    // Excel's row limit, header included
+    private static final int MAX_ROWS = 1_048_576;
+
+    private final ReportProperties properties;
+
+    @Override
+    public String type() {
+        return "xlsx";
+    }
+
+    @Override
+    public String contentType() {
+        return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+    }
+
+    @Override
+    public void write(Iterator<Receipt> receipts, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(properties.getExport().getXlsxRowWindow());
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("Receipts");
+            Font bold = workbook.createFont();
+            bold.setBold(true);
+            CellStyle headerStyle = workbook.createCellStyle();
+            headerStyle.setFont(bold);
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+            CellStyle amountStyle = workbook.createCellStyle();
+            amountStyle.setDataFormat(workbook.createDataFormat().getFormat("#,##0.00"));
+
+            Row header = sheet.createRow(0);
+            for (int column = 0; column < COLUMNS.size(); column++) {
+                Cell cell = header.createCell(column);
+                cell.setCellValue(COLUMNS.get(column));
+                cell.setCellStyle(headerStyle);
+            }
+
+            int rowIndex = 1;
+            while (receipts.hasNext()) {
+                if (rowIndex == MAX_ROWS) {
+                    throw new IOException("Export exceeds the " + (MAX_ROWS - 1) + " rows an XLSX sheet can hold");
+                }
+                Receipt receipt = receipts.next();
+                Row row = sheet.createRow(rowIndex++);
+                text(row, 0, receipt.getId());
+                if (receipt.getDate() != null) {
+                    Cell date = row.createCell(1);
+                    date.setCellValue(receipt.getDate());
+                    date.setCellStyle(dateStyle);
+                }
+                text(row, 2, receipt.getMerchantName());
+                text(row, 3, receipt.getCategoryId());
+                text(row, 4, receipt.getDescription());
+                if (receipt.getTotalAmount() != null) {
+                    Cell amount = row.createCell(5);
+                    amount.setCellValue(receipt.getTotalAmount().doubleValue());
+                    amount.setCellStyle(amountStyle);
+                }
+                text(row, 6, receipt.getStatus() != null ? receipt.getStatus().name() : null);
+            }
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void text(Row row, int column, String value) {
+        if (value != null) {
+            row.createCell(column).setCellValue(value);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.AggregationCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface AggregationCheckpointRepository extends MongoRepository<AggregationCheckpoint, String> {
+
+    List<AggregationCheckpoint> findByRunId(String runId);
+
+    void deleteByRunId(String runId);
+}
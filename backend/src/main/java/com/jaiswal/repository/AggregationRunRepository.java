@@ -0,0 +1,13 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.AggregationRun;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface AggregationRunRepository extends MongoRepository<AggregationRun, String> {
+
+    Optional<AggregationRun> findTopByJobNameOrderByStartedAtDesc(String jobName);
+}
@@ -5,6 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,4 +25,8 @@ public interface CategoryRepository extends MongoRepository<Category, String> {
 
     @Query("{'userId': ?0, 'keywords': {'$in': [?1]}}")
     List<Category> findByUserIdAndKeywordsContaining(String userId, String keyword);
+
+    // Names only (plus shared categories), to resolve category ids on a batch of users' receipts
+    @Query(value = "{'$or': [{'userId': {'$in': ?0}}, {'userId': null}]}", fields = "{'name': 1}")
+    List<Category> findNamesByUserIdIn(Collection<String> userIds);
 }
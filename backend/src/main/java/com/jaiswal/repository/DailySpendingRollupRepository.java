@@ -0,0 +1,17 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.DailySpendingRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySpendingRollupRepository extends MongoRepository<DailySpendingRollup, String> {
+
+    @Query(value = "{'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}, 'receiptCount': {'$gt': 0}}",
+            fields = "{'date': 1, 'categoryId': 1, 'totalAmount': 1, 'receiptCount': 1}")
+    List<DailySpendingRollup> findByUserIdAndDateBetween(String userId, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,15 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.InsightCubeCell;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InsightCubeCellRepository extends MongoRepository<InsightCubeCell, String> {
+
+    List<InsightCubeCell> findByGenerationAndPeriodAndCategoryKey(String generation, String period, String categoryKey);
+
+    void deleteByGenerationNot(String generation);
+}
@@ -0,0 +1,16 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.Insight;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface InsightRepository extends MongoRepository<Insight, String> {
+
+    List<Insight> findByUserIdAndDateBetweenOrderByDateDesc(String userId, LocalDate startDate, LocalDate endDate);
+
+    void deleteByReceiptId(String receiptId);
+}
@@ -4,14 +4,17 @@ import com.jaiswal.model.document.Receipt;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReceiptRepository extends MongoRepository<Receipt, String> {
@@ -32,11 +35,12 @@ public interface ReceiptRepository extends MongoRepository<Receipt, String> {
     // Added missing methods for ReportService
     List<Receipt> findByUserId(String userId);
 
-    @Query("{'userId': ?0, '$expr': {'$eq': [{'$month': '$date'}, ?1]}}")
-    List<Receipt> findByUserIdAndMonth(String userId, int month);
+    // Receipts in the half-open range [startDate, endDate), newest first; an index range scan on {userId, date}
+    @Query(value = "{'userId': ?0, 'date': {'$gte': ?1, '$lt': ?2}}", sort = "{'date': -1}")
+    List<Receipt> findByUserIdInPeriod(String userId, LocalDate startDate, LocalDate endDate);
 
-    @Query("{'userId': ?0, '$expr': {'$eq': [{'$year': '$date'}, ?1]}}")
-    List<Receipt> findByUserIdAndYear(String userId, int year);
+    @Query(value = "{'userId': ?0, 'date': {'$gte': ?1, '$lt': ?2}}", sort = "{'date': -1}")
+    Page<Receipt> findByUserIdInPeriod(String userId, LocalDate startDate, LocalDate endDate, Pageable pageable);
 
     @Query("{'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}}")
     List<Receipt> findCustom(String userId, LocalDate startDate, LocalDate endDate);
@@ -44,10 +48,60 @@ public interface ReceiptRepository extends MongoRepository<Receipt, String> {
     @Query("{'userId': ?0, 'paymentInfo.tax': {'$exists': true, '$ne': null}}")
     List<Receipt> findTaxRelevant(String userId);
 
+    @Query(value = "{'userId': ?0, 'paymentInfo.tax': {'$exists': true, '$ne': null}}", sort = "{'date': -1}")
+    Page<Receipt> findTaxRelevant(String userId, Pageable pageable);
+
     // Added missing method for CategoryService
     @Query(value = "{'userId': ?0, 'categoryId': ?1}", count = true)
     long countByUserIdAndCategoryId(String userId, String categoryId);
 
+    // A user's receipts newest first, with the fields exports read; close the stream when done
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{'userId': ?0}", sort = "{'date': -1}",
+            fields = "{'userId': 1, 'date': 1, 'merchantName': 1, 'categoryId': 1, 'description': 1, 'totalAmount': 1, 'status': 1}")
+    Stream<Receipt> streamForExportByUserId(String userId);
+
+    // As streamForExportByUserId, for receipts dated in [start, endExclusive)
+    @Meta(cursorBatchSize = 500)
+    @Query(value = "{'userId': ?0, 'date': {'$gte': ?1, '$lt': ?2}}", sort = "{'date': -1}",
+            fields = "{'userId': 1, 'date': 1, 'merchantName': 1, 'categoryId': 1, 'description': 1, 'totalAmount': 1, 'status': 1}")
+    Stream<Receipt> streamForExportByUserIdInPeriod(String userId, LocalDate start, LocalDate endExclusive);
+
+    // Cursor over every receipt with only the fields the community aggregation reads; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{}", fields = "{'userId': 1, 'categoryId': 1, 'totalAmount': 1, 'merchantName': 1}")
+    Stream<Receipt> streamAllForCommunityAggregation();
+
+    // Receipts since a date, grouped by user, with the fields a spending profile needs; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'date': {'$gte': ?0}, 'totalAmount': {'$ne': null}}",
+            fields = "{'userId': 1, 'categoryId': 1, 'totalAmount': 1, 'date': 1}", sort = "{'userId': 1}")
+    Stream<Receipt> streamForSpendingProfilesSince(LocalDate startDate);
+
+    // Same projection for one batch of users, ordered so each user's receipts arrive together
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'userId': {'$in': ?0}}", fields = "{'userId': 1, 'categoryId': 1, 'totalAmount': 1, 'merchantName': 1, 'date': 1}",
+            sort = "{'userId': 1}")
+    Stream<Receipt> streamForCommunityAggregationByUserIdIn(Collection<String> userIds);
+
+    // One user's receipts since a date in date order, with the fields forecasting and recurring-charge detection need; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'userId': ?0, 'date': {'$gte': ?1}, 'totalAmount': {'$ne': null}}",
+            fields = "{'categoryId': 1, 'totalAmount': 1, 'merchantName': 1, 'date': 1}", sort = "{'date': 1}")
+    Stream<Receipt> streamForForecastByUserIdSince(String userId, LocalDate startDate);
+
+    // Every receipt, grouped by user, with the fields daily rollups need; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'date': {'$ne': null}, 'totalAmount': {'$ne': null}}",
+            fields = "{'userId': 1, 'categoryId': 1, 'totalAmount': 1, 'date': 1}", sort = "{'userId': 1}")
+    Stream<Receipt> streamAllForDailyRollups();
+
+    // One user's receipts with the fields daily rollups need; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'userId': ?0, 'date': {'$ne': null}, 'totalAmount': {'$ne': null}}",
+            fields = "{'categoryId': 1, 'totalAmount': 1, 'date': 1}")
+    Stream<Receipt> streamForDailyRollupsByUserId(String userId);
+
     @Aggregation(pipeline = {
             "{'$match': {'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}}}",
             "{'$group': {'_id': '$categoryId', 'totalAmount': {'$sum': '$totalAmount'}, 'count': {'$sum': 1}}}",
@@ -64,6 +118,24 @@ public interface ReceiptRepository extends MongoRepository<Receipt, String> {
     List<DailySpendingAggregation> getDailySpendingByUserAndDateRange(
             String userId, LocalDate startDate, LocalDate endDate);
 
+    // Spending per bucket of ?3 (day, week or month) in time zone ?4, keyed by the bucket's first day; weeks start on Monday
+    @Aggregation(pipeline = {
+            "{'$match': {'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}}}",
+            "{'$group': {'_id': {'$dateToString': {'format': '%Y-%m-%d', 'timezone': ?4, 'date': {'$dateTrunc': {'date': '$date', 'unit': ?3, 'startOfWeek': 'monday', 'timezone': ?4}}}}, 'totalAmount': {'$sum': '$totalAmount'}, 'count': {'$sum': 1}}}",
+            "{'$sort': {'_id': 1}}"
+    })
+    List<DailySpendingAggregation> getSpendingByUserAndDateRangeAndUnit(
+            String userId, LocalDate startDate, LocalDate endDate, String unit, String timezone);
+
+    // Spending per month (yyyy-MM) in time zone ?3, the zone receipt dates were stored at midnight of
+    @Aggregation(pipeline = {
+            "{'$match': {'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}}}",
+            "{'$group': {'_id': {'$dateToString': {'format': '%Y-%m', 'timezone': ?3, 'date': '$date'}}, 'totalAmount': {'$sum': '$totalAmount'}, 'count': {'$sum': 1}}}",
+            "{'$sort': {'_id': 1}}"
+    })
+    List<MonthlySpendingAggregation> getMonthlySpendingByUserAndDateRange(
+            String userId, LocalDate startDate, LocalDate endDate, String timezone);
+
     @Query(value = "{'userId': ?0, 'date': {'$gte': ?1, '$lte': ?2}}", count = true)
     long countByUserIdAndDateBetween(String userId, LocalDate startDate, LocalDate endDate);
 
@@ -81,7 +153,13 @@ public interface ReceiptRepository extends MongoRepository<Receipt, String> {
     }
 
     interface DailySpendingAggregation {
-        String get_id(); // date string
+        String get_id(); // date string (yyyy-MM-dd), the first day of the bucket
+        BigDecimal getTotalAmount();
+        Integer getCount();
+    }
+
+    interface MonthlySpendingAggregation {
+        String get_id(); // year-month string
         BigDecimal getTotalAmount();
         Integer getCount();
     }
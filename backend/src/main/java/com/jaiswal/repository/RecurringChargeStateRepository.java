@@ -0,0 +1,9 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.RecurringChargeState;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RecurringChargeStateRepository extends MongoRepository<RecurringChargeState, String> {
+}
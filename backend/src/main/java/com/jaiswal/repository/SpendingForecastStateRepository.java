@@ -0,0 +1,9 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.SpendingForecastState;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SpendingForecastStateRepository extends MongoRepository<SpendingForecastState, String> {
+}
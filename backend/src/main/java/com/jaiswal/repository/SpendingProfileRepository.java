@@ -0,0 +1,24 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.SpendingProfile;
+import org.springframework.data.mongodb.repository.Meta;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface SpendingProfileRepository extends MongoRepository<SpendingProfile, String> {
+
+    List<SpendingProfile> findByUserIdAndPeriodIn(String userId, Collection<String> periods);
+
+    // Grouped by user for single-pass index builds; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'period': {'$in': ?0}}", sort = "{'userId': 1}")
+    Stream<SpendingProfile> streamByPeriodIn(Collection<String> periods);
+
+    void deleteByPeriodLessThan(String period);
+}
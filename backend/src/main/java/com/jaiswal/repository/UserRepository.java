@@ -1,6 +1,7 @@
 package com.jaiswal.repository;
 
 import com.jaiswal.model.document.User;
+import org.springframework.data.mongodb.repository.Meta;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -8,6 +9,7 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
@@ -28,4 +30,19 @@ public interface UserRepository extends MongoRepository<User, String> {
 
     @Query(value = "{'roles': ?0}", count = true)
     long countByRole(String role);
+
+    // Ids and demographics only, for batch jobs that walk every user; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{}", fields = "{'_id': 1, 'demographics': 1}")
+    Stream<User> streamAllIdsAndDemographics();
+
+    // Ids of users active since the given time, in id order; close the stream when done
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'enabled': true, 'lastLoginAt': {'$gte': ?0}}", sort = "{'_id': 1}", fields = "{'_id': 1}")
+    Stream<User> streamActiveUserIds(LocalDateTime since);
+
+    // As streamActiveUserIds, continuing after the user with id afterId
+    @Meta(cursorBatchSize = 1000)
+    @Query(value = "{'enabled': true, 'lastLoginAt': {'$gte': ?0}, '_id': {'$gt': ?1}}", sort = "{'_id': 1}", fields = "{'_id': 1}")
+    Stream<User> streamActiveUserIdsAfter(LocalDateTime since, String afterId);
 }
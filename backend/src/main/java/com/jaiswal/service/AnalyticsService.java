@@ -1,21 +1,29 @@
 package com.jaiswal.service;
 
 import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.DailySpendingRollup;
 import com.jaiswal.model.dto.AnalyticsDTO;
 import com.jaiswal.repository.ReceiptRepository;
 import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.InsightRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -23,41 +31,100 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AnalyticsService {
 
+    public static final String MONTHLY_COMPARISON_CACHE = "monthlyComparison";
+
+    public static final String TOP_CATEGORY = "TOP_CATEGORY";
+    public static final String SPENDING_TREND = "SPENDING_TREND";
+    public static final String BUDGET_ALERT = "BUDGET_ALERT";
+
+    // Insights derived from a period's summary, breakdown and trends rather than from single receipts
+    public static final Set<String> SUMMARY_INSIGHT_TYPES = Set.of(TOP_CATEGORY, SPENDING_TREND, BUDGET_ALERT);
+
+    // Twelve months compared against the same months of the previous year
+    public static final int MONTHLY_COMPARISON_WINDOW_MONTHS = 24;
+
     private final ReceiptRepository receiptRepository;
     private final CategoryRepository categoryRepository;
+    private final InsightRepository insightRepository;
+    private final DailyRollupService dailyRollupService;
 
-    @Cacheable(value = "analytics", key = "#userId + '_' + #startDate + '_' + #endDate")
+    // Point budget for spending trends when none is requested, and the most that may be
+    @Value("${app.analytics.trends.max-points:180}")
+    private int defaultTrendPoints;
+
+    @Value("${app.analytics.trends.max-points-limit:1000}")
+    private int trendPointsLimit;
+
+    @Cacheable(value = "analytics", sync = true, key = "@cacheVersions.userKey('analytics', #userId) + '_' + #startDate + '_' + #endDate")
     public AnalyticsDTO getAnalytics(String userId, LocalDate startDate, LocalDate endDate) {
         log.info("Generating analytics for user: {} from {} to {}", userId, startDate, endDate);
 
+        AnalyticsDTO.SpendingSummary spendingSummary = generateSpendingSummary(userId, startDate, endDate);
+        List<AnalyticsDTO.CategoryBreakdown> categoryBreakdown = generateCategoryBreakdown(userId, startDate, endDate);
+        List<AnalyticsDTO.SpendingTrend> spendingTrends = generateSpendingTrends(userId, startDate, endDate);
+
+        // Summary insights come from the sections above, for exactly this range; the rest of the feed is stored
+        List<AnalyticsDTO.InsightData> insights = generateSummaryInsights(spendingSummary, categoryBreakdown, spendingTrends);
+        findStoredInsights(userId, startDate, endDate).stream()
+                .filter(insight -> !SUMMARY_INSIGHT_TYPES.contains(insight.getType()))
+                .forEach(insights::add);
+
         return AnalyticsDTO.builder()
-                .spendingSummary(generateSpendingSummary(userId, startDate, endDate))
-                .categoryBreakdown(generateCategoryBreakdown(userId, startDate, endDate))
-                .spendingTrends(generateSpendingTrends(userId, startDate, endDate))
+                .spendingSummary(spendingSummary)
+                .categoryBreakdown(categoryBreakdown)
+                .spendingTrends(boundTrends(spendingTrends, startDate, endDate))
                 .monthlyComparisons(generateMonthlyComparisons(userId))
-                .insights(generateInsights(userId, startDate, endDate))
+                .insights(insights)
                 .build();
     }
 
-    // Added missing methods for controller compatibility
-    @Cacheable(value = "spendingTrends", key = "#userId + '_' + #startDate + '_' + #endDate")
-    public List<AnalyticsDTO.SpendingTrend> getSpendingTrends(String userId, LocalDate startDate, LocalDate endDate) {
-        return generateSpendingTrends(userId, startDate, endDate);
+    /**
+     * Spending over the range in at most {@code maxPoints} points (the
+     * configured default if null). By default the finest of day, week or
+     * month buckets that fits is aggregated in the rollups or the database;
+     * with {@code downsample}, the LTTB-selected subset of the daily points
+     * is returned instead, keeping the series' peaks.
+     */
+    @Cacheable(value = "spendingTrends", sync = true,
+            key = "@cacheVersions.userKey('spendingTrends', #userId) + '_' + #startDate + '_' + #endDate + '_' + #maxPoints + '_' + #downsample")
+    public List<AnalyticsDTO.SpendingTrend> getSpendingTrends(String userId, LocalDate startDate, LocalDate endDate,
+                                                              Integer maxPoints, boolean downsample) {
+        int budget = Math.max(3, Math.min(maxPoints != null ? maxPoints : defaultTrendPoints, trendPointsLimit));
+        TrendDownsampling.Resolution resolution = downsample ? TrendDownsampling.Resolution.DAY
+                : TrendDownsampling.Resolution.choose(startDate, endDate, budget);
+        // Even months exceed the budget over ranges of decades; those are sampled too
+        return TrendDownsampling.lttb(generateSpendingTrends(userId, startDate, endDate, resolution), budget);
     }
 
-    @Cacheable(value = "categoryBreakdown", key = "#userId + '_' + #startDate + '_' + #endDate")
+    @Cacheable(value = "categoryBreakdown", sync = true, key = "@cacheVersions.userKey('categoryBreakdown', #userId) + '_' + #startDate + '_' + #endDate")
     public List<AnalyticsDTO.CategoryBreakdown> getCategoryBreakdown(String userId, LocalDate startDate, LocalDate endDate) {
         return generateCategoryBreakdown(userId, startDate, endDate);
     }
 
-    @Cacheable(value = "monthlyComparison", key = "#userId")
+    // The window moves with the calendar month, so the key does too and last month's entry simply ages out
+    @Cacheable(value = MONTHLY_COMPARISON_CACHE, sync = true,
+            key = "@cacheVersions.userKey('monthlyComparison', #userId) + '_' + T(java.time.YearMonth).now()")
     public List<AnalyticsDTO.MonthlyComparison> getMonthlyComparison(String userId) {
         return generateMonthlyComparisons(userId);
     }
 
-    @Cacheable(value = "insights", key = "#userId + '_' + #startDate + '_' + #endDate")
+    /**
+     * The user's materialized insight feed, most recent first: insights stored
+     * as receipts were written (anomalies, budget forecasts) and the summary
+     * insights {@link InsightFeedService} keeps current. A single indexed read.
+     */
     public List<AnalyticsDTO.InsightData> getInsights(String userId, LocalDate startDate, LocalDate endDate) {
-        return generateInsights(userId, startDate, endDate);
+        return findStoredInsights(userId, startDate, endDate);
+    }
+
+    /**
+     * Summary insights for a date range, computed from its spending summary,
+     * category breakdown and daily trends.
+     */
+    public List<AnalyticsDTO.InsightData> generateSummaryInsights(String userId, LocalDate startDate, LocalDate endDate) {
+        return generateSummaryInsights(generateSpendingSummary(userId, startDate, endDate),
+                generateCategoryBreakdown(userId, startDate, endDate),
+                generateSpendingTrends(userId, startDate, endDate));
     }
 
     private AnalyticsDTO.SpendingSummary generateSpendingSummary(String userId, LocalDate startDate, LocalDate endDate) {
@@ -120,6 +187,49 @@ public class AnalyticsService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Trends at {@code resolution}, summed from daily rollups once they are
+     * built, otherwise aggregated from receipts at that resolution.
+     */
+    private List<AnalyticsDTO.SpendingTrend> generateSpendingTrends(String userId, LocalDate startDate, LocalDate endDate,
+                                                                    TrendDownsampling.Resolution resolution) {
+        if (dailyRollupService.isReady()) {
+            Map<LocalDate, AnalyticsDTO.SpendingTrend> daily = new TreeMap<>();
+            for (DailySpendingRollup rollup : dailyRollupService.findRollups(userId, startDate, endDate)) {
+                AnalyticsDTO.SpendingTrend point = daily.computeIfAbsent(rollup.getDate(), date -> AnalyticsDTO.SpendingTrend.builder()
+                        .date(date)
+                        .amount(BigDecimal.ZERO)
+                        .transactionCount(0)
+                        .build());
+                point.setAmount(point.getAmount().add(rollup.getTotalAmount().setScale(2, RoundingMode.HALF_UP)));
+                point.setTransactionCount(point.getTransactionCount() + (int) rollup.getReceiptCount());
+            }
+            List<AnalyticsDTO.SpendingTrend> points = new ArrayList<>(daily.values());
+            return resolution == TrendDownsampling.Resolution.DAY ? points : TrendDownsampling.bucket(points, resolution);
+        }
+        if (resolution == TrendDownsampling.Resolution.DAY) {
+            return generateSpendingTrends(userId, startDate, endDate);
+        }
+        return receiptRepository.getSpendingByUserAndDateRangeAndUnit(userId, startDate, endDate,
+                        resolution.name().toLowerCase(Locale.ROOT), ZoneId.systemDefault().getId())
+                .stream()
+                .map(bucket -> AnalyticsDTO.SpendingTrend.builder()
+                        .date(LocalDate.parse(bucket.get_id()))
+                        .amount(bucket.getTotalAmount())
+                        .transactionCount(bucket.getCount())
+                        .resolution(resolution.name())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // The analytics view's trends, bucketed and sampled from the daily points its insights are computed from
+    private List<AnalyticsDTO.SpendingTrend> boundTrends(List<AnalyticsDTO.SpendingTrend> daily, LocalDate startDate, LocalDate endDate) {
+        TrendDownsampling.Resolution resolution = TrendDownsampling.Resolution.choose(startDate, endDate, defaultTrendPoints);
+        List<AnalyticsDTO.SpendingTrend> points = resolution == TrendDownsampling.Resolution.DAY ? daily
+                : TrendDownsampling.bucket(daily, resolution);
+        return TrendDownsampling.lttb(points, defaultTrendPoints);
+    }
+
     private List<AnalyticsDTO.SpendingTrend> generateSpendingTrends(String userId, LocalDate startDate, LocalDate endDate) {
         var dailySpending = receiptRepository.getDailySpendingByUserAndDateRange(userId, startDate, endDate);
 
@@ -134,20 +244,28 @@ public class AnalyticsService {
     }
 
     private List<AnalyticsDTO.MonthlyComparison> generateMonthlyComparisons(String userId) {
-        List<AnalyticsDTO.MonthlyComparison> comparisons = new ArrayList<>();
-        LocalDate now = LocalDate.now();
+        YearMonth currentMonth = YearMonth.now();
+        YearMonth windowStart = currentMonth.minusMonths(MONTHLY_COMPARISON_WINDOW_MONTHS - 1);
+
+        // One aggregation for the whole window; months without receipts are zero-filled below
+        Map<YearMonth, BigDecimal> monthlyTotals = receiptRepository.getMonthlySpendingByUserAndDateRange(
+                        userId, windowStart.atDay(1), currentMonth.atEndOfMonth(), ZoneId.systemDefault().getId())
+                .stream()
+                .filter(monthly -> monthly.getTotalAmount() != null)
+                .collect(Collectors.toMap(monthly -> YearMonth.parse(monthly.get_id()),
+                        ReceiptRepository.MonthlySpendingAggregation::getTotalAmount));
 
+        List<AnalyticsDTO.MonthlyComparison> comparisons = new ArrayList<>();
         for (int i = 0; i < 12; i++) {
-            LocalDate currentMonth = now.minusMonths(i);
-            LocalDate previousYearMonth = currentMonth.minusYears(1);
+            YearMonth month = currentMonth.minusMonths(i);
 
-            BigDecimal currentYearAmount = getMonthlyTotal(userId, currentMonth);
-            BigDecimal previousYearAmount = getMonthlyTotal(userId, previousYearMonth);
+            BigDecimal currentYearAmount = monthlyTotals.getOrDefault(month, BigDecimal.ZERO);
+            BigDecimal previousYearAmount = monthlyTotals.getOrDefault(month.minusYears(1), BigDecimal.ZERO);
 
             double changePercentage = calculatePercentageChange(currentYearAmount, previousYearAmount).doubleValue();
 
             comparisons.add(AnalyticsDTO.MonthlyComparison.builder()
-                    .month(currentMonth.getMonth().name())
+                    .month(month.getMonth().name())
                     .currentYear(currentYearAmount)
                     .previousYear(previousYearAmount)
                     .changePercentage(changePercentage)
@@ -157,15 +275,28 @@ public class AnalyticsService {
         return comparisons;
     }
 
-    private List<AnalyticsDTO.InsightData> generateInsights(String userId, LocalDate startDate, LocalDate endDate) {
+    private List<AnalyticsDTO.InsightData> findStoredInsights(String userId, LocalDate startDate, LocalDate endDate) {
+        return insightRepository.findByUserIdAndDateBetweenOrderByDateDesc(userId, startDate, endDate).stream()
+                .map(insight -> AnalyticsDTO.InsightData.builder()
+                        .type(insight.getType())
+                        .title(insight.getTitle())
+                        .description(insight.getDescription())
+                        .icon(insight.getIcon())
+                        .data(insight.getData())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private List<AnalyticsDTO.InsightData> generateSummaryInsights(AnalyticsDTO.SpendingSummary spendingSummary,
+                                                                   List<AnalyticsDTO.CategoryBreakdown> categoryBreakdown,
+                                                                   List<AnalyticsDTO.SpendingTrend> trends) {
         List<AnalyticsDTO.InsightData> insights = new ArrayList<>();
 
         // Top spending category insight
-        var categoryBreakdown = generateCategoryBreakdown(userId, startDate, endDate);
         if (!categoryBreakdown.isEmpty()) {
             var topCategory = categoryBreakdown.get(0);
             insights.add(AnalyticsDTO.InsightData.builder()
-                    .type("TOP_CATEGORY")
+                    .type(TOP_CATEGORY)
                     .title("Top Spending Category")
                     .description(String.format("You spent %.1f%% of your budget on %s",
                             topCategory.getPercentage(), topCategory.getCategoryName()))
@@ -176,7 +307,6 @@ public class AnalyticsService {
         }
 
         // Spending trend insight
-        var trends = generateSpendingTrends(userId, startDate, endDate);
         if (trends.size() >= 7) {
             BigDecimal recentWeekAvg = trends.subList(trends.size() - 7, trends.size())
                     .stream()
@@ -185,7 +315,7 @@ public class AnalyticsService {
                     .divide(BigDecimal.valueOf(7), 2, RoundingMode.HALF_UP);
 
             insights.add(AnalyticsDTO.InsightData.builder()
-                    .type("SPENDING_TREND")
+                    .type(SPENDING_TREND)
                     .title("Weekly Average")
                     .description(String.format("Your average daily spending this week is $%.2f", recentWeekAvg))
                     .icon("📈")
@@ -194,10 +324,9 @@ public class AnalyticsService {
         }
 
         // Budget alert insight
-        var spendingSummary = generateSpendingSummary(userId, startDate, endDate);
         if (spendingSummary.getPercentageChange().compareTo(BigDecimal.valueOf(20)) > 0) {
             insights.add(AnalyticsDTO.InsightData.builder()
-                    .type("BUDGET_ALERT")
+                    .type(BUDGET_ALERT)
                     .title("Spending Increase Alert")
                     .description(String.format("Your spending increased by %.1f%% compared to last month",
                             spendingSummary.getPercentageChange()))
@@ -231,13 +360,6 @@ public class AnalyticsService {
         return receiptRepository.getSpendingSummaryByUserAndDateRange(userId, startOfYear, endOfYear).filter(summary -> summary.getTotalAmount() != null).map(ReceiptRepository.SpendingSummaryAggregation::getTotalAmount).orElse(BigDecimal.ZERO);
     }
 
-    private BigDecimal getMonthlyTotal(String userId, LocalDate month) {
-        LocalDate startOfMonth = month.withDayOfMonth(1);
-        LocalDate endOfMonth = month.withDayOfMonth(month.lengthOfMonth());
-
-        return receiptRepository.getSpendingSummaryByUserAndDateRange(userId, startOfMonth, endOfMonth).filter(summary -> summary.getTotalAmount() != null).map(ReceiptRepository.SpendingSummaryAggregation::getTotalAmount).orElse(BigDecimal.ZERO);
-    }
-
     // Default implementation for aggregation interface
     private static class SpendingSummaryDefault implements ReceiptRepository.SpendingSummaryAggregation {
         @Override
@@ -0,0 +1,328 @@
+package com.jaiswal.service;
+
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.event.ReceiptChangeListener;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.Insight;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.SpendingBaseline;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.InsightRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.SpendingBaselineRepository;
+import com.jaiswal.util.EwmaStatistics;
+import com.jaiswal.util.MerchantNames;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Flags unusual spending as receipts are written. Each user has a
+ * {@link SpendingBaseline} of exponentially weighted means and variances, per
+ * category and per canonical merchant, that every new receipt updates in
+ * constant time. A receipt far above its baseline is stored as an outlier
+ * insight; a month whose running category total is far above that category's
+ * past months is stored as a surge insight. Reading insights is then a plain
+ * query.
+ * <p>
+ * New receipts are judged against the baseline before they are added to it.
+ * Edits and deletions cannot be taken back out of an exponential average, so
+ * they only re-evaluate the receipt and adjust the current month's totals.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnomalyDetectionService implements ReceiptChangeListener {
+
+    public static final String OUTLIER_TRANSACTION = "OUTLIER_TRANSACTION";
+    public static final String MERCHANT_OUTLIER = "MERCHANT_OUTLIER";
+    public static final String CATEGORY_SURGE = "CATEGORY_SURGE";
+
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+    // Months of history that a gap between receipts is filled with (as zero-spend months)
+    private static final int MAX_GAP_MONTHS = 12;
+
+    private final SpendingBaselineRepository spendingBaselineRepository;
+    private final InsightRepository insightRepository;
+    private final CategoryRepository categoryRepository;
+    private final ReceiptRepository receiptRepository;
+    private final CacheVersionService cacheVersions;
+
+    @Value("${app.insights.anomaly.alpha:0.1}")
+    private double alpha;
+
+    @Value("${app.insights.anomaly.merchant-alpha:0.2}")
+    private double merchantAlpha;
+
+    @Value("${app.insights.anomaly.z-threshold:3.0}")
+    private double zThreshold;
+
+    @Value("${app.insights.anomaly.min-observations:5}")
+    private long minObservations;
+
+    // Amounts below this are never flagged, however unusual
+    @Value("${app.insights.anomaly.min-amount:10}")
+    private double minAmount;
+
+    @Value("${app.insights.anomaly.surge-z-threshold:2.5}")
+    private double surgeZThreshold;
+
+    @Value("${app.insights.anomaly.surge-min-months:3}")
+    private long surgeMinMonths;
+
+    @Value("${app.insights.anomaly.max-merchants:500}")
+    private int maxMerchants;
+
+    // Receipts a baseline is rebuilt from: this many months back, from the start of the month
+    @Value("${app.insights.anomaly.rebuild-months:12}")
+    private int rebuildMonths;
+
+    @Override
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                apply(event);
+                break;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                // Another receipt of the same user updated the baseline first; redo against the new one
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        cacheVersions.bump(event.getUserId(), CacheDataType.INSIGHTS);
+    }
+
+    /**
+     * Replaces the user's baseline with one built from their recent receipts
+     * in date order. Receipts are added without being judged, so no insights
+     * are raised for past spending.
+     */
+    @Override
+    public void rebuild(String userId) {
+        SpendingBaseline baseline = SpendingBaseline.builder().userId(userId).build();
+        Map<String, String> categoryKeys = new HashMap<>();
+        LocalDate since = YearMonth.now().minusMonths(rebuildMonths).atDay(1);
+        try (Stream<Receipt> receipts = receiptRepository.streamForForecastByUserIdSince(userId, since)) {
+            receipts.forEach(receipt -> {
+                ReceiptChangedEvent.Snapshot snapshot = ReceiptChangedEvent.Snapshot.of(receipt);
+                String categoryKey = categoryKeys.computeIfAbsent(String.valueOf(snapshot.getCategoryId()),
+                        key -> CommunityAggregate.categoryKey(categoryName(snapshot)));
+                addToBaselines(baseline, snapshot, categoryKey);
+                addToMonthlyTotal(baseline, categoryKey, snapshot, 1);
+            });
+        }
+        baseline.setUpdatedAt(LocalDateTime.now());
+        spendingBaselineRepository.deleteById(userId);
+        spendingBaselineRepository.save(baseline);
+        cacheVersions.bump(userId, CacheDataType.INSIGHTS);
+    }
+
+    private void apply(ReceiptChangedEvent event) {
+        SpendingBaseline baseline = spendingBaselineRepository.findById(event.getUserId())
+                .orElseGet(() -> SpendingBaseline.builder().userId(event.getUserId()).build());
+        ReceiptChangedEvent.Snapshot before = event.getBefore();
+        ReceiptChangedEvent.Snapshot after = event.getAfter();
+        List<Insight> insights = new ArrayList<>();
+
+        String beforeName = before != null ? categoryName(before) : null;
+        String afterName = after != null ? categoryName(after) : null;
+
+        if (before != null) {
+            insightRepository.deleteByReceiptId(event.getReceiptId());
+            addToMonthlyTotal(baseline, CommunityAggregate.categoryKey(beforeName), before, -1);
+        }
+        if (after != null) {
+            String categoryKey = CommunityAggregate.categoryKey(afterName);
+            checkTransaction(baseline, event, after, categoryKey, afterName, insights);
+            if (before == null) {
+                addToBaselines(baseline, after, categoryKey);
+            }
+            addToMonthlyTotal(baseline, categoryKey, after, 1);
+            checkSurge(baseline, event.getUserId(), after, categoryKey, afterName, insights);
+        }
+        // An edit or deletion may have taken the old month's total back under the surge threshold
+        if (before != null && (after == null || !beforeName.equals(afterName)
+                || !YearMonth.from(before.getDate()).equals(YearMonth.from(after.getDate())))) {
+            checkSurge(baseline, event.getUserId(), before, CommunityAggregate.categoryKey(beforeName), beforeName, insights);
+        }
+
+        baseline.setUpdatedAt(LocalDateTime.now());
+        spendingBaselineRepository.save(baseline);
+        if (!insights.isEmpty()) {
+            insightRepository.saveAll(insights);
+        }
+    }
+
+    private void checkTransaction(SpendingBaseline baseline, ReceiptChangedEvent event, ReceiptChangedEvent.Snapshot receipt,
+                                  String categoryKey, String categoryName, List<Insight> insights) {
+        double amount = receipt.getTotalAmount().doubleValue();
+        if (amount < minAmount) {
+            return;
+        }
+
+        // A merchant's own baseline is the sharper comparison where there is enough history
+        String merchant = MerchantNames.canonicalize(receipt.getMerchantName());
+        EwmaStatistics merchantStatistics = merchant != null ? baseline.getMerchantAmounts().get(merchant) : null;
+        if (isOutlier(merchantStatistics, amount, zThreshold)) {
+            insights.add(transactionInsight(event, receipt, MERCHANT_OUTLIER, "Unusual Amount at " + receipt.getMerchantName(),
+                    String.format("$%.2f at %s is %.1fx what you usually spend there ($%.2f)", amount,
+                            receipt.getMerchantName(), amount / merchantStatistics.getMean(), merchantStatistics.getMean()),
+                    merchantStatistics, amount, Map.of("merchant", receipt.getMerchantName())));
+            return;
+        }
+
+        EwmaStatistics categoryStatistics = baseline.getCategoryAmounts().get(categoryKey);
+        if (isOutlier(categoryStatistics, amount, zThreshold)) {
+            insights.add(transactionInsight(event, receipt, OUTLIER_TRANSACTION, "Unusually Large " + categoryName + " Purchase",
+                    String.format("$%.2f is %.1fx your typical %s purchase ($%.2f)", amount,
+                            amount / categoryStatistics.getMean(), categoryName, categoryStatistics.getMean()),
+                    categoryStatistics, amount, Map.of("category", categoryName)));
+        }
+    }
+
+    private void checkSurge(SpendingBaseline baseline, String userId, ReceiptChangedEvent.Snapshot receipt,
+                            String categoryKey, String categoryName, List<Insight> insights) {
+        YearMonth period = YearMonth.from(receipt.getDate());
+        String insightId = userId + ":" + CATEGORY_SURGE + ":" + categoryKey + ":" + period;
+        SpendingBaseline.MonthlyTotal monthly = baseline.getMonthlyTotals().get(categoryKey);
+        if (monthly == null || !period.toString().equals(monthly.getPeriod())) {
+            return;
+        }
+
+        EwmaStatistics history = monthly.getHistory();
+        if (monthly.getTotal() < minAmount || !isOutlier(history, monthly.getTotal(), surgeZThreshold, surgeMinMonths)) {
+            insightRepository.deleteById(insightId);
+            return;
+        }
+        insights.add(Insight.builder()
+                .id(insightId)
+                .userId(userId)
+                .type(CATEGORY_SURGE)
+                .title(categoryName + " Spending Surge")
+                .description(String.format("You have spent $%.2f on %s this month, %.1fx your usual $%.2f",
+                        monthly.getTotal(), categoryName, monthly.getTotal() / history.getMean(), history.getMean()))
+                .icon("🚨")
+                .data(Map.of("category", categoryName,
+                        "period", period.toString(),
+                        "amount", round(monthly.getTotal()),
+                        "usualAmount", round(history.getMean()),
+                        "zScore", round(history.zScore(monthly.getTotal()))))
+                .date(receipt.getDate())
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    private void addToBaselines(SpendingBaseline baseline, ReceiptChangedEvent.Snapshot receipt, String categoryKey) {
+        double amount = receipt.getTotalAmount().doubleValue();
+        if (amount <= 0) {
+            return;
+        }
+        baseline.getCategoryAmounts().computeIfAbsent(categoryKey, key -> new EwmaStatistics()).add(amount, alpha);
+
+        String merchant = MerchantNames.canonicalize(receipt.getMerchantName());
+        if (merchant != null) {
+            Map<String, EwmaStatistics> merchants = baseline.getMerchantAmounts();
+            merchants.computeIfAbsent(merchant, key -> new EwmaStatistics()).add(amount, merchantAlpha);
+            if (merchants.size() > maxMerchants) {
+                merchants.entrySet().stream()
+                        .filter(entry -> !entry.getKey().equals(merchant))
+                        .min(Comparator.comparingLong(entry -> entry.getValue().getCount()))
+                        .ifPresent(entry -> merchants.remove(entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Adds {@code sign * amount} to the category's running month. A receipt in
+     * a later month first closes the running month (and any empty months in
+     * between) into the history; receipts for months already closed are not
+     * counted, since the history cannot be revised.
+     */
+    private void addToMonthlyTotal(SpendingBaseline baseline, String categoryKey, ReceiptChangedEvent.Snapshot receipt, int sign) {
+        YearMonth period = YearMonth.from(receipt.getDate());
+        SpendingBaseline.MonthlyTotal monthly = baseline.getMonthlyTotals().get(categoryKey);
+        if (monthly == null) {
+            if (sign < 0) {
+                return;
+            }
+            monthly = SpendingBaseline.MonthlyTotal.builder().period(period.toString()).build();
+            baseline.getMonthlyTotals().put(categoryKey, monthly);
+        }
+
+        YearMonth running = YearMonth.parse(monthly.getPeriod());
+        if (period.isBefore(running)) {
+            return;
+        }
+        if (period.isAfter(running)) {
+            if (sign < 0) {
+                return;
+            }
+            monthly.getHistory().add(monthly.getTotal(), alpha);
+            long emptyMonths = Math.min(running.until(period, ChronoUnit.MONTHS) - 1, MAX_GAP_MONTHS);
+            for (long i = 0; i < emptyMonths; i++) {
+                monthly.getHistory().add(0, alpha);
+            }
+            monthly.setPeriod(period.toString());
+            monthly.setTotal(0);
+        }
+        monthly.setTotal(Math.max(0, monthly.getTotal() + sign * receipt.getTotalAmount().doubleValue()));
+    }
+
+    private boolean isOutlier(EwmaStatistics statistics, double value, double threshold) {
+        return isOutlier(statistics, value, threshold, minObservations);
+    }
+
+    private boolean isOutlier(EwmaStatistics statistics, double value, double threshold, long observations) {
+        return statistics != null && statistics.getCount() >= observations && statistics.getMean() > 0
+                && statistics.zScore(value) >= threshold;
+    }
+
+    private Insight transactionInsight(ReceiptChangedEvent event, ReceiptChangedEvent.Snapshot receipt, String type,
+                                       String title, String description, EwmaStatistics statistics, double amount,
+                                       Map<String, Object> subject) {
+        Map<String, Object> data = new HashMap<>(subject);
+        data.put("amount", round(amount));
+        data.put("usualAmount", round(statistics.getMean()));
+        data.put("zScore", round(statistics.zScore(amount)));
+        return Insight.builder()
+                .id(event.getReceiptId() + ":" + type)
+                .userId(event.getUserId())
+                .receiptId(event.getReceiptId())
+                .type(type)
+                .title(title)
+                .description(description)
+                .icon("🔍")
+                .data(data)
+                .date(receipt.getDate())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private String categoryName(ReceiptChangedEvent.Snapshot receipt) {
+        if (receipt.getCategoryId() == null) {
+            return "Uncategorized";
+        }
+        return categoryRepository.findById(receipt.getCategoryId()).map(Category::getName).orElse("Uncategorized");
+    }
+
+    private double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
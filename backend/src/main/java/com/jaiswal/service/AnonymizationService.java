@@ -2,19 +2,24 @@ package com.jaiswal.service;
 
 import com.jaiswal.model.document.Receipt;
 import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.dto.SimilarSpendersDTO;
 import com.jaiswal.repository.ReceiptRepository;
 import com.jaiswal.repository.CommunityInsightRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -23,6 +28,15 @@ public class AnonymizationService {
 
     private final ReceiptRepository receiptRepository;
     private final CommunityInsightRepository communityInsightRepository;
+    private final SpendingProfileService spendingProfileService;
+    private final SimilarSpenderIndex similarSpenderIndex;
+
+    @Value("${app.community.similarity.cohort-size:50}")
+    private int cohortSize;
+
+    // Cohorts, and categories within them, with fewer users than this are never reported
+    @Value("${app.community.similarity.min-cohort-size:10}")
+    private int minCohortSize;
 
     /**
      * Aggregates and anonymizes spending data for community insights
@@ -33,38 +47,18 @@ public class AnonymizationService {
         try {
             log.info("Starting anonymization and aggregation process");
 
-            List<Receipt> receipts = receiptRepository.findAll();
+            // Stream through a cursor instead of loading every receipt; the aggregate keeps constant-size state
+            CommunityAggregate aggregate = new CommunityAggregate();
+            try (Stream<Receipt> receipts = receiptRepository.streamAllForCommunityAggregation()) {
+                receipts.forEach(aggregate::add);
+            }
 
-            if (receipts.isEmpty()) {
+            if (aggregate.getReceiptCount() == 0) {
                 log.warn("No receipts found for anonymization");
                 return;
             }
 
-            // Calculate category totals with proper anonymization
-            Map<String, BigDecimal> categoryTotals = receipts.stream()
-                    .filter(receipt -> receipt.getCategoryId() != null && receipt.getTotalAmount() != null)
-                    .collect(Collectors.groupingBy(
-                            receipt -> receipt.getCategoryId(),
-                            Collectors.reducing(BigDecimal.ZERO, Receipt::getTotalAmount, BigDecimal::add)
-                    ));
-
-            // Create anonymized statistical data
-            CommunityInsight.StatisticalData statistics = calculateStatistics(receipts);
-
-            // Create community insight with anonymized data
-            CommunityInsight insight = CommunityInsight.builder()
-                    .insightType("SPENDING_AVERAGE")
-                    .period("MONTHLY")
-                    .title("Community Spending Insights")
-                    .description("Anonymized aggregated spending data for community analysis")
-                    .data(createAnonymizedData(categoryTotals, receipts))
-                    .statistics(statistics)
-                    .generatedAt(LocalDateTime.now())
-                    .validUntil(LocalDateTime.now().plusDays(30))
-                    .build();
-
-            communityInsightRepository.save(insight);
-            log.info("Successfully created community insight with {} categories", categoryTotals.size());
+            saveCommunityInsight(aggregate, null);
 
         } catch (Exception e) {
             log.error("Error during anonymization and aggregation", e);
@@ -72,6 +66,15 @@ public class AnonymizationService {
         }
     }
 
+    /**
+     * Publishes an aggregate computed elsewhere (e.g. merged from the shards of
+     * CommunityAggregationJob) as the latest community insight
+     */
+    @CacheEvict(value = {"communityInsights", "insightsByType"}, allEntries = true)
+    public CommunityInsight publishCommunityInsight(CommunityAggregate aggregate, String cubeGeneration) {
+        return saveCommunityInsight(aggregate, cubeGeneration);
+    }
+
     /**
      * Returns anonymized community insights for frontend display
      */
@@ -81,6 +84,58 @@ public class AnonymizationService {
                 .orElse(createDefaultInsight());
     }
 
+    /**
+     * Compares the user with the spenders whose category mix is most similar
+     * to theirs. Only cohort averages are returned, and categories that fewer
+     * than {@code minCohortSize} cohort members spend on are left out.
+     */
+    public SimilarSpendersDTO compareWithSimilarSpenders(String userId) {
+        SpendingVector own = spendingProfileService.getVector(userId);
+        List<SimilarSpenderIndex.Neighbour> cohort = similarSpenderIndex.findSimilar(userId, own, cohortSize);
+        if (own.isEmpty() || cohort.size() < minCohortSize) {
+            return SimilarSpendersDTO.builder().suppressed(true).build();
+        }
+
+        Map<String, Double> shareSums = new HashMap<>();
+        Map<String, Integer> spenders = new HashMap<>();
+        double monthlySpendSum = 0;
+        double similaritySum = 0;
+        for (SimilarSpenderIndex.Neighbour neighbour : cohort) {
+            SpendingVector vector = neighbour.getVector();
+            for (int i = 0; i < vector.size(); i++) {
+                shareSums.merge(vector.getCategory(i), vector.getShare(i), Double::sum);
+                spenders.merge(vector.getCategory(i), 1, Integer::sum);
+            }
+            monthlySpendSum += vector.getMonthlySpend();
+            similaritySum += neighbour.getSimilarity();
+        }
+
+        Map<String, Double> ownShares = new HashMap<>();
+        for (int i = 0; i < own.size(); i++) {
+            ownShares.put(own.getCategory(i), own.getShare(i));
+        }
+
+        List<SimilarSpendersDTO.CategoryShare> categories = shareSums.keySet().stream()
+                .filter(category -> spenders.get(category) >= minCohortSize)
+                .map(category -> SimilarSpendersDTO.CategoryShare.builder()
+                        .category(category)
+                        .yourShare(percent(ownShares.getOrDefault(category, 0.0)))
+                        .cohortShare(percent(shareSums.get(category) / cohort.size()))
+                        .build())
+                .sorted(Comparator.comparing(SimilarSpendersDTO.CategoryShare::getCohortShare).reversed())
+                .collect(Collectors.toList());
+
+        return SimilarSpendersDTO.builder()
+                .suppressed(false)
+                .cohortSize(cohort.size())
+                .months(spendingProfileService.windowPeriods().size())
+                .averageSimilarity(Math.round(similaritySum / cohort.size() * 1000) / 1000.0)
+                .yourMonthlySpend(BigDecimal.valueOf(own.getMonthlySpend()).setScale(2, RoundingMode.HALF_UP))
+                .cohortMonthlySpend(BigDecimal.valueOf(monthlySpendSum / cohort.size()).setScale(2, RoundingMode.HALF_UP))
+                .categories(categories)
+                .build();
+    }
+
     /**
      * Get category-specific insights
      */
@@ -115,119 +170,52 @@ public class AnonymizationService {
 
     // Private helper methods
 
-    private CommunityInsight.StatisticalData calculateStatistics(List<Receipt> receipts) {
-        List<BigDecimal> amounts = receipts.stream()
-                .map(Receipt::getTotalAmount)
-                .filter(Objects::nonNull)
-                .filter(amount -> amount.compareTo(BigDecimal.ZERO) > 0)
-                .sorted()
-                .collect(Collectors.toList());
-
-        if (amounts.isEmpty()) {
-            return createEmptyStatistics();
-        }
-
-        BigDecimal sum = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
-        BigDecimal average = sum.divide(BigDecimal.valueOf(amounts.size()), 2, BigDecimal.ROUND_HALF_UP);
-
-        BigDecimal median = calculateMedian(amounts);
-        BigDecimal min = amounts.get(0);
-        BigDecimal max = amounts.get(amounts.size() - 1);
-
-        double standardDeviation = calculateStandardDeviation(amounts, average);
-        Map<String, BigDecimal> percentiles = calculatePercentiles(amounts);
-
-        return CommunityInsight.StatisticalData.builder()
-                .average(average)
-                .median(median)
-                .min(min)
-                .max(max)
-                .sampleSize((long) amounts.size())
-                .standardDeviation(standardDeviation)
-                .percentiles(percentiles)
-                .build();
-    }
-
-    private BigDecimal calculateMedian(List<BigDecimal> sortedAmounts) {
-        int size = sortedAmounts.size();
-        if (size % 2 == 0) {
-            BigDecimal mid1 = sortedAmounts.get(size / 2 - 1);
-            BigDecimal mid2 = sortedAmounts.get(size / 2);
-            return mid1.add(mid2).divide(BigDecimal.valueOf(2), 2, BigDecimal.ROUND_HALF_UP);
-        } else {
-            return sortedAmounts.get(size / 2);
-        }
-    }
-
-    private double calculateStandardDeviation(List<BigDecimal> amounts, BigDecimal average) {
-        double variance = amounts.stream()
-                .mapToDouble(amount -> {
-                    BigDecimal diff = amount.subtract(average);
-                    return diff.multiply(diff).doubleValue();
-                })
-                .average()
-                .orElse(0.0);
-
-        return Math.sqrt(variance);
+    private double percent(double share) {
+        return Math.round(share * 1000) / 10.0;
     }
 
-    private Map<String, BigDecimal> calculatePercentiles(List<BigDecimal> sortedAmounts) {
-        Map<String, BigDecimal> percentiles = new HashMap<>();
-
-        int[] percentileValues = {25, 50, 75, 90, 95};
-
-        for (int percentile : percentileValues) {
-            int index = (int) Math.ceil((percentile / 100.0) * sortedAmounts.size()) - 1;
-            index = Math.max(0, Math.min(index, sortedAmounts.size() - 1));
-            percentiles.put("p" + percentile, sortedAmounts.get(index));
-        }
+    private CommunityInsight saveCommunityInsight(CommunityAggregate aggregate, String cubeGeneration) {
+        // Create community insight with anonymized data
+        CommunityInsight insight = CommunityInsight.builder()
+                .insightType("SPENDING_AVERAGE")
+                .period("MONTHLY")
+                .title("Community Spending Insights")
+                .description("Anonymized aggregated spending data for community analysis")
+                .data(createAnonymizedData(aggregate))
+                .statistics(aggregate.toStatistics())
+                .distributions(aggregate.getSpendDistributions())
+                .cubeGeneration(cubeGeneration)
+                .generatedAt(LocalDateTime.now())
+                .validUntil(LocalDateTime.now().plusDays(30))
+                .build();
 
-        return percentiles;
+        CommunityInsight saved = communityInsightRepository.save(insight);
+        log.info("Successfully created community insight from {} receipts across {} categories",
+                aggregate.getReceiptCount(), aggregate.getCategoryTotals().size());
+        return saved;
     }
 
-    private Map<String, Object> createAnonymizedData(Map<String, BigDecimal> categoryTotals, List<Receipt> receipts) {
+    private Map<String, Object> createAnonymizedData(CommunityAggregate aggregate) {
         Map<String, Object> data = new HashMap<>();
 
         // Anonymize category data by removing small sample sizes
-        Map<String, BigDecimal> filteredCategories = categoryTotals.entrySet().stream()
+        Map<String, BigDecimal> filteredCategories = aggregate.getCategoryTotals().entrySet().stream()
                 .filter(entry -> entry.getValue().compareTo(BigDecimal.valueOf(100)) >= 0) // Minimum threshold
                 .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
 
         data.put("categoryTotals", filteredCategories);
-        data.put("totalReceipts", receipts.size());
+        data.put("totalReceipts", aggregate.getReceiptCount());
+        data.put("distinctUsers", aggregate.getDistinctUserCount());
+        data.put("distinctMerchants", aggregate.getDistinctMerchantCount());
         data.put("totalCategories", filteredCategories.size());
         data.put("dataGeneratedAt", LocalDateTime.now().toString());
 
         // Add aggregated merchant data (anonymized)
-        Map<String, Long> merchantCounts = receipts.stream()
-                .filter(receipt -> receipt.getMerchantName() != null)
-                .collect(Collectors.groupingBy(
-                        receipt -> anonymizeMerchantName(receipt.getMerchantName()),
-                        Collectors.counting()
-                ));
-
-        data.put("topMerchantTypes", merchantCounts);
+        data.put("topMerchantTypes", new HashMap<>(aggregate.getMerchantTypeCounts()));
 
         return data;
     }
 
-    private String anonymizeMerchantName(String merchantName) {
-        // Simple anonymization - group by merchant type
-        String upperName = merchantName.toUpperCase();
-
-        if (upperName.contains("RESTAURANT") || upperName.contains("CAFE") || upperName.contains("FOOD")) {
-            return "FOOD_SERVICE";
-        } else if (upperName.contains("GAS") || upperName.contains("FUEL") || upperName.contains("SHELL") || upperName.contains("EXXON")) {
-            return "FUEL_STATION";
-        } else if (upperName.contains("GROCERY") || upperName.contains("MARKET") || upperName.contains("SUPERMARKET")) {
-            return "GROCERY_STORE";
-        } else if (upperName.contains("PHARMACY") || upperName.contains("DRUG")) {
-            return "PHARMACY";
-        } else {
-            return "OTHER_RETAIL";
-        }
-    }
-
     private CommunityInsight.StatisticalData createEmptyStatistics() {
         return CommunityInsight.StatisticalData.builder()
                 .average(BigDecimal.ZERO)
@@ -1,5 +1,7 @@
 package com.jaiswal.service;
 
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
 import com.jaiswal.exception.ResourceNotFoundException;
 import com.jaiswal.exception.ValidationException;
 import com.jaiswal.model.document.Category;
@@ -8,7 +10,6 @@ import com.jaiswal.repository.CategoryRepository;
 import com.jaiswal.repository.ReceiptRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,8 +28,9 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final ReceiptRepository receiptRepository;
+    private final CacheVersionService cacheVersions;
 
-    @Cacheable(value = "categories", key = "#userId")
+    @Cacheable(value = "categories", key = "@cacheVersions.userKey('categories', #userId)")
     public List<CategoryDTO> getCategoriesByUser(String userId) {
         List<Category> categories = categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc(userId);
         return categories.stream()
@@ -36,7 +38,7 @@ public class CategoryService {
                 .collect(Collectors.toList());
     }
 
-    @Cacheable(value = "categories", key = "#categoryId")
+    @Cacheable(value = "categories", key = "@cacheVersions.userKey('categories', #userId) + '_' + #categoryId")
     public CategoryDTO getCategoryById(String categoryId, String userId) {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + categoryId));
@@ -50,7 +52,6 @@ public class CategoryService {
     }
 
     @Transactional
-    @CacheEvict(value = "categories", allEntries = true)
     public CategoryDTO createCategory(String userId, CategoryDTO categoryDTO) {
         validateCategoryCreation(userId, categoryDTO);
 
@@ -68,12 +69,12 @@ public class CategoryService {
                 .build();
 
         Category savedCategory = categoryRepository.save(category);
+        cacheVersions.bump(userId, CacheDataType.CATEGORIES);
         log.info("Created category: {} for user: {}", savedCategory.getName(), userId);
         return convertToDTO(savedCategory);
     }
 
     @Transactional
-    @CacheEvict(value = "categories", allEntries = true)
     public CategoryDTO updateCategory(String categoryId, String userId, CategoryDTO categoryDTO) {
         Category existingCategory = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + categoryId));
@@ -108,12 +109,12 @@ public class CategoryService {
         }
 
         Category updatedCategory = categoryRepository.save(existingCategory);
+        cacheVersions.bump(userId, CacheDataType.CATEGORIES);
         log.info("Updated category: {}", updatedCategory.getName());
         return convertToDTO(updatedCategory);
     }
 
     @Transactional
-    @CacheEvict(value = "categories", allEntries = true)
     public void deleteCategory(String categoryId, String userId) {
         Category category = categoryRepository.findById(categoryId)
                 .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + categoryId));
@@ -133,6 +134,7 @@ public class CategoryService {
         }
 
         categoryRepository.deleteById(categoryId);
+        cacheVersions.bump(userId, CacheDataType.CATEGORIES);
         log.info("Deleted category: {} for user: {}", category.getName(), userId);
     }
 
@@ -176,6 +178,7 @@ public class CategoryService {
             category.setUserId(userId);
             categoryRepository.save(category);
         });
+        cacheVersions.bump(userId, CacheDataType.CATEGORIES);
 
         log.info("Initialized default categories for user: {}", userId);
     }
@@ -0,0 +1,283 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.InsightCubeCell;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.util.HyperLogLog;
+import com.jaiswal.util.QuantileSketch;
+import com.jaiswal.util.RunningStatistics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Single-pass accumulator behind the community insight. Receipts are added one
+ * at a time and never retained: category totals and merchant-type counts are
+ * keyed maps, amount moments come from {@link RunningStatistics}, percentiles
+ * from a {@link QuantileSketch} and distinct users and merchants from
+ * {@link HyperLogLog}s, so memory does not grow with the number of receipts.
+ * Per-user monthly spend feeds the category distributions and the insight
+ * cube cells, both broken down by a fixed set of shared categories. Aggregates over disjoint sets of receipts can be merged, and the
+ * class maps onto a Mongo document so partial results can be checkpointed.
+ */
+public class CommunityAggregate {
+
+    public static final String ALL_CATEGORIES = "all";
+
+    public static final String OTHER_CATEGORY = "other";
+
+    // The categories every user starts with (see CategoryService), by key
+    private static final Map<String, String> SHARED_CATEGORIES = Map.of(
+            "groceries", "Groceries",
+            "transportation", "Transportation",
+            "dining", "Dining",
+            "entertainment", "Entertainment",
+            "healthcare", "Healthcare",
+            "shopping", "Shopping",
+            "utilities", "Utilities",
+            OTHER_CATEGORY, "Other");
+
+    private static final int[] PERCENTILES = {25, 50, 75, 90, 95};
+
+    private long receiptCount;
+    private Map<String, BigDecimal> categoryTotals = new HashMap<>();
+    private Map<String, Long> merchantTypeCounts = new HashMap<>();
+    private HyperLogLog distinctUsers = new HyperLogLog();
+    private HyperLogLog distinctMerchants = new HyperLogLog();
+
+    // Statistics cover positive amounts only
+    private BigDecimal amountSum = BigDecimal.ZERO;
+    private RunningStatistics amountStatistics = new RunningStatistics();
+    private QuantileSketch amountSketch = new QuantileSketch();
+
+    // Keyed by period + "_" + categoryKey
+    private Map<String, CommunityInsight.SpendDistribution> spendDistributions = new HashMap<>();
+
+    // Finest insight cube cells, keyed by InsightCubeCell.cellKey
+    private Map<String, InsightCubeCell> cubeCells = new HashMap<>();
+
+    public void add(Receipt receipt) {
+        receiptCount++;
+
+        BigDecimal amount = receipt.getTotalAmount();
+        if (receipt.getCategoryId() != null && amount != null) {
+            categoryTotals.merge(receipt.getCategoryId(), amount, BigDecimal::add);
+        }
+        if (receipt.getMerchantName() != null) {
+            merchantTypeCounts.merge(merchantType(receipt.getMerchantName()), 1L, Long::sum);
+            distinctMerchants.offer(receipt.getMerchantName().trim().toLowerCase());
+        }
+        distinctUsers.offer(receipt.getUserId());
+        if (amount != null && amount.compareTo(BigDecimal.ZERO) > 0) {
+            amountSum = amountSum.add(amount);
+            amountStatistics.add(amount.doubleValue());
+            amountSketch.add(amount.doubleValue());
+        }
+    }
+
+    /**
+     * Adds one user's total spend in {@code category} for {@code period}
+     * (yyyy-MM) to the distribution of its {@link #sharedCategoryKey shared
+     * category}. Callers add each user at most once per shared category and
+     * period.
+     */
+    public void addUserSpend(String period, String category, BigDecimal amount) {
+        String categoryKey = sharedCategoryKey(category);
+        String displayName = sharedCategoryName(categoryKey);
+        spendDistributions.computeIfAbsent(period + "_" + categoryKey, key -> CommunityInsight.SpendDistribution.builder()
+                        .categoryKey(categoryKey)
+                        .category(displayName)
+                        .period(period)
+                        .sketch(new QuantileSketch())
+                        .build())
+                .getSketch()
+                .add(amount.doubleValue());
+    }
+
+    /**
+     * As {@link #addUserSpend(String, String, BigDecimal)}, also adding the
+     * user's spend to the insight cube cell for their demographic segment.
+     */
+    public void addUserSpend(CommunityInsight.DemographicFilters segment, String period, String category,
+                             BigDecimal amount, long receiptCount) {
+        addUserSpend(period, category, amount);
+
+        String categoryKey = sharedCategoryKey(category);
+        InsightCubeCell cell = cubeCells.computeIfAbsent(InsightCubeCell.cellKey(segment, categoryKey, period),
+                key -> InsightCubeCell.builder()
+                        .ageGroup(InsightCubeCell.dimension(segment.getAgeGroup()))
+                        .region(InsightCubeCell.dimension(segment.getRegion()))
+                        .incomeRange(InsightCubeCell.dimension(segment.getIncomeRange()))
+                        .userSegment(InsightCubeCell.dimension(segment.getUserSegment()))
+                        .categoryKey(categoryKey)
+                        .category(sharedCategoryName(categoryKey))
+                        .period(period)
+                        .build());
+        cell.setReceiptCount(cell.getReceiptCount() + receiptCount);
+        cell.setTotalAmount(cell.getTotalAmount().add(amount));
+        cell.getUserSpend().add(amount.doubleValue());
+    }
+
+    public void merge(CommunityAggregate other) {
+        receiptCount += other.receiptCount;
+        other.categoryTotals.forEach((category, total) -> categoryTotals.merge(category, total, BigDecimal::add));
+        other.merchantTypeCounts.forEach((type, count) -> merchantTypeCounts.merge(type, count, Long::sum));
+        distinctUsers.merge(other.distinctUsers);
+        distinctMerchants.merge(other.distinctMerchants);
+        amountSum = amountSum.add(other.amountSum);
+        amountStatistics.merge(other.amountStatistics);
+        amountSketch.merge(other.amountSketch);
+        other.spendDistributions.forEach((key, distribution) -> {
+            CommunityInsight.SpendDistribution existing = spendDistributions.get(key);
+            if (existing == null) {
+                spendDistributions.put(key, CommunityInsight.SpendDistribution.builder()
+                        .categoryKey(distribution.getCategoryKey())
+                        .category(distribution.getCategory())
+                        .period(distribution.getPeriod())
+                        .sketch(distribution.getSketch().copy())
+                        .build());
+            } else {
+                existing.getSketch().merge(distribution.getSketch());
+            }
+        });
+        other.cubeCells.forEach((key, cell) -> cubeCells.computeIfAbsent(key, k -> InsightCubeCell.builder()
+                        .ageGroup(cell.getAgeGroup())
+                        .region(cell.getRegion())
+                        .incomeRange(cell.getIncomeRange())
+                        .userSegment(cell.getUserSegment())
+                        .categoryKey(cell.getCategoryKey())
+                        .category(cell.getCategory())
+                        .period(cell.getPeriod())
+                        .build())
+                .merge(cell));
+    }
+
+    public long getReceiptCount() {
+        return receiptCount;
+    }
+
+    public Map<String, BigDecimal> getCategoryTotals() {
+        return Collections.unmodifiableMap(categoryTotals);
+    }
+
+    public Map<String, Long> getMerchantTypeCounts() {
+        return Collections.unmodifiableMap(merchantTypeCounts);
+    }
+
+    public long getDistinctUserCount() {
+        return distinctUsers.cardinality();
+    }
+
+    public long getDistinctMerchantCount() {
+        return distinctMerchants.cardinality();
+    }
+
+    public QuantileSketch getAmountSketch() {
+        return amountSketch;
+    }
+
+    public List<CommunityInsight.SpendDistribution> getSpendDistributions() {
+        return new ArrayList<>(spendDistributions.values());
+    }
+
+    public Map<String, InsightCubeCell> getCubeCells() {
+        return Collections.unmodifiableMap(cubeCells);
+    }
+
+    /**
+     * Average, min, max and standard deviation are exact; median and
+     * percentiles are within the sketch's 1% relative accuracy.
+     */
+    public CommunityInsight.StatisticalData toStatistics() {
+        long sampleSize = amountStatistics.getCount();
+        if (sampleSize == 0) {
+            return CommunityInsight.StatisticalData.builder()
+                    .average(BigDecimal.ZERO)
+                    .median(BigDecimal.ZERO)
+                    .min(BigDecimal.ZERO)
+                    .max(BigDecimal.ZERO)
+                    .sampleSize(0L)
+                    .standardDeviation(0.0)
+                    .percentiles(new HashMap<>())
+                    .build();
+        }
+
+        Map<String, BigDecimal> percentiles = new HashMap<>();
+        for (int percentile : PERCENTILES) {
+            percentiles.put("p" + percentile, amountQuantile(percentile / 100.0));
+        }
+
+        return CommunityInsight.StatisticalData.builder()
+                .average(amountSum.divide(BigDecimal.valueOf(sampleSize), 2, RoundingMode.HALF_UP))
+                .median(amountQuantile(0.5))
+                .min(money(amountStatistics.getMin()))
+                .max(money(amountStatistics.getMax()))
+                .sampleSize(sampleSize)
+                .standardDeviation(amountStatistics.getStandardDeviation())
+                .percentiles(percentiles)
+                .build();
+    }
+
+    /**
+     * Coarse merchant type used in place of the merchant name, so published
+     * insights never carry individual merchants.
+     */
+    public static String merchantType(String merchantName) {
+        String upperName = merchantName.toUpperCase();
+
+        if (upperName.contains("RESTAURANT") || upperName.contains("CAFE") || upperName.contains("FOOD")) {
+            return "FOOD_SERVICE";
+        } else if (upperName.contains("GAS") || upperName.contains("FUEL") || upperName.contains("SHELL") || upperName.contains("EXXON")) {
+            return "FUEL_STATION";
+        } else if (upperName.contains("GROCERY") || upperName.contains("MARKET") || upperName.contains("SUPERMARKET")) {
+            return "GROCERY_STORE";
+        } else if (upperName.contains("PHARMACY") || upperName.contains("DRUG")) {
+            return "PHARMACY";
+        } else {
+            return "OTHER_RETAIL";
+        }
+    }
+
+    /**
+     * Users name their own categories, so distributions are keyed by a
+     * normalized name: "Food & Dining" and "food  dining" compare together.
+     */
+    public static String categoryKey(String categoryName) {
+        String key = categoryName.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("(^-|-$)", "");
+        return key.isEmpty() ? "uncategorized" : key;
+    }
+
+    /**
+     * The key community data is broken down by: a default category's key, or
+     * {@link #OTHER_CATEGORY} for any category a user named themselves. Free
+     * text would give every custom name its own distribution and cube cells,
+     * growing checkpoints and the cube without bound.
+     */
+    public static String sharedCategoryKey(String categoryName) {
+        if (ALL_CATEGORIES.equals(categoryName)) {
+            return ALL_CATEGORIES;
+        }
+        String key = categoryKey(categoryName);
+        return SHARED_CATEGORIES.containsKey(key) ? key : OTHER_CATEGORY;
+    }
+
+    public static String sharedCategoryName(String sharedCategoryKey) {
+        return SHARED_CATEGORIES.getOrDefault(sharedCategoryKey, sharedCategoryKey);
+    }
+
+    // Sketch estimates can land just outside the observed range; keep them within it
+    private BigDecimal amountQuantile(double q) {
+        double estimate = Math.min(Math.max(amountSketch.quantile(q), amountStatistics.getMin()), amountStatistics.getMax());
+        return money(estimate);
+    }
+
+    private BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
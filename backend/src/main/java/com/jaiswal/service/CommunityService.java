@@ -0,0 +1,167 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.Category;
+import com.jaiswal.exception.ResourceNotFoundException;
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.InsightCubeCell;
+import com.jaiswal.model.dto.PercentileRankDTO;
+import com.jaiswal.model.dto.SegmentInsightDTO;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommunityService {
+
+    private final AnonymizationService anonymizationService;
+    private final ReceiptRepository receiptRepository;
+    private final CategoryRepository categoryRepository;
+    private final InsightCubeService insightCubeService;
+
+    // Distributions with fewer users are not compared against, so no small group is exposed
+    @Value("${app.community.min-compared-users:5}")
+    private long minComparedUsers;
+
+    // k for k-anonymity: segment cells with fewer users are suppressed
+    @Value("${app.community.cube.min-users:10}")
+    private long minSegmentUsers;
+
+    /**
+     * Ranks the user's spend for the month, overall and per category, against
+     * the community distributions of the latest (cached) insight. Each rank is
+     * a lookup in a precomputed sketch, so the cost does not depend on the
+     * number of users compared against.
+     */
+    public List<PercentileRankDTO> getPercentileRanks(String userId, YearMonth period) {
+        String periodKey = period.toString();
+        CommunityInsight insight = anonymizationService.getLatestCommunityInsight();
+        if (insight.getDistributions() == null) {
+            return new ArrayList<>();
+        }
+        Map<String, CommunityInsight.SpendDistribution> distributions = insight.getDistributions().stream()
+                .filter(distribution -> periodKey.equals(distribution.getPeriod()))
+                .filter(distribution -> distribution.getSketch().getCount() >= minComparedUsers)
+                .collect(Collectors.toMap(CommunityInsight.SpendDistribution::getCategoryKey, Function.identity()));
+        if (distributions.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, String> displayNames = new HashMap<>();
+        Map<String, BigDecimal> spendByKey = userSpendByCategoryKey(userId, period, displayNames);
+        BigDecimal total = spendByKey.getOrDefault(CommunityAggregate.ALL_CATEGORIES, BigDecimal.ZERO);
+
+        List<PercentileRankDTO> ranks = new ArrayList<>();
+        if (total.compareTo(BigDecimal.ZERO) > 0) {
+            rank(distributions.get(CommunityAggregate.ALL_CATEGORIES), "All categories", periodKey, total, ranks);
+        }
+        spendByKey.entrySet().stream()
+                .filter(entry -> !CommunityAggregate.ALL_CATEGORIES.equals(entry.getKey()))
+                .filter(entry -> entry.getValue().compareTo(BigDecimal.ZERO) > 0)
+                .sorted(Map.Entry.<String, BigDecimal>comparingByValue(Comparator.reverseOrder()))
+                .forEach(entry -> rank(distributions.get(entry.getKey()), displayNames.get(entry.getKey()),
+                        periodKey, entry.getValue(), ranks));
+        return ranks;
+    }
+
+    /**
+     * Community spend in one insight cube cell, rolled up over any segment
+     * dimension left null, next to the user's own spend for the same category
+     * and month. Cells with fewer than the k-anonymity threshold of users are
+     * returned suppressed, without statistics.
+     */
+    public SegmentInsightDTO getSegmentComparison(String userId, CommunityInsight.DemographicFilters segment,
+                                                  String category, YearMonth period) {
+        CommunityInsight insight = anonymizationService.getLatestCommunityInsight();
+        if (insight.getCubeGeneration() == null) {
+            throw new ResourceNotFoundException("Segmented community insights are not available yet");
+        }
+
+        String categoryKey = category != null ? CommunityAggregate.sharedCategoryKey(category) : CommunityAggregate.ALL_CATEGORIES;
+        InsightCubeCell cell = insightCubeService.rollUp(insight.getCubeGeneration(), segment, categoryKey, period.toString());
+
+        SegmentInsightDTO.SegmentInsightDTOBuilder result = SegmentInsightDTO.builder()
+                .ageGroup(cell.getAgeGroup())
+                .region(cell.getRegion())
+                .incomeRange(cell.getIncomeRange())
+                .userSegment(cell.getUserSegment())
+                .category(category != null ? CommunityAggregate.sharedCategoryName(categoryKey) : "All categories")
+                .period(period.toString());
+
+        if (cell.getUserCount() < minSegmentUsers) {
+            return result.suppressed(true).build();
+        }
+
+        BigDecimal averageSpend = money(cell.getUserSpend().getMean());
+        BigDecimal yourSpend = userSpendByCategoryKey(userId, period, new HashMap<>())
+                .getOrDefault(categoryKey, BigDecimal.ZERO);
+        result.suppressed(false)
+                .userCount(cell.getUserCount())
+                .averageSpend(averageSpend)
+                .standardDeviation(money(cell.getUserSpend().getStandardDeviation()))
+                .averageReceipts(Math.round(10.0 * cell.getReceiptCount() / cell.getUserCount()) / 10.0)
+                .yourSpend(yourSpend);
+        if (averageSpend.compareTo(BigDecimal.ZERO) > 0) {
+            result.differencePercentage(yourSpend.subtract(averageSpend)
+                    .multiply(BigDecimal.valueOf(100))
+                    .divide(averageSpend, 1, RoundingMode.HALF_UP));
+        }
+        return result.build();
+    }
+
+    // The user's spend for the month, keyed by shared category like the community data (including "all")
+    private Map<String, BigDecimal> userSpendByCategoryKey(String userId, YearMonth period, Map<String, String> displayNames) {
+        Map<String, String> categoryNames = categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc(userId).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName, (first, second) -> first));
+
+        Map<String, BigDecimal> spendByKey = new HashMap<>();
+        for (ReceiptRepository.CategorySpendingAggregation spending : receiptRepository.getCategorySpendingByUserAndDateRange(
+                userId, period.atDay(1), period.atEndOfMonth())) {
+            spendByKey.merge(CommunityAggregate.ALL_CATEGORIES, spending.getTotalAmount(), BigDecimal::add);
+            String name = spending.get_id() != null ? categoryNames.get(spending.get_id()) : null;
+            if (name != null) {
+                String categoryKey = CommunityAggregate.sharedCategoryKey(name);
+                spendByKey.merge(categoryKey, spending.getTotalAmount(), BigDecimal::add);
+                displayNames.putIfAbsent(categoryKey, CommunityAggregate.sharedCategoryName(categoryKey));
+            }
+        }
+        return spendByKey;
+    }
+
+    private BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private void rank(CommunityInsight.SpendDistribution distribution, String category, String period,
+                      BigDecimal amount, List<PercentileRankDTO> ranks) {
+        if (distribution == null) {
+            return;
+        }
+        double percentile = Math.round(distribution.getSketch().rank(amount.doubleValue()) * 1000) / 10.0;
+        ranks.add(PercentileRankDTO.builder()
+                .category(category)
+                .categoryKey(distribution.getCategoryKey())
+                .period(period)
+                .amount(amount)
+                .percentile(percentile)
+                .comparedUsers(distribution.getSketch().getCount())
+                .description(String.format("You spend more than %.0f%% of users on %s", percentile,
+                        CommunityAggregate.ALL_CATEGORIES.equals(distribution.getCategoryKey()) ? "everything" : category))
+                .build());
+    }
+}
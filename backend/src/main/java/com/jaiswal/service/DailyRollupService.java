@@ -0,0 +1,235 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangeListener;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.job.JobLockService;
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.DailySpendingRollup;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.DailySpendingRollupRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.Decimal128;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Maintains {@link DailySpendingRollup}s: per user, day and category totals
+ * that analytics aggregate instead of receipts. Each receipt change is applied
+ * as an increment (the old spend removed, the new spend added), and a rollup
+ * left without receipts is deleted. Rollups that
+ * predate this service are built once by {@link #backfillIfNeeded()}; until
+ * that has completed, {@link #isReady()} is false, callers read receipts and
+ * changes are left to per-user rebuilds, so none is counted by both the
+ * backfill and an increment.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailyRollupService implements ReceiptChangeListener {
+
+    static final String BACKFILL_JOB_NAME = "daily-rollup-backfill";
+
+    private final DailySpendingRollupRepository rollupRepository;
+    private final ReceiptRepository receiptRepository;
+    private final AggregationRunRepository aggregationRunRepository;
+    private final JobLockService jobLockService;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.analytics.rollups.backfill-lock-ttl:PT30M}")
+    private Duration backfillLockTtl;
+
+    // Users backfilled between renewals of the backfill lock
+    @Value("${app.analytics.rollups.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    // Once the backfill is known to have completed it stays completed
+    private volatile boolean ready;
+
+    @Override
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        Map<String, Delta> deltas = new HashMap<>();
+        addContribution(deltas, event.getBefore(), -1);
+        addContribution(deltas, event.getAfter(), 1);
+        deltas.values().removeIf(Delta::isEmpty);
+        if (!deltas.isEmpty()) {
+            increment(event.getUserId(), deltas);
+        }
+    }
+
+    // Overwrites the user's rollups with totals from their receipts, then drops the rollups not rewritten
+    @Override
+    public void rebuild(String userId) {
+        LocalDateTime rebuiltAt = LocalDateTime.now();
+        Map<String, Delta> totals = new HashMap<>();
+        try (Stream<Receipt> receipts = receiptRepository.streamForDailyRollupsByUserId(userId)) {
+            receipts.forEach(receipt -> addContribution(totals, ReceiptChangedEvent.Snapshot.of(receipt), 1));
+        }
+        if (!totals.isEmpty()) {
+            BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySpendingRollup.class);
+            totals.forEach((key, total) -> operations.upsert(Query.query(Criteria.where("_id").is(userId + ":" + key)),
+                    new Update()
+                            .set("userId", userId)
+                            .set("date", total.date)
+                            .set("categoryId", total.categoryId)
+                            .set("updatedAt", rebuiltAt)
+                            .set("totalAmount", new Decimal128(total.amount))
+                            .set("receiptCount", total.count)));
+            operations.execute();
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(userId).and("updatedAt").lt(rebuiltAt)),
+                DailySpendingRollup.class);
+    }
+
+    public List<DailySpendingRollup> findRollups(String userId, LocalDate startDate, LocalDate endDate) {
+        return rollupRepository.findByUserIdAndDateBetween(userId, startDate, endDate);
+    }
+
+    @Override
+    public boolean isReady() {
+        if (!ready) {
+            ready = aggregationRunRepository.findTopByJobNameOrderByStartedAtDesc(BACKFILL_JOB_NAME)
+                    .map(run -> run.getStatus() == AggregationRun.RunStatus.COMPLETED)
+                    .orElse(false);
+        }
+        return ready;
+    }
+
+    /**
+     * Builds the rollups from receipts once, on the first run after
+     * deployment; afterwards receipt changes keep them current. Retried on
+     * schedule until one instance has completed it.
+     */
+    @Scheduled(initialDelayString = "${app.analytics.rollups.backfill-delay:PT1M}",
+            fixedDelayString = "${app.analytics.rollups.backfill-retry:PT1H}")
+    public void backfillIfNeeded() {
+        if (isReady() || !jobLockService.tryAcquire(BACKFILL_JOB_NAME, backfillLockTtl)) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            AggregationRun run = aggregationRunRepository.save(AggregationRun.builder()
+                    .jobName(BACKFILL_JOB_NAME)
+                    .shardCount(1)
+                    .status(AggregationRun.RunStatus.RUNNING)
+                    .startedAt(LocalDateTime.now())
+                    .build());
+
+            rollupRepository.deleteAll();
+            Map<String, Delta> userDeltas = new HashMap<>();
+            String currentUser = null;
+            long users = 0;
+
+            // Receipts arrive grouped by user; each user's rollups are written when the user changes
+            try (Stream<Receipt> receipts = receiptRepository.streamAllForDailyRollups()) {
+                Iterator<Receipt> iterator = receipts.iterator();
+                while (iterator.hasNext()) {
+                    Receipt receipt = iterator.next();
+                    if (!Objects.equals(receipt.getUserId(), currentUser)) {
+                        flush(currentUser, userDeltas);
+                        currentUser = receipt.getUserId();
+                        // Extend the lease while users keep completing; stop if another node has taken over
+                        if (++users % backfillBatchSize == 0 && !jobLockService.tryAcquire(BACKFILL_JOB_NAME, backfillLockTtl)) {
+                            throw new IllegalStateException("Lost the " + BACKFILL_JOB_NAME + " job lock");
+                        }
+                    }
+                    addContribution(userDeltas, ReceiptChangedEvent.Snapshot.of(receipt), 1);
+                }
+            }
+            flush(currentUser, userDeltas);
+
+            run.setStatus(AggregationRun.RunStatus.COMPLETED);
+            run.setCompletedAt(LocalDateTime.now());
+            aggregationRunRepository.save(run);
+            ready = true;
+            log.info("Backfilled daily rollups for {} users in {} ms", users, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Daily rollup backfill failed", e);
+        } finally {
+            jobLockService.release(BACKFILL_JOB_NAME);
+        }
+    }
+
+    private void flush(String userId, Map<String, Delta> userDeltas) {
+        if (userId != null && !userDeltas.isEmpty()) {
+            increment(userId, userDeltas);
+        }
+        userDeltas.clear();
+    }
+
+    private void addContribution(Map<String, Delta> deltas, ReceiptChangedEvent.Snapshot snapshot, int sign) {
+        if (snapshot == null) {
+            return;
+        }
+        String key = snapshot.getDate() + ":" + snapshot.getCategoryId();
+        Delta delta = deltas.computeIfAbsent(key, k -> new Delta(snapshot.getDate(), snapshot.getCategoryId()));
+        delta.amount = sign > 0 ? delta.amount.add(snapshot.getTotalAmount()) : delta.amount.subtract(snapshot.getTotalAmount());
+        delta.count += sign;
+    }
+
+    /**
+     * Upserts with $inc, so concurrent changes to the same rollup never
+     * overwrite each other. Rollups a change has emptied are then removed;
+     * the count is checked in the delete itself, so one refilled meanwhile stays.
+     */
+    private void increment(String userId, Map<String, Delta> deltas) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySpendingRollup.class);
+        List<String> decremented = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            operations.upsert(Query.query(Criteria.where("_id").is(userId + ":" + key)),
+                    new Update()
+                            .set("userId", userId)
+                            .set("date", delta.date)
+                            .set("categoryId", delta.categoryId)
+                            .set("updatedAt", LocalDateTime.now())
+                            .inc("totalAmount", new Decimal128(delta.amount))
+                            .inc("receiptCount", delta.count));
+            if (delta.count < 0) {
+                decremented.add(userId + ":" + key);
+            }
+        });
+        operations.execute();
+        if (!decremented.isEmpty()) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(decremented).and("receiptCount").lte(0)),
+                    DailySpendingRollup.class);
+        }
+    }
+
+    private static class Delta {
+        private final LocalDate date;
+        private final String categoryId;
+        private BigDecimal amount = BigDecimal.ZERO;
+        private long count;
+
+        private Delta(LocalDate date, String categoryId) {
+            this.date = date;
+            this.categoryId = categoryId;
+        }
+
+        // An edit that changes neither the day, category nor amount
+        private boolean isEmpty() {
+            return count == 0 && amount.signum() == 0;
+        }
+    }
+}
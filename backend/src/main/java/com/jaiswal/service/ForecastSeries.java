@@ -0,0 +1,219 @@
+package com.jaiswal.service;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Incremental forecasting state for one spending series: a category, or a
+ * user's total. Each receipt updates it in constant time; closing a month
+ * folds that month's daily spend into fixed-size sufficient statistics:
+ * <ul>
+ *     <li>day-of-month seasonality: the average share of a month's spend made
+ *     by the end of each day, so mid-month spend is scaled up by how much of
+ *     a month usually remains;</li>
+ *     <li>a linear trend over monthly totals, as exponentially decayed
+ *     least-squares sums.</li>
+ * </ul>
+ * A forecast reads these, plus the recurring charges still due (from
+ * {@link RecurringChargeDetector}), and never looks at past receipts.
+ */
+public class ForecastSeries {
+
+    private static final int MAX_DAYS = 31;
+    // Weight of each month's total relative to the following month's in the trend
+    private static final double TREND_DECAY = 0.9;
+    private static final int MIN_SEASONAL_MONTHS = 2;
+    private static final int MIN_TREND_MONTHS = 3;
+    // Below this share of the month's usual spend, month-to-date pace says little
+    private static final double MIN_PACE_SHARE = 0.05;
+    private static final int MAX_GAP_MONTHS = 12;
+
+    private String period;                          // running month, yyyy-MM
+    private double[] daily = new double[MAX_DAYS];  // spend per day of the running month
+    private int year;
+    private double yearToDate;
+
+    // Sum over completed months of the cumulative share of the month's spend by the end of each day
+    private double[] cumulativeShareSums = new double[MAX_DAYS];
+    private int seasonalMonths;
+
+    // Decayed least-squares sums over (month index, monthly total)
+    private double trendWeight;
+    private double trendSumX;
+    private double trendSumY;
+    private double trendSumXY;
+    private double trendSumXX;
+    private int trendMonths;
+
+    /**
+     * Applies {@code amount} spent on {@code date}; negative amounts take an
+     * edited or deleted receipt back out. Only the running month's days can be
+     * revised; spend in months already closed only counts towards the year.
+     */
+    public void add(LocalDate date, double amount) {
+        YearMonth month = YearMonth.from(date);
+        if (period == null) {
+            period = month.toString();
+            year = month.getYear();
+        }
+        if (month.isAfter(YearMonth.parse(period))) {
+            rollTo(month);
+        }
+        if (month.toString().equals(period)) {
+            daily[date.getDayOfMonth() - 1] += amount;
+        }
+        if (date.getYear() == year) {
+            yearToDate += amount;
+        }
+    }
+
+    /**
+     * Projected spend for the whole month containing {@code today}: month-to-date
+     * spend scaled by the seasonal share still to come, blended with the trend
+     * (trusted less as the month progresses), and never less than what is
+     * already spent plus {@code recurringDue}, the recurring charges expected
+     * in the rest of the month.
+     */
+    public double monthEndForecast(LocalDate today, double recurringDue) {
+        ForecastSeries current = at(today);
+        int lengthOfMonth = today.lengthOfMonth();
+        int day = today.getDayOfMonth();
+        double monthToDate = current.monthToDate();
+
+        double share = current.seasonalMonths >= MIN_SEASONAL_MONTHS
+                ? current.cumulativeShareSums[day - 1] / current.seasonalMonths
+                : (double) day / lengthOfMonth;
+        Double pace = share >= MIN_PACE_SHARE ? monthToDate / share : null;
+        Double trend = current.trendMonths >= MIN_TREND_MONTHS ? current.trendAt(monthIndex(YearMonth.from(today))) : null;
+
+        double estimate;
+        if (pace != null && trend != null) {
+            double weight = Math.min(1.0, share);
+            estimate = weight * pace + (1 - weight) * trend;
+        } else if (pace != null) {
+            estimate = pace;
+        } else if (trend != null) {
+            estimate = trend;
+        } else {
+            estimate = monthToDate * lengthOfMonth / day;
+        }
+        return Math.max(estimate, monthToDate + recurringDue);
+    }
+
+    /**
+     * Projected spend for the year containing {@code today}: spent so far, the
+     * rest of this month, and the remaining months from the trend (or the
+     * decayed average month while there is too little history for one).
+     */
+    public double yearEndForecast(LocalDate today, double recurringDue) {
+        ForecastSeries current = at(today);
+        double monthEnd = monthEndForecast(today, recurringDue);
+        double forecast = current.yearToDate + (monthEnd - current.monthToDate());
+
+        YearMonth month = YearMonth.from(today);
+        for (YearMonth next = month.plusMonths(1); next.getYear() == today.getYear(); next = next.plusMonths(1)) {
+            if (current.trendMonths >= MIN_TREND_MONTHS) {
+                forecast += current.trendAt(monthIndex(next));
+            } else if (current.trendWeight > 0) {
+                forecast += current.trendSumY / current.trendWeight;
+            } else {
+                forecast += monthEnd;
+            }
+        }
+        return forecast;
+    }
+
+    public double monthToDate(LocalDate today) {
+        return at(today).monthToDate();
+    }
+
+    public double yearToDate(LocalDate today) {
+        return at(today).yearToDate;
+    }
+
+    private double monthToDate() {
+        double total = 0;
+        for (double amount : daily) {
+            total += amount;
+        }
+        return Math.max(0, total);
+    }
+
+    // This series as of today's month, rolling a copy forward if no receipt has arrived this month yet
+    private ForecastSeries at(LocalDate today) {
+        YearMonth month = YearMonth.from(today);
+        if (period == null || !month.isAfter(YearMonth.parse(period))) {
+            return this;
+        }
+        ForecastSeries copy = copy();
+        copy.rollTo(month);
+        return copy;
+    }
+
+    private void rollTo(YearMonth month) {
+        YearMonth running = YearMonth.parse(period);
+        closeMonth(running);
+        long emptyMonths = Math.min(running.until(month, ChronoUnit.MONTHS) - 1, MAX_GAP_MONTHS);
+        for (long i = 1; i <= emptyMonths; i++) {
+            addTrendPoint(monthIndex(running.plusMonths(i)), 0);
+        }
+
+        period = month.toString();
+        daily = new double[MAX_DAYS];
+        if (month.getYear() != year) {
+            year = month.getYear();
+            yearToDate = 0;
+        }
+    }
+
+    private void closeMonth(YearMonth month) {
+        double total = monthToDate();
+        if (total > 0) {
+            double cumulative = 0;
+            for (int day = 0; day < MAX_DAYS; day++) {
+                cumulative += Math.max(0, daily[day]);
+                cumulativeShareSums[day] += Math.min(1.0, cumulative / total);
+            }
+            seasonalMonths++;
+        }
+        addTrendPoint(monthIndex(month), total);
+    }
+
+    private void addTrendPoint(double x, double y) {
+        trendWeight = TREND_DECAY * trendWeight + 1;
+        trendSumX = TREND_DECAY * trendSumX + x;
+        trendSumY = TREND_DECAY * trendSumY + y;
+        trendSumXY = TREND_DECAY * trendSumXY + x * y;
+        trendSumXX = TREND_DECAY * trendSumXX + x * x;
+        trendMonths++;
+    }
+
+    private double trendAt(double x) {
+        double denominator = trendWeight * trendSumXX - trendSumX * trendSumX;
+        double slope = Math.abs(denominator) < 1e-9 ? 0 : (trendWeight * trendSumXY - trendSumX * trendSumY) / denominator;
+        double intercept = (trendSumY - slope * trendSumX) / trendWeight;
+        return Math.max(0, intercept + slope * x);
+    }
+
+    private ForecastSeries copy() {
+        ForecastSeries copy = new ForecastSeries();
+        copy.period = period;
+        copy.daily = daily.clone();
+        copy.year = year;
+        copy.yearToDate = yearToDate;
+        copy.cumulativeShareSums = cumulativeShareSums.clone();
+        copy.seasonalMonths = seasonalMonths;
+        copy.trendWeight = trendWeight;
+        copy.trendSumX = trendSumX;
+        copy.trendSumY = trendSumY;
+        copy.trendSumXY = trendSumXY;
+        copy.trendSumXX = trendSumXX;
+        copy.trendMonths = trendMonths;
+        return copy;
+    }
+
+    private static double monthIndex(YearMonth month) {
+        return month.getYear() * 12.0 + month.getMonthValue() - 1;
+    }
+}
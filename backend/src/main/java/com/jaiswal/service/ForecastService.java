@@ -0,0 +1,302 @@
+package com.jaiswal.service;
+
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.event.ReceiptChangeListener;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.Insight;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.SpendingForecastState;
+import com.jaiswal.model.dto.SpendingForecastDTO;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.InsightRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.SpendingForecastStateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-of-month and end-of-year spend forecasts, per category and in total.
+ * Each user's {@link SpendingForecastState} is kept current from receipt
+ * changes, so reading a forecast is a single document lookup whatever the
+ * user's history, plus the recurring charges still due this month from
+ * {@link RecurringChargeService}. A user's state is built from their receipts the first time
+ * it is needed.
+ * <p>
+ * After each change, categories with budget alerts enabled are checked against
+ * their projected month and year ends; a category projected over budget (or
+ * past its alert threshold already) gets a stored budget insight, which is
+ * removed again once the projection drops back.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ForecastService implements ReceiptChangeListener {
+
+    public static final String TOTAL = "total";
+    public static final String UNCATEGORIZED = "uncategorized";
+    public static final String BUDGET_FORECAST = "BUDGET_FORECAST";
+
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    private final SpendingForecastStateRepository forecastStateRepository;
+    private final ReceiptRepository receiptRepository;
+    private final CategoryRepository categoryRepository;
+    private final InsightRepository insightRepository;
+    private final RecurringChargeService recurringChargeService;
+    private final CacheVersionService cacheVersions;
+
+    // Receipts a new user's state is built from: this many months back, from the start of the month
+    @Value("${app.forecast.history-months:12}")
+    private int historyMonths;
+
+    @Override
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        SpendingForecastState state = null;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                state = apply(event);
+                break;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                // Another receipt of the same user updated the state first; redo against the new one
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        if (checkBudgets(event.getUserId(), state, affectedCategories(event), LocalDate.now())) {
+            cacheVersions.bump(event.getUserId(), CacheDataType.INSIGHTS);
+        }
+    }
+
+    @Override
+    public void rebuild(String userId) {
+        forecastStateRepository.deleteById(userId);
+        SpendingForecastState state = buildState(userId);
+        if (checkBudgets(userId, state, state.getSeries().keySet(), LocalDate.now())) {
+            cacheVersions.bump(userId, CacheDataType.INSIGHTS);
+        }
+    }
+
+    public SpendingForecastDTO getForecast(String userId) {
+        LocalDate today = LocalDate.now();
+        SpendingForecastState state = forecastStateRepository.findById(userId).orElseGet(() -> firstState(userId));
+        Map<String, Double> recurringDue = recurringDue(userId, today);
+        Map<String, Category> categories = categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc(userId).stream()
+                .collect(Collectors.toMap(Category::getId, Function.identity(), (first, second) -> first));
+
+        List<SpendingForecastDTO.SeriesForecast> categoryForecasts = state.getSeries().entrySet().stream()
+                .filter(entry -> !TOTAL.equals(entry.getKey()))
+                .map(entry -> seriesForecast(entry.getKey(), categories.get(entry.getKey()), entry.getValue(), today,
+                        recurringDue.getOrDefault(entry.getKey(), 0.0)))
+                .filter(forecast -> forecast.getMonthEndForecast().signum() > 0 || forecast.getYearToDate().signum() > 0)
+                .sorted(Comparator.comparing(SpendingForecastDTO.SeriesForecast::getMonthEndForecast).reversed())
+                .collect(Collectors.toList());
+
+        ForecastSeries total = state.getSeries().getOrDefault(TOTAL, new ForecastSeries());
+        return SpendingForecastDTO.builder()
+                .asOf(today)
+                .period(YearMonth.from(today).toString())
+                .total(seriesForecast(null, null, total, today, recurringDue.getOrDefault(TOTAL, 0.0)))
+                .categories(categoryForecasts)
+                .build();
+    }
+
+    private SpendingForecastState apply(ReceiptChangedEvent event) {
+        SpendingForecastState state = forecastStateRepository.findById(event.getUserId()).orElse(null);
+        if (state == null) {
+            // Built from the receipts as they are now, which already includes this change
+            return buildState(event.getUserId());
+        }
+
+        ReceiptChangedEvent.Snapshot before = event.getBefore();
+        ReceiptChangedEvent.Snapshot after = event.getAfter();
+        if (before != null) {
+            add(state, before.getCategoryId(), before.getDate(), before.getTotalAmount().negate());
+        }
+        if (after != null) {
+            add(state, after.getCategoryId(), after.getDate(), after.getTotalAmount());
+        }
+        state.setUpdatedAt(LocalDateTime.now());
+        return forecastStateRepository.save(state);
+    }
+
+    // A concurrent read or receipt change may store the user's first state before this one
+    private SpendingForecastState firstState(String userId) {
+        try {
+            return buildState(userId);
+        } catch (DuplicateKeyException e) {
+            return forecastStateRepository.findById(userId).orElseThrow(() -> e);
+        }
+    }
+
+    private SpendingForecastState buildState(String userId) {
+        SpendingForecastState state = SpendingForecastState.builder().userId(userId).build();
+        LocalDate since = YearMonth.now().minusMonths(historyMonths).atDay(1);
+        try (Stream<Receipt> receipts = receiptRepository.streamForForecastByUserIdSince(userId, since)) {
+            receipts.filter(receipt -> receipt.getDate() != null)
+                    .forEach(receipt -> add(state, receipt.getCategoryId(), receipt.getDate(), receipt.getTotalAmount()));
+        }
+        state.setUpdatedAt(LocalDateTime.now());
+        return forecastStateRepository.save(state);
+    }
+
+    private void add(SpendingForecastState state, String categoryId, LocalDate date, BigDecimal amount) {
+        double value = amount.doubleValue();
+        state.getSeries().computeIfAbsent(TOTAL, key -> new ForecastSeries()).add(date, value);
+        state.getSeries().computeIfAbsent(seriesKey(categoryId), key -> new ForecastSeries()).add(date, value);
+    }
+
+    /**
+     * Stores or removes the budget insight of each of {@code categoryIds} with
+     * alerts enabled. Returns whether any category has a budget to check.
+     */
+    private boolean checkBudgets(String userId, SpendingForecastState state, Set<String> categoryIds, LocalDate today) {
+        boolean checked = false;
+        Map<String, Double> recurringDue = null;
+        for (String categoryId : categoryIds) {
+            Category category = categoryRepository.findById(categoryId).orElse(null);
+            if (category == null || category.getBudget() == null || !category.getBudget().isAlertEnabled()) {
+                continue;
+            }
+            checked = true;
+            if (recurringDue == null) {
+                recurringDue = recurringDue(userId, today);
+            }
+            String insightId = userId + ":" + BUDGET_FORECAST + ":" + categoryId + ":" + YearMonth.from(today);
+            Insight insight = budgetInsight(insightId, userId, category, state.getSeries().get(categoryId), today,
+                    recurringDue.getOrDefault(categoryId, 0.0));
+            if (insight != null) {
+                insightRepository.save(insight);
+            } else {
+                insightRepository.deleteById(insightId);
+            }
+        }
+        return checked;
+    }
+
+    private Insight budgetInsight(String insightId, String userId, Category category, ForecastSeries series, LocalDate today,
+                                  double recurringDue) {
+        if (series == null) {
+            return null;
+        }
+        Category.CategoryBudget budget = category.getBudget();
+        double threshold = budget.getAlertThreshold() != null ? budget.getAlertThreshold().doubleValue() : 1.0;
+        double monthToDate = series.monthToDate(today);
+        double monthEnd = series.monthEndForecast(today, recurringDue);
+
+        if (budget.getMonthlyLimit() != null && budget.getMonthlyLimit().signum() > 0) {
+            double limit = budget.getMonthlyLimit().doubleValue();
+            if (monthEnd > limit || monthToDate >= threshold * limit) {
+                return budgetInsight(insightId, userId, category, "month", limit, monthToDate, monthEnd, today);
+            }
+        }
+        if (budget.getYearlyLimit() != null && budget.getYearlyLimit().signum() > 0) {
+            double limit = budget.getYearlyLimit().doubleValue();
+            double yearToDate = series.yearToDate(today);
+            double yearEnd = series.yearEndForecast(today, recurringDue);
+            if (yearEnd > limit || yearToDate >= threshold * limit) {
+                return budgetInsight(insightId, userId, category, "year", limit, yearToDate, yearEnd, today);
+            }
+        }
+        return null;
+    }
+
+    private Insight budgetInsight(String insightId, String userId, Category category, String period, double limit,
+                                  double spent, double forecast, LocalDate today) {
+        String description = forecast > limit
+                ? String.format("At your current pace you will spend $%.2f on %s this %s, over your $%.2f budget",
+                        forecast, category.getName(), period, limit)
+                : String.format("You have used %.0f%% of your $%.2f %s budget this %s",
+                        spent / limit * 100, limit, category.getName(), period);
+        return Insight.builder()
+                .id(insightId)
+                .userId(userId)
+                .type(BUDGET_FORECAST)
+                .title(category.getName() + " Budget at Risk")
+                .description(description)
+                .icon("⚠️")
+                .data(Map.of("category", category.getName(),
+                        "budgetPeriod", period,
+                        "budget", round(limit),
+                        "spent", round(spent),
+                        "forecast", round(forecast)))
+                .date(today)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private SpendingForecastDTO.SeriesForecast seriesForecast(String categoryId, Category category, ForecastSeries series,
+                                                              LocalDate today, double recurringDue) {
+        double monthEnd = series.monthEndForecast(today, recurringDue);
+        double yearEnd = series.yearEndForecast(today, recurringDue);
+        SpendingForecastDTO.SeriesForecast.SeriesForecastBuilder forecast = SpendingForecastDTO.SeriesForecast.builder()
+                .categoryId(categoryId)
+                .categoryName(categoryId == null ? null : category != null ? category.getName() : "Uncategorized")
+                .monthToDate(money(series.monthToDate(today)))
+                .monthEndForecast(money(monthEnd))
+                .yearToDate(money(series.yearToDate(today)))
+                .yearEndForecast(money(yearEnd));
+
+        Category.CategoryBudget budget = category != null ? category.getBudget() : null;
+        if (budget != null && budget.getMonthlyLimit() != null) {
+            forecast.monthlyBudget(budget.getMonthlyLimit())
+                    .overMonthlyBudget(monthEnd > budget.getMonthlyLimit().doubleValue());
+        }
+        if (budget != null && budget.getYearlyLimit() != null) {
+            forecast.yearlyBudget(budget.getYearlyLimit())
+                    .overYearlyBudget(yearEnd > budget.getYearlyLimit().doubleValue());
+        }
+        return forecast.build();
+    }
+
+    // Recurring charges expected in the rest of the month, per category and in total
+    private Map<String, Double> recurringDue(String userId, LocalDate today) {
+        Map<String, Double> recurringDue = recurringChargeService.expectedByCategory(userId, today,
+                YearMonth.from(today).atEndOfMonth());
+        recurringDue.put(TOTAL, recurringDue.values().stream().mapToDouble(Double::doubleValue).sum());
+        return recurringDue;
+    }
+
+    private Set<String> affectedCategories(ReceiptChangedEvent event) {
+        Set<String> categoryIds = new LinkedHashSet<>();
+        if (event.getBefore() != null && event.getBefore().getCategoryId() != null) {
+            categoryIds.add(event.getBefore().getCategoryId());
+        }
+        if (event.getAfter() != null && event.getAfter().getCategoryId() != null) {
+            categoryIds.add(event.getAfter().getCategoryId());
+        }
+        return categoryIds;
+    }
+
+    private String seriesKey(String categoryId) {
+        return categoryId != null ? categoryId : UNCATEGORIZED;
+    }
+
+    private BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -0,0 +1,116 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.InsightCubeCell;
+import com.jaiswal.repository.InsightCubeCellRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InsightCubeService {
+
+    private static final int SAVE_BATCH_SIZE = 1000;
+
+    private final InsightCubeCellRepository insightCubeCellRepository;
+
+    /**
+     * Stores the finest cells of a new cube. They are not served until an
+     * insight naming the generation is published.
+     */
+    public void saveCells(String generation, Collection<InsightCubeCell> cells) {
+        List<InsightCubeCell> batch = new ArrayList<>(SAVE_BATCH_SIZE);
+        for (InsightCubeCell cell : cells) {
+            cell.setGeneration(generation);
+            cell.setId(generation + ":" + InsightCubeCell.cellKey(segmentOf(cell), cell.getCategoryKey(), cell.getPeriod()));
+            batch.add(cell);
+            if (batch.size() == SAVE_BATCH_SIZE) {
+                insightCubeCellRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insightCubeCellRepository.saveAll(batch);
+        }
+        log.info("Saved {} insight cube cells for generation {}", cells.size(), generation);
+    }
+
+    public void deleteOtherGenerations(String generation) {
+        insightCubeCellRepository.deleteByGenerationNot(generation);
+    }
+
+    /**
+     * The cell for a segment, category and month. Dimensions left null are
+     * rolled up by merging the finest cells that match the others; a fully
+     * specified segment is a single key lookup. Results are cached per
+     * generation, so a newly published cube never mixes with an old one.
+     */
+    @Cacheable(value = "insightCube", sync = true,
+            key = "#generation + ':' + T(com.jaiswal.service.InsightCubeService).rollupKey(#segment, #categoryKey, #period)")
+    public InsightCubeCell rollUp(String generation, CommunityInsight.DemographicFilters segment,
+                                  String categoryKey, String period) {
+        InsightCubeCell rollup = InsightCubeCell.builder()
+                .ageGroup(normalize(segment.getAgeGroup()))
+                .region(normalize(segment.getRegion()))
+                .incomeRange(normalize(segment.getIncomeRange()))
+                .userSegment(normalize(segment.getUserSegment()))
+                .categoryKey(categoryKey)
+                .period(period)
+                .build();
+
+        if (isFullySpecified(segment)) {
+            insightCubeCellRepository.findById(generation + ":" + InsightCubeCell.cellKey(segment, categoryKey, period))
+                    .ifPresent(rollup::merge);
+            return rollup;
+        }
+
+        for (InsightCubeCell cell : insightCubeCellRepository.findByGenerationAndPeriodAndCategoryKey(generation, period, categoryKey)) {
+            if (matches(rollup.getAgeGroup(), cell.getAgeGroup())
+                    && matches(rollup.getRegion(), cell.getRegion())
+                    && matches(rollup.getIncomeRange(), cell.getIncomeRange())
+                    && matches(rollup.getUserSegment(), cell.getUserSegment())) {
+                rollup.merge(cell);
+            }
+        }
+        return rollup;
+    }
+
+    // Like InsightCubeCell.cellKey, with "*" for rolled-up dimensions
+    public static String rollupKey(CommunityInsight.DemographicFilters segment, String categoryKey, String period) {
+        return String.join("|", rollupDimension(segment.getAgeGroup()), rollupDimension(segment.getRegion()),
+                rollupDimension(segment.getIncomeRange()), rollupDimension(segment.getUserSegment()), categoryKey, period);
+    }
+
+    private static String rollupDimension(String value) {
+        return value == null ? "*" : InsightCubeCell.dimension(value);
+    }
+
+    private static String normalize(String value) {
+        return value == null ? null : InsightCubeCell.dimension(value);
+    }
+
+    private static boolean matches(String filter, String value) {
+        return filter == null || filter.equals(value);
+    }
+
+    private static boolean isFullySpecified(CommunityInsight.DemographicFilters segment) {
+        return segment.getAgeGroup() != null && segment.getRegion() != null
+                && segment.getIncomeRange() != null && segment.getUserSegment() != null;
+    }
+
+    private static CommunityInsight.DemographicFilters segmentOf(InsightCubeCell cell) {
+        return CommunityInsight.DemographicFilters.builder()
+                .ageGroup(cell.getAgeGroup())
+                .region(cell.getRegion())
+                .incomeRange(cell.getIncomeRange())
+                .userSegment(cell.getUserSegment())
+                .build();
+    }
+}
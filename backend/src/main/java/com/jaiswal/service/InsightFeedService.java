@@ -0,0 +1,128 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Insight;
+import com.jaiswal.model.dto.AnalyticsDTO;
+import com.jaiswal.repository.InsightRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the summary insights of each user's current month materialized in the
+ * insights collection, next to the insights stored as receipts are written.
+ * <p>
+ * A receipt change only marks the user dirty: a Redis sorted set scored by the
+ * time of the user's latest change. A scheduled sweep regenerates the feeds of
+ * users whose latest change is older than the debounce period, so a burst of
+ * uploads costs one regeneration once it settles. Removing the user from the
+ * set claims them, so with several instances each feed is regenerated once,
+ * and a change arriving during regeneration marks the user dirty again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InsightFeedService {
+
+    private static final String DIRTY_USERS_KEY = "spendora:insight-feed:dirty";
+
+    private final AnalyticsService analyticsService;
+    private final InsightRepository insightRepository;
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.insights.feed.debounce:PT10S}")
+    private Duration debounce;
+
+    @Value("${app.insights.feed.batch-size:100}")
+    private int batchSize;
+
+    @EventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        markDirty(event.getUserId());
+    }
+
+    public void markDirty(String userId) {
+        try {
+            redisTemplate.opsForZSet().add(DIRTY_USERS_KEY, userId, System.currentTimeMillis());
+        } catch (Exception e) {
+            // The feed catches up on the user's next change
+            log.warn("Could not mark insight feed dirty for user: {}", userId, e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.insights.feed.poll-interval:PT5S}")
+    public void refreshDirtyFeeds() {
+        try {
+            long settledBefore = System.currentTimeMillis() - debounce.toMillis();
+            Set<String> userIds = redisTemplate.opsForZSet().rangeByScore(DIRTY_USERS_KEY, 0, settledBefore, 0, batchSize);
+            if (userIds == null) {
+                return;
+            }
+            for (String userId : userIds) {
+                Long claimed = redisTemplate.opsForZSet().remove(DIRTY_USERS_KEY, userId);
+                if (claimed == null || claimed == 0) {
+                    continue;
+                }
+                try {
+                    regenerate(userId);
+                } catch (Exception e) {
+                    log.error("Insight feed regeneration failed for user: {}", userId, e);
+                    markDirty(userId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Insight feed refresh failed", e);
+        }
+    }
+
+    /**
+     * Replaces the user's summary insights for the current month. Each type
+     * has one entry per month, so insights that no longer apply are removed.
+     * The analytics cache is not affected: it computes summary insights for
+     * its own date range.
+     */
+    public void regenerate(String userId) {
+        LocalDate today = LocalDate.now();
+        YearMonth period = YearMonth.from(today);
+        List<AnalyticsDTO.InsightData> summary = analyticsService.generateSummaryInsights(userId, period.atDay(1), today);
+
+        List<Insight> feed = summary.stream()
+                .map(insight -> Insight.builder()
+                        .id(feedId(userId, insight.getType(), period))
+                        .userId(userId)
+                        .type(insight.getType())
+                        .title(insight.getTitle())
+                        .description(insight.getDescription())
+                        .icon(insight.getIcon())
+                        .data(insight.getData())
+                        .date(today)
+                        .createdAt(LocalDateTime.now())
+                        .build())
+                .collect(Collectors.toList());
+        Set<String> current = feed.stream().map(Insight::getType).collect(Collectors.toSet());
+        List<String> stale = AnalyticsService.SUMMARY_INSIGHT_TYPES.stream()
+                .filter(type -> !current.contains(type))
+                .map(type -> feedId(userId, type, period))
+                .collect(Collectors.toList());
+
+        insightRepository.saveAll(feed);
+        insightRepository.deleteAllById(stale);
+        log.debug("Regenerated insight feed for user: {} ({} insights)", userId, feed.size());
+    }
+
+    private String feedId(String userId, String type, YearMonth period) {
+        return userId + ":" + type + ":" + period;
+    }
+}
@@ -0,0 +1,307 @@
+package com.jaiswal.service;
+
+import com.jaiswal.exception.ValidationException;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.DailySpendingRollup;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.dto.PivotDTO;
+import com.jaiswal.model.dto.PivotDTO.Dimension;
+import com.jaiswal.model.dto.PivotDTO.Measure;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.util.MerchantNames;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Pivot analytics: spend grouped by any combination of {@link Dimension}s
+ * with any {@link Measure}s over a date range.
+ * <p>
+ * A small planner picks the source. Daily rollups answer whenever every
+ * dimension can be derived from a day and a category and every measure from
+ * a total and a count; reading them costs at most one document per day and
+ * category, whatever the number of receipts. Anything else (merchants,
+ * payment methods, line items, percentiles) runs a generated aggregation over
+ * the user's receipts in the range, grouped by the raw fields, which is then
+ * folded into the requested dimensions here. Each response carries the plan
+ * it was answered with and its latency.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PivotService {
+
+    public static final String DAILY_ROLLUPS = "DAILY_ROLLUPS";
+    public static final String RECEIPTS = "RECEIPTS";
+
+    private static final Set<Dimension> ROLLUP_DIMENSIONS = EnumSet.of(Dimension.CATEGORY, Dimension.WEEKDAY,
+            Dimension.WEEK, Dimension.MONTH);
+    private static final Set<Measure> ROLLUP_MEASURES = EnumSet.of(Measure.SUM, Measure.COUNT, Measure.AVERAGE);
+    private static final Set<Dimension> TIME_DIMENSIONS = EnumSet.of(Dimension.WEEKDAY, Dimension.WEEK, Dimension.MONTH);
+    private static final Map<Measure, Double> PERCENTILES = Map.of(
+            Measure.MEDIAN, 0.5, Measure.P75, 0.75, Measure.P90, 0.9, Measure.P95, 0.95);
+
+    private final DailyRollupService dailyRollupService;
+    private final CategoryRepository categoryRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${app.analytics.pivot.max-rows:1000}")
+    private int maxRows;
+
+    @Value("${app.analytics.pivot.max-range-days:1830}")
+    private long maxRangeDays;
+
+    public PivotDTO pivot(String userId, List<Dimension> dimensions, List<Measure> measures,
+                          LocalDate startDate, LocalDate endDate, int limit) {
+        if (dimensions.isEmpty() || measures.isEmpty()) {
+            throw new ValidationException("At least one dimension and one measure are required");
+        }
+        if (endDate.isBefore(startDate) || ChronoUnit.DAYS.between(startDate, endDate) >= maxRangeDays) {
+            throw new ValidationException("Date range must be between 1 and " + maxRangeDays + " days");
+        }
+        List<Dimension> groupBy = dimensions.stream().distinct().collect(Collectors.toList());
+        List<Measure> measure = measures.stream().distinct().collect(Collectors.toList());
+        long start = System.nanoTime();
+
+        PivotDTO.Plan plan = plan(groupBy, measure, dailyRollupService.isReady());
+        Map<String, String> categoryNames = categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc(userId).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName, (first, second) -> first));
+        Map<List<String>, Group> groups = DAILY_ROLLUPS.equals(plan.getSource())
+                ? fromRollups(userId, groupBy, startDate, endDate, categoryNames, plan)
+                : fromReceipts(userId, groupBy, measure, startDate, endDate, categoryNames, plan);
+
+        List<PivotDTO.Row> rows = toRows(groups, groupBy, measure);
+        int rowLimit = Math.max(1, Math.min(limit, maxRows));
+        plan.setLatencyMs((System.nanoTime() - start) / 1_000_000);
+        log.debug("Pivot {} x {} for user {} answered from {} in {} ms", groupBy, measure, userId, plan.getSource(), plan.getLatencyMs());
+
+        return PivotDTO.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .dimensions(groupBy)
+                .measures(measure)
+                .rows(rows.size() > rowLimit ? new ArrayList<>(rows.subList(0, rowLimit)) : rows)
+                .totalRows(rows.size())
+                .truncated(rows.size() > rowLimit)
+                .plan(plan)
+                .build();
+    }
+
+    /**
+     * The finest pre-aggregation that can answer the query, or the receipts.
+     */
+    static PivotDTO.Plan plan(Collection<Dimension> dimensions, Collection<Measure> measures, boolean rollupsReady) {
+        String reason;
+        if (!rollupsReady) {
+            reason = "Daily rollups are still being built";
+        } else if (!ROLLUP_DIMENSIONS.containsAll(dimensions)) {
+            reason = "Grouping by " + dimensions.stream().filter(dimension -> !ROLLUP_DIMENSIONS.contains(dimension))
+                    .map(Enum::name).collect(Collectors.joining(", ")) + " needs receipt fields that daily rollups do not keep";
+        } else if (!ROLLUP_MEASURES.containsAll(measures)) {
+            reason = "Percentiles need individual amounts, which daily rollups do not keep";
+        } else {
+            return PivotDTO.Plan.builder()
+                    .source(DAILY_ROLLUPS)
+                    .reason("Every dimension derives from day and category, every measure from totals and counts")
+                    .build();
+        }
+        return PivotDTO.Plan.builder().source(RECEIPTS).reason(reason).build();
+    }
+
+    private Map<List<String>, Group> fromRollups(String userId, List<Dimension> dimensions, LocalDate startDate,
+                                                 LocalDate endDate, Map<String, String> categoryNames, PivotDTO.Plan plan) {
+        List<DailySpendingRollup> rollups = dailyRollupService.findRollups(userId, startDate, endDate);
+        Map<List<String>, Group> groups = new HashMap<>();
+        for (DailySpendingRollup rollup : rollups) {
+            Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+            values.put(Dimension.CATEGORY, categoryName(rollup.getCategoryId(), categoryNames));
+            putTimeValues(values, rollup.getDate());
+            groups.computeIfAbsent(key(dimensions, values), key -> new Group())
+                    .add(rollup.getTotalAmount().doubleValue(), rollup.getReceiptCount(), null);
+        }
+        plan.setDocumentsRead((long) rollups.size());
+        return groups;
+    }
+
+    private Map<List<String>, Group> fromReceipts(String userId, List<Dimension> dimensions, List<Measure> measures,
+                                                  LocalDate startDate, LocalDate endDate, Map<String, String> categoryNames,
+                                                  PivotDTO.Plan plan) {
+        boolean byItem = dimensions.contains(Dimension.ITEM_CATEGORY);
+        boolean byDay = dimensions.stream().anyMatch(TIME_DIMENSIONS::contains);
+        boolean withAmounts = measures.stream().anyMatch(PERCENTILES::containsKey);
+        List<Document> pipeline = receiptPipeline(userId, dimensions, startDate, endDate, byItem, byDay, withAmounts);
+
+        Map<List<String>, Group> groups = new HashMap<>();
+        long documents = 0;
+        for (Document group : mongoTemplate.getCollection(mongoTemplate.getCollectionName(Receipt.class))
+                .aggregate(pipeline).allowDiskUse(true)) {
+            documents++;
+            Document id = group.get("_id", Document.class);
+            Map<Dimension, String> values = new EnumMap<>(Dimension.class);
+            values.put(Dimension.CATEGORY, categoryName(id.getString("categoryId"), categoryNames));
+            String merchant = MerchantNames.canonicalize(id.getString("merchant"));
+            values.put(Dimension.MERCHANT, merchant != null ? merchant : "unknown");
+            String method = id.getString("paymentMethod");
+            values.put(Dimension.PAYMENT_METHOD, method != null ? method.toUpperCase(Locale.ROOT) : "UNKNOWN");
+            values.put(Dimension.ITEM_CATEGORY, id.getString("itemCategory"));
+            if (byDay) {
+                putTimeValues(values, LocalDate.parse(id.getString("day")));
+            }
+
+            List<Double> amounts = withAmounts ? group.getList("amounts", Double.class) : null;
+            groups.computeIfAbsent(key(dimensions, values), key -> new Group())
+                    .add(((Number) group.get("sum")).doubleValue(), ((Number) group.get("count")).longValue(), amounts);
+        }
+        plan.setDocumentsRead(documents);
+        plan.setPipeline(pipeline.stream().map(Document::toJson).collect(Collectors.toList()));
+        return groups;
+    }
+
+    /**
+     * Matches the user's receipts in the range on the (userId, date) index and
+     * groups them by the raw fields behind the requested dimensions; merchant
+     * names are canonicalized, and days folded into weeks and months, after.
+     */
+    private List<Document> receiptPipeline(String userId, List<Dimension> dimensions, LocalDate startDate, LocalDate endDate,
+                                           boolean byItem, boolean byDay, boolean withAmounts) {
+        List<Document> pipeline = new ArrayList<>();
+        pipeline.add(new Document("$match", new Document("userId", userId)
+                .append("date", new Document("$gte", mongoTemplate.getConverter().convertToMongoType(startDate))
+                        .append("$lte", mongoTemplate.getConverter().convertToMongoType(endDate)))
+                .append("totalAmount", new Document("$ne", null))));
+
+        Object amount = new Document("$toDouble", "$totalAmount");
+        Document id = new Document();
+        if (byItem) {
+            // Receipts without line items count whole, as "unitemized"
+            pipeline.add(new Document("$unwind", new Document("path", "$items").append("preserveNullAndEmptyArrays", true)));
+            Document isItem = new Document("$eq", List.of(new Document("$type", "$items"), "object"));
+            amount = new Document("$cond", List.of(isItem,
+                    new Document("$toDouble", new Document("$ifNull", List.of("$items.totalPrice", 0))), amount));
+            id.append("itemCategory", new Document("$cond", List.of(isItem,
+                    new Document("$ifNull", List.of("$items.category", "uncategorized")), "unitemized")));
+        }
+        if (dimensions.contains(Dimension.CATEGORY)) {
+            id.append("categoryId", "$categoryId");
+        }
+        if (dimensions.contains(Dimension.MERCHANT)) {
+            id.append("merchant", "$merchantName");
+        }
+        if (dimensions.contains(Dimension.PAYMENT_METHOD)) {
+            id.append("paymentMethod", "$paymentInfo.method");
+        }
+        if (byDay) {
+            // Dates are stored as the start of the day in this JVM's zone
+            id.append("day", new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                    .append("date", "$date")
+                    .append("timezone", ZoneId.systemDefault().getId())));
+        }
+
+        Document group = new Document("_id", id)
+                .append("sum", new Document("$sum", amount))
+                .append("count", new Document("$sum", 1));
+        if (withAmounts) {
+            group.append("amounts", new Document("$push", amount));
+        }
+        pipeline.add(new Document("$group", group));
+        return pipeline;
+    }
+
+    private List<PivotDTO.Row> toRows(Map<List<String>, Group> groups, List<Dimension> dimensions, List<Measure> measures) {
+        Measure order = measures.contains(Measure.SUM) || !measures.contains(Measure.COUNT) ? Measure.SUM : Measure.COUNT;
+        return groups.entrySet().stream()
+                .sorted(Comparator.comparingDouble((Map.Entry<List<String>, Group> entry) -> entry.getValue().value(order))
+                        .reversed()
+                        .thenComparing(entry -> String.join("|", entry.getKey())))
+                .map(entry -> {
+                    Map<String, String> keys = new LinkedHashMap<>();
+                    for (int i = 0; i < dimensions.size(); i++) {
+                        keys.put(dimensions.get(i).name(), entry.getKey().get(i));
+                    }
+                    Map<String, Double> values = new LinkedHashMap<>();
+                    measures.forEach(measure -> values.put(measure.name(), round(entry.getValue().value(measure))));
+                    return PivotDTO.Row.builder().keys(keys).values(values).build();
+                })
+                .collect(Collectors.toList());
+    }
+
+    private void putTimeValues(Map<Dimension, String> values, LocalDate date) {
+        values.put(Dimension.WEEKDAY, date.getDayOfWeek().name());
+        values.put(Dimension.WEEK, String.format("%d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR),
+                date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR)));
+        values.put(Dimension.MONTH, date.getYear() + "-" + String.format("%02d", date.getMonthValue()));
+    }
+
+    private List<String> key(List<Dimension> dimensions, Map<Dimension, String> values) {
+        return dimensions.stream().map(values::get).collect(Collectors.toList());
+    }
+
+    private String categoryName(String categoryId, Map<String, String> categoryNames) {
+        return categoryId == null ? "Uncategorized" : categoryNames.getOrDefault(categoryId, "Unknown");
+    }
+
+    private double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    // One pivot cell; amounts are kept only when a percentile was requested
+    private static class Group {
+        private double sum;
+        private long count;
+        private List<Double> amounts;
+
+        private void add(double amount, long receipts, List<Double> groupAmounts) {
+            sum += amount;
+            count += receipts;
+            if (groupAmounts != null) {
+                if (amounts == null) {
+                    amounts = new ArrayList<>();
+                }
+                amounts.addAll(groupAmounts);
+            }
+        }
+
+        private double value(Measure measure) {
+            switch (measure) {
+                case SUM:
+                    return sum;
+                case COUNT:
+                    return count;
+                case AVERAGE:
+                    return count > 0 ? sum / count : 0;
+                default:
+                    return percentile(PERCENTILES.get(measure));
+            }
+        }
+
+        // Nearest-rank percentile
+        private double percentile(double q) {
+            if (amounts == null || amounts.isEmpty()) {
+                return 0;
+            }
+            amounts.sort(null);
+            int rank = (int) Math.ceil(q * amounts.size());
+            return amounts.get(Math.max(0, rank - 1));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.jaiswal.service;
 
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.event.ReceiptChangedEvent;
 import com.jaiswal.exception.ResourceNotFoundException;
 import com.jaiswal.exception.ValidationException;
 import com.jaiswal.model.document.Receipt;
@@ -9,8 +12,8 @@ import com.jaiswal.util.FileUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
@@ -37,6 +40,8 @@ public class ReceiptService {
     private final ReceiptRepository receiptRepository;
     private final OCRService ocrService;
     private final FileUtils fileUtils;
+    private final CacheVersionService cacheVersions;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Value("${app.upload.receipt-images}")
     private String receiptImageUploadPath;
@@ -47,13 +52,14 @@ public class ReceiptService {
     @Value("${app.receipt.max-size:10485760}") // 10MB
     private long maxFileSize;
 
-    @Cacheable(value = "receipts", key = "#userId + '_' + #pageable.pageNumber + '_' + #pageable.pageSize")
+    @Cacheable(value = "receipts",
+            key = "@cacheVersions.userKey('receipts', #userId) + '_' + #pageable.pageNumber + '_' + #pageable.pageSize")
     public Page<ReceiptDTO> getReceiptsByUser(String userId, Pageable pageable) {
         Page<Receipt> receipts = receiptRepository.findByUserIdOrderByDateDesc(userId, pageable);
         return receipts.map(this::convertToDTO);
     }
 
-    @Cacheable(value = "receipts", key = "#receiptId")
+    @Cacheable(value = "receipts", key = "@cacheVersions.userKey('receipts', #userId) + '_' + #receiptId")
     public ReceiptDTO getReceiptById(String receiptId, String userId) {
         Receipt receipt = receiptRepository.findById(receiptId)
                 .orElseThrow(() -> new ResourceNotFoundException("Receipt not found with id: " + receiptId));
@@ -94,7 +100,8 @@ public class ReceiptService {
     }
 
     // Added missing searchReceipts method
-    @Cacheable(value = "searchResults", key = "#userId + '_' + #query + '_' + #pageable.pageNumber")
+    @Cacheable(value = "searchResults",
+            key = "@cacheVersions.userKey('searchResults', #userId) + '_' + #query + '_' + #pageable.pageNumber")
     public Page<ReceiptDTO> searchReceipts(String userId, String query, Pageable pageable) {
         List<Receipt> searchResults = receiptRepository.findByUserIdAndMerchantNameContainingIgnoreCase(userId, query);
 
@@ -131,6 +138,7 @@ public class ReceiptService {
                         .build();
 
                 Receipt savedReceipt = receiptRepository.save(receipt);
+                cacheVersions.bump(userId, CacheDataType.RECEIPTS);
                 log.info("Created receipt record for processing: {}", savedReceipt.getId());
 
                 // Process OCR asynchronously
@@ -146,7 +154,6 @@ public class ReceiptService {
     }
 
     @Transactional
-    @CacheEvict(value = "receipts", allEntries = true)
     public ReceiptDTO updateReceipt(String receiptId, String userId, ReceiptDTO receiptDTO) {
         Receipt existingReceipt = receiptRepository.findById(receiptId)
                 .orElseThrow(() -> new ResourceNotFoundException("Receipt not found with id: " + receiptId));
@@ -155,6 +162,9 @@ public class ReceiptService {
             throw new ValidationException("Receipt does not belong to user");
         }
 
+        LocalDate previousDate = existingReceipt.getDate();
+        ReceiptChangedEvent.Snapshot before = ReceiptChangedEvent.Snapshot.of(existingReceipt);
+
         // Update fields
         if (receiptDTO.getMerchantName() != null) {
             existingReceipt.setMerchantName(receiptDTO.getMerchantName());
@@ -182,13 +192,15 @@ public class ReceiptService {
 
         existingReceipt.setUpdatedAt(LocalDateTime.now());
         Receipt updatedReceipt = receiptRepository.save(existingReceipt);
+        cacheVersions.bump(userId, CacheDataType.RECEIPTS);
+        cacheVersions.bumpMonths(userId, previousDate, updatedReceipt.getDate());
+        publishChange(new ReceiptChangedEvent(userId, receiptId, before, ReceiptChangedEvent.Snapshot.of(updatedReceipt)));
 
         log.info("Updated receipt: {}", updatedReceipt.getId());
         return convertToDTO(updatedReceipt);
     }
 
     @Transactional
-    @CacheEvict(value = "receipts", allEntries = true)
     public void deleteReceipt(String receiptId, String userId) {
         Receipt receipt = receiptRepository.findById(receiptId)
                 .orElseThrow(() -> new ResourceNotFoundException("Receipt not found with id: " + receiptId));
@@ -198,10 +210,22 @@ public class ReceiptService {
         }
 
         receiptRepository.delete(receipt);
+        cacheVersions.bump(userId, CacheDataType.RECEIPTS);
+        cacheVersions.bumpMonths(userId, receipt.getDate());
+        publishChange(new ReceiptChangedEvent(userId, receiptId, ReceiptChangedEvent.Snapshot.of(receipt), null));
         log.info("Deleted receipt: {}", receiptId);
     }
 
     // Private helper methods
+    // The receipt is already saved; a listener failing must not fail (or, after OCR, mark FAILED) the receipt itself
+    private void publishChange(ReceiptChangedEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+        } catch (Exception e) {
+            log.error("Failed to publish change of receipt: {}", event.getReceiptId(), e);
+        }
+    }
+
     private void validateReceiptFile(MultipartFile file) {
         if (file.isEmpty()) {
             throw new ValidationException("File cannot be empty");
@@ -257,6 +281,10 @@ public class ReceiptService {
                 receipt.setUpdatedAt(LocalDateTime.now());
 
                 receiptRepository.save(receipt);
+                cacheVersions.bump(receipt.getUserId(), CacheDataType.RECEIPTS);
+                cacheVersions.bumpMonths(receipt.getUserId(), receipt.getDate());
+                publishChange(new ReceiptChangedEvent(receipt.getUserId(), receipt.getId(), null,
+                        ReceiptChangedEvent.Snapshot.of(receipt)));
                 log.info("OCR processing completed for receipt: {}", receipt.getId());
 
             } catch (Exception e) {
@@ -264,6 +292,7 @@ public class ReceiptService {
                 receipt.setStatus(Receipt.ReceiptStatus.FAILED);
                 receipt.setUpdatedAt(LocalDateTime.now());
                 receiptRepository.save(receipt);
+                cacheVersions.bump(receipt.getUserId(), CacheDataType.RECEIPTS);
             }
         });
     }
@@ -0,0 +1,172 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.RecurringChargeState;
+import com.jaiswal.model.document.RecurringChargeState.Frequency;
+import com.jaiswal.model.document.RecurringChargeState.RecurringCharge;
+import com.jaiswal.util.MerchantNames;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Incremental recurring-charge detection. Receipts are bucketed by canonical
+ * merchant and amount (on a 10% logarithmic scale, so small price changes and
+ * variable bills stay together), and each bucket keeps exponentially weighted
+ * statistics of the days between its receipts. A bucket whose average
+ * interval is close to a week, a month or a year, with little spread, is a
+ * recurring charge; its confidence grows with the number of intervals seen.
+ * Each receipt touches one bucket, so an update is constant time and no pair
+ * of receipts is ever compared.
+ * <p>
+ * Receipts must arrive in date order per bucket: a receipt dated before the
+ * bucket's latest one only counts towards its amount.
+ */
+public class RecurringChargeDetector {
+
+    // Price changes within about 10% keep the same bucket
+    private static final double AMOUNT_BUCKET_BASE = Math.log(1.1);
+    // Receipts this close to the previous one are the same charge (duplicates, re-uploads)
+    private static final long MIN_INTERVAL_DAYS = 2;
+    // A gap this many periods long counts as missed charges rather than a new interval
+    private static final int MAX_SKIPPED_PERIODS = 3;
+
+    private final double alpha;
+    private final double minConfidence;
+    private final int maxCharges;
+
+    public RecurringChargeDetector(double alpha, double minConfidence, int maxCharges) {
+        this.alpha = alpha;
+        this.minConfidence = minConfidence;
+        this.maxCharges = maxCharges;
+    }
+
+    public void observe(RecurringChargeState state, String categoryId, LocalDate date, double amount, String merchantName) {
+        String merchant = MerchantNames.canonicalize(merchantName);
+        if (merchant == null || date == null || amount <= 0) {
+            return;
+        }
+        Map<String, RecurringCharge> charges = state.getCharges();
+        String key = bucketKey(merchant, amount);
+        RecurringCharge charge = charges.computeIfAbsent(key, k -> RecurringCharge.builder()
+                .merchant(merchant)
+                .firstDate(date)
+                .build());
+
+        if (charge.getLastDate() != null) {
+            long days = ChronoUnit.DAYS.between(charge.getLastDate(), date);
+            if (days < 0) {
+                charge.getAmount().add(amount, alpha);
+                return;
+            }
+            if (days < MIN_INTERVAL_DAYS) {
+                return;
+            }
+            charge.getIntervalDays().add(interval(charge.getFrequency(), days), alpha);
+        }
+        charge.getAmount().add(amount, alpha);
+        charge.setOccurrences(charge.getOccurrences() + 1);
+        charge.setLastDate(date);
+        charge.setMerchantName(merchantName);
+        charge.setCategoryId(categoryId);
+        classify(charge);
+
+        if (charges.size() > maxCharges) {
+            charges.entrySet().stream()
+                    .filter(entry -> !entry.getKey().equals(key))
+                    .min(Comparator.comparing((Map.Entry<String, RecurringCharge> entry) -> entry.getValue().getLastDate()))
+                    .ifPresent(entry -> charges.remove(entry.getKey()));
+        }
+    }
+
+    /**
+     * Whether the charge is recurring with enough confidence and has not
+     * lapsed: its next expected date, plus the frequency's tolerance, is
+     * not before {@code today}.
+     */
+    public boolean isActive(RecurringCharge charge, LocalDate today) {
+        return isRecurring(charge)
+                && !today.isAfter(charge.getNextExpectedDate().plusDays(Math.round(charge.getFrequency().getToleranceDays())));
+    }
+
+    public boolean isRecurring(RecurringCharge charge) {
+        return charge.getFrequency() != null && charge.getConfidence() >= minConfidence;
+    }
+
+    /**
+     * Expected spend from an active charge after {@code today} up to and
+     * including {@code until}. A charge that is due but has not come in yet
+     * counts as due now.
+     */
+    public double expectedBetween(RecurringCharge charge, LocalDate today, LocalDate until) {
+        if (!isActive(charge, today)) {
+            return 0;
+        }
+        double expected = 0;
+        LocalDate next = charge.getNextExpectedDate();
+        if (!next.isAfter(today)) {
+            expected += charge.getAmount().getMean();
+            next = charge.getFrequency().next(next);
+        }
+        for (; !next.isAfter(until); next = charge.getFrequency().next(next)) {
+            expected += charge.getAmount().getMean();
+        }
+        return expected;
+    }
+
+    // Average monthly cost of the charge at its frequency
+    public double monthlyCost(RecurringCharge charge) {
+        return charge.getFrequency() == null ? 0
+                : charge.getAmount().getMean() * Frequency.MONTHLY.getDays() / charge.getFrequency().getDays();
+    }
+
+    private void classify(RecurringCharge charge) {
+        Frequency best = null;
+        double bestConfidence = 0;
+        for (Frequency frequency : Frequency.values()) {
+            double confidence = confidence(charge, frequency);
+            if (confidence > bestConfidence) {
+                best = frequency;
+                bestConfidence = confidence;
+            }
+        }
+        charge.setFrequency(best);
+        charge.setConfidence(bestConfidence);
+        charge.setNextExpectedDate(best != null ? best.next(charge.getLastDate()) : null);
+    }
+
+    /**
+     * Zero unless the mean interval is within the frequency's tolerance and
+     * there are enough intervals; otherwise the average of how close the mean
+     * is and how small the spread is (each relative to the tolerance), scaled
+     * down while there are few intervals.
+     */
+    private double confidence(RecurringCharge charge, Frequency frequency) {
+        long intervals = charge.getIntervalDays().getCount();
+        double offset = Math.abs(charge.getIntervalDays().getMean() - frequency.getDays());
+        if (intervals < frequency.getMinIntervals() || offset > frequency.getToleranceDays()) {
+            return 0;
+        }
+        double closeness = 1 - offset / frequency.getToleranceDays();
+        double consistency = Math.max(0, 1 - charge.getIntervalDays().getStandardDeviation() / frequency.getToleranceDays());
+        double support = intervals / (intervals + 1.0);
+        return support * (closeness + consistency) / 2;
+    }
+
+    // A gap of a whole number of periods means charges were missed (or not uploaded), not that the period changed
+    private double interval(Frequency frequency, long days) {
+        if (frequency != null) {
+            for (int periods = 2; periods <= MAX_SKIPPED_PERIODS; periods++) {
+                if (Math.abs(days - periods * frequency.getDays()) <= frequency.getToleranceDays()) {
+                    return (double) days / periods;
+                }
+            }
+        }
+        return days;
+    }
+
+    private static String bucketKey(String merchant, double amount) {
+        return merchant + "|" + Math.round(Math.log(amount) / AMOUNT_BUCKET_BASE);
+    }
+}
@@ -0,0 +1,201 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangeListener;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.RecurringChargeState;
+import com.jaiswal.model.dto.RecurringChargeDTO;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.RecurringChargeStateRepository;
+import com.jaiswal.util.MerchantNames;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps each user's {@link RecurringChargeState} current from receipt changes
+ * (see {@link RecurringChargeDetector}) and serves the detected charges and
+ * the spend they are expected to add, which the forecast builds on. A user's
+ * state is built from their receipts the first time it is needed.
+ * <p>
+ * New receipts are observed once. The interval statistics cannot be revised,
+ * so a deletion, or an edit that changes the date, merchant or amount,
+ * rebuilds the user's state from their receipts as they are after the change.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RecurringChargeService implements ReceiptChangeListener {
+
+    private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+    private final RecurringChargeStateRepository recurringChargeStateRepository;
+    private final ReceiptRepository receiptRepository;
+    private final CategoryRepository categoryRepository;
+
+    // Weight of the newest interval and amount in a charge's statistics
+    @Value("${app.recurring.alpha:0.3}")
+    private double alpha;
+
+    @Value("${app.recurring.min-confidence:0.4}")
+    private double minConfidence;
+
+    @Value("${app.recurring.max-charges:500}")
+    private int maxCharges;
+
+    // Receipts a new user's state is built from, enough for two annual charges
+    @Value("${app.recurring.history-months:24}")
+    private int historyMonths;
+
+    @Override
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                apply(event);
+                return;
+            } catch (OptimisticLockingFailureException | DuplicateKeyException e) {
+                // Another receipt of the same user updated the state first; redo against the new one
+                if (attempt == MAX_UPDATE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void rebuild(String userId) {
+        buildState(userId, recurringChargeStateRepository.findById(userId).orElse(null));
+    }
+
+    /**
+     * Detected recurring charges, active ones first in order of their next
+     * expected date, then lapsed ones most recent first.
+     */
+    public List<RecurringChargeDTO> getRecurringCharges(String userId) {
+        LocalDate today = LocalDate.now();
+        RecurringChargeDetector detector = detector();
+        Map<String, String> categoryNames = categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc(userId).stream()
+                .collect(Collectors.toMap(Category::getId, Category::getName, (first, second) -> first));
+
+        return getState(userId).getCharges().values().stream()
+                .filter(detector::isRecurring)
+                .map(charge -> RecurringChargeDTO.builder()
+                        .merchantName(charge.getMerchantName())
+                        .categoryId(charge.getCategoryId())
+                        .categoryName(charge.getCategoryId() != null ? categoryNames.get(charge.getCategoryId()) : null)
+                        .frequency(charge.getFrequency().name())
+                        .confidence(Math.round(charge.getConfidence() * 100) / 100.0)
+                        .averageAmount(money(charge.getAmount().getMean()))
+                        .monthlyCost(money(detector.monthlyCost(charge)))
+                        .occurrences(charge.getOccurrences())
+                        .firstChargeDate(charge.getFirstDate())
+                        .lastChargeDate(charge.getLastDate())
+                        .nextExpectedDate(charge.getNextExpectedDate())
+                        .active(detector.isActive(charge, today))
+                        .build())
+                .sorted(Comparator.comparing((RecurringChargeDTO charge) -> !charge.getActive())
+                        .thenComparing(charge -> charge.getActive() ? charge.getNextExpectedDate().toEpochDay()
+                                : -charge.getLastChargeDate().toEpochDay()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Spend the user's active recurring charges are expected to add after
+     * {@code today} up to and including {@code until}, keyed by category id
+     * ({@link ForecastService#UNCATEGORIZED} for none).
+     */
+    public Map<String, Double> expectedByCategory(String userId, LocalDate today, LocalDate until) {
+        RecurringChargeDetector detector = detector();
+        Map<String, Double> expected = new HashMap<>();
+        getState(userId).getCharges().values().forEach(charge -> {
+            double amount = detector.expectedBetween(charge, today, until);
+            if (amount > 0) {
+                String categoryId = charge.getCategoryId() != null ? charge.getCategoryId() : ForecastService.UNCATEGORIZED;
+                expected.merge(categoryId, amount, Double::sum);
+            }
+        });
+        return expected;
+    }
+
+    private RecurringChargeState getState(String userId) {
+        return recurringChargeStateRepository.findById(userId).orElseGet(() -> {
+            try {
+                return buildState(userId, null);
+            } catch (DuplicateKeyException e) {
+                // A concurrent read or receipt change stored the user's first state before this one
+                return recurringChargeStateRepository.findById(userId).orElseThrow(() -> e);
+            }
+        });
+    }
+
+    private void apply(ReceiptChangedEvent event) {
+        ReceiptChangedEvent.Snapshot before = event.getBefore();
+        ReceiptChangedEvent.Snapshot after = event.getAfter();
+        if (before != null && after != null && sameCharge(before, after)) {
+            return;
+        }
+
+        RecurringChargeState state = recurringChargeStateRepository.findById(event.getUserId()).orElse(null);
+        if (state == null || before != null) {
+            // Built from the receipts as they are now, which already includes this change
+            buildState(event.getUserId(), state);
+            return;
+        }
+        detector().observe(state, after.getCategoryId(), after.getDate(), after.getTotalAmount().doubleValue(),
+                after.getMerchantName());
+        state.setUpdatedAt(LocalDateTime.now());
+        recurringChargeStateRepository.save(state);
+    }
+
+    /**
+     * Observes the user's receipts in date order into a new state. One that
+     * replaces {@code stored} is saved under its version, so an update made
+     * meanwhile fails the save and the change is redone.
+     */
+    private RecurringChargeState buildState(String userId, RecurringChargeState stored) {
+        RecurringChargeDetector detector = detector();
+        RecurringChargeState state = RecurringChargeState.builder()
+                .userId(userId)
+                .version(stored != null ? stored.getVersion() : null)
+                .build();
+        LocalDate since = YearMonth.now().minusMonths(historyMonths).atDay(1);
+        try (Stream<Receipt> receipts = receiptRepository.streamForForecastByUserIdSince(userId, since)) {
+            receipts.forEach(receipt -> detector.observe(state, receipt.getCategoryId(), receipt.getDate(),
+                    receipt.getTotalAmount().doubleValue(), receipt.getMerchantName()));
+        }
+        state.setUpdatedAt(LocalDateTime.now());
+        return recurringChargeStateRepository.save(state);
+    }
+
+    private boolean sameCharge(ReceiptChangedEvent.Snapshot before, ReceiptChangedEvent.Snapshot after) {
+        return before.getDate().equals(after.getDate())
+                && Objects.equals(MerchantNames.canonicalize(before.getMerchantName()), MerchantNames.canonicalize(after.getMerchantName()))
+                && before.getTotalAmount().compareTo(after.getTotalAmount()) == 0;
+    }
+
+    private RecurringChargeDetector detector() {
+        return new RecurringChargeDetector(alpha, minConfidence, maxCharges);
+    }
+
+    private BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,212 @@
+package com.jaiswal.service;
+
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.exception.ExportCapacityExceededException;
+import com.jaiswal.exception.ResourceNotFoundException;
+import com.jaiswal.exception.ValidationException;
+import com.jaiswal.model.dto.ReportJobDTO;
+import com.jaiswal.model.dto.ReportJobRequest;
+import com.jaiswal.report.ReportArtifactStore;
+import com.jaiswal.report.ReportExport;
+import com.jaiswal.report.ReportJob;
+import com.jaiswal.report.ReportProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Report generation in the background, for exports too large to stream
+ * within a client's timeout.
+ * <p>
+ * A job's id is a hash of the user, type, template, period and the user's
+ * receipt data version, so submitting an identical request returns the
+ * existing job, and once it has finished its stored artifact is downloaded
+ * as often as needed without regenerating. A receipt change moves the data
+ * version on: the next submission is a new job, and the superseded artifact
+ * is left to the retention sweep, as superseded cache entries are left to
+ * expire.
+ * <p>
+ * Jobs run on a bounded pool of their own; submissions beyond its queue are
+ * turned away rather than held. Job state and artifacts are local to the
+ * node, and a submission after a restart finds an artifact that is still
+ * stored by its id.
+ */
+@Slf4j
+@Service
+public class ReportJobService implements DisposableBean {
+
+    private final ReportService reportService;
+    private final ReportArtifactStore artifactStore;
+    private final CacheVersionService cacheVersions;
+    private final ReportProperties properties;
+    private final ExecutorService reportExecutor;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    public ReportJobService(ReportService reportService, ReportArtifactStore artifactStore,
+                            CacheVersionService cacheVersions, ReportProperties properties) {
+        this.reportService = reportService;
+        this.artifactStore = artifactStore;
+        this.cacheVersions = cacheVersions;
+        this.properties = properties;
+
+        ReportProperties.Jobs settings = properties.getJobs();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.reportExecutor = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public ReportJobDTO submit(ReportJobRequest request) {
+        if ((request.getStartDate() == null) != (request.getEndDate() == null)) {
+            throw new ValidationException("startDate and endDate must be given together");
+        }
+        if (request.getStartDate() != null && request.getEndDate().isBefore(request.getStartDate())) {
+            throw new ValidationException("endDate must not be before startDate");
+        }
+
+        String userId = request.getUserId();
+        String type = request.getType().toLowerCase(Locale.ROOT);
+        // Resolves the exporter, so an unknown type or template is rejected before a job exists
+        ReportExport export = reportService.prepareExport(userId, type, request.getTemplate(),
+                request.getStartDate(), request.getEndDate());
+        String jobId = jobId(userId, type, request,
+                cacheVersions.currentVersion(userId, CacheDataType.RECEIPTS));
+
+        AtomicBoolean created = new AtomicBoolean();
+        ReportJob job = jobs.compute(jobId, (id, existing) -> {
+            if (existing != null && existing.getStatus() != ReportJob.Status.FAILED) {
+                return existing;
+            }
+            created.set(true);
+            return new ReportJob(id, userId, type, request.getTemplate(), request.getStartDate(), request.getEndDate(),
+                    export.getContentType());
+        });
+        if (!created.get()) {
+            return toDTO(job);
+        }
+
+        Optional<Path> stored = artifactStore.find(jobId, type);
+        if (stored.isPresent()) {
+            job.completed(stored.get(), stored.get().toFile().length());
+            return toDTO(job);
+        }
+
+        try {
+            reportExecutor.execute(() -> generate(job, export));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(jobId, job);
+            throw new ExportCapacityExceededException("Too many report jobs are queued; try again shortly");
+        }
+        log.info("Queued report job {} ({}) for user {}", jobId, type, userId);
+        return toDTO(job);
+    }
+
+    public ReportJobDTO getJobStatus(String userId, String jobId) {
+        return toDTO(getJob(userId, jobId));
+    }
+
+    /**
+     * The user's job with {@code jobId}; a completed job's artifact is
+     * checked to still be stored.
+     */
+    public ReportJob getJob(String userId, String jobId) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            throw new ResourceNotFoundException("Report job not found: " + jobId);
+        }
+        if (job.getStatus() == ReportJob.Status.COMPLETED && !job.getArtifact().toFile().isFile()) {
+            jobs.remove(jobId, job);
+            throw new ResourceNotFoundException("Report job has expired: " + jobId);
+        }
+        return job;
+    }
+
+    /**
+     * Deletes expired artifacts and forgets the jobs they belonged to, along
+     * with jobs that failed longer than the retention period ago.
+     */
+    @Scheduled(fixedDelayString = "${app.reports.jobs.sweep-interval:PT15M}")
+    public void sweepExpired() {
+        int deleted = artifactStore.deleteExpired();
+        LocalDateTime failedCutoff = LocalDateTime.now().minus(properties.getJobs().getRetention());
+        jobs.values().removeIf(job -> switch (job.getStatus()) {
+            case COMPLETED -> !job.getArtifact().toFile().isFile();
+            case FAILED -> job.getCompletedAt().isBefore(failedCutoff);
+            default -> false;
+        });
+        if (deleted > 0) {
+            log.info("Deleted {} expired report artifacts", deleted);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        reportExecutor.shutdownNow();
+    }
+
+    private void generate(ReportJob job, ReportExport export) {
+        job.running();
+        try {
+            Path artifact = artifactStore.write(job.getId(), job.getType(), export.getBody());
+            job.completed(artifact, artifact.toFile().length());
+            log.info("Report job {} completed ({} bytes)", job.getId(), job.getSizeBytes());
+        } catch (Exception e) {
+            log.error("Report job {} failed for user {}", job.getId(), job.getUserId(), e);
+            job.failed(e.getMessage());
+        }
+    }
+
+    private ReportJobDTO toDTO(ReportJob job) {
+        return ReportJobDTO.builder()
+                .jobId(job.getId())
+                .status(job.getStatus().name())
+                .type(job.getType())
+                .template(job.getTemplate())
+                .createdAt(job.getCreatedAt())
+                .completedAt(job.getCompletedAt())
+                .sizeBytes(job.getStatus() == ReportJob.Status.COMPLETED ? job.getSizeBytes() : null)
+                .error(job.getError())
+                .downloadUrl(job.getStatus() == ReportJob.Status.COMPLETED
+                        ? "/api/reports/jobs/" + job.getId() + "/download?userId=" + job.getUserId()
+                        : null)
+                .build();
+    }
+
+    static String jobId(String userId, String type, ReportJobRequest request, long dataVersion) {
+        String dedupKey = String.join("|", userId, type, Objects.toString(request.getTemplate(), ""),
+                Objects.toString(request.getStartDate(), ""), Objects.toString(request.getEndDate(), ""),
+                "r" + dataVersion);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(dedupKey.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.jaiswal.service;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Summary of a set of receipts that reports are built from: total, receipt
+ * count, date range and per-category and per-merchant totals. Summaries of
+ * disjoint sets merge into the summary of their union, so yearly and custom
+ * reports are composed from month partials. Plain bean so it can be cached.
+ */
+@Data
+@NoArgsConstructor
+public class ReportPartial {
+
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+    private long receiptCount;
+    private LocalDate firstDate;
+    private LocalDate lastDate;
+    private Map<String, BigDecimal> categoryTotals = new HashMap<>();
+    private Map<String, BigDecimal> merchantTotals = new HashMap<>();
+
+    public void merge(ReportPartial other) {
+        totalAmount = totalAmount.add(other.totalAmount);
+        receiptCount += other.receiptCount;
+        if (other.firstDate != null && (firstDate == null || other.firstDate.isBefore(firstDate))) {
+            firstDate = other.firstDate;
+        }
+        if (other.lastDate != null && (lastDate == null || other.lastDate.isAfter(lastDate))) {
+            lastDate = other.lastDate;
+        }
+        other.categoryTotals.forEach((category, total) -> categoryTotals.merge(category, total, BigDecimal::add));
+        other.merchantTotals.forEach((merchant, total) -> merchantTotals.merge(merchant, total, BigDecimal::add));
+    }
+
+    // Highest total, ties broken by name so composed and direct reports agree
+    public String topMerchant() {
+        return merchantTotals.entrySet().stream()
+                .max(Map.Entry.<String, BigDecimal>comparingByValue()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                .map(Map.Entry::getKey)
+                .orElse("None");
+    }
+}
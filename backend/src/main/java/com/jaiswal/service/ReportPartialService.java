@@ -0,0 +1,103 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.Receipt;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Computes {@link ReportPartial}s with one $facet aggregation each, so no
+ * receipt is loaded into memory, and caches them per month.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportPartialService {
+
+    public static final String CACHE = "reportPartials";
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * The user's receipts dated in {@code month}. Months that have ended are
+     * cached under that month's own data version, so they are reused until a
+     * receipt dated in the month changes, however much the user edits other
+     * months; the open month is always aggregated.
+     */
+    @Cacheable(value = CACHE, sync = true, key = "@cacheVersions.monthKey(#userId, #month)",
+            condition = "#month.isBefore(T(java.time.YearMonth).now())")
+    public ReportPartial getMonthPartial(String userId, YearMonth month) {
+        return summarize(userId, month.atDay(1), month.plusMonths(1).atDay(1));
+    }
+
+    // The user's receipts dated in the half-open range [startDate, endDate)
+    public ReportPartial summarize(String userId, LocalDate startDate, LocalDate endDate) {
+        return summarize(new Document("userId", userId)
+                .append("date", new Document("$gte", mongoTemplate.getConverter().convertToMongoType(startDate))
+                        .append("$lt", mongoTemplate.getConverter().convertToMongoType(endDate))));
+    }
+
+    public ReportPartial summarize(Document match) {
+        Document facets = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Receipt.class))
+                .aggregate(summaryPipeline(match))
+                .first();
+        ReportPartial partial = new ReportPartial();
+        List<Document> totals = facets != null ? facets.getList("totals", Document.class) : List.of();
+        if (totals.isEmpty()) {
+            return partial;
+        }
+
+        Document total = totals.get(0);
+        ConversionService conversions = mongoTemplate.getConverter().getConversionService();
+        partial.setTotalAmount(decimal(total.get("total")));
+        partial.setReceiptCount(((Number) total.get("count")).longValue());
+        if (total.get("minDate") != null) {
+            partial.setFirstDate(conversions.convert(total.get("minDate"), LocalDate.class));
+            partial.setLastDate(conversions.convert(total.get("maxDate"), LocalDate.class));
+        }
+        for (Document category : facets.getList("categories", Document.class)) {
+            partial.getCategoryTotals().put(category.getString("_id"), decimal(category.get("total")));
+        }
+        for (Document merchant : facets.getList("merchants", Document.class)) {
+            partial.getMerchantTotals().put(merchant.getString("_id"), decimal(merchant.get("total")));
+        }
+        return partial;
+    }
+
+    static List<Document> summaryPipeline(Document match) {
+        // Amounts may be stored as strings or decimals; $toDecimal sums either exactly
+        Document amount = new Document("$toDecimal", "$totalAmount");
+        return List.of(
+                new Document("$match", match),
+                new Document("$facet", new Document()
+                        .append("totals", List.of(new Document("$group", new Document("_id", null)
+                                .append("total", new Document("$sum", amount))
+                                .append("count", new Document("$sum", 1))
+                                .append("minDate", new Document("$min", "$date"))
+                                .append("maxDate", new Document("$max", "$date")))))
+                        .append("categories", List.of(
+                                new Document("$match", new Document("categoryId", new Document("$ne", null))),
+                                new Document("$group", new Document("_id", "$categoryId")
+                                        .append("total", new Document("$sum", amount)))))
+                        .append("merchants", List.of(
+                                new Document("$match", new Document("merchantName", new Document("$ne", null))),
+                                new Document("$group", new Document("_id", "$merchantName")
+                                        .append("total", new Document("$sum", amount)))))));
+    }
+
+    // $sum yields Decimal128 over decimals, or the integer 0 when every amount was missing
+    private BigDecimal decimal(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        return value instanceof Number number ? new BigDecimal(number.toString()) : BigDecimal.ZERO;
+    }
+}
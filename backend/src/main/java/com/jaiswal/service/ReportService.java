@@ -1,179 +1,288 @@
 package com.jaiswal.service;
 
+import com.jaiswal.exception.ValidationException;
 import com.jaiswal.model.dto.ReportDTO;
-import com.jaiswal.model.dto.ReceiptDTO;
 import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.dto.ReceiptDTO;
+import com.jaiswal.report.ExportLimiter;
+import com.jaiswal.report.JasperStreamingExporter;
+import com.jaiswal.report.ReceiptCursorDataSource;
+import com.jaiswal.report.ReceiptTableExporter;
+import com.jaiswal.report.ReportExport;
+import com.jaiswal.report.ReportProperties;
+import com.jaiswal.report.ReportTemplateRegistry;
 import com.jaiswal.repository.ReceiptRepository;
 import lombok.extern.slf4j.Slf4j;
-import net.sf.jasperreports.engine.*;
-import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
-import net.sf.jasperreports.engine.export.ooxml.JRXlsxExporter;
-import net.sf.jasperreports.export.SimpleExporterInput;
-import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
-import net.sf.jasperreports.export.SimpleXlsxReportConfiguration;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperReport;
+import org.bson.Document;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DateTimeException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-
+import java.util.stream.Stream;
+
+/**
+ * Report summaries, paged report receipts and exports. Yearly and custom
+ * reports are composed from month partials fetched on a bounded pool of their
+ * own rather than the shared task executor, which runs OCR processing and
+ * only grows past its core threads once its queue is full. The pool is
+ * deliberately not a bean, so Boot's auto-configured {@code taskExecutor}
+ * does not back off. Partial fetches never compose in turn, so the pool
+ * cannot wait on itself; with its queue full the requesting thread fetches.
+ */
 @Slf4j
 @Service
-public class ReportService {
+public class ReportService implements DisposableBean {
 
     private final ReceiptRepository receiptRepository;
+    private final ReportPartialService reportPartialService;
+    private final ReportTemplateRegistry reportTemplates;
+    private final JasperStreamingExporter jasperExporter;
+    private final ExportLimiter exportLimiter;
+    private final Map<String, ReceiptTableExporter> tableExporters;
+    private final ExecutorService partialExecutor;
+    private final int maxCustomReportMonths;
 
     @Autowired
-    public ReportService(ReceiptRepository receiptRepository) {
+    public ReportService(ReceiptRepository receiptRepository, ReportPartialService reportPartialService,
+                         ReportTemplateRegistry reportTemplates, JasperStreamingExporter jasperExporter,
+                         ExportLimiter exportLimiter, List<ReceiptTableExporter> tableExporters,
+                         ReportProperties properties) {
         this.receiptRepository = receiptRepository;
+        this.reportPartialService = reportPartialService;
+        this.reportTemplates = reportTemplates;
+        this.jasperExporter = jasperExporter;
+        this.exportLimiter = exportLimiter;
+        this.tableExporters = tableExporters.stream()
+                .collect(Collectors.toUnmodifiableMap(ReceiptTableExporter::type, Function.identity()));
+        this.maxCustomReportMonths = properties.getMaxCustomReportMonths();
+        int threads = properties.getComposeParallelism();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.partialExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getComposeQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-partial-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
-    @Cacheable(value = "monthlyReports", key = "#userId + '-' + #month")
-    public ReportDTO getMonthlyReport(String userId, String month) {
-        try {
-            int monthInt = Integer.parseInt(month);
-            List<Receipt> receipts = receiptRepository.findByUserIdAndMonth(userId, monthInt);
-            return aggregateReport(receipts, "Monthly", month, userId);
-        } catch (NumberFormatException e) {
-            log.error("Invalid month format: {}", month, e);
-            throw new IllegalArgumentException("Invalid month format: " + month);
-        }
+    public ReportDTO getMonthlyReport(String userId, int year, int month) {
+        YearMonth period = yearMonth(year, month);
+        return toReport(reportPartialService.getMonthPartial(userId, period), "Monthly", period.toString(), userId,
+                period.atDay(1), period.atEndOfMonth());
     }
 
-    @Cacheable(value = "yearlyReports", key = "#userId + '-' + #year")
-    public ReportDTO getYearlyReport(String userId, String year) {
-        try {
-            int yearInt = Integer.parseInt(year);
-            List<Receipt> receipts = receiptRepository.findByUserIdAndYear(userId, yearInt);
-            return aggregateReport(receipts, "Yearly", year, userId);
-        } catch (NumberFormatException e) {
-            log.error("Invalid year format: {}", year, e);
-            throw new IllegalArgumentException("Invalid year format: " + year);
-        }
+    public ReportDTO getYearlyReport(String userId, int year) {
+        LocalDate start = yearMonth(year, 1).atDay(1);
+        return toReport(compose(userId, start, start.plusYears(1)), "Yearly", String.valueOf(year), userId,
+                start, start.plusYears(1).minusDays(1));
     }
 
     public ReportDTO getCustomReport(ReportDTO request) {
         if (request.getUserId() == null || request.getStartDate() == null || request.getEndDate() == null) {
             throw new IllegalArgumentException("UserId, startDate, and endDate are required for custom reports");
         }
+        if (request.getEndDate().isBefore(request.getStartDate())) {
+            throw new ValidationException("endDate must not be before startDate");
+        }
+        // Months the range touches, each fetched as one partial
+        long months = ChronoUnit.MONTHS.between(YearMonth.from(request.getStartDate()), YearMonth.from(request.getEndDate())) + 1;
+        if (months > maxCustomReportMonths) {
+            throw new ValidationException("Custom reports may cover at most " + maxCustomReportMonths + " months");
+        }
 
-        List<Receipt> receipts = receiptRepository.findCustom(
-                request.getUserId(),
-                request.getStartDate(),
-                request.getEndDate()
-        );
-        return aggregateReport(receipts, "Custom", null, request.getUserId());
+        return toReport(compose(request.getUserId(), request.getStartDate(), request.getEndDate().plusDays(1)),
+                "Custom", null, request.getUserId(), request.getStartDate(), request.getEndDate());
     }
 
-    @Cacheable(value = "taxReports", key = "#userId")
+    @Cacheable(value = "taxReports", sync = true, key = "@cacheVersions.userKey('taxReports', #userId)")
     public ReportDTO getTaxReport(String userId) {
-        List<Receipt> receipts = receiptRepository.findTaxRelevant(userId);
-        return aggregateReport(receipts, "Tax", null, userId);
+        Document match = new Document("userId", userId)
+                .append("paymentInfo.tax", new Document("$exists", true).append("$ne", null));
+        return toReport(reportPartialService.summarize(match), "Tax", null, userId, null, null);
     }
 
-    public byte[] exportReport(String userId, String type) {
-        List<Receipt> receipts = receiptRepository.findByUserId(userId);
-
-        try {
-            InputStream templateStream = new ClassPathResource("reports/financial_report.jrxml").getInputStream();
-            JasperReport jasperReport = JasperCompileManager.compileReport(templateStream);
-
-            // Convert receipts to DTOs for JasperReports
-            List<ReceiptDTO> receiptDTOs = receipts.stream()
-                    .map(ReceiptDTO::from)
-                    .collect(Collectors.toList());
-
-            JRBeanCollectionDataSource dataSource = new JRBeanCollectionDataSource(receiptDTOs);
+    /**
+     * One page of the receipts a monthly, yearly or custom report covers,
+     * newest first; {@code endDate} is inclusive, as on the report.
+     */
+    public Page<ReceiptDTO> getReportReceipts(String userId, LocalDate startDate, LocalDate endDate, Pageable pageable) {
+        return receiptRepository.findByUserIdInPeriod(userId, startDate, endDate.plusDays(1), pageable)
+                .map(ReceiptDTO::from);
+    }
 
-            Map<String, Object> params = new HashMap<>();
-            params.put("REPORT_TITLE", "Financial Report");
-            params.put("USER_ID", userId);
-            params.put("GENERATED_DATE", LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
+    // One page of the receipts the tax report covers, newest first
+    public Page<ReceiptDTO> getTaxReportReceipts(String userId, Pageable pageable) {
+        return receiptRepository.findTaxRelevant(userId, pageable).map(ReceiptDTO::from);
+    }
 
-            JasperPrint print = JasperFillManager.fillReport(jasperReport, params, dataSource);
+    /**
+     * Exports all of the user's receipts, streamed to the response. The
+     * exporter is resolved on the request thread; the export slot is taken by
+     * the body itself, so a body that is rejected, timed out or abandoned
+     * before it runs never holds one.
+     */
+    public ReportExport exportReport(String userId, String type, String template) {
+        ReportExport export = prepareExport(userId, type, template, null, null);
+        return new ReportExport(export.getContentType(), export.getExtension(), out -> {
+            exportLimiter.acquire();
+            try {
+                export.getBody().writeTo(out);
+            } finally {
+                exportLimiter.release();
+            }
+        });
+    }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+    /**
+     * Resolves the exporter for the user's receipts dated from
+     * {@code startDate} to {@code endDate} inclusive (all receipts when both
+     * are null). CSV, NDJSON and XLSX without a template are written row by
+     * row by a {@link ReceiptTableExporter}; anything else fills a Jasper
+     * template (one of the type's configured templates, or null for its
+     * default). The returned body reads from a receipt cursor when written
+     * and takes no export slot itself.
+     */
+    public ReportExport prepareExport(String userId, String type, String template, LocalDate startDate, LocalDate endDate) {
+        String format = type.toLowerCase(Locale.ROOT);
+        Supplier<Stream<Receipt>> receipts = startDate == null
+                ? () -> receiptRepository.streamForExportByUserId(userId)
+                : () -> receiptRepository.streamForExportByUserIdInPeriod(userId, startDate, endDate.plusDays(1));
+
+        ReceiptTableExporter tableExporter = template == null ? tableExporters.get(format) : null;
+        if (tableExporter != null) {
+            return new ReportExport(tableExporter.contentType(), format, out -> {
+                try (Stream<Receipt> rows = receipts.get()) {
+                    tableExporter.write(rows.iterator(), out);
+                }
+            });
+        }
 
-            if ("pdf".equalsIgnoreCase(type)) {
-                JasperExportManager.exportReportToPdfStream(print, out);
-            } else if ("xlsx".equalsIgnoreCase(type)) {
-                JRXlsxExporter exporter = new JRXlsxExporter();
-                exporter.setExporterInput(new SimpleExporterInput(print));
-                exporter.setExporterOutput(new SimpleOutputStreamExporterOutput(out));
+        JasperReport jasperReport = reportTemplates.get(format, template);
+        Map<String, Object> params = new HashMap<>();
+        params.put("REPORT_TITLE", "Financial Report");
+        params.put("USER_ID", userId);
+        params.put("GENERATED_DATE", LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE));
+
+        return new ReportExport(JasperStreamingExporter.contentType(format), format, out -> {
+            try (ReceiptCursorDataSource dataSource = new ReceiptCursorDataSource(receipts.get())) {
+                jasperExporter.export(jasperReport, params, dataSource, format, out);
+            } catch (JRException e) {
+                log.error("Failed to export report for user: {}", userId, e);
+                throw new RuntimeException("Failed to export report: " + e.getMessage(), e);
+            }
+        });
+    }
 
-                SimpleXlsxReportConfiguration configuration = new SimpleXlsxReportConfiguration();
-                configuration.setOnePagePerSheet(false);
-                configuration.setDetectCellType(true);
-                exporter.setConfiguration(configuration);
+    @Override
+    public void destroy() {
+        partialExecutor.shutdownNow();
+    }
 
-                exporter.exportReport();
-            } else {
-                throw new IllegalArgumentException("Unsupported export type: " + type);
-            }
+    private YearMonth yearMonth(int year, int month) {
+        try {
+            return YearMonth.of(year, month);
+        } catch (DateTimeException e) {
+            throw new ValidationException("Invalid report period: " + year + "-" + month);
+        }
+    }
 
-            return out.toByteArray();
+    /**
+     * Summary of the user's receipts in [startDate, endDate), merged from
+     * month partials fetched in parallel. Whole months come from the partial
+     * cache, so only the open month, months changed since they were cached
+     * and partly covered months at either end are aggregated.
+     */
+    private ReportPartial compose(String userId, LocalDate startDate, LocalDate endDate) {
+        List<CompletableFuture<ReportPartial>> parts = new ArrayList<>();
+        for (YearMonth month = YearMonth.from(startDate); month.atDay(1).isBefore(endDate); month = month.plusMonths(1)) {
+            YearMonth partMonth = month;
+            LocalDate monthStart = month.atDay(1);
+            LocalDate monthEnd = month.plusMonths(1).atDay(1);
+            Supplier<ReportPartial> part = !monthStart.isBefore(startDate) && !monthEnd.isAfter(endDate)
+                    ? () -> reportPartialService.getMonthPartial(userId, partMonth)
+                    : () -> reportPartialService.summarize(userId,
+                            monthStart.isBefore(startDate) ? startDate : monthStart,
+                            monthEnd.isAfter(endDate) ? endDate : monthEnd);
+            parts.add(CompletableFuture.supplyAsync(part, partialExecutor));
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to export report for user: {}", userId, e);
-            throw new RuntimeException("Failed to export report: " + e.getMessage(), e);
+        ReportPartial composed = new ReportPartial();
+        try {
+            parts.forEach(part -> composed.merge(part.join()));
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
         }
+        return composed;
     }
 
-    // Helper method to aggregate data and map to DTO
-    private ReportDTO aggregateReport(List<Receipt> receipts, String reportType, String period, String userId) {
-        if (receipts == null || receipts.isEmpty()) {
-            return createEmptyReport(reportType, period, userId);
+    /**
+     * Maps a summary to the report. Receipts themselves are paged separately
+     * through {@link #getReportReceipts} and {@link #getTaxReportReceipts}.
+     */
+    private ReportDTO toReport(ReportPartial partial, String reportType, String period, String userId,
+                               LocalDate startDate, LocalDate endDate) {
+        if (partial.getReceiptCount() == 0) {
+            ReportDTO report = createEmptyReport(reportType, period, userId);
+            report.setStartDate(startDate);
+            report.setEndDate(endDate);
+            return report;
         }
 
-        // Calculate total amount
-        BigDecimal totalAmount = receipts.stream()
-                .map(Receipt::getTotalAmount)
-                .filter(Objects::nonNull)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        // Calculate category breakdown
-        Map<String, BigDecimal> categoryBreakdown = receipts.stream()
-                .filter(receipt -> receipt.getCategoryId() != null)
-                .collect(Collectors.groupingBy(
-                        receipt -> receipt.getCategoryId() != null ? receipt.getCategoryId() : "Uncategorized",
-                        Collectors.reducing(BigDecimal.ZERO, Receipt::getTotalAmount, BigDecimal::add)
-                ));
-
-        // Convert receipts to DTOs
-        List<ReceiptDTO> receiptDTOs = receipts.stream()
-                .map(ReceiptDTO::from)
-                .collect(Collectors.toList());
-
-        // Build summary
+        BigDecimal totalAmount = partial.getTotalAmount();
+        Map<String, BigDecimal> categoryBreakdown = partial.getCategoryTotals();
         ReportDTO.ReportSummary summary = ReportDTO.ReportSummary.builder()
                 .totalAmount(totalAmount)
-                .totalTransactions(receipts.size())
-                .averageTransaction(receipts.isEmpty() ? BigDecimal.ZERO :
-                        totalAmount.divide(BigDecimal.valueOf(receipts.size()), 2, BigDecimal.ROUND_HALF_UP))
+                .totalTransactions((int) partial.getReceiptCount())
+                .averageTransaction(totalAmount.divide(BigDecimal.valueOf(partial.getReceiptCount()), 2, RoundingMode.HALF_UP))
                 .topCategory(findTopCategory(categoryBreakdown))
-                .topMerchant(findTopMerchant(receipts))
+                .topMerchant(partial.topMerchant())
                 .categoryTotals(categoryBreakdown)
                 .build();
 
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("totalReceipts", partial.getReceiptCount());
+        metadata.put("dateRange", partial.getFirstDate() != null
+                ? partial.getFirstDate() + " to " + partial.getLastDate() : "Unknown range");
+        metadata.put("generatedAt", LocalDate.now().toString());
+
         return ReportDTO.builder()
                 .reportId(UUID.randomUUID().toString())
                 .reportType(reportType)
                 .title(reportType + " Financial Report")
                 .userId(userId)
                 .period(period)
+                .startDate(startDate)
+                .endDate(endDate)
                 .generatedAt(LocalDate.now())
                 .totalAmount(totalAmount)
                 .categoryBreakdown(categoryBreakdown)
-                .receipts(receiptDTOs)
                 .summary(summary)
-                .metadata(createMetadata(receipts))
+                .metadata(metadata)
                 .build();
     }
 
@@ -187,7 +296,6 @@ public class ReportService {
                 .generatedAt(LocalDate.now())
                 .totalAmount(BigDecimal.ZERO)
                 .categoryBreakdown(new HashMap<>())
-                .receipts(new ArrayList<>())
                 .summary(ReportDTO.ReportSummary.builder()
                         .totalAmount(BigDecimal.ZERO)
                         .totalTransactions(0)
@@ -204,48 +312,4 @@ public class ReportService {
                 .map(Map.Entry::getKey)
                 .orElse("None");
     }
-
-    private String findTopMerchant(List<Receipt> receipts) {
-        Map<String, BigDecimal> merchantTotals = receipts.stream()
-                .filter(receipt -> receipt.getMerchantName() != null)
-                .collect(Collectors.groupingBy(
-                        Receipt::getMerchantName,
-                        Collectors.reducing(BigDecimal.ZERO, Receipt::getTotalAmount, BigDecimal::add)
-                ));
-
-        return merchantTotals.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("None");
-    }
-
-    private Map<String, Object> createMetadata(List<Receipt> receipts) {
-        Map<String, Object> metadata = new HashMap<>();
-        metadata.put("totalReceipts", receipts.size());
-        metadata.put("dateRange", getDateRange(receipts));
-        metadata.put("generatedAt", LocalDate.now().toString());
-        return metadata;
-    }
-
-    private String getDateRange(List<Receipt> receipts) {
-        if (receipts.isEmpty()) {
-            return "No data";
-        }
-
-        Optional<LocalDate> minDate = receipts.stream()
-                .map(Receipt::getDate)
-                .filter(Objects::nonNull)
-                .min(LocalDate::compareTo);
-
-        Optional<LocalDate> maxDate = receipts.stream()
-                .map(Receipt::getDate)
-                .filter(Objects::nonNull)
-                .max(LocalDate::compareTo);
-
-        if (minDate.isPresent() && maxDate.isPresent()) {
-            return minDate.get().toString() + " to " + maxDate.get().toString();
-        }
-
-        return "Unknown range";
-    }
 }
@@ -0,0 +1,240 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.SpendingProfile;
+import com.jaiswal.repository.SpendingProfileRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Nearest-neighbour index over users' {@link SpendingVector}s using random
+ * hyperplane locality-sensitive hashing (SimHash). Each vector gets
+ * {@value #BANDS} band hashes of {@value #ROWS} sign bits; users sharing any
+ * band hash are candidates, and only candidates are ranked by cosine
+ * similarity, so a query touches a small fraction of users. If too few
+ * candidates turn up, buckets one bit away are probed as well.
+ * <p>
+ * The index is an immutable snapshot rebuilt in the background from the
+ * spending profiles and swapped in whole; queries never wait for a rebuild.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SimilarSpenderIndex {
+
+    private static final int BANDS = 10;
+    private static final int ROWS = 12;
+    private static final long PLANE_SEED = 0x5DEECE66DL;
+
+    private final SpendingProfileService spendingProfileService;
+    private final SpendingProfileRepository spendingProfileRepository;
+
+    @Value("${app.community.similarity.enabled:true}")
+    private boolean enabled;
+
+    // Hyperplane components per category key; categories are few, so these are generated once
+    private final Map<String, double[]> planes = new ConcurrentHashMap<>();
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @Scheduled(initialDelayString = "${app.community.similarity.initial-delay:PT1M}",
+            fixedDelayString = "${app.community.similarity.rebuild-interval:PT1H}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            spendingProfileService.backfillIfNeeded();
+            spendingProfileService.deleteOutsideWindow();
+
+            List<String> periods = spendingProfileService.windowPeriods();
+            Map<String, String> intern = new HashMap<>();
+            List<String> userIds = new ArrayList<>();
+            List<SpendingVector> vectors = new ArrayList<>();
+            List<SpendingProfile> userProfiles = new ArrayList<>();
+
+            // Profiles arrive grouped by user
+            try (Stream<SpendingProfile> profiles = spendingProfileRepository.streamByPeriodIn(periods)) {
+                Iterator<SpendingProfile> iterator = profiles.iterator();
+                while (iterator.hasNext()) {
+                    SpendingProfile profile = iterator.next();
+                    if (!userProfiles.isEmpty() && !Objects.equals(userProfiles.get(0).getUserId(), profile.getUserId())) {
+                        addUser(userProfiles, periods.size(), intern, userIds, vectors);
+                    }
+                    userProfiles.add(profile);
+                }
+            }
+            addUser(userProfiles, periods.size(), intern, userIds, vectors);
+
+            snapshot = build(userIds, vectors);
+            log.info("Rebuilt similar spender index over {} users in {} ms", userIds.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("Failed to rebuild similar spender index; keeping the previous one", e);
+        }
+    }
+
+    /**
+     * Up to {@code k} users most similar to {@code vector}, most similar first,
+     * excluding {@code userId} itself. Only vectors are returned, never user ids.
+     */
+    public List<Neighbour> findSimilar(String userId, SpendingVector vector, int k) {
+        Snapshot current = snapshot;
+        if (vector.isEmpty() || current.size() == 0) {
+            return Collections.emptyList();
+        }
+
+        int[] bandHashes = bandHashes(vector);
+        BitSet candidates = new BitSet(current.size());
+        for (int band = 0; band < BANDS; band++) {
+            current.collect(band, bandHashes[band], candidates);
+        }
+        // Multi-probe: buckets one bit away hold the next most likely neighbours
+        if (candidates.cardinality() < k * 2) {
+            for (int band = 0; band < BANDS; band++) {
+                for (int row = 0; row < ROWS; row++) {
+                    current.collect(band, bandHashes[band] ^ (1 << row), candidates);
+                }
+            }
+        }
+
+        PriorityQueue<Neighbour> nearest = new PriorityQueue<>(Comparator.comparingDouble(Neighbour::getSimilarity));
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (current.userIds[i].equals(userId)) {
+                continue;
+            }
+            nearest.offer(new Neighbour(current.vectors[i], vector.cosine(current.vectors[i])));
+            if (nearest.size() > k) {
+                nearest.poll();
+            }
+        }
+
+        List<Neighbour> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(Neighbour::getSimilarity).reversed());
+        return result;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Neighbour {
+        private final SpendingVector vector;
+        private final double similarity;
+    }
+
+    private void addUser(List<SpendingProfile> userProfiles, int months, Map<String, String> intern,
+                         List<String> userIds, List<SpendingVector> vectors) {
+        if (userProfiles.isEmpty()) {
+            return;
+        }
+        SpendingVector vector = SpendingVector.of(userProfiles, months, intern);
+        if (!vector.isEmpty()) {
+            userIds.add(userProfiles.get(0).getUserId());
+            vectors.add(vector);
+        }
+        userProfiles.clear();
+    }
+
+    private Snapshot build(List<String> userIds, List<SpendingVector> vectors) {
+        List<Map<Integer, List<Integer>>> buckets = new ArrayList<>();
+        for (int band = 0; band < BANDS; band++) {
+            buckets.add(new HashMap<>());
+        }
+        for (int i = 0; i < vectors.size(); i++) {
+            int[] bandHashes = bandHashes(vectors.get(i));
+            for (int band = 0; band < BANDS; band++) {
+                buckets.get(band).computeIfAbsent(bandHashes[band], key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<Map<Integer, int[]>> compact = new ArrayList<>(BANDS);
+        for (Map<Integer, List<Integer>> band : buckets) {
+            Map<Integer, int[]> members = new HashMap<>(band.size() * 2);
+            band.forEach((hash, users) -> members.put(hash, users.stream().mapToInt(Integer::intValue).toArray()));
+            compact.add(members);
+        }
+        return new Snapshot(userIds.toArray(new String[0]), vectors.toArray(new SpendingVector[0]), compact);
+    }
+
+    // One sign bit per hyperplane: which side of it the vector falls on
+    private int[] bandHashes(SpendingVector vector) {
+        double[] dots = new double[BANDS * ROWS];
+        for (int i = 0; i < vector.size(); i++) {
+            double[] components = planes.computeIfAbsent(vector.getCategory(i), this::planeComponents);
+            double share = vector.getShare(i);
+            for (int plane = 0; plane < dots.length; plane++) {
+                dots[plane] += share * components[plane];
+            }
+        }
+
+        int[] hashes = new int[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            int hash = 0;
+            for (int row = 0; row < ROWS; row++) {
+                if (dots[band * ROWS + row] >= 0) {
+                    hash |= 1 << row;
+                }
+            }
+            hashes[band] = hash;
+        }
+        return hashes;
+    }
+
+    // Seeded by the category key, so every node and every rebuild uses the same hyperplanes
+    private double[] planeComponents(String category) {
+        Random random = new Random(PLANE_SEED ^ category.hashCode());
+        double[] components = new double[BANDS * ROWS];
+        for (int i = 0; i < components.length; i++) {
+            components[i] = random.nextGaussian();
+        }
+        return components;
+    }
+
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new String[0], new SpendingVector[0], List.of());
+
+        private final String[] userIds;
+        private final SpendingVector[] vectors;
+        private final List<Map<Integer, int[]>> buckets;
+
+        Snapshot(String[] userIds, SpendingVector[] vectors, List<Map<Integer, int[]>> buckets) {
+            this.userIds = userIds;
+            this.vectors = vectors;
+            this.buckets = buckets;
+        }
+
+        int size() {
+            return vectors.length;
+        }
+
+        void collect(int band, int hash, BitSet candidates) {
+            int[] members = buckets.get(band).get(hash);
+            if (members != null) {
+                for (int member : members) {
+                    candidates.set(member);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangeListener;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.job.JobLockService;
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.SpendingProfile;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.SpendingProfileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Maintains per-user monthly {@link SpendingProfile}s. Each receipt change is
+ * applied as an increment (the old spend removed, the new spend added), so a
+ * profile never has to be recomputed from the user's receipts. Profiles that
+ * predate this service are filled once by {@link #backfillIfNeeded()}; until
+ * that has completed, {@link #isReady()} is false and changes are left to
+ * per-user rebuilds, so none is counted by both the backfill and an increment.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SpendingProfileService implements ReceiptChangeListener {
+
+    // Versioned so profiles stored under free-text category keys are rebuilt once under the shared keys
+    static final String BACKFILL_JOB_NAME = "spending-profile-backfill-v2";
+
+    private final SpendingProfileRepository spendingProfileRepository;
+    private final ReceiptRepository receiptRepository;
+    private final CategoryRepository categoryRepository;
+    private final AggregationRunRepository aggregationRunRepository;
+    private final JobLockService jobLockService;
+    private final MongoTemplate mongoTemplate;
+
+    // Months (including the current one) that make up a spending profile
+    @Value("${app.community.similarity.months:3}")
+    private int profileMonths;
+
+    @Value("${app.community.similarity.backfill-lock-ttl:PT30M}")
+    private Duration backfillLockTtl;
+
+    // Users backfilled between renewals of the backfill lock
+    @Value("${app.community.similarity.backfill-batch-size:500}")
+    private int backfillBatchSize;
+
+    // Once the backfill is known to have completed it stays completed
+    private volatile boolean ready;
+
+    @Override
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        String firstPeriod = windowPeriods().get(0);
+        Map<String, Map<String, Double>> deltas = new HashMap<>();
+        addContribution(deltas, event.getBefore(), -1, new HashMap<>());
+        addContribution(deltas, event.getAfter(), 1, new HashMap<>());
+        deltas.forEach((period, byCategory) -> {
+            if (period.compareTo(firstPeriod) >= 0) {
+                increment(event.getUserId(), period, byCategory);
+            }
+        });
+    }
+
+    // Overwrites the user's profiles with totals from their receipts, then drops the profiles not rewritten
+    @Override
+    public void rebuild(String userId) {
+        LocalDateTime rebuiltAt = LocalDateTime.now();
+        Map<String, Map<String, Double>> userTotals = new HashMap<>();
+        Map<String, String> categoryKeys = new HashMap<>();
+        YearMonth firstPeriod = YearMonth.parse(windowPeriods().get(0));
+        try (Stream<Receipt> receipts = receiptRepository.streamForForecastByUserIdSince(userId, firstPeriod.atDay(1))) {
+            receipts.forEach(receipt -> addContribution(userTotals, ReceiptChangedEvent.Snapshot.of(receipt), 1, categoryKeys));
+        }
+        userTotals.forEach((period, byCategory) -> mongoTemplate.upsert(
+                Query.query(Criteria.where("_id").is(userId + ":" + period)),
+                new Update()
+                        .set("userId", userId)
+                        .set("period", period)
+                        .set("categoryTotals", byCategory)
+                        .set("updatedAt", rebuiltAt),
+                SpendingProfile.class));
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(userId).and("updatedAt").lt(rebuiltAt)),
+                SpendingProfile.class);
+    }
+
+    @Override
+    public boolean isReady() {
+        if (!ready) {
+            ready = aggregationRunRepository.findTopByJobNameOrderByStartedAtDesc(BACKFILL_JOB_NAME)
+                    .map(run -> run.getStatus() == AggregationRun.RunStatus.COMPLETED)
+                    .orElse(false);
+        }
+        return ready;
+    }
+
+    public SpendingVector getVector(String userId) {
+        List<String> periods = windowPeriods();
+        return SpendingVector.of(spendingProfileRepository.findByUserIdAndPeriodIn(userId, periods), periods.size(), new HashMap<>());
+    }
+
+    // The profile window's periods (yyyy-MM), oldest first
+    public List<String> windowPeriods() {
+        YearMonth current = YearMonth.now();
+        return IntStream.range(0, profileMonths)
+                .mapToObj(offset -> current.minusMonths(profileMonths - 1L - offset).toString())
+                .collect(Collectors.toList());
+    }
+
+    public void deleteOutsideWindow() {
+        spendingProfileRepository.deleteByPeriodLessThan(windowPeriods().get(0));
+    }
+
+    /**
+     * Builds the profiles from receipts once, on the first run after
+     * deployment; afterwards receipt changes keep them current.
+     */
+    public void backfillIfNeeded() {
+        if (isReady() || !jobLockService.tryAcquire(BACKFILL_JOB_NAME, backfillLockTtl)) {
+            return;
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            AggregationRun run = aggregationRunRepository.save(AggregationRun.builder()
+                    .jobName(BACKFILL_JOB_NAME)
+                    .shardCount(1)
+                    .status(AggregationRun.RunStatus.RUNNING)
+                    .startedAt(LocalDateTime.now())
+                    .build());
+
+            spendingProfileRepository.deleteAll();
+            Map<String, String> categoryKeys = new HashMap<>();
+            Map<String, Map<String, Double>> userTotals = new HashMap<>();
+            String currentUser = null;
+            long users = 0;
+
+            // Receipts arrive grouped by user; each user's months are written when the user changes
+            YearMonth firstPeriod = YearMonth.parse(windowPeriods().get(0));
+            try (Stream<Receipt> receipts = receiptRepository.streamForSpendingProfilesSince(firstPeriod.atDay(1))) {
+                Iterator<Receipt> iterator = receipts.iterator();
+                while (iterator.hasNext()) {
+                    Receipt receipt = iterator.next();
+                    if (!Objects.equals(receipt.getUserId(), currentUser)) {
+                        flush(currentUser, userTotals);
+                        currentUser = receipt.getUserId();
+                        // Extend the lease while users keep completing; stop if another node has taken over
+                        if (++users % backfillBatchSize == 0 && !jobLockService.tryAcquire(BACKFILL_JOB_NAME, backfillLockTtl)) {
+                            throw new IllegalStateException("Lost the " + BACKFILL_JOB_NAME + " job lock");
+                        }
+                    }
+                    addContribution(userTotals, ReceiptChangedEvent.Snapshot.of(receipt), 1, categoryKeys);
+                }
+            }
+            flush(currentUser, userTotals);
+
+            run.setStatus(AggregationRun.RunStatus.COMPLETED);
+            run.setCompletedAt(LocalDateTime.now());
+            aggregationRunRepository.save(run);
+            ready = true;
+            log.info("Backfilled spending profiles for {} users in {} ms", users, System.currentTimeMillis() - start);
+        } finally {
+            jobLockService.release(BACKFILL_JOB_NAME);
+        }
+    }
+
+    private void flush(String userId, Map<String, Map<String, Double>> userTotals) {
+        if (userId != null) {
+            userTotals.forEach((period, byCategory) -> increment(userId, period, byCategory));
+        }
+        userTotals.clear();
+    }
+
+    private void addContribution(Map<String, Map<String, Double>> deltas, ReceiptChangedEvent.Snapshot snapshot,
+                                 int sign, Map<String, String> categoryKeys) {
+        if (snapshot == null || snapshot.getTotalAmount().signum() <= 0) {
+            return;
+        }
+        String period = YearMonth.from(snapshot.getDate()).toString();
+        String categoryKey = snapshot.getCategoryId() == null ? CommunityAggregate.OTHER_CATEGORY
+                : categoryKeys.computeIfAbsent(snapshot.getCategoryId(), this::categoryKeyOf);
+        deltas.computeIfAbsent(period, key -> new HashMap<>())
+                .merge(categoryKey, sign * snapshot.getTotalAmount().doubleValue(), Double::sum);
+    }
+
+    // Keyed like community data, so every profile vector has the same few dimensions
+    private String categoryKeyOf(String categoryId) {
+        return categoryRepository.findById(categoryId)
+                .map(category -> CommunityAggregate.sharedCategoryKey(category.getName()))
+                .orElse(CommunityAggregate.OTHER_CATEGORY);
+    }
+
+    // Upsert with $inc, so concurrent changes to the same profile never overwrite each other
+    private void increment(String userId, String period, Map<String, Double> byCategory) {
+        Update update = new Update()
+                .set("userId", userId)
+                .set("period", period)
+                .set("updatedAt", LocalDateTime.now());
+        byCategory.forEach((categoryKey, delta) -> update.inc("categoryTotals." + categoryKey, delta));
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(userId + ":" + period)), update, SpendingProfile.class);
+    }
+}
@@ -0,0 +1,103 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.SpendingProfile;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A user's spending profile as the share of spend per category over a window
+ * of months, plus the average monthly spend. Stored as parallel arrays sorted
+ * by category key, so a similarity index can hold one per user compactly.
+ */
+public class SpendingVector {
+
+    private static final SpendingVector EMPTY = new SpendingVector(new String[0], new double[0], 0.0);
+
+    private final String[] categories;
+    private final double[] shares;
+    private final double monthlySpend;
+
+    private SpendingVector(String[] categories, double[] shares, double monthlySpend) {
+        this.categories = categories;
+        this.shares = shares;
+        this.monthlySpend = monthlySpend;
+    }
+
+    /**
+     * Combines one user's monthly profiles over a window of {@code months}.
+     * Category keys are passed through {@code intern} so vectors built in bulk
+     * share one copy of each key.
+     */
+    public static SpendingVector of(Collection<SpendingProfile> profiles, int months, Map<String, String> intern) {
+        TreeMap<String, Double> totals = new TreeMap<>();
+        for (SpendingProfile profile : profiles) {
+            profile.getCategoryTotals().forEach((category, amount) -> totals.merge(category, amount, Double::sum));
+        }
+        // Increments can leave tiny negative residues once a category's receipts are all removed
+        totals.values().removeIf(amount -> amount < 0.005);
+
+        double total = totals.values().stream().mapToDouble(Double::doubleValue).sum();
+        if (total <= 0) {
+            return EMPTY;
+        }
+
+        String[] categories = new String[totals.size()];
+        double[] shares = new double[totals.size()];
+        int i = 0;
+        for (Map.Entry<String, Double> entry : totals.entrySet()) {
+            categories[i] = intern.computeIfAbsent(entry.getKey(), key -> key);
+            shares[i] = entry.getValue() / total;
+            i++;
+        }
+        return new SpendingVector(categories, shares, total / months);
+    }
+
+    public boolean isEmpty() {
+        return categories.length == 0;
+    }
+
+    public int size() {
+        return categories.length;
+    }
+
+    public String getCategory(int index) {
+        return categories[index];
+    }
+
+    public double getShare(int index) {
+        return shares[index];
+    }
+
+    public double getMonthlySpend() {
+        return monthlySpend;
+    }
+
+    // Merge walk over the sorted categories
+    public double cosine(SpendingVector other) {
+        double dot = 0;
+        int i = 0;
+        int j = 0;
+        while (i < categories.length && j < other.categories.length) {
+            int order = categories[i].compareTo(other.categories[j]);
+            if (order == 0) {
+                dot += shares[i++] * other.shares[j++];
+            } else if (order < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        double norm = norm() * other.norm();
+        return norm == 0 ? 0 : dot / norm;
+    }
+
+    private double norm() {
+        double sum = 0;
+        for (double share : shares) {
+            sum += share * share;
+        }
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,156 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.dto.AnalyticsDTO;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps spending trends within a point budget. {@link Resolution#choose}
+ * picks the finest bucket (day, week or month) whose bucket count over the
+ * range fits the budget, so a long range is aggregated coarser rather than
+ * returned day by day. {@link #lttb} instead selects the points that best
+ * keep the shape of a series (Largest-Triangle-Three-Buckets), so peaks and
+ * dips survive where averaging would flatten them.
+ */
+public final class TrendDownsampling {
+
+    private TrendDownsampling() {
+    }
+
+    public enum Resolution {
+        DAY,
+        WEEK,   // ISO weeks, starting on Monday
+        MONTH;
+
+        public LocalDate bucketStart(LocalDate date) {
+            switch (this) {
+                case WEEK:
+                    return date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return date.withDayOfMonth(1);
+                default:
+                    return date;
+            }
+        }
+
+        // Buckets the range touches
+        public long bucketCount(LocalDate startDate, LocalDate endDate) {
+            switch (this) {
+                case WEEK:
+                    return ChronoUnit.WEEKS.between(bucketStart(startDate), bucketStart(endDate)) + 1;
+                case MONTH:
+                    return ChronoUnit.MONTHS.between(bucketStart(startDate), bucketStart(endDate)) + 1;
+                default:
+                    return ChronoUnit.DAYS.between(startDate, endDate) + 1;
+            }
+        }
+
+        /**
+         * The finest resolution with at most {@code maxPoints} buckets over
+         * the range, or months if none fits.
+         */
+        public static Resolution choose(LocalDate startDate, LocalDate endDate, int maxPoints) {
+            for (Resolution resolution : values()) {
+                if (resolution.bucketCount(startDate, endDate) <= maxPoints) {
+                    return resolution;
+                }
+            }
+            return MONTH;
+        }
+    }
+
+    /**
+     * Sums daily points into buckets of {@code resolution}, each dated by its
+     * first day.
+     */
+    public static List<AnalyticsDTO.SpendingTrend> bucket(List<AnalyticsDTO.SpendingTrend> daily, Resolution resolution) {
+        Map<LocalDate, AnalyticsDTO.SpendingTrend> buckets = new TreeMap<>();
+        for (AnalyticsDTO.SpendingTrend point : daily) {
+            AnalyticsDTO.SpendingTrend bucket = buckets.computeIfAbsent(resolution.bucketStart(point.getDate()),
+                    date -> AnalyticsDTO.SpendingTrend.builder()
+                            .date(date)
+                            .amount(BigDecimal.ZERO)
+                            .transactionCount(0)
+                            .resolution(resolution.name())
+                            .build());
+            bucket.setAmount(bucket.getAmount().add(point.getAmount() != null ? point.getAmount() : BigDecimal.ZERO));
+            bucket.setTransactionCount(bucket.getTransactionCount()
+                    + (point.getTransactionCount() != null ? point.getTransactionCount() : 0));
+        }
+        return new ArrayList<>(buckets.values());
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets: keeps the first and last points and,
+     * from each of {@code threshold - 2} equal buckets in between, the point
+     * forming the largest triangle with the point kept before it and the
+     * average of the next bucket. Points are returned unchanged, so a kept
+     * peak keeps its exact amount. Series within the threshold are returned
+     * as they are.
+     */
+    public static List<AnalyticsDTO.SpendingTrend> lttb(List<AnalyticsDTO.SpendingTrend> points, int threshold) {
+        int size = points.size();
+        if (threshold >= size || threshold < 3) {
+            return points;
+        }
+
+        List<AnalyticsDTO.SpendingTrend> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int kept = 0;
+        sampled.add(points.get(0));
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket (the last point for the final bucket)
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, size);
+            if (nextEnd <= nextStart) {
+                nextStart = size - 1;
+                nextEnd = size;
+            }
+            double averageX = 0;
+            double averageY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                averageX += x(points.get(j));
+                averageY += y(points.get(j));
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double keptX = x(points.get(kept));
+            double keptY = y(points.get(kept));
+            double largestArea = -1;
+            int largest = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((keptX - averageX) * (y(points.get(j)) - keptY)
+                        - (keptX - x(points.get(j))) * (averageY - keptY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    largest = j;
+                }
+            }
+            sampled.add(points.get(largest));
+            kept = largest;
+        }
+
+        sampled.add(points.get(size - 1));
+        return sampled;
+    }
+
+    private static double x(AnalyticsDTO.SpendingTrend point) {
+        return point.getDate().toEpochDay();
+    }
+
+    private static double y(AnalyticsDTO.SpendingTrend point) {
+        return point.getAmount() != null ? point.getAmount().doubleValue() : 0;
+    }
+}
@@ -160,6 +160,10 @@ public class UserService implements UserDetailsService {
             existingUser.setProfileImageUrl(userDTO.getProfileImageUrl());
         }
 
+        if (userDTO.getDemographics() != null) {
+            existingUser.setDemographics(convertDemographicsFromDTO(userDTO.getDemographics()));
+        }
+
         User updatedUser = userRepository.save(existingUser);
         log.info("Updated user: {}", updatedUser.getUsername());
         return convertToDTO(updatedUser);
@@ -198,6 +202,7 @@ public class UserService implements UserDetailsService {
                 .profileImageUrl(user.getProfileImageUrl())
                 .roles(user.getRoles())
                 .preferences(convertPreferencesToDTO(user.getPreferences()))
+                .demographics(convertDemographicsToDTO(user.getDemographics()))
                 .createdAt(user.getCreatedAt())
                 .lastLoginAt(user.getLastLoginAt())
                 .build();
@@ -215,4 +220,24 @@ public class UserService implements UserDetailsService {
                 .theme(preferences.getTheme())
                 .build();
     }
+
+    private UserDTO.DemographicsDTO convertDemographicsToDTO(User.Demographics demographics) {
+        if (demographics == null) return null;
+
+        return UserDTO.DemographicsDTO.builder()
+                .ageGroup(demographics.getAgeGroup())
+                .region(demographics.getRegion())
+                .incomeRange(demographics.getIncomeRange())
+                .userSegment(demographics.getUserSegment())
+                .build();
+    }
+
+    private User.Demographics convertDemographicsFromDTO(UserDTO.DemographicsDTO demographics) {
+        return User.Demographics.builder()
+                .ageGroup(demographics.getAgeGroup())
+                .region(demographics.getRegion())
+                .incomeRange(demographics.getIncomeRange())
+                .userSegment(demographics.getUserSegment())
+                .build();
+    }
 }
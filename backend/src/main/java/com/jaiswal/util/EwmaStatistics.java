@@ -0,0 +1,53 @@
+package com.jaiswal.util;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+/**
+ * Exponentially weighted mean and variance of a stream of values, updated in
+ * constant time and space. Recent values weigh more ({@code alpha} is the
+ * weight of the newest one), so the baseline follows gradual changes in
+ * behaviour while single values far from it still stand out.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class EwmaStatistics {
+
+    private long count;
+    private double mean;
+    private double variance;
+
+    public void add(double value, double alpha) {
+        if (count++ == 0) {
+            mean = value;
+            variance = 0;
+            return;
+        }
+        double delta = value - mean;
+        double increment = alpha * delta;
+        mean += increment;
+        variance = (1 - alpha) * (variance + delta * increment);
+    }
+
+    /**
+     * Standard deviations between {@code value} and the mean; 0 until there is
+     * any spread to measure against.
+     */
+    public double zScore(double value) {
+        double standardDeviation = getStandardDeviation();
+        return standardDeviation > 0 ? (value - mean) / standardDeviation : 0;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+}
@@ -0,0 +1,41 @@
+package com.jaiswal.util;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical merchant keys, so "STARBUCKS #1234", "Starbucks Store 88" and
+ * "starbucks" on different receipts are recognised as the same merchant.
+ */
+public final class MerchantNames {
+
+    private static final Pattern STORE_NUMBER = Pattern.compile("(#|no\\.?|store|unit)\\s*\\d+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+    private static final Pattern DIGITS = Pattern.compile("\\b\\d+\\b");
+    private static final Set<String> SUFFIXES = Set.of("inc", "llc", "ltd", "co", "corp", "company", "store", "stores");
+
+    private MerchantNames() {}
+
+    /**
+     * Lower-cased merchant name without store numbers, punctuation and legal
+     * suffixes; null if nothing identifying is left.
+     */
+    public static String canonicalize(String merchantName) {
+        if (merchantName == null) {
+            return null;
+        }
+        String name = merchantName.toLowerCase(Locale.ROOT);
+        name = STORE_NUMBER.matcher(name).replaceAll(" ");
+        name = NON_ALPHANUMERIC.matcher(name).replaceAll(" ");
+        name = DIGITS.matcher(name).replaceAll(" ");
+
+        StringBuilder key = new StringBuilder();
+        for (String word : name.trim().split("\\s+")) {
+            if (!word.isEmpty() && !SUFFIXES.contains(word)) {
+                key.append(key.length() > 0 ? "-" : "").append(word);
+            }
+        }
+        return key.length() > 0 ? key.toString() : null;
+    }
+}
@@ -0,0 +1,230 @@
+package com.jaiswal.util;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch for non-negative values with a relative error
+ * guarantee (the DDSketch scheme).
+ * <p>
+ * Values are counted in logarithmic buckets: bucket {@code i} holds values in
+ * {@code (gamma^(i-1), gamma^i]} with {@code gamma = (1 + a) / (1 - a)}, so any
+ * quantile is reported within a relative error {@code a} of the true value.
+ * Memory depends only on the value range, not on how many values were added,
+ * and is capped at {@code maxBuckets}; past the cap the lowest buckets are
+ * folded together, trading accuracy at the low end for the high percentiles.
+ * Sketches built with the same accuracy merge by adding bucket counts.
+ * <p>
+ * Rank and quantile lookups use cumulative bucket counts built once per
+ * unchanged sketch: {@link #rank} is a constant-time bucket lookup and
+ * {@link #quantile} a binary search, so neither depends on the number of values.
+ * Serialized by field (Mongo and the cache codecs) so stored sketches keep their buckets.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    // Values below this are counted as zero
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+    private static final int INITIAL_BUCKETS = 64;
+    private static final int GROW_SLACK = 32;
+
+    private double relativeAccuracy;
+    private int maxBuckets;
+    private int offset;         // bucket index of counts[0]
+    private long[] counts;
+    private long zeroCount;
+    private long count;
+
+    private transient double logGamma;
+    private transient volatile long[] cumulativeCounts;  // zeroCount + counts[0..i], rebuilt after changes
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be in (0, 1): " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.maxBuckets = maxBuckets;
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, long occurrences) {
+        if (occurrences <= 0) {
+            return;
+        }
+        cumulativeCounts = null;
+        count += occurrences;
+        if (value < MIN_INDEXABLE_VALUE) {
+            zeroCount += occurrences;
+            return;
+        }
+        increment(bucketIndex(value), occurrences);
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy");
+        }
+        cumulativeCounts = null;
+        count += other.count;
+        zeroCount += other.zeroCount;
+        if (other.counts == null) {
+            return;
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] > 0) {
+                increment(other.offset + i, other.counts[i]);
+            }
+        }
+    }
+
+    public QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy, maxBuckets);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Nearest-rank quantile: the smallest value with at least {@code q * count}
+     * values at or below it. Returns 0 for an empty sketch.
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, Math.min(count, (long) Math.ceil(q * count)));
+        if (rank <= zeroCount) {
+            return 0.0;
+        }
+
+        // First bucket whose cumulative count reaches the rank
+        long[] cumulative = cumulativeCounts();
+        int position = Arrays.binarySearch(cumulative, rank);
+        if (position < 0) {
+            position = -position - 1;
+        } else {
+            while (position > 0 && cumulative[position - 1] == rank) {
+                position--;
+            }
+        }
+        return bucketValue(offset + Math.min(position, cumulative.length - 1));
+    }
+
+    /**
+     * Fraction of values below {@code value}, counting values that share its
+     * bucket as half below (a mid-rank), so the result is accurate to within
+     * the bucket containing {@code value}. Returns 0 for an empty sketch.
+     */
+    public double rank(double value) {
+        if (count == 0) {
+            return 0.0;
+        }
+        if (value < MIN_INDEXABLE_VALUE) {
+            return zeroCount / 2.0 / count;
+        }
+        if (counts == null) {
+            return 1.0;
+        }
+
+        int position = bucketIndex(value) - offset;
+        if (position < 0) {
+            return (double) zeroCount / count;
+        }
+        if (position >= counts.length) {
+            return 1.0;
+        }
+        long[] cumulative = cumulativeCounts();
+        long below = position == 0 ? zeroCount : cumulative[position - 1];
+        return (below + counts[position] / 2.0) / count;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // Retained buckets; bounded by maxBuckets regardless of count
+    public int getBucketCount() {
+        return counts == null ? 0 : counts.length;
+    }
+
+    private long[] cumulativeCounts() {
+        long[] cumulative = cumulativeCounts;
+        if (cumulative == null) {
+            cumulative = new long[counts.length];
+            long running = zeroCount;
+            for (int i = 0; i < counts.length; i++) {
+                running += counts[i];
+                cumulative[i] = running;
+            }
+            cumulativeCounts = cumulative;
+        }
+        return cumulative;
+    }
+
+    private int bucketIndex(double value) {
+        return (int) Math.ceil(Math.log(value) / logGamma());
+    }
+
+    private void increment(int index, long occurrences) {
+        if (counts == null) {
+            counts = new long[INITIAL_BUCKETS];
+            offset = index - INITIAL_BUCKETS / 2;
+        }
+        if (index < offset || index >= offset + counts.length) {
+            grow(index);
+        }
+        // Indexes below the range were folded into the lowest bucket
+        counts[Math.max(index - offset, 0)] += occurrences;
+    }
+
+    private void grow(int index) {
+        int currentHigh = offset + counts.length - 1;
+        int low = Math.min(offset, index);
+        int high = Math.max(currentHigh, index);
+
+        if (high - low + 1 >= maxBuckets) {
+            low = high - maxBuckets + 1;
+        } else if (index < offset) {
+            low = Math.max(low - GROW_SLACK, high - maxBuckets + 1);
+        } else {
+            high = Math.min(high + GROW_SLACK, low + maxBuckets - 1);
+        }
+
+        long[] grown = new long[high - low + 1];
+        for (int i = 0; i < counts.length; i++) {
+            grown[Math.max(offset + i, low) - low] += counts[i];
+        }
+        counts = grown;
+        offset = low;
+    }
+
+    // Midpoint (in relative terms) of the bucket's range, within relativeAccuracy of any value in it
+    private double bucketValue(int index) {
+        double gamma = Math.exp(logGamma());
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double logGamma() {
+        if (logGamma == 0.0) {
+            logGamma = Math.log((1 + relativeAccuracy) / (1 - relativeAccuracy));
+        }
+        return logGamma;
+    }
+}
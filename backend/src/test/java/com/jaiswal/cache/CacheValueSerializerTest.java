@@ -0,0 +1,244 @@
+package com.jaiswal.cache;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.dto.AnalyticsDTO;
+import com.jaiswal.model.dto.ReceiptDTO;
+import com.jaiswal.model.dto.ReportDTO;
+import com.jaiswal.util.QuantileSketch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheValueSerializerTest {
+
+    private final CacheValueSerializer smile = CacheValueSerializer.forCodec("smile", 1024);
+    private final CacheValueSerializer json = CacheValueSerializer.forCodec("json", 1024);
+
+    @Test
+    void roundTripsReceiptPage() {
+        Page<ReceiptDTO> page = new PageImpl<>(receipts(20), PageRequest.of(2, 20), 95);
+
+        Object decoded = smile.deserialize(smile.serialize(page));
+
+        Page<?> result = assertInstanceOf(Page.class, decoded);
+        assertEquals(page.getContent(), result.getContent());
+        assertEquals(2, result.getNumber());
+        assertEquals(20, result.getSize());
+        assertEquals(95, result.getTotalElements());
+    }
+
+    @Test
+    void roundTripsCommunityInsightSketches() {
+        QuantileSketch sketch = new QuantileSketch();
+        IntStream.rangeClosed(1, 1000).forEach(sketch::add);
+        CommunityInsight insight = CommunityInsight.builder()
+                .insightType("SPENDING_AVERAGE")
+                .distributions(List.of(CommunityInsight.SpendDistribution.builder()
+                        .categoryKey("groceries").category("Groceries").period("2026-09").sketch(sketch).build()))
+                .build();
+
+        CommunityInsight result = assertInstanceOf(CommunityInsight.class, smile.deserialize(smile.serialize(insight)));
+
+        QuantileSketch decoded = result.getDistributions().get(0).getSketch();
+        assertEquals(1000, decoded.getCount());
+        assertEquals(sketch.rank(250), decoded.rank(250));
+        assertEquals(sketch.quantile(0.9), decoded.quantile(0.9));
+    }
+
+    @Test
+    void roundTripsAnalyticsAndReports() {
+        AnalyticsDTO analytics = analytics();
+        ReportDTO report = report(500);
+
+        assertEquals(analytics, smile.deserialize(smile.serialize(analytics)));
+        assertEquals(report, smile.deserialize(smile.serialize(report)));
+        assertEquals(report, json.deserialize(json.serialize(report)));
+    }
+
+    @Test
+    void compressesOnlyAboveThreshold() {
+        byte[] small = smile.serialize(receipts(1).get(0));
+        byte[] large = smile.serialize(report(500));
+
+        assertEquals(CacheValueSerializer.MAGIC, small[0]);
+        assertEquals(0, small[3] & 0x01);
+        assertEquals(1, large[3] & 0x01);
+    }
+
+    @Test
+    void readsEntriesWrittenByOtherCodecsAndLegacyJson() {
+        ReportDTO report = report(10);
+
+        assertEquals(report, smile.deserialize(json.serialize(report)));
+        assertEquals(report, json.deserialize(smile.serialize(report)));
+        // Entries written before the codec header existed are plain JSON
+        assertEquals(report, smile.deserialize(new JsonCacheValueCodec().encode(report)));
+    }
+
+    @Test
+    void roundTripsTimestampedValues() {
+        TimestampedValue trends = new TimestampedValue(analytics().getSpendingTrends(), 1_760_000_000_000L);
+        TimestampedValue empty = new TimestampedValue(null, 1_760_000_000_000L);
+
+        assertEquals(trends, smile.deserialize(smile.serialize(trends)));
+        assertEquals(trends, json.deserialize(json.serialize(trends)));
+        assertEquals(empty, smile.deserialize(smile.serialize(empty)));
+    }
+
+    @Test
+    void preservesCachedNulls() {
+        assertSame(NullValue.INSTANCE, smile.deserialize(smile.serialize(NullValue.INSTANCE)));
+    }
+
+    /**
+     * Bytes per entry and encode/decode cost for the real cached DTO shapes.
+     * Run with {@code -Dbenchmarks=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+    void benchmarkCodecs() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("Page<ReceiptDTO>(20)", new PageImpl<>(receipts(20), PageRequest.of(0, 20), 500));
+        values.put("AnalyticsDTO(90 days)", analytics());
+        values.put("ReportDTO(2000 receipts)", report(2000));
+
+        Map<String, CacheValueSerializer> serializers = Map.of(
+                "json (uncompressed)", CacheValueSerializer.forCodec("json", Integer.MAX_VALUE),
+                "json+deflate", json,
+                "smile (uncompressed)", CacheValueSerializer.forCodec("smile", Integer.MAX_VALUE),
+                "smile+deflate", smile);
+
+        values.forEach((valueName, value) -> serializers.forEach((codecName, serializer) -> {
+            int iterations = 200;
+            byte[] bytes = null;
+            for (int i = 0; i < 50; i++) {
+                serializer.deserialize(serializer.serialize(value));
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                bytes = serializer.serialize(value);
+            }
+            long encodeNanos = (System.nanoTime() - start) / iterations;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                serializer.deserialize(bytes);
+            }
+            long decodeNanos = (System.nanoTime() - start) / iterations;
+
+            System.out.printf("%-26s %-22s %9d bytes  encode %8.1f us  decode %8.1f us%n",
+                    valueName, codecName, bytes.length, encodeNanos / 1000.0, decodeNanos / 1000.0);
+        }));
+    }
+
+    private List<ReceiptDTO> receipts(int count) {
+        String[] merchants = {"Whole Foods Market", "Shell", "Blue Bottle Cafe", "CVS Pharmacy", "Amazon"};
+        return IntStream.range(0, count)
+                .mapToObj(i -> ReceiptDTO.builder()
+                        .id("66f1c0a2b3d4e5f6a7b8c9" + String.format("%02d", i % 100))
+                        .userId("66f1c0a2b3d4e5f6a7b8c000")
+                        .merchantName(merchants[i % merchants.length])
+                        .totalAmount(BigDecimal.valueOf(1000 + i * 37L, 2))
+                        .date(LocalDate.of(2026, 1, 1).plusDays(i % 365))
+                        .categoryId("cat-" + (i % 8))
+                        .imageUrl("/uploads/receipts/66f1c0a2b3d4e5f6a7b8c000/receipt-" + i + ".jpg")
+                        .originalFileName("IMG_" + (4000 + i) + ".jpg")
+                        .items(List.of(ReceiptDTO.ReceiptItemDTO.builder()
+                                .name("Item " + (i % 12))
+                                .quantity(1 + i % 3)
+                                .unitPrice(BigDecimal.valueOf(499, 2))
+                                .totalPrice(BigDecimal.valueOf(499L * (1 + i % 3), 2))
+                                .build()))
+                        .status(Receipt.ReceiptStatus.PROCESSED)
+                        .createdAt(LocalDateTime.of(2026, 1, 1, 12, 0).plusHours(i))
+                        .updatedAt(LocalDateTime.of(2026, 1, 1, 12, 0).plusHours(i))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    private AnalyticsDTO analytics() {
+        List<AnalyticsDTO.SpendingTrend> trends = IntStream.range(0, 90)
+                .mapToObj(i -> AnalyticsDTO.SpendingTrend.builder()
+                        .date(LocalDate.of(2026, 1, 1).plusDays(i))
+                        .amount(BigDecimal.valueOf(2000 + i * 13L, 2))
+                        .transactionCount(1 + i % 4)
+                        .build())
+                .collect(Collectors.toList());
+
+        List<AnalyticsDTO.CategoryBreakdown> breakdown = IntStream.range(0, 8)
+                .mapToObj(i -> AnalyticsDTO.CategoryBreakdown.builder()
+                        .categoryId("cat-" + i)
+                        .categoryName("Category " + i)
+                        .categoryColor("#6366f1")
+                        .amount(BigDecimal.valueOf(10000 + i * 500L, 2))
+                        .percentage(12.5)
+                        .transactionCount(10 + i)
+                        .build())
+                .collect(Collectors.toList());
+
+        return AnalyticsDTO.builder()
+                .spendingSummary(AnalyticsDTO.SpendingSummary.builder()
+                        .totalThisMonth(new BigDecimal("1234.56"))
+                        .totalLastMonth(new BigDecimal("1100.00"))
+                        .totalThisYear(new BigDecimal("9800.10"))
+                        .averagePerDay(new BigDecimal("41.15"))
+                        .averagePerTransaction(new BigDecimal("22.40"))
+                        .totalTransactions(55)
+                        .percentageChange(new BigDecimal("12.2300"))
+                        .build())
+                .categoryBreakdown(breakdown)
+                .spendingTrends(trends)
+                .monthlyComparisons(new ArrayList<>())
+                .insights(List.of(AnalyticsDTO.InsightData.builder()
+                        .type("TOP_CATEGORY")
+                        .title("Top Spending Category")
+                        .description("You spent 30.0% of your budget on Dining")
+                        .icon("📊")
+                        .data(Map.of("category", "Dining"))
+                        .build()))
+                .build();
+    }
+
+    private ReportDTO report(int receiptCount) {
+        Map<String, BigDecimal> categoryTotals = new HashMap<>();
+        IntStream.range(0, 8).forEach(i -> categoryTotals.put("cat-" + i, BigDecimal.valueOf(5000 + i, 2)));
+
+        return ReportDTO.builder()
+                .reportId("5b0f6a47-8d1f-4a1c-9a0c-5ad1c1f0b001")
+                .reportType("Yearly")
+                .title("Yearly Financial Report")
+                .userId("66f1c0a2b3d4e5f6a7b8c000")
+                .period("2026")
+                .generatedAt(LocalDate.of(2026, 10, 1))
+                .totalAmount(new BigDecimal("12345.67"))
+                .categoryBreakdown(categoryTotals)
+                .receipts(receipts(receiptCount))
+                .summary(ReportDTO.ReportSummary.builder()
+                        .totalAmount(new BigDecimal("12345.67"))
+                        .totalTransactions(receiptCount)
+                        .averageTransaction(new BigDecimal("24.69"))
+                        .topCategory("cat-3")
+                        .topMerchant("Amazon")
+                        .categoryTotals(categoryTotals)
+                        .build())
+                .metadata(new HashMap<>(Map.of("dateRange", "2026-01-01 to 2026-12-31")))
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.jaiswal.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheVersionServiceTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final TwoTierCacheManager cacheManager = mock(TwoTierCacheManager.class);
+    // The version counters, as Redis would hold them
+    private final Map<String, Long> counters = new HashMap<>();
+    private CacheVersionService versions;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(invocation -> {
+            Long version = counters.get(invocation.<String>getArgument(0));
+            return version != null ? version.toString() : null;
+        });
+        when(values.increment(anyString())).thenAnswer(invocation ->
+                counters.merge(invocation.getArgument(0), 1L, Long::sum));
+
+        versions = new CacheVersionService(redisTemplate, cacheManager);
+    }
+
+    @Test
+    void bumpingADataTypeMovesOnTheKeysOfCachesDerivedFromIt() {
+        String analytics = versions.userKey("analytics", "42");
+        String breakdown = versions.userKey("categoryBreakdown", "42");
+        String receipts = versions.userKey("receipts", "42");
+
+        versions.bump("42", CacheDataType.CATEGORIES);
+
+        assertNotEquals(analytics, versions.userKey("analytics", "42"));
+        assertNotEquals(breakdown, versions.userKey("categoryBreakdown", "42"));
+        assertEquals(receipts, versions.userKey("receipts", "42"));
+        verify(cacheManager).publishEviction(eq(CacheVersionService.VERSIONS), anyString());
+    }
+
+    @Test
+    void bumpsOnlyMoveOnTheUsersOwnKeys() {
+        String other = versions.userKey("receipts", "7");
+
+        versions.bump("42", CacheDataType.RECEIPTS);
+
+        assertEquals(other, versions.userKey("receipts", "7"));
+    }
+
+    @Test
+    void monthBumpsOnlyMoveOnTheReceiptsMonths() {
+        YearMonth february = YearMonth.of(2024, 2);
+        YearMonth march = YearMonth.of(2024, 3);
+        YearMonth april = YearMonth.of(2024, 4);
+        String februaryKey = versions.monthKey("42", february);
+        String marchKey = versions.monthKey("42", march);
+        String aprilKey = versions.monthKey("42", april);
+
+        // A receipt moved from February to April
+        versions.bumpMonths("42", LocalDate.of(2024, 2, 10), LocalDate.of(2024, 4, 2), null);
+
+        assertNotEquals(februaryKey, versions.monthKey("42", february));
+        assertEquals(marchKey, versions.monthKey("42", march));
+        assertNotEquals(aprilKey, versions.monthKey("42", april));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void versionsBumpedOnAnotherNodeAreReadAgainAfterTheInvalidation() {
+        String receipts = versions.userKey("receipts", "42");
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass((Class) Consumer.class);
+        verify(cacheManager).addLocalInvalidationListener(eq(CacheVersionService.VERSIONS), listener.capture());
+
+        // The other node increments Redis and broadcasts the version key
+        counters.put("spendora:cache-version:42:RECEIPTS", 1L);
+        assertEquals(receipts, versions.userKey("receipts", "42"), "served from the local copy until invalidated");
+        listener.getValue().accept("spendora:cache-version:42:RECEIPTS");
+
+        assertNotEquals(receipts, versions.userKey("receipts", "42"));
+    }
+
+    @Test
+    void rejectsCachesWithoutDeclaredDependencies() {
+        assertThrows(IllegalArgumentException.class, () -> versions.userKey("unknown", "42"));
+    }
+}
@@ -0,0 +1,155 @@
+package com.jaiswal.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SingleFlightLoaderTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final CacheTierStatistics statistics = new CacheTierStatistics();
+    private final SingleFlightLoader loader = new SingleFlightLoader(redisTemplate, "node-1",
+            Duration.ofMillis(200), Duration.ofMillis(10));
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+    }
+
+    @Test
+    void concurrentMissesOnOneNodeComputeOnce() throws Exception {
+        int callers = 8;
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger computations = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            results.add(pool.submit(() -> loader.load("analytics", "42", () -> null, () -> {
+                computations.incrementAndGet();
+                computing.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return "value";
+            }, value -> { }, statistics)));
+            assertTrue(computing.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(pool.submit(() -> loader.load("analytics", "42", () -> null, () -> {
+                    computations.incrementAndGet();
+                    return "other";
+                }, value -> { }, statistics)));
+            }
+            // Let the followers reach the leader's flight before it completes
+            while ((long) statistics.snapshot(0).get("coalesced") < callers - 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, computations.get());
+            assertEquals(1L, statistics.snapshot(0).get("loads"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitsForTheValueOfTheNodeHoldingTheLease() throws Exception {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        AtomicInteger lookups = new AtomicInteger();
+
+        Object value = loader.load("analytics", "42",
+                () -> lookups.incrementAndGet() < 3 ? null : new SimpleValueWrapper("remote"),
+                () -> fail("computed although another node holds the lease"), stored -> { }, statistics);
+
+        assertEquals("remote", value);
+        assertEquals(1L, statistics.snapshot(0).get("coalesced"));
+    }
+
+    @Test
+    void computesLocallyOnceTheLeaseOutlivesItsTtl() throws Exception {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        AtomicReference<Object> stored = new AtomicReference<>();
+
+        Object value = loader.load("analytics", "42", () -> null, () -> "local", stored::set, statistics);
+
+        assertEquals("local", value);
+        assertEquals("local", stored.get());
+        assertEquals(1L, statistics.snapshot(0).get("loads"));
+    }
+
+    @Test
+    void computesWithoutCoalescingWhenRedisIsUnreachable() throws Exception {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        assertEquals("local", loader.load("analytics", "42", () -> null, () -> "local", value -> { }, statistics));
+    }
+
+    @Test
+    void queuesOneRefreshPerKey() {
+        List<Runnable> queued = new ArrayList<>();
+        AtomicInteger refreshes = new AtomicInteger();
+
+        loader.refreshAsync("analytics", "42", () -> "fresh", value -> refreshes.incrementAndGet(), queued::add, statistics);
+        loader.refreshAsync("analytics", "42", () -> "fresh", value -> refreshes.incrementAndGet(), queued::add, statistics);
+        assertEquals(1, queued.size());
+
+        queued.get(0).run();
+        assertEquals(1, refreshes.get());
+
+        // Once done, the key can be refreshed again
+        loader.refreshAsync("analytics", "42", () -> "fresh", value -> refreshes.incrementAndGet(), queued::add, statistics);
+        assertEquals(2, queued.size());
+    }
+
+    @Test
+    void skipsTheRefreshWhenThePoolIsSaturated() {
+        // As TwoTierCache does before asking for a refresh
+        statistics.recordStaleHit();
+        loader.refreshAsync("analytics", "42", () -> "fresh", value -> { }, task -> {
+            throw new RejectedExecutionException("full");
+        }, statistics);
+        assertEquals(1L, statistics.snapshot(0).get("refreshesRejected"));
+
+        // The rejected refresh does not keep the key marked as refreshing
+        List<Runnable> queued = new ArrayList<>();
+        loader.refreshAsync("analytics", "42", () -> "fresh", value -> { }, queued::add, statistics);
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    void skipsTheRefreshWhileAnotherNodeHoldsTheLease() {
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        List<Runnable> queued = new ArrayList<>();
+        AtomicInteger computations = new AtomicInteger();
+
+        loader.refreshAsync("analytics", "42", computations::incrementAndGet, value -> { }, queued::add, statistics);
+        queued.get(0).run();
+
+        assertEquals(0, computations.get());
+    }
+}
@@ -0,0 +1,132 @@
+package com.jaiswal.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TwoTierCacheTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> values = mock(ValueOperations.class);
+    private final TwoTierCacheManager manager = mock(TwoTierCacheManager.class);
+    // Stands in for the Redis tier
+    private final ConcurrentMapCache redisCache = new ConcurrentMapCache("analytics");
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        when(manager.getSingleFlightLoader()).thenReturn(new SingleFlightLoader(redisTemplate, "node-1",
+                Duration.ofSeconds(5), Duration.ofMillis(10)));
+    }
+
+    @Test
+    void concurrentMissesLoadOnceAndFillBothTiers() throws Exception {
+        TwoTierCache cache = cache(null);
+        int callers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("42", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals("value", redisCache.get("42").get());
+        assertEquals("value", cache.get("42", () -> fail("loaded again")));
+    }
+
+    @Test
+    void loaderFailuresAreRethrownAndNotCached() {
+        TwoTierCache cache = cache(null);
+
+        assertThrows(Cache.ValueRetrievalException.class,
+                () -> cache.get("42", () -> {
+                    throw new IllegalStateException("Mongo unavailable");
+                }));
+        assertNull(redisCache.get("42"));
+    }
+
+    @Test
+    void staleValuesAreServedWhileOneRefreshRuns() {
+        List<Runnable> refreshes = refreshExecutor();
+        TwoTierCache cache = cache(Duration.ofMinutes(5));
+        long writtenAt = System.currentTimeMillis() - Duration.ofMinutes(10).toMillis();
+        redisCache.put("42", new TimestampedValue("stale", writtenAt));
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("stale", cache.get("42", () -> "fresh-" + loads.incrementAndGet()));
+        assertEquals("stale", cache.get("42", () -> "fresh-" + loads.incrementAndGet()));
+        assertEquals(0, loads.get(), "readers never wait for the refresh");
+        assertEquals(1, refreshes.size());
+
+        refreshes.get(0).run();
+
+        assertEquals(1, loads.get());
+        assertEquals("fresh-1", cache.get("42", () -> fail("fresh values are not refreshed")));
+        TimestampedValue stored = assertInstanceOf(TimestampedValue.class, redisCache.get("42").get());
+        assertTrue(stored.getWrittenAt() > writtenAt);
+        assertEquals(2L, cache.getStatistics().snapshot(0).get("staleHits"));
+        assertEquals(1L, cache.getStatistics().snapshot(0).get("refreshes"));
+    }
+
+    @Test
+    void plainValuesWrittenWithoutASoftTtlAreServedAsIs() {
+        List<Runnable> refreshes = refreshExecutor();
+        TwoTierCache cache = cache(Duration.ofMinutes(5));
+        redisCache.put("42", "plain");
+
+        assertEquals("plain", cache.get("42", () -> fail("not loaded")));
+        assertEquals("plain", cache.get("42", String.class));
+        assertTrue(refreshes.isEmpty());
+    }
+
+    // Queues background refreshes until the test runs them
+    private List<Runnable> refreshExecutor() {
+        List<Runnable> queued = new ArrayList<>();
+        ExecutorService executor = mock(ExecutorService.class);
+        doAnswer(invocation -> queued.add(invocation.getArgument(0))).when(executor).execute(any());
+        when(manager.getRefreshExecutor()).thenReturn(executor);
+        return queued;
+    }
+
+    private TwoTierCache cache(Duration softTtl) {
+        return new TwoTierCache("analytics", Caffeine.newBuilder().build(), redisCache, manager, softTtl);
+    }
+}
@@ -0,0 +1,187 @@
+package com.jaiswal.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReceiptChangeDispatcherTest {
+
+    private static final String FAILING = "spendora:receipt-change:rebuild:FailingListener";
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+    private final ReceiptChangeListener healthy = mock(ReceiptChangeListener.class);
+    private final FailingListener failing = spy(new FailingListener());
+    private ReceiptChangeDispatcher dispatcher;
+
+    // The rebuild sets, as Redis would hold them
+    private final Map<String, Map<String, Double>> marked = new HashMap<>();
+    private long clock = 1_000;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(healthy.isReady()).thenReturn(true);
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(zSet.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation ->
+                set(invocation.getArgument(0)).put(invocation.getArgument(1), (double) clock++) == null);
+        when(zSet.score(anyString(), anyString())).thenAnswer(invocation ->
+                set(invocation.getArgument(0)).get((String) invocation.getArgument(1)));
+        when(zSet.rangeByScoreWithScores(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            Set<ZSetOperations.TypedTuple<String>> due = new LinkedHashSet<>();
+            set(invocation.getArgument(0)).forEach((userId, score) -> due.add(new DefaultTypedTuple<>(userId, score)));
+            return due;
+        });
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any())).thenAnswer(invocation -> {
+            Map<String, Double> set = set(invocation.<List<String>>getArgument(1).get(0));
+            String userId = invocation.getArgument(2);
+            String score = invocation.getArgument(3);
+            return set.containsKey(userId) && Long.toString(set.get(userId).longValue()).equals(score)
+                    && set.remove(userId) != null ? 1L : 0L;
+        });
+
+        dispatcher = new ReceiptChangeDispatcher(List.of(healthy, failing), redisTemplate, 1, 1);
+        ReflectionTestUtils.setField(dispatcher, "rebuildBatchSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.destroy();
+    }
+
+    @Test
+    void rebuildsOnlyTheUserAndListenerThatFailed() throws InterruptedException {
+        dispatcher.onReceiptChanged(change("user-1"));
+        dispatcher.destroy();
+
+        verify(healthy).onReceiptChanged(any());
+        assertEquals(Set.of("user-1"), set(FAILING).keySet());
+
+        dispatcher.rebuildMarked();
+
+        verify(failing).rebuild("user-1");
+        verify(healthy, never()).rebuild(anyString());
+        assertTrue(set(FAILING).isEmpty());
+    }
+
+    @Test
+    void changesForAMarkedUserWaitForTheRebuild() {
+        failing.fail = false;
+        set(FAILING).put("user-1", (double) clock++);
+        doAnswer(invocation -> {
+            // A change arriving while the rebuild runs
+            dispatcher.onReceiptChanged(change("user-1"));
+            verify(zSet, timeout(5000)).add(eq(FAILING), eq("user-1"), anyDouble());
+            return null;
+        }).doNothing().when(failing).rebuild("user-1");
+
+        dispatcher.rebuildMarked();
+
+        verify(failing, never()).onReceiptChanged(any());
+        assertEquals(Set.of("user-1"), set(FAILING).keySet(), "marked again, so rebuilt again");
+
+        dispatcher.rebuildMarked();
+
+        assertTrue(set(FAILING).isEmpty());
+        dispatcher.onReceiptChanged(change("user-1"));
+        verify(failing, timeout(5000)).onReceiptChanged(any());
+    }
+
+    @Test
+    void changesBeforeTheListenerIsReadyAreLeftToRebuilds() {
+        failing.fail = false;
+        failing.ready = false;
+
+        dispatcher.onReceiptChanged(change("user-1"));
+        verify(zSet, timeout(5000)).add(eq(FAILING), eq("user-1"), anyDouble());
+        dispatcher.rebuildMarked();
+
+        verify(failing, never()).onReceiptChanged(any());
+        verify(failing, never()).rebuild(anyString());
+        assertEquals(Set.of("user-1"), set(FAILING).keySet());
+
+        failing.ready = true;
+        dispatcher.rebuildMarked();
+
+        verify(failing).rebuild("user-1");
+    }
+
+    @Test
+    void appliesChangesOnThePublishingThreadWhenTheQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        Thread publisher = Thread.currentThread();
+        doAnswer(invocation -> {
+            if (Thread.currentThread() != publisher) {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return null;
+        }).when(healthy).onReceiptChanged(any());
+
+        // One change occupies the only thread, the failing listener's fills the queue
+        dispatcher.onReceiptChanged(change("user-1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.onReceiptChanged(change("user-2"));
+        release.countDown();
+        dispatcher.destroy();
+
+        verify(healthy, times(2)).onReceiptChanged(any());
+        verify(failing, times(2)).onReceiptChanged(any());
+        assertEquals(Set.of("user-1", "user-2"), set(FAILING).keySet());
+    }
+
+    private synchronized Map<String, Double> set(String key) {
+        return marked.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+    }
+
+    private ReceiptChangedEvent change(String userId) {
+        return new ReceiptChangedEvent(userId, "receipt-" + userId, null, ReceiptChangedEvent.Snapshot.builder()
+                .date(LocalDate.of(2026, 10, 1))
+                .totalAmount(BigDecimal.TEN)
+                .build());
+    }
+
+    static class FailingListener implements ReceiptChangeListener {
+
+        volatile boolean fail = true;
+        volatile boolean ready = true;
+
+        @Override
+        public void onReceiptChanged(ReceiptChangedEvent event) {
+            if (fail) {
+                throw new IllegalStateException("Mongo unavailable");
+            }
+        }
+
+        @Override
+        public void rebuild(String userId) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+    }
+}
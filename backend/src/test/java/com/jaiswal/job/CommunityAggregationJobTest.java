@@ -0,0 +1,127 @@
+package com.jaiswal.job;
+
+import com.jaiswal.model.document.AggregationCheckpoint;
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.User;
+import com.jaiswal.repository.AggregationCheckpointRepository;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.UserRepository;
+import com.jaiswal.service.AnonymizationService;
+import com.jaiswal.service.CommunityAggregate;
+import com.jaiswal.service.InsightCubeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CommunityAggregationJobTest {
+
+    private static final int SHARDS = 4;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ReceiptRepository receiptRepository = mock(ReceiptRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final AggregationRunRepository runRepository = mock(AggregationRunRepository.class);
+    private final AggregationCheckpointRepository checkpointRepository = mock(AggregationCheckpointRepository.class);
+    private final JobLockService jobLockService = mock(JobLockService.class);
+    private final List<AggregationCheckpoint> checkpoints = new ArrayList<>();
+    // Every user passed to a receipt query, across all batches
+    private final Set<String> aggregatedUsers = ConcurrentHashMap.newKeySet();
+    private CommunityAggregationJob job;
+
+    @BeforeEach
+    void setUp() {
+        when(jobLockService.tryAcquire(any(), any())).thenReturn(true);
+        when(checkpointRepository.save(any())).thenAnswer(invocation -> {
+            checkpoints.add(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(checkpointRepository.findByRunId(any())).thenAnswer(invocation -> new ArrayList<>(checkpoints));
+        when(receiptRepository.streamForCommunityAggregationByUserIdIn(anyCollection())).thenAnswer(invocation -> {
+            aggregatedUsers.addAll(invocation.<Collection<String>>getArgument(0));
+            return Stream.empty();
+        });
+
+        job = new CommunityAggregationJob(userRepository, receiptRepository, categoryRepository, runRepository,
+                checkpointRepository, jobLockService, mock(AnonymizationService.class), mock(InsightCubeService.class));
+        ReflectionTestUtils.setField(job, "parallelism", 2);
+        ReflectionTestUtils.setField(job, "userBatchSize", 5);
+        ReflectionTestUtils.setField(job, "distributionMonths", 3);
+        ReflectionTestUtils.setField(job, "lockTtl", Duration.ofMinutes(30));
+    }
+
+    @Test
+    void streamsTheUsersOnceAndCheckpointsEveryShard() throws Exception {
+        when(userRepository.streamAllIdsAndDemographics()).thenReturn(users(0, 103));
+
+        AggregationRun run = run();
+        job.execute(run);
+
+        verify(userRepository, times(1)).streamAllIdsAndDemographics();
+        assertEquals(Set.of(0, 1, 2, 3), checkpoints.stream().map(AggregationCheckpoint::getShard).collect(Collectors.toSet()));
+        assertEquals(103, checkpoints.stream().mapToLong(AggregationCheckpoint::getUserCount).sum());
+        assertEquals(103, aggregatedUsers.size());
+        for (AggregationCheckpoint checkpoint : checkpoints) {
+            long expected = IntStream.range(0, 103)
+                    .filter(i -> CommunityAggregationJob.shardOf(userId(i), SHARDS) == checkpoint.getShard())
+                    .count();
+            assertEquals(expected, checkpoint.getUserCount());
+        }
+        assertEquals(AggregationRun.RunStatus.COMPLETED, run.getStatus());
+    }
+
+    @Test
+    void skipsTheUsersOfCheckpointedShards() throws Exception {
+        checkpoints.add(AggregationCheckpoint.builder().runId("run-1").shard(0).userCount(0)
+                .partial(new CommunityAggregate()).build());
+        when(userRepository.streamAllIdsAndDemographics()).thenReturn(users(0, 40));
+
+        job.execute(run());
+
+        assertTrue(aggregatedUsers.stream().noneMatch(userId -> CommunityAggregationJob.shardOf(userId, SHARDS) == 0));
+        assertEquals(1, checkpoints.stream().filter(checkpoint -> checkpoint.getShard() == 0).count());
+    }
+
+    @Test
+    void stopsWhenTheLockIsLost() {
+        when(jobLockService.tryAcquire(any(), any())).thenReturn(false);
+        when(userRepository.streamAllIdsAndDemographics()).thenReturn(users(0, 103));
+
+        assertThrows(IllegalStateException.class, () -> job.execute(run()));
+    }
+
+    private AggregationRun run() {
+        return AggregationRun.builder()
+                .id("run-1")
+                .jobName(CommunityAggregationJob.JOB_NAME)
+                .shardCount(SHARDS)
+                .status(AggregationRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static Stream<User> users(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> User.builder().id(userId(i)).build());
+    }
+
+    private static String userId(int i) {
+        return String.format("user-%03d", i);
+    }
+}
@@ -0,0 +1,128 @@
+package com.jaiswal.job;
+
+import com.jaiswal.model.document.AggregationRun;
+import com.jaiswal.model.document.User;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.UserRepository;
+import com.jaiswal.service.ReportPartialService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class MonthCloseReportJobTest {
+
+    private static final YearMonth CLOSED_MONTH = YearMonth.of(2024, 2);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final AggregationRunRepository runRepository = mock(AggregationRunRepository.class);
+    private final JobLockService jobLockService = mock(JobLockService.class);
+    private final ReportPartialService partialService = mock(ReportPartialService.class);
+    private final List<String> checkpoints = new ArrayList<>();
+    private MonthCloseReportJob job;
+
+    @BeforeEach
+    void setUp() {
+        when(jobLockService.tryAcquire(any(), any())).thenReturn(true);
+        when(runRepository.save(any())).thenAnswer(invocation -> {
+            AggregationRun run = invocation.getArgument(0);
+            checkpoints.add(run.getResumeAfter());
+            return run;
+        });
+
+        job = new MonthCloseReportJob(userRepository, runRepository, jobLockService, partialService);
+        ReflectionTestUtils.setField(job, "chunkSize", 10);
+        ReflectionTestUtils.setField(job, "parallelism", 3);
+        ReflectionTestUtils.setField(job, "maxUsersPerSecond", 0);
+        ReflectionTestUtils.setField(job, "activeWithin", Duration.ofDays(90));
+        ReflectionTestUtils.setField(job, "lockTtl", Duration.ofMinutes(30));
+    }
+
+    @Test
+    void generatesEveryActiveUsersClosedMonthAndCheckpointsInOrder() throws Exception {
+        AtomicInteger closed = new AtomicInteger();
+        when(userRepository.streamActiveUserIds(any())).thenReturn(users(0, 95).onClose(closed::incrementAndGet));
+
+        AggregationRun run = run(null);
+        job.execute(run);
+
+        verify(partialService, times(95)).getMonthPartial(any(), eq(CLOSED_MONTH));
+        assertEquals(1, closed.get());
+        assertEquals(95, run.getProcessedUsers());
+        assertEquals(AggregationRun.RunStatus.COMPLETED, run.getStatus());
+        // One checkpoint per chunk, each at its last user, then the completion
+        assertEquals(List.of("user-009", "user-019", "user-029", "user-039", "user-049", "user-059",
+                "user-069", "user-079", "user-089", "user-094", "user-094"), checkpoints);
+    }
+
+    @Test
+    void resumesAfterTheCheckpointedUser() throws Exception {
+        when(userRepository.streamActiveUserIdsAfter(any(), eq("user-049"))).thenReturn(users(50, 95));
+
+        AggregationRun run = run("user-049");
+        run.setProcessedUsers(50);
+        job.execute(run);
+
+        verify(userRepository, never()).streamActiveUserIds(any());
+        verify(partialService, times(45)).getMonthPartial(any(), eq(CLOSED_MONTH));
+        verify(partialService, never()).getMonthPartial(eq("user-049"), any());
+        assertEquals(95, run.getProcessedUsers());
+    }
+
+    @Test
+    void aClosedMonthIsGeneratedOnce() {
+        AggregationRun completed = run(null);
+        completed.setStatus(AggregationRun.RunStatus.COMPLETED);
+        when(runRepository.findTopByJobNameOrderByStartedAtDesc(MonthCloseReportJob.JOB_NAME))
+                .thenReturn(Optional.of(completed));
+
+        assertTrue(job.runToExecute(CLOSED_MONTH).isEmpty());
+        assertEquals(CLOSED_MONTH.plusMonths(1).toString(),
+                job.runToExecute(CLOSED_MONTH.plusMonths(1)).orElseThrow().getPeriod());
+    }
+
+    @Test
+    void aFailedUserIsLeftForOnDemandGeneration() throws Exception {
+        when(userRepository.streamActiveUserIds(any())).thenReturn(users(0, 20));
+        when(partialService.getMonthPartial(eq("user-003"), any())).thenThrow(new IllegalStateException("boom"));
+
+        AggregationRun run = run(null);
+        job.execute(run);
+
+        assertEquals(19, run.getProcessedUsers());
+        assertEquals(AggregationRun.RunStatus.COMPLETED, run.getStatus());
+    }
+
+    private AggregationRun run(String resumeAfter) {
+        return AggregationRun.builder()
+                .id("run-1")
+                .jobName(MonthCloseReportJob.JOB_NAME)
+                .period(CLOSED_MONTH.toString())
+                .status(AggregationRun.RunStatus.RUNNING)
+                .startedAt(LocalDateTime.of(2024, 3, 1, 0, 10))
+                .resumeAfter(resumeAfter)
+                .build();
+    }
+
+    private Stream<User> users(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> {
+            User user = new User();
+            user.setId(String.format("user-%03d", i));
+            return user;
+        });
+    }
+}
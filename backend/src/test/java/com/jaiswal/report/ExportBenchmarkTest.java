@@ -0,0 +1,121 @@
+package com.jaiswal.report;
+
+import com.jaiswal.model.document.Receipt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Rows per second and peak heap for each export path over the same generated
+ * receipts. Opt in with {@code -Dbenchmarks=true}; {@code -Dbenchmark.rows}
+ * sets the row count (default 100000).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class ExportBenchmarkTest {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+
+    @TempDir
+    File swapDirectory;
+
+    @Test
+    void compareExportPaths() throws Exception {
+        ReportProperties properties = new ReportProperties();
+        properties.setTemplates(Map.of("xlsx", List.of("receipt_ledger")));
+        properties.getExport().setSwapDirectory(swapDirectory.getPath());
+        ReportTemplateRegistry registry = new ReportTemplateRegistry(properties);
+        registry.load();
+        JasperStreamingExporter jasper = new JasperStreamingExporter(properties);
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("REPORT_TITLE", "Financial Report");
+        params.put("USER_ID", "user-1");
+        params.put("GENERATED_DATE", "2024-03-31");
+
+        run("jasper xlsx", out -> {
+            try (ReceiptCursorDataSource receipts = new ReceiptCursorDataSource(receipts())) {
+                jasper.export(registry.get("xlsx", null), params, receipts, "xlsx", out);
+            }
+        });
+        run("native xlsx", out -> new XlsxReceiptExporter(properties).write(receipts().iterator(), out));
+        run("csv", out -> new CsvReceiptExporter().write(receipts().iterator(), out));
+        run("ndjson", out -> new NdjsonReceiptExporter().write(receipts().iterator(), out));
+    }
+
+    private void run(String name, Export export) throws Exception {
+        System.gc();
+        resetPeakHeap();
+        CountingOutputStream out = new CountingOutputStream();
+        long start = System.nanoTime();
+        export.to(out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-12s %,10.0f rows/s  %,8d KB out  %,6d MB peak heap%n",
+                name, ROWS / seconds, out.bytes / 1024, peakHeap() / (1024 * 1024));
+    }
+
+    private void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    // Generated lazily, like a Mongo cursor
+    private Stream<Receipt> receipts() {
+        Random random = new Random(17);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        return Stream.generate(() -> Receipt.builder()
+                        .id(Long.toHexString(random.nextLong()))
+                        .userId("user-1")
+                        .merchantName("Merchant " + random.nextInt(500))
+                        .categoryId("cat-" + random.nextInt(12))
+                        .description("Receipt line items " + random.nextInt(1000))
+                        .date(start.plusDays(random.nextInt(1500)))
+                        .totalAmount(BigDecimal.valueOf(1 + random.nextInt(50_000), 2))
+                        .build())
+                .limit(ROWS);
+    }
+
+    private interface Export {
+        void to(OutputStream out) throws Exception;
+    }
+
+    // Discards the file, counting its size
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
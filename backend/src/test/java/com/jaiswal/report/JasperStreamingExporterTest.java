@@ -0,0 +1,81 @@
+package com.jaiswal.report;
+
+import com.jaiswal.exception.ExportCapacityExceededException;
+import com.jaiswal.model.document.Receipt;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JasperStreamingExporterTest {
+
+    @TempDir
+    File swapDirectory;
+
+    @Test
+    void fillsFromACursorUnderTheVirtualizerAndCleansUpTheSwapFile() throws Exception {
+        ReportProperties properties = new ReportProperties();
+        properties.setTemplates(Map.of("xlsx", List.of("financial_report")));
+        properties.getExport().setMaxPagesInMemory(5);
+        properties.getExport().setSwapDirectory(swapDirectory.getPath());
+        ReportTemplateRegistry registry = new ReportTemplateRegistry(properties);
+        registry.load();
+
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ReceiptCursorDataSource receipts = new ReceiptCursorDataSource(
+                receipts(5_000).peek(receipt -> read.incrementAndGet()).onClose(closed::incrementAndGet))) {
+            new JasperStreamingExporter(properties).export(registry.get("xlsx", null),
+                    Map.of("REPORT_TITLE", "Financial Report", "USER_ID", "user-1", "GENERATED_DATE", "2024-03-31"),
+                    receipts, "xlsx", out);
+        }
+
+        assertEquals(5_000, read.get());
+        assertEquals(1, closed.get());
+        // A zip container (xlsx)
+        assertEquals("PK", new String(out.toByteArray(), 0, 2, StandardCharsets.US_ASCII));
+        // The swap file holding the pages beyond the in-memory window is removed
+        assertEquals(0, swapDirectory.listFiles().length);
+    }
+
+    @Test
+    void limiterTurnsAwayExportsBeyondItsSlots() {
+        ReportProperties properties = new ReportProperties();
+        properties.getExport().setMaxConcurrent(1);
+        properties.getExport().setAcquireTimeout(Duration.ofMillis(10));
+        ExportLimiter limiter = new ExportLimiter(properties);
+
+        limiter.acquire();
+        assertThrows(ExportCapacityExceededException.class, limiter::acquire);
+        limiter.release();
+        limiter.acquire();
+        assertEquals(0, limiter.availableSlots());
+    }
+
+    // Generated lazily, like a Mongo cursor
+    private Stream<Receipt> receipts(int count) {
+        Random random = new Random(3);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        return Stream.generate(() -> Receipt.builder()
+                        .userId("user-1")
+                        .merchantName("Merchant " + random.nextInt(200))
+                        .categoryId("cat-" + random.nextInt(8))
+                        .date(start.plusDays(random.nextInt(1500)))
+                        .totalAmount(BigDecimal.valueOf(1 + random.nextInt(50_000), 2))
+                        .build())
+                .limit(count);
+    }
+}
@@ -0,0 +1,83 @@
+package com.jaiswal.report;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jaiswal.model.document.Receipt;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptTableExporterTest {
+
+    @Test
+    void csvQuotesSpecialCharactersAndDefusesFormulas() throws Exception {
+        Receipt receipt = Receipt.builder()
+                .id("r-1")
+                .date(LocalDate.of(2024, 3, 5))
+                .merchantName("=HYPERLINK(\"http://x\")")
+                .categoryId("cat-1")
+                .description("Milk, eggs\nand \"bread\"")
+                .totalAmount(new BigDecimal("12.50"))
+                .build();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvReceiptExporter().write(List.of(receipt).iterator(), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(String.join(",", ReceiptTableExporter.COLUMNS), lines[0]);
+        assertEquals("r-1,2024-03-05,\"'=HYPERLINK(\"\"http://x\"\")\",cat-1,\"Milk, eggs\nand \"\"bread\"\"\",12.50,PROCESSED",
+                lines[1]);
+    }
+
+    @Test
+    void ndjsonWritesOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new NdjsonReceiptExporter().write(receipts(3).iterator(), out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        JsonNode first = new ObjectMapper().readTree(lines[0]);
+        assertTrue(first.get("date").asText().matches("\\d{4}-\\d{2}-\\d{2}"));
+        assertEquals("PROCESSED", first.get("status").asText());
+        assertTrue(first.get("totalAmount").isNumber());
+    }
+
+    @Test
+    void xlsxStreamsEveryRowThroughASmallWindow() throws Exception {
+        ReportProperties properties = new ReportProperties();
+        properties.getExport().setXlsxRowWindow(10);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new XlsxReceiptExporter(properties).write(receipts(2_000).iterator(), out);
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheet("Receipts");
+            assertEquals(2_000, sheet.getLastRowNum());
+            assertEquals("merchantName", sheet.getRow(0).getCell(2).getStringCellValue());
+            assertTrue(sheet.getRow(2_000).getCell(5).getNumericCellValue() > 0);
+        }
+    }
+
+    private Stream<Receipt> receipts(int count) {
+        Random random = new Random(9);
+        return Stream.generate(() -> Receipt.builder()
+                        .userId("user-1")
+                        .merchantName("Merchant " + random.nextInt(200))
+                        .categoryId("cat-" + random.nextInt(8))
+                        .date(LocalDate.of(2020, 1, 1).plusDays(random.nextInt(1500)))
+                        .totalAmount(BigDecimal.valueOf(1 + random.nextInt(50_000), 2))
+                        .build())
+                .limit(count);
+    }
+}
@@ -0,0 +1,65 @@
+package com.jaiswal.report;
+
+import com.jaiswal.exception.ValidationException;
+import com.jaiswal.model.dto.ReceiptDTO;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.data.JRBeanCollectionDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportTemplateRegistryTest {
+
+    private ReportTemplateRegistry registry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReportProperties properties = new ReportProperties();
+        properties.setTemplates(Map.of(
+                "pdf", List.of("financial_report", "receipt_ledger"),
+                "xlsx", List.of("receipt_ledger")));
+        registry = new ReportTemplateRegistry(properties);
+        registry.load();
+    }
+
+    @Test
+    void servesTheBuildCompiledTemplatesByType() {
+        assertEquals("financial_report", registry.get("pdf", null).getName());
+        assertEquals("receipt_ledger", registry.get("PDF", "receipt_ledger").getName());
+        assertEquals("receipt_ledger", registry.get("xlsx", null).getName());
+        // Loaded once: every lookup returns the same compiled instance
+        assertSame(registry.get("pdf", null), registry.get("pdf", "financial_report"));
+    }
+
+    @Test
+    void rejectsUnknownTypesAndTemplatesNotAllowedForTheType() {
+        assertThrows(ValidationException.class, () -> registry.get("docx", null));
+        assertThrows(ValidationException.class, () -> registry.get("xlsx", "financial_report"));
+    }
+
+    @Test
+    void compiledTemplatesFillFromReceipts() throws Exception {
+        List<ReceiptDTO> receipts = List.of(
+                ReceiptDTO.builder().merchantName("Shell").date(LocalDate.of(2024, 3, 2))
+                        .totalAmount(new BigDecimal("45.10")).categoryId("fuel").build(),
+                ReceiptDTO.builder().merchantName("Blue Bottle Cafe").totalAmount(new BigDecimal("6.50")).build());
+
+        for (String name : List.of("financial_report", "receipt_ledger")) {
+            JasperReport template = registry.get("pdf", name);
+            JasperPrint print = JasperFillManager.fillReport(template,
+                    // Filling adds built-in parameters to the map
+                    new HashMap<>(Map.of("REPORT_TITLE", "Financial Report", "USER_ID", "user-1", "GENERATED_DATE", "2024-03-31")),
+                    new JRBeanCollectionDataSource(receipts));
+            assertFalse(print.getPages().isEmpty(), name);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.jaiswal.repository;
+
+import com.jaiswal.model.document.Receipt;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.repository.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Explains the period query declared on {@link ReceiptRepository} against a
+ * MongoDB container and checks that it is an index range scan on
+ * {userId: 1, date: -1}. The collection's indexes are created from the
+ * {@link Receipt} mapping, as on startup, so the test fails if the entity
+ * stops declaring the index the query relies on. Requires Docker.
+ */
+@Testcontainers
+class ReceiptRepositoryQueryPlanTest {
+
+    private static final String INDEX = "userId_1_date_-1";
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:7.0");
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void createReceipts() {
+        client = MongoClients.create(MONGO.getConnectionString());
+        mongoTemplate = new MongoTemplate(client, "spendora_query_plan_test");
+
+        MongoMappingContext mappingContext = (MongoMappingContext) mongoTemplate.getConverter().getMappingContext();
+        IndexOperations indexOperations = mongoTemplate.indexOps(Receipt.class);
+        IndexResolver.create(mappingContext).resolveIndexFor(Receipt.class).forEach(indexOperations::createIndex);
+
+        List<Receipt> receipts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            receipts.add(Receipt.builder()
+                    .userId("user-" + (i % 20))
+                    .date(LocalDate.of(2022, 1, 1).plusDays(i % 1000))
+                    .totalAmount(BigDecimal.valueOf(i % 90 + 10))
+                    .build());
+        }
+        mongoTemplate.insert(receipts, Receipt.class);
+    }
+
+    @AfterAll
+    static void close() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    void periodQueryIsAnIndexRangeScan() throws NoSuchMethodException {
+        String query = ReceiptRepository.class
+                .getMethod("findByUserIdInPeriod", String.class, LocalDate.class, LocalDate.class)
+                .getAnnotation(Query.class)
+                .value();
+        Document filter = Document.parse(query
+                .replace("?0", "'user-3'")
+                .replace("?1", "{'$date': '2023-02-01T00:00:00Z'}")
+                .replace("?2", "{'$date': '2023-03-01T00:00:00Z'}"));
+
+        Document explain = mongoTemplate.getDb().runCommand(new Document("explain",
+                new Document("find", mongoTemplate.getCollectionName(Receipt.class))
+                        .append("filter", filter)
+                        .append("sort", new Document("date", -1)))
+                .append("verbosity", "executionStats"));
+
+        String winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+        assertTrue(winningPlan.contains("IXSCAN"), winningPlan);
+        assertTrue(winningPlan.contains(INDEX), winningPlan);
+        assertFalse(winningPlan.contains("COLLSCAN"), winningPlan);
+        assertFalse(winningPlan.contains("\"SORT\""), winningPlan);
+
+        // Only the month's keys are examined, not every receipt the user has
+        Document stats = explain.get("executionStats", Document.class);
+        assertEquals(stats.getInteger("nReturned").longValue(), ((Number) stats.get("totalDocsExamined")).longValue());
+        assertTrue(stats.getInteger("nReturned") > 0);
+        assertTrue(stats.getInteger("nReturned") < 100);
+    }
+}
@@ -0,0 +1,125 @@
+package com.jaiswal.service;
+
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.Insight;
+import com.jaiswal.model.document.SpendingBaseline;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.InsightRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.SpendingBaselineRepository;
+import com.jaiswal.util.MerchantNames;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+class AnomalyDetectionServiceTest {
+
+    private final SpendingBaselineRepository baselineRepository = mock(SpendingBaselineRepository.class);
+    private final InsightRepository insightRepository = mock(InsightRepository.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final AnomalyDetectionService service = new AnomalyDetectionService(
+            baselineRepository, insightRepository, categoryRepository, mock(ReceiptRepository.class), mock(CacheVersionService.class));
+
+    private final AtomicReference<SpendingBaseline> stored = new AtomicReference<>();
+    private final List<Insight> insights = new ArrayList<>();
+    private int receiptCounter;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "alpha", 0.1);
+        ReflectionTestUtils.setField(service, "merchantAlpha", 0.2);
+        ReflectionTestUtils.setField(service, "zThreshold", 3.0);
+        ReflectionTestUtils.setField(service, "minObservations", 5L);
+        ReflectionTestUtils.setField(service, "minAmount", 10.0);
+        ReflectionTestUtils.setField(service, "surgeZThreshold", 2.5);
+        ReflectionTestUtils.setField(service, "surgeMinMonths", 3L);
+        ReflectionTestUtils.setField(service, "maxMerchants", 500);
+
+        when(categoryRepository.findById("dining")).thenReturn(Optional.of(Category.builder().name("Dining").build()));
+        when(baselineRepository.findById("user-1")).thenAnswer(invocation -> Optional.ofNullable(stored.get()));
+        when(baselineRepository.save(any())).thenAnswer(invocation -> {
+            stored.set(invocation.getArgument(0));
+            return invocation.getArgument(0);
+        });
+        when(insightRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            invocation.<Iterable<Insight>>getArgument(0).forEach(insights::add);
+            return null;
+        });
+    }
+
+    @Test
+    void flagsOutlierTransactionsAgainstThePriorBaseline() {
+        Random random = new Random(1);
+        for (int day = 1; day <= 28; day++) {
+            receipt("Cafe Luna", 20 + random.nextInt(10), LocalDate.of(2026, 9, day));
+        }
+        assertTrue(insights.isEmpty());
+
+        receipt("Bistro Grand", 240, LocalDate.of(2026, 9, 29));
+
+        assertEquals(1, insights.size());
+        assertEquals(AnomalyDetectionService.OUTLIER_TRANSACTION, insights.get(0).getType());
+        assertEquals(240.0, insights.get(0).getData().get("amount"));
+    }
+
+    @Test
+    void prefersTheMerchantBaselineWhenThereIsOne() {
+        for (int day = 1; day <= 10; day++) {
+            receipt("CAFE LUNA #12", 20 + day % 3, LocalDate.of(2026, 9, day));
+        }
+        receipt("Cafe Luna Store 7", 95, LocalDate.of(2026, 9, 20));
+
+        assertEquals(AnomalyDetectionService.MERCHANT_OUTLIER, insights.get(insights.size() - 1).getType());
+    }
+
+    @Test
+    void flagsACategorySurgeAgainstPastMonths() {
+        for (int month = 1; month <= 6; month++) {
+            for (int day = 1; day <= 4; day++) {
+                receipt("Cafe Luna", 25 + month, LocalDate.of(2026, month, day * 5));
+            }
+        }
+        insights.clear();
+
+        // Many ordinary receipts: no single one stands out, but the month does
+        for (int day = 1; day <= 12; day++) {
+            receipt("Cafe Luna", 28, LocalDate.of(2026, 7, day));
+        }
+
+        assertTrue(insights.stream().anyMatch(insight -> insight.getType().equals(AnomalyDetectionService.CATEGORY_SURGE)));
+        assertTrue(insights.stream().noneMatch(insight -> insight.getType().equals(AnomalyDetectionService.OUTLIER_TRANSACTION)));
+    }
+
+    @Test
+    void canonicalizesMerchantNames() {
+        assertEquals("starbucks", MerchantNames.canonicalize("STARBUCKS #1234"));
+        assertEquals("starbucks", MerchantNames.canonicalize("Starbucks Store 88"));
+        assertEquals("whole-foods-market", MerchantNames.canonicalize("Whole Foods Market, Inc."));
+        assertNull(MerchantNames.canonicalize("#0042"));
+    }
+
+    private void receipt(String merchant, double amount, LocalDate date) {
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-" + receiptCounter++, null,
+                ReceiptChangedEvent.Snapshot.builder()
+                        .merchantName(merchant)
+                        .categoryId("dining")
+                        .totalAmount(BigDecimal.valueOf(amount))
+                        .date(date)
+                        .build()));
+    }
+}
@@ -0,0 +1,188 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.repository.CommunityInsightRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.util.QuantileSketch;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AnonymizationServiceTest {
+
+    private static final String[] MERCHANTS = {"Whole Foods Market", "Shell", "Blue Bottle Cafe", "CVS Pharmacy", "Amazon"};
+
+    @Test
+    void aggregatesFromACursorWithoutLoadingAllReceipts() {
+        ReceiptRepository receiptRepository = mock(ReceiptRepository.class);
+        CommunityInsightRepository insightRepository = mock(CommunityInsightRepository.class);
+        AtomicLong closed = new AtomicLong();
+        when(receiptRepository.streamAllForCommunityAggregation())
+                .thenReturn(receipts(1_000_000, 7).onClose(closed::incrementAndGet));
+
+        new AnonymizationService(receiptRepository, insightRepository,
+                mock(SpendingProfileService.class), mock(SimilarSpenderIndex.class)).anonymizeAndAggregate();
+
+        verify(receiptRepository, never()).findAll();
+        assertEquals(1, closed.get());
+
+        ArgumentCaptor<CommunityInsight> saved = ArgumentCaptor.forClass(CommunityInsight.class);
+        verify(insightRepository).save(saved.capture());
+        assertEquals(1_000_000L, saved.getValue().getDataEntry("totalReceipts"));
+        assertEquals(1_000_000L, saved.getValue().getStatistics().getSampleSize());
+    }
+
+    @Test
+    void retainedStateDoesNotGrowWithReceiptCount() {
+        CommunityAggregate small = aggregate(10_000);
+        CommunityAggregate large = aggregate(2_000_000);
+
+        // Same categories and merchant types at 200x the input
+        assertEquals(small.getCategoryTotals().size(), large.getCategoryTotals().size());
+        assertEquals(small.getMerchantTypeCounts().size(), large.getMerchantTypeCounts().size());
+
+        // Sketch size is set by the 0.01-500.00 value range (plus growth slack), never by the count
+        double accuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+        int rangeBuckets = (int) Math.ceil(Math.log(500 / 0.01) / Math.log((1 + accuracy) / (1 - accuracy))) + 1;
+        assertTrue(small.getAmountSketch().getBucketCount() <= rangeBuckets + 128);
+        assertTrue(large.getAmountSketch().getBucketCount() <= rangeBuckets + 128);
+    }
+
+    @Test
+    void sketchStaysBoundedAcrossExtremeValueRanges() {
+        QuantileSketch sketch = new QuantileSketch();
+        // 1e-4 to 1e16 needs more buckets than the cap
+        for (int i = 0; i < 1_000_000; i++) {
+            sketch.add(Math.pow(10, -4 + (i % 2000) / 100.0));
+        }
+
+        assertEquals(QuantileSketch.DEFAULT_MAX_BUCKETS, sketch.getBucketCount());
+        // Collapsing only costs accuracy at the low end; the tail is still within 1%
+        double expectedP99 = Math.pow(10, -4 + 1979 / 100.0);
+        assertEquals(expectedP99, sketch.quantile(0.99), expectedP99 * 0.01);
+    }
+
+    @Test
+    void statisticsMatchExactComputation() {
+        int n = 50_000;
+        double[] amounts = new double[n];
+        CommunityAggregate aggregate = new CommunityAggregate();
+        BigDecimal sum = BigDecimal.ZERO;
+
+        Random random = new Random(42);
+        for (int i = 0; i < n; i++) {
+            BigDecimal amount = BigDecimal.valueOf(Math.exp(3 + random.nextGaussian())).setScale(2, RoundingMode.HALF_UP)
+                    .max(new BigDecimal("0.01"));
+            amounts[i] = amount.doubleValue();
+            sum = sum.add(amount);
+            aggregate.add(Receipt.builder().categoryId("cat-" + (i % 8)).merchantName(MERCHANTS[i % MERCHANTS.length])
+                    .totalAmount(amount).build());
+        }
+        Arrays.sort(amounts);
+
+        double mean = sum.doubleValue() / n;
+        double variance = Arrays.stream(amounts).map(a -> (a - mean) * (a - mean)).sum() / n;
+
+        CommunityInsight.StatisticalData statistics = aggregate.toStatistics();
+        assertEquals(n, statistics.getSampleSize());
+        assertEquals(mean, statistics.getAverage().doubleValue(), 0.01);
+        assertEquals(Math.sqrt(variance), statistics.getStandardDeviation(), 1e-6);
+        assertEquals(amounts[0], statistics.getMin().doubleValue(), 0.0);
+        assertEquals(amounts[n - 1], statistics.getMax().doubleValue(), 0.0);
+
+        for (int percentile : new int[]{25, 50, 75, 90, 95}) {
+            double exact = amounts[(int) Math.ceil(percentile / 100.0 * n) - 1];
+            double estimate = statistics.getPercentiles().get("p" + percentile).doubleValue();
+            assertEquals(exact, estimate, exact * 0.01 + 0.01, "p" + percentile);
+        }
+    }
+
+    @Test
+    void mergedAggregatesEqualASinglePass() {
+        CommunityAggregate whole = new CommunityAggregate();
+        CommunityAggregate first = new CommunityAggregate();
+        CommunityAggregate second = new CommunityAggregate();
+
+        receipts(20_000, 3).forEach(receipt -> {
+            whole.add(receipt);
+            (receipt.getTotalAmount().intValue() % 2 == 0 ? first : second).add(receipt);
+        });
+        first.merge(second);
+
+        assertEquals(whole.getCategoryTotals(), first.getCategoryTotals());
+        assertEquals(whole.getMerchantTypeCounts(), first.getMerchantTypeCounts());
+        CommunityInsight.StatisticalData expected = whole.toStatistics();
+        CommunityInsight.StatisticalData merged = first.toStatistics();
+        assertEquals(expected.getAverage(), merged.getAverage());
+        assertEquals(expected.getPercentiles(), merged.getPercentiles());
+        assertEquals(expected.getStandardDeviation(), merged.getStandardDeviation(), 1e-9);
+    }
+
+    @Test
+    void rankMatchesExactPercentileOfUserSpend() {
+        int users = 20_000;
+        double[] spend = new double[users];
+        CommunityAggregate aggregate = new CommunityAggregate();
+        Random random = new Random(5);
+        for (int i = 0; i < users; i++) {
+            spend[i] = BigDecimal.valueOf(Math.exp(5 + random.nextGaussian())).setScale(2, RoundingMode.HALF_UP).doubleValue();
+            aggregate.addUserSpend("2026-09", "Dining", BigDecimal.valueOf(spend[i]));
+        }
+        Arrays.sort(spend);
+
+        CommunityInsight.SpendDistribution distribution = aggregate.getSpendDistributions().get(0);
+        assertEquals("dining", distribution.getCategoryKey());
+        assertEquals(users, distribution.getSketch().getCount());
+        for (double amount : new double[]{20, 100, 150, 400, 2000}) {
+            long below = Arrays.stream(spend).filter(value -> value < amount).count();
+            assertEquals((double) below / users, distribution.getSketch().rank(amount), 0.01, "rank of " + amount);
+        }
+    }
+
+    @Test
+    void categoriesUsersNamedThemselvesShareTheOtherDistribution() {
+        CommunityAggregate aggregate = new CommunityAggregate();
+        aggregate.addUserSpend("2026-09", "Pet supplies", BigDecimal.TEN);
+        aggregate.addUserSpend("2026-09", "Gym & Fitness", BigDecimal.ONE);
+        aggregate.addUserSpend("2026-09", " groceries ", BigDecimal.TEN);
+
+        Map<String, CommunityInsight.SpendDistribution> distributions = aggregate.getSpendDistributions().stream()
+                .collect(Collectors.toMap(CommunityInsight.SpendDistribution::getCategoryKey, Function.identity()));
+        assertEquals(Set.of("other", "groceries"), distributions.keySet());
+        assertEquals(2, distributions.get("other").getSketch().getCount());
+        assertEquals("Other", distributions.get("other").getCategory());
+        assertEquals("Groceries", distributions.get("groceries").getCategory());
+    }
+
+    private CommunityAggregate aggregate(int receiptCount) {
+        CommunityAggregate aggregate = new CommunityAggregate();
+        receipts(receiptCount, 11).forEach(aggregate::add);
+        return aggregate;
+    }
+
+    // Generated lazily, so the test itself never holds more than one receipt
+    private Stream<Receipt> receipts(int count, long seed) {
+        Random random = new Random(seed);
+        return Stream.generate(() -> Receipt.builder()
+                        .categoryId("cat-" + random.nextInt(8))
+                        .merchantName(MERCHANTS[random.nextInt(MERCHANTS.length)])
+                        // Amounts between 0.01 and 500.00
+                        .totalAmount(BigDecimal.valueOf(1 + random.nextInt(50_000), 2))
+                        .build())
+                .limit(count);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.job.JobLockService;
+import com.jaiswal.model.document.DailySpendingRollup;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.DailySpendingRollupRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DailyRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 10, 1);
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations operations = mock(BulkOperations.class);
+    private final DailyRollupService service = new DailyRollupService(mock(DailySpendingRollupRepository.class),
+            mock(ReceiptRepository.class), mock(AggregationRunRepository.class), mock(JobLockService.class), mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(DailySpendingRollup.class))).thenReturn(operations);
+    }
+
+    @Test
+    void deletingAReceiptRemovesTheRollupsItEmptied() {
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1", snapshot("cat-1", "12.30"), null));
+
+        Update update = capturedUpdates().get(0);
+        assertEquals(new Decimal128(new BigDecimal("-12.30")), inc(update).get("totalAmount"));
+        assertEquals(-1L, inc(update).get("receiptCount"));
+
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(removed.capture(), eq(DailySpendingRollup.class));
+        Document filter = removed.getValue().getQueryObject();
+        assertEquals(List.of("user-1:" + DAY + ":cat-1"), filter.get("_id", Document.class).get("$in"));
+        assertEquals(0, filter.get("receiptCount", Document.class).get("$lte"));
+    }
+
+    @Test
+    void addingAReceiptRemovesNothing() {
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1", null, snapshot("cat-1", "12.30")));
+
+        assertEquals(1L, inc(capturedUpdates().get(0)).get("receiptCount"));
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(DailySpendingRollup.class));
+    }
+
+    @Test
+    void amountEditsAreAppliedAsExactDecimals() {
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1",
+                snapshot("cat-1", "0.10"), snapshot("cat-1", "0.30")));
+
+        Update update = capturedUpdates().get(0);
+        assertEquals(new Decimal128(new BigDecimal("0.20")), inc(update).get("totalAmount"));
+        assertEquals(0L, inc(update).get("receiptCount"));
+    }
+
+    private List<Update> capturedUpdates() {
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(operations, atLeastOnce()).upsert(any(Query.class), updates.capture());
+        return updates.getAllValues();
+    }
+
+    private Document inc(Update update) {
+        return update.getUpdateObject().get("$inc", Document.class);
+    }
+
+    private ReceiptChangedEvent.Snapshot snapshot(String categoryId, String amount) {
+        return ReceiptChangedEvent.Snapshot.builder()
+                .date(DAY)
+                .categoryId(categoryId)
+                .totalAmount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.jaiswal.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForecastSeriesTest {
+
+    @Test
+    void steadySpendProjectsTheUsualMonth() {
+        ForecastSeries series = new ForecastSeries();
+        fillMonths(series, YearMonth.of(2025, 9), 12, 0);
+        LocalDate today = LocalDate.of(2026, 9, 15);
+        addDaily(series, YearMonth.of(2026, 9), 15);
+
+        assertEquals(150, series.monthToDate(today), 1e-9);
+        assertEquals(300, series.monthEndForecast(today, 0), 300 * 0.05);
+    }
+
+    @Test
+    void seasonalityKeepsEarlyFixedCostsFromBeingExtrapolated() {
+        ForecastSeries series = new ForecastSeries();
+        fillMonths(series, YearMonth.of(2025, 9), 12, 1000);
+        LocalDate today = LocalDate.of(2026, 9, 10);
+        series.add(LocalDate.of(2026, 9, 1), 1000);
+        addDaily(series, YearMonth.of(2026, 9), 10);
+
+        // A straight-line pace would project 3 x 1,100 = 3,300
+        assertEquals(1300, series.monthEndForecast(today, 0), 1300 * 0.05);
+    }
+
+    @Test
+    void recurringChargesStillDueAreIncluded() {
+        ForecastSeries series = new ForecastSeries();
+        series.add(LocalDate.of(2026, 9, 2), 40);
+
+        // Too early in the month for the pace to mean much, but rent is still due
+        LocalDate today = LocalDate.of(2026, 9, 3);
+        assertTrue(series.monthEndForecast(today, 1200) >= 1240);
+    }
+
+    @Test
+    void editsAndDeletionsAreTakenBackOut() {
+        ForecastSeries series = new ForecastSeries();
+        LocalDate date = LocalDate.of(2026, 9, 3);
+        series.add(date, 80);
+        series.add(date, -80);
+        series.add(date, 60);
+
+        LocalDate today = LocalDate.of(2026, 9, 10);
+        assertEquals(60, series.monthToDate(today), 1e-9);
+        assertEquals(60, series.yearToDate(today), 1e-9);
+    }
+
+    @Test
+    void yearEndAddsTheTrendForTheRemainingMonths() {
+        ForecastSeries series = new ForecastSeries();
+        fillMonths(series, YearMonth.of(2025, 6), 12, 0);
+        LocalDate today = LocalDate.of(2026, 6, 15);
+        addDaily(series, YearMonth.of(2026, 6), 15);
+
+        // January to May (151 days) and half of June so far, six more months to come
+        double monthly = 10 * 365 / 12.0;
+        assertEquals(1510 + 150, series.yearToDate(today), 1e-9);
+        assertEquals(12 * monthly, series.yearEndForecast(today, 0), 12 * monthly * 0.05);
+    }
+
+    @Test
+    void monthsWithoutReceiptsCountAsNoSpend() {
+        ForecastSeries series = new ForecastSeries();
+        fillMonths(series, YearMonth.of(2025, 1), 6, 0);
+
+        // No receipts since June 2025: the trend has decayed towards zero rather than staying at June's level
+        LocalDate today = LocalDate.of(2026, 9, 15);
+        assertEquals(0, series.monthToDate(today), 1e-9);
+        assertTrue(series.monthEndForecast(today, 0) < 100);
+    }
+
+    // Ten a day for each day of each month, plus a fixed charge on the first
+    private void fillMonths(ForecastSeries series, YearMonth first, int months, double fixedCharge) {
+        for (int i = 0; i < months; i++) {
+            YearMonth month = first.plusMonths(i);
+            if (fixedCharge > 0) {
+                series.add(month.atDay(1), fixedCharge);
+            }
+            addDaily(series, month, month.lengthOfMonth());
+        }
+    }
+
+    private void addDaily(ForecastSeries series, YearMonth month, int days) {
+        for (int day = 1; day <= days; day++) {
+            series.add(month.atDay(day), 10);
+        }
+    }
+}
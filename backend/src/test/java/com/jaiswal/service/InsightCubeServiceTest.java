@@ -0,0 +1,82 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.CommunityInsight;
+import com.jaiswal.model.document.InsightCubeCell;
+import com.jaiswal.repository.InsightCubeCellRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InsightCubeServiceTest {
+
+    private static final String[] AGE_GROUPS = {"18-24", "25-34", "35-44"};
+    private static final String[] REGIONS = {"North East", "South", "West"};
+
+    private final InsightCubeCellRepository repository = mock(InsightCubeCellRepository.class);
+    private final InsightCubeService service = new InsightCubeService(repository);
+
+    @Test
+    void rollUpsMatchDirectAggregation() {
+        CommunityAggregate first = new CommunityAggregate();
+        CommunityAggregate second = new CommunityAggregate();
+        double expectedTotal = 0;
+        long expectedUsers = 0;
+
+        Random random = new Random(3);
+        for (int user = 0; user < 3_000; user++) {
+            CommunityInsight.DemographicFilters segment = CommunityInsight.DemographicFilters.builder()
+                    .ageGroup(AGE_GROUPS[random.nextInt(AGE_GROUPS.length)])
+                    .region(REGIONS[random.nextInt(REGIONS.length)])
+                    .incomeRange(random.nextBoolean() ? "50k-100k" : null)
+                    .userSegment("student")
+                    .build();
+            BigDecimal amount = BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+            // Users are split across shards; the merged cells must still roll up exactly
+            (user % 2 == 0 ? first : second).addUserSpend(segment, "2026-09", "Groceries", amount, 1 + random.nextInt(5));
+            if (segment.getAgeGroup().equals("25-34") && segment.getRegion().equals("North East")) {
+                expectedTotal += amount.doubleValue();
+                expectedUsers++;
+            }
+        }
+        first.merge(second);
+
+        List<InsightCubeCell> stored = new ArrayList<>();
+        when(repository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            invocation.<Iterable<InsightCubeCell>>getArgument(0).forEach(stored::add);
+            return null;
+        });
+        service.saveCells("run-1", first.getCubeCells().values());
+        when(repository.findByGenerationAndPeriodAndCategoryKey("run-1", "2026-09", "groceries")).thenReturn(stored);
+
+        InsightCubeCell rollup = service.rollUp("run-1", CommunityInsight.DemographicFilters.builder()
+                .ageGroup("25-34").region("north-east").build(), "groceries", "2026-09");
+
+        assertEquals(expectedUsers, rollup.getUserCount());
+        assertEquals(expectedTotal, rollup.getTotalAmount().doubleValue(), 1e-6);
+        assertEquals(expectedTotal / expectedUsers, rollup.getUserSpend().getMean(), 1e-6);
+        assertNull(rollup.getIncomeRange());
+    }
+
+    @Test
+    void fullySpecifiedSegmentIsASingleKeyLookup() {
+        CommunityInsight.DemographicFilters segment = CommunityInsight.DemographicFilters.builder()
+                .ageGroup("25-34").region("West").incomeRange("unknown").userSegment("Student").build();
+        InsightCubeCell cell = InsightCubeCell.builder().receiptCount(4).totalAmount(new BigDecimal("80.00")).build();
+        cell.getUserSpend().add(80.0);
+        when(repository.findById("run-1:25-34|west|unknown|student|all|2026-09")).thenReturn(Optional.of(cell));
+
+        InsightCubeCell result = service.rollUp("run-1", segment, CommunityAggregate.ALL_CATEGORIES, "2026-09");
+
+        assertEquals(1, result.getUserCount());
+        assertEquals(4, result.getReceiptCount());
+        verify(repository, never()).findByGenerationAndPeriodAndCategoryKey(any(), any(), any());
+    }
+}
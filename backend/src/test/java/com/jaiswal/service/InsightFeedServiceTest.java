@@ -0,0 +1,115 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Insight;
+import com.jaiswal.model.dto.AnalyticsDTO;
+import com.jaiswal.repository.InsightRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class InsightFeedServiceTest {
+
+    private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+    private final InsightRepository insightRepository = mock(InsightRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zSet = mock(ZSetOperations.class);
+    private final InsightFeedService service = new InsightFeedService(analyticsService, insightRepository, redisTemplate);
+
+    // The dirty set, as Redis would hold it
+    private final Map<String, Double> dirty = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "debounce", Duration.ZERO);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+
+        when(redisTemplate.opsForZSet()).thenReturn(zSet);
+        when(zSet.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation ->
+                dirty.put(invocation.getArgument(1), invocation.getArgument(2)) == null);
+        when(zSet.rangeByScore(anyString(), anyDouble(), anyDouble(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            double max = invocation.getArgument(2);
+            Set<String> due = new LinkedHashSet<>();
+            dirty.forEach((userId, score) -> {
+                if (score <= max) {
+                    due.add(userId);
+                }
+            });
+            return due;
+        });
+        when(zSet.remove(anyString(), any())).thenAnswer(invocation ->
+                dirty.remove((String) invocation.getArgument(1)) != null ? 1L : 0L);
+        when(analyticsService.generateSummaryInsights(anyString(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void burstOfChangesRegeneratesOnce() {
+        for (int i = 0; i < 50; i++) {
+            service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-" + i, null, null));
+        }
+        service.onReceiptChanged(new ReceiptChangedEvent("user-2", "receipt-x", null, null));
+
+        service.refreshDirtyFeeds();
+        service.refreshDirtyFeeds();
+
+        verify(analyticsService, times(1)).generateSummaryInsights(eq("user-1"), any(), any());
+        verify(analyticsService, times(1)).generateSummaryInsights(eq("user-2"), any(), any());
+        assertTrue(dirty.isEmpty());
+    }
+
+    @Test
+    void usersStillChangingAreLeftDirty() {
+        ReflectionTestUtils.setField(service, "debounce", Duration.ofHours(1));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1", null, null));
+
+        service.refreshDirtyFeeds();
+
+        verifyNoInteractions(analyticsService);
+        assertTrue(dirty.containsKey("user-1"));
+    }
+
+    @Test
+    void failedRegenerationIsRetried() {
+        when(analyticsService.generateSummaryInsights(eq("user-1"), any(), any())).thenThrow(new IllegalStateException("down"));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1", null, null));
+
+        service.refreshDirtyFeeds();
+
+        assertTrue(dirty.containsKey("user-1"));
+    }
+
+    @Test
+    void summaryInsightsThatNoLongerApplyAreRemoved() {
+        when(analyticsService.generateSummaryInsights(eq("user-1"), any(), any())).thenReturn(List.of(
+                AnalyticsDTO.InsightData.builder().type(AnalyticsService.TOP_CATEGORY).title("Top Spending Category").build()));
+
+        service.regenerate("user-1");
+
+        String period = YearMonth.now().toString();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Insight>> saved = ArgumentCaptor.forClass(List.class);
+        verify(insightRepository).saveAll(saved.capture());
+        assertEquals(List.of("user-1:TOP_CATEGORY:" + period), saved.getValue().stream().map(Insight::getId).toList());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<String>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(insightRepository).deleteAllById(deleted.capture());
+        assertEquals(Set.of("user-1:SPENDING_TREND:" + period, "user-1:BUDGET_ALERT:" + period), Set.copyOf(deleted.getValue()));
+    }
+}
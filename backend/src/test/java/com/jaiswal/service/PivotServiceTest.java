@@ -0,0 +1,111 @@
+package com.jaiswal.service;
+
+import com.jaiswal.exception.ValidationException;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.DailySpendingRollup;
+import com.jaiswal.model.dto.PivotDTO;
+import com.jaiswal.model.dto.PivotDTO.Dimension;
+import com.jaiswal.model.dto.PivotDTO.Measure;
+import com.jaiswal.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PivotServiceTest {
+
+    private final DailyRollupService dailyRollupService = mock(DailyRollupService.class);
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final PivotService service = new PivotService(dailyRollupService, categoryRepository, mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxRows", 1000);
+        ReflectionTestUtils.setField(service, "maxRangeDays", 1830L);
+        when(dailyRollupService.isReady()).thenReturn(true);
+        when(categoryRepository.findByUserIdOrUserIdIsNullOrderByNameAsc("user-1")).thenReturn(List.of(
+                Category.builder().id("dining").name("Dining").build(),
+                Category.builder().id("fuel").name("Fuel").build()));
+    }
+
+    @Test
+    void plansRollupsOnlyWhenTheyCanAnswer() {
+        assertEquals(PivotService.DAILY_ROLLUPS,
+                PivotService.plan(List.of(Dimension.CATEGORY, Dimension.MONTH), List.of(Measure.SUM, Measure.AVERAGE), true).getSource());
+        assertEquals(PivotService.RECEIPTS,
+                PivotService.plan(List.of(Dimension.CATEGORY, Dimension.MERCHANT), List.of(Measure.SUM), true).getSource());
+        assertEquals(PivotService.RECEIPTS,
+                PivotService.plan(List.of(Dimension.WEEKDAY), List.of(Measure.P90), true).getSource());
+        assertEquals(PivotService.RECEIPTS,
+                PivotService.plan(List.of(Dimension.MONTH), List.of(Measure.SUM), false).getSource());
+    }
+
+    @Test
+    void groupsRollupsByDerivedDimensions() {
+        // 2026-09-07 and 2026-09-14 are Mondays, 2026-09-08 a Tuesday
+        when(dailyRollupService.findRollups(eq("user-1"), any(), any())).thenReturn(List.of(
+                rollup("2026-09-07", "dining", 60, 2),
+                rollup("2026-09-14", "dining", 30, 1),
+                rollup("2026-09-14", "fuel", 50, 1),
+                rollup("2026-09-08", null, 10, 1)));
+
+        PivotDTO pivot = service.pivot("user-1", List.of(Dimension.WEEKDAY, Dimension.CATEGORY),
+                List.of(Measure.SUM, Measure.COUNT, Measure.AVERAGE), LocalDate.of(2026, 9, 1), LocalDate.of(2026, 9, 30), 100);
+
+        assertEquals(PivotService.DAILY_ROLLUPS, pivot.getPlan().getSource());
+        assertEquals(4L, pivot.getPlan().getDocumentsRead());
+        assertNotNull(pivot.getPlan().getLatencyMs());
+        assertEquals(3, pivot.getTotalRows());
+
+        PivotDTO.Row top = pivot.getRows().get(0);
+        assertEquals(Map.of("WEEKDAY", "MONDAY", "CATEGORY", "Dining"), top.getKeys());
+        assertEquals(90.0, top.getValues().get("SUM"));
+        assertEquals(3.0, top.getValues().get("COUNT"));
+        assertEquals(30.0, top.getValues().get("AVERAGE"));
+        assertEquals(Map.of("WEEKDAY", "TUESDAY", "CATEGORY", "Uncategorized"), pivot.getRows().get(2).getKeys());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void truncatesToTheRowLimit() {
+        when(dailyRollupService.findRollups(eq("user-1"), any(), any())).thenReturn(List.of(
+                rollup("2026-08-03", "dining", 20, 1),
+                rollup("2026-09-03", "dining", 40, 1),
+                rollup("2026-10-03", "dining", 30, 1)));
+
+        PivotDTO pivot = service.pivot("user-1", List.of(Dimension.MONTH), List.of(Measure.SUM),
+                LocalDate.of(2026, 8, 1), LocalDate.of(2026, 10, 31), 2);
+
+        assertTrue(pivot.getTruncated());
+        assertEquals(3, pivot.getTotalRows());
+        assertEquals(List.of("2026-09", "2026-10"), pivot.getRows().stream().map(row -> row.getKeys().get("MONTH")).toList());
+    }
+
+    @Test
+    void rejectsEmptyOrOversizedQueries() {
+        assertThrows(ValidationException.class, () -> service.pivot("user-1", List.of(), List.of(Measure.SUM),
+                LocalDate.of(2026, 9, 1), LocalDate.of(2026, 9, 30), 100));
+        assertThrows(ValidationException.class, () -> service.pivot("user-1", List.of(Dimension.MONTH), List.of(Measure.SUM),
+                LocalDate.of(2010, 1, 1), LocalDate.of(2026, 9, 30), 100));
+    }
+
+    private DailySpendingRollup rollup(String date, String categoryId, double amount, long count) {
+        return DailySpendingRollup.builder()
+                .date(LocalDate.parse(date))
+                .categoryId(categoryId)
+                .totalAmount(BigDecimal.valueOf(amount))
+                .receiptCount(count)
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.RecurringChargeState;
+import com.jaiswal.model.document.RecurringChargeState.Frequency;
+import com.jaiswal.model.document.RecurringChargeState.RecurringCharge;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecurringChargeDetectorTest {
+
+    private final RecurringChargeDetector detector = new RecurringChargeDetector(0.3, 0.4, 500);
+
+    @Test
+    void detectsMonthlySubscriptionAndPredictsTheNextCharge() {
+        RecurringChargeState state = new RecurringChargeState();
+        for (int month = 1; month <= 6; month++) {
+            detector.observe(state, "cat-1", LocalDate.of(2026, month, 14), 15.49, "NETFLIX.COM");
+        }
+
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(Frequency.MONTHLY, charge.getFrequency());
+        assertTrue(charge.getConfidence() >= 0.6, "confidence " + charge.getConfidence());
+        assertEquals(LocalDate.of(2026, 7, 14), charge.getNextExpectedDate());
+        assertEquals(15.49, detector.monthlyCost(charge), 1e-9);
+    }
+
+    @Test
+    void detectsWeeklyChargesWithSomeJitter() {
+        RecurringChargeState state = new RecurringChargeState();
+        int[] jitter = {0, 1, -1, 0, 1, 0, -1, 0};
+        for (int week = 0; week < jitter.length; week++) {
+            detector.observe(state, "cat-2", LocalDate.of(2026, 3, 2).plusWeeks(week).plusDays(jitter[week]), 12.00, "City Gym");
+        }
+
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(Frequency.WEEKLY, charge.getFrequency());
+        assertTrue(detector.isRecurring(charge));
+    }
+
+    @Test
+    void detectsAnnualRenewals() {
+        RecurringChargeState state = new RecurringChargeState();
+        detector.observe(state, null, LocalDate.of(2024, 11, 3), 99.00, "Amazon Prime");
+        detector.observe(state, null, LocalDate.of(2025, 11, 3), 99.00, "Amazon Prime");
+
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(Frequency.ANNUAL, charge.getFrequency());
+        assertEquals(LocalDate.of(2026, 11, 3), charge.getNextExpectedDate());
+        assertTrue(detector.isActive(charge, LocalDate.of(2026, 10, 18)));
+    }
+
+    @Test
+    void missedMonthsDoNotBreakTheFrequency() {
+        RecurringChargeState state = new RecurringChargeState();
+        for (int month : new int[]{1, 2, 3, 5, 6, 9}) {
+            detector.observe(state, null, LocalDate.of(2026, month, 1), 45.00, "Comcast Cable");
+        }
+
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(Frequency.MONTHLY, charge.getFrequency());
+        assertEquals(LocalDate.of(2026, 10, 1), charge.getNextExpectedDate());
+    }
+
+    @Test
+    void irregularPurchasesAreNotRecurring() {
+        RecurringChargeState state = new RecurringChargeState();
+        Random random = new Random(17);
+        LocalDate date = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < 200; i++) {
+            date = date.plusDays(1 + random.nextInt(12));
+            detector.observe(state, null, date, 20 + random.nextInt(180), "Whole Foods Market");
+        }
+
+        assertTrue(state.getCharges().size() > 1);
+        assertTrue(state.getCharges().values().stream().noneMatch(detector::isRecurring));
+    }
+
+    @Test
+    void duplicatesAndOutOfOrderReceiptsAddNoIntervals() {
+        RecurringChargeState state = new RecurringChargeState();
+        detector.observe(state, null, LocalDate.of(2026, 1, 10), 9.99, "Spotify");
+        detector.observe(state, null, LocalDate.of(2026, 1, 10), 9.99, "Spotify");
+        detector.observe(state, null, LocalDate.of(2026, 2, 10), 9.99, "Spotify");
+        detector.observe(state, null, LocalDate.of(2026, 1, 25), 9.99, "Spotify");
+
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(2, charge.getOccurrences());
+        assertEquals(1, charge.getIntervalDays().getCount());
+    }
+
+    @Test
+    void expectedSpendCountsEachChargeDueAndSkipsLapsedOnes() {
+        RecurringChargeState state = new RecurringChargeState();
+        for (int week = 0; week < 6; week++) {
+            detector.observe(state, null, LocalDate.of(2026, 8, 3).plusWeeks(week), 12.00, "City Gym");
+        }
+        RecurringCharge charge = onlyCharge(state);
+        assertEquals(LocalDate.of(2026, 9, 14), charge.getNextExpectedDate());
+
+        // Due on the 14th, 21st and 28th
+        assertEquals(36.00, detector.expectedBetween(charge, LocalDate.of(2026, 9, 10), LocalDate.of(2026, 9, 30)), 1e-9);
+        // Overdue by a day: still expected, now
+        assertEquals(36.00, detector.expectedBetween(charge, LocalDate.of(2026, 9, 15), LocalDate.of(2026, 9, 30)), 1e-9);
+        // A month without it and the membership has lapsed
+        assertFalse(detector.isActive(charge, LocalDate.of(2026, 10, 14)));
+        assertEquals(0, detector.expectedBetween(charge, LocalDate.of(2026, 10, 14), LocalDate.of(2026, 10, 31)), 1e-9);
+    }
+
+    private RecurringCharge onlyCharge(RecurringChargeState state) {
+        assertEquals(1, state.getCharges().size());
+        return state.getCharges().values().iterator().next();
+    }
+}
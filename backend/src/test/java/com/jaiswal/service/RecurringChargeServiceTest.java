@@ -0,0 +1,132 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.model.document.Receipt;
+import com.jaiswal.model.document.RecurringChargeState;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.RecurringChargeStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecurringChargeServiceTest {
+
+    private final RecurringChargeStateRepository stateRepository = mock(RecurringChargeStateRepository.class);
+    private final ReceiptRepository receiptRepository = mock(ReceiptRepository.class);
+    private final RecurringChargeService service = new RecurringChargeService(
+            stateRepository, receiptRepository, mock(CategoryRepository.class));
+
+    // The user's receipts and state, as Mongo would hold them
+    private final List<Receipt> receipts = new ArrayList<>();
+    private final AtomicReference<RecurringChargeState> stored = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "alpha", 0.3);
+        ReflectionTestUtils.setField(service, "minConfidence", 0.4);
+        ReflectionTestUtils.setField(service, "maxCharges", 500);
+        ReflectionTestUtils.setField(service, "historyMonths", 24);
+
+        when(receiptRepository.streamForForecastByUserIdSince(eq("user-1"), any()))
+                .thenAnswer(invocation -> new ArrayList<>(receipts).stream().sorted(Comparator.comparing(Receipt::getDate)));
+        when(stateRepository.findById("user-1")).thenAnswer(invocation -> Optional.ofNullable(stored.get()));
+        when(stateRepository.save(any())).thenAnswer(invocation -> {
+            RecurringChargeState state = invocation.getArgument(0);
+            state.setVersion(state.getVersion() == null ? 0 : state.getVersion() + 1);
+            stored.set(state);
+            return state;
+        });
+
+        for (int month = 1; month <= 6; month++) {
+            add(receipt("Netflix", LocalDate.of(2026, month, 14), "15.49"));
+        }
+    }
+
+    @Test
+    void deletingAReceiptRemovesItsObservation() {
+        Receipt mistaken = add(receipt("City Gym", LocalDate.of(2026, 6, 2), "40.00"));
+        service.getRecurringCharges("user-1");
+        assertEquals(2, stored.get().getCharges().size());
+        long version = stored.get().getVersion();
+
+        receipts.remove(mistaken);
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", mistaken.getId(),
+                ReceiptChangedEvent.Snapshot.of(mistaken), null));
+
+        assertEquals(1, stored.get().getCharges().size());
+        assertEquals(6, stored.get().getCharges().values().iterator().next().getOccurrences());
+        assertEquals(version + 1, stored.get().getVersion());
+    }
+
+    @Test
+    void editingTheAmountReplacesTheOldObservation() {
+        service.getRecurringCharges("user-1");
+        Receipt edited = receipts.get(5);
+        ReceiptChangedEvent.Snapshot before = ReceiptChangedEvent.Snapshot.of(edited);
+
+        edited.setTotalAmount(new BigDecimal("17.99"));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", edited.getId(), before,
+                ReceiptChangedEvent.Snapshot.of(edited)));
+
+        // Re-observing on top of the old state would have counted the receipt twice
+        long occurrences = stored.get().getCharges().values().stream()
+                .mapToLong(RecurringChargeState.RecurringCharge::getOccurrences)
+                .sum();
+        assertEquals(6, occurrences);
+    }
+
+    @Test
+    void editsThatKeepTheChargeLeaveTheStateAlone() {
+        service.getRecurringCharges("user-1");
+        Receipt edited = receipts.get(5);
+        ReceiptChangedEvent.Snapshot before = ReceiptChangedEvent.Snapshot.of(edited);
+
+        edited.setCategoryId("cat-2");
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", edited.getId(), before,
+                ReceiptChangedEvent.Snapshot.of(edited)));
+
+        verify(stateRepository, times(1)).save(any());
+    }
+
+    @Test
+    void aFirstReadThatLosesTheInsertServesTheStoredState() {
+        RecurringChargeState concurrent = RecurringChargeState.builder().userId("user-1").version(0L).build();
+        doAnswer(invocation -> {
+            // Another read or a receipt change inserted the state first
+            stored.set(concurrent);
+            throw new DuplicateKeyException("E11000 duplicate key");
+        }).when(stateRepository).save(argThat(state -> state.getVersion() == null));
+
+        assertTrue(service.getRecurringCharges("user-1").isEmpty());
+        assertSame(concurrent, stored.get());
+    }
+
+    private Receipt add(Receipt receipt) {
+        receipts.add(receipt);
+        return receipt;
+    }
+
+    private Receipt receipt(String merchant, LocalDate date, String amount) {
+        return Receipt.builder()
+                .id("receipt-" + (receipts.size() + 1))
+                .userId("user-1")
+                .merchantName(merchant)
+                .date(date)
+                .totalAmount(new BigDecimal(amount))
+                .build();
+    }
+}
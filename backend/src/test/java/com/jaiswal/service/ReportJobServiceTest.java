@@ -0,0 +1,144 @@
+package com.jaiswal.service;
+
+import com.jaiswal.cache.CacheDataType;
+import com.jaiswal.cache.CacheVersionService;
+import com.jaiswal.exception.ResourceNotFoundException;
+import com.jaiswal.model.dto.ReportJobDTO;
+import com.jaiswal.model.dto.ReportJobRequest;
+import com.jaiswal.report.ReportArtifactStore;
+import com.jaiswal.report.ReportExport;
+import com.jaiswal.report.ReportJob;
+import com.jaiswal.report.ReportProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+
+    @TempDir
+    File directory;
+
+    private final ReportService reportService = mock(ReportService.class);
+    private final CacheVersionService cacheVersions = mock(CacheVersionService.class);
+    private final AtomicInteger generated = new AtomicInteger();
+    private ReportProperties properties;
+    private ReportJobService jobService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        properties = new ReportProperties();
+        properties.getJobs().setDirectory(directory.getPath());
+        properties.getJobs().setThreads(1);
+        ReportArtifactStore artifactStore = new ReportArtifactStore(properties);
+        artifactStore.init();
+
+        when(reportService.prepareExport(eq("user-1"), eq("csv"), any(), any(), any()))
+                .thenAnswer(invocation -> new ReportExport("text/csv; charset=UTF-8", "csv", out -> {
+                    generated.incrementAndGet();
+                    out.write("id,date\r\n".getBytes(StandardCharsets.UTF_8));
+                }));
+        when(cacheVersions.currentVersion("user-1", CacheDataType.RECEIPTS)).thenReturn(3L);
+
+        jobService = new ReportJobService(reportService, artifactStore, cacheVersions, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jobService.destroy();
+    }
+
+    @Test
+    void identicalRequestsShareOneJobAndArtifact() throws Exception {
+        ReportJobDTO first = jobService.submit(request());
+        ReportJob job = awaitCompletion(first.getJobId());
+
+        ReportJobDTO second = jobService.submit(request());
+
+        assertEquals(first.getJobId(), second.getJobId());
+        assertEquals("COMPLETED", second.getStatus());
+        assertEquals("/api/reports/jobs/" + first.getJobId() + "/download?userId=user-1", second.getDownloadUrl());
+        assertEquals(1, generated.get());
+        assertEquals("id,date\r\n", Files.readString(job.getArtifact()));
+        assertEquals(9L, second.getSizeBytes());
+    }
+
+    @Test
+    void newDataVersionOrPeriodIsANewJob() throws Exception {
+        String first = jobService.submit(request()).getJobId();
+        awaitCompletion(first);
+
+        when(cacheVersions.currentVersion("user-1", CacheDataType.RECEIPTS)).thenReturn(4L);
+        String afterChange = jobService.submit(request()).getJobId();
+        ReportJobRequest period = request();
+        period.setStartDate(LocalDate.of(2024, 1, 1));
+        period.setEndDate(LocalDate.of(2024, 1, 31));
+        String forPeriod = jobService.submit(period).getJobId();
+
+        assertNotEquals(first, afterChange);
+        assertNotEquals(afterChange, forPeriod);
+        awaitCompletion(afterChange);
+        awaitCompletion(forPeriod);
+        assertEquals(3, generated.get());
+    }
+
+    @Test
+    void storedArtifactIsFoundAgainWithoutRegenerating() throws Exception {
+        String jobId = jobService.submit(request()).getJobId();
+        awaitCompletion(jobId);
+
+        // As after a restart: same store, no job state
+        jobService.destroy();
+        ReportArtifactStore artifactStore = new ReportArtifactStore(properties);
+        artifactStore.init();
+        jobService = new ReportJobService(reportService, artifactStore, cacheVersions, properties);
+
+        assertEquals("COMPLETED", jobService.submit(request()).getStatus());
+        assertEquals(1, generated.get());
+    }
+
+    @Test
+    void otherUsersAndExpiredArtifactsAreNotFound() throws Exception {
+        String jobId = jobService.submit(request()).getJobId();
+        ReportJob job = awaitCompletion(jobId);
+
+        assertThrows(ResourceNotFoundException.class, () -> jobService.getJob("user-2", jobId));
+
+        properties.getJobs().setRetention(Duration.ofHours(1));
+        Files.setLastModifiedTime(job.getArtifact(), FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        jobService.sweepExpired();
+
+        assertFalse(Files.exists(job.getArtifact()));
+        assertThrows(ResourceNotFoundException.class, () -> jobService.getJob("user-1", jobId));
+    }
+
+    private ReportJobRequest request() {
+        return ReportJobRequest.builder().userId("user-1").type("CSV").build();
+    }
+
+    private ReportJob awaitCompletion(String jobId) throws InterruptedException {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            ReportJob job = jobService.getJob("user-1", jobId);
+            if (job.getStatus() == ReportJob.Status.COMPLETED || job.getStatus() == ReportJob.Status.FAILED) {
+                assertEquals(ReportJob.Status.COMPLETED, job.getStatus(), job.getError());
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Report job did not finish: " + jobId);
+    }
+}
@@ -0,0 +1,95 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.Receipt;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ReportPartialServiceTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> receipts = mock(MongoCollection.class);
+    @SuppressWarnings("unchecked")
+    private final AggregateIterable<Document> results = mock(AggregateIterable.class);
+    private final ReportPartialService partialService = new ReportPartialService(mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(Receipt.class)).thenReturn("receipts");
+        when(mongoTemplate.getCollection("receipts")).thenReturn(receipts);
+        when(receipts.aggregate(anyList())).thenReturn(results);
+    }
+
+    @Test
+    void summarizesTheHalfOpenMonthFromOneAggregation() {
+        when(results.first()).thenReturn(new Document()
+                .append("totals", List.of(new Document("total", new Decimal128(new BigDecimal("130.50")))
+                        .append("count", 3)
+                        .append("minDate", date(LocalDate.of(2024, 2, 3)))
+                        .append("maxDate", date(LocalDate.of(2024, 2, 27)))))
+                .append("categories", List.of(
+                        new Document("_id", "groceries").append("total", new Decimal128(new BigDecimal("100.00"))),
+                        new Document("_id", "coffee").append("total", new Decimal128(new BigDecimal("10.50")))))
+                .append("merchants", List.of(new Document("_id", "Whole Foods").append("total", 100))));
+
+        ReportPartial partial = partialService.getMonthPartial("user-1", YearMonth.of(2024, 2));
+
+        assertEquals(new BigDecimal("130.50"), partial.getTotalAmount());
+        assertEquals(3, partial.getReceiptCount());
+        assertEquals(LocalDate.of(2024, 2, 3), partial.getFirstDate());
+        assertEquals(LocalDate.of(2024, 2, 27), partial.getLastDate());
+        assertEquals(new BigDecimal("10.50"), partial.getCategoryTotals().get("coffee"));
+        assertEquals("Whole Foods", partial.topMerchant());
+
+        Document match = matchStage();
+        assertEquals("user-1", match.get("userId"));
+        Document dates = match.get("date", Document.class);
+        assertEquals(date(LocalDate.of(2024, 2, 1)), dates.get("$gte"));
+        assertEquals(date(LocalDate.of(2024, 3, 1)), dates.get("$lt"));
+    }
+
+    @Test
+    void emptyRangesGiveAnEmptyPartial() {
+        when(results.first()).thenReturn(new Document("totals", List.of()));
+
+        ReportPartial partial = partialService.summarize("user-1", LocalDate.of(2023, 1, 1), LocalDate.of(2024, 1, 1));
+
+        assertEquals(BigDecimal.ZERO, partial.getTotalAmount());
+        assertEquals(0, partial.getReceiptCount());
+        assertEquals("None", partial.topMerchant());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Document matchStage() {
+        ArgumentCaptor<List<Document>> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(receipts).aggregate(pipeline.capture());
+        return pipeline.getValue().get(0).get("$match", Document.class);
+    }
+
+    private Date date(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
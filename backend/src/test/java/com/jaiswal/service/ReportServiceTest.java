@@ -0,0 +1,140 @@
+package com.jaiswal.service;
+
+import com.jaiswal.exception.ValidationException;
+import com.jaiswal.model.dto.ReportDTO;
+import com.jaiswal.report.ExportLimiter;
+import com.jaiswal.report.JasperStreamingExporter;
+import com.jaiswal.report.ReceiptTableExporter;
+import com.jaiswal.report.ReportExport;
+import com.jaiswal.report.ReportProperties;
+import com.jaiswal.report.ReportTemplateRegistry;
+import com.jaiswal.repository.ReceiptRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ReportServiceTest {
+
+    private final ReportPartialService partialService = mock(ReportPartialService.class);
+    private final ReceiptRepository receiptRepository = mock(ReceiptRepository.class);
+    private final ExportLimiter exportLimiter = mock(ExportLimiter.class);
+    private final ReceiptTableExporter csvExporter = mock(ReceiptTableExporter.class);
+    private final ReportService reportService;
+
+    ReportServiceTest() {
+        when(csvExporter.type()).thenReturn("csv");
+        when(csvExporter.contentType()).thenReturn("text/csv");
+        reportService = new ReportService(receiptRepository, partialService, mock(ReportTemplateRegistry.class),
+                mock(JasperStreamingExporter.class), exportLimiter, List.of(csvExporter), new ReportProperties());
+    }
+
+    @Test
+    void exportHoldsASlotOnlyWhileItsBodyIsWritten() throws Exception {
+        ReportExport export = reportService.exportReport("user-1", "csv", null);
+        // A body that never runs (rejected, timed out, abandoned) never took a slot
+        verifyNoInteractions(exportLimiter);
+
+        when(receiptRepository.streamForExportByUserId("user-1")).thenReturn(Stream.empty());
+        doThrow(new IOException("client went away")).when(csvExporter).write(any(), any());
+        assertThrows(IOException.class, () -> export.getBody().writeTo(new ByteArrayOutputStream()));
+        verify(exportLimiter).acquire();
+        verify(exportLimiter).release();
+    }
+
+    @Test
+    void yearlyReportMergesItsTwelveMonthPartials() {
+        for (int month = 1; month <= 12; month++) {
+            when(partialService.getMonthPartial("user-1", YearMonth.of(2023, month)))
+                    .thenReturn(partial(LocalDate.of(2023, month, 10), "10.00", "Cafe " + (month % 2)));
+        }
+
+        ReportDTO report = reportService.getYearlyReport("user-1", 2023);
+
+        assertEquals(new BigDecimal("120.00"), report.getTotalAmount());
+        assertEquals(12, report.getSummary().getTotalTransactions());
+        assertEquals(new BigDecimal("10.00"), report.getSummary().getAverageTransaction());
+        // Both cafes total 60.00; ties go to the first name
+        assertEquals("Cafe 0", report.getSummary().getTopMerchant());
+        assertEquals("2023-01-10 to 2023-12-10", report.getMetadata().get("dateRange"));
+        assertEquals(LocalDate.of(2023, 12, 31), report.getEndDate());
+        verify(partialService, never()).summarize(any(), any(), any());
+    }
+
+    @Test
+    void customReportAggregatesOnlyItsPartlyCoveredMonthsDirectly() {
+        when(partialService.getMonthPartial(any(), any())).thenReturn(partial(LocalDate.of(2024, 2, 10), "5.00", "Shell"));
+        when(partialService.summarize(any(), any(), any())).thenReturn(new ReportPartial());
+
+        ReportDTO request = ReportDTO.builder()
+                .userId("user-1")
+                .startDate(LocalDate.of(2024, 1, 15))
+                .endDate(LocalDate.of(2024, 4, 10))
+                .build();
+        ReportDTO report = reportService.getCustomReport(request);
+
+        assertEquals(new BigDecimal("10.00"), report.getTotalAmount());
+        verify(partialService).getMonthPartial("user-1", YearMonth.of(2024, 2));
+        verify(partialService).getMonthPartial("user-1", YearMonth.of(2024, 3));
+        verify(partialService).summarize("user-1", LocalDate.of(2024, 1, 15), LocalDate.of(2024, 2, 1));
+        verify(partialService).summarize("user-1", LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 11));
+        verifyNoMoreInteractions(partialService);
+    }
+
+    @Test
+    void customReportRejectsReversedAndOverlongRanges() {
+        ReportDTO reversed = ReportDTO.builder()
+                .userId("user-1")
+                .startDate(LocalDate.of(2024, 4, 10))
+                .endDate(LocalDate.of(2024, 1, 15))
+                .build();
+        ReportDTO decades = ReportDTO.builder()
+                .userId("user-1")
+                .startDate(LocalDate.of(1990, 1, 1))
+                .endDate(LocalDate.of(2024, 12, 31))
+                .build();
+
+        assertThrows(ValidationException.class, () -> reportService.getCustomReport(reversed));
+        assertThrows(ValidationException.class, () -> reportService.getCustomReport(decades));
+        verifyNoInteractions(partialService);
+    }
+
+    @Test
+    void monthlyReportCoversTheMonthOfThatYear() {
+        when(partialService.getMonthPartial("user-1", YearMonth.of(2024, 2))).thenReturn(new ReportPartial());
+
+        ReportDTO report = reportService.getMonthlyReport("user-1", 2024, 2);
+
+        assertEquals("2024-02", report.getPeriod());
+        assertEquals(LocalDate.of(2024, 2, 1), report.getStartDate());
+        assertEquals(LocalDate.of(2024, 2, 29), report.getEndDate());
+        assertEquals(BigDecimal.ZERO, report.getTotalAmount());
+    }
+
+    @Test
+    void rejectsInvalidMonths() {
+        assertThrows(ValidationException.class, () -> reportService.getMonthlyReport("user-1", 2024, 13));
+        verifyNoInteractions(partialService);
+    }
+
+    private ReportPartial partial(LocalDate date, String amount, String merchant) {
+        ReportPartial partial = new ReportPartial();
+        partial.setTotalAmount(new BigDecimal(amount));
+        partial.setReceiptCount(1);
+        partial.setFirstDate(date);
+        partial.setLastDate(date);
+        partial.setCategoryTotals(Map.of("dining", new BigDecimal(amount)));
+        partial.setMerchantTotals(Map.of(merchant, new BigDecimal(amount)));
+        return partial;
+    }
+}
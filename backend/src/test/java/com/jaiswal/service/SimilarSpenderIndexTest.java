@@ -0,0 +1,99 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.document.SpendingProfile;
+import com.jaiswal.repository.SpendingProfileRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SimilarSpenderIndexTest {
+
+    private static final String[] CATEGORIES = {"groceries", "dining", "fuel", "travel", "utilities", "shopping",
+            "health", "entertainment", "education", "subscriptions", "gifts", "uncategorized"};
+
+    @Test
+    void findsMostOfTheTrueNearestNeighbours() {
+        int users = 20_000;
+        int k = 50;
+        Random random = new Random(17);
+        // Users drawn around a handful of spending archetypes, as real category mixes cluster
+        double[][] archetypes = new double[8][CATEGORIES.length];
+        for (double[] archetype : archetypes) {
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                archetype[c] = random.nextDouble() < 0.5 ? random.nextDouble() : 0;
+            }
+        }
+        List<SpendingProfile> profiles = new ArrayList<>();
+        for (int user = 0; user < users; user++) {
+            double[] archetype = archetypes[user % archetypes.length];
+            Map<String, Double> totals = new HashMap<>();
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                double amount = archetype[c] * 500 * (0.5 + random.nextDouble()) + (random.nextDouble() < 0.1 ? 30 : 0);
+                if (amount > 0) {
+                    totals.put(CATEGORIES[c], amount);
+                }
+            }
+            profiles.add(SpendingProfile.builder().userId(String.format("user-%05d", user)).period("2026-09")
+                    .categoryTotals(totals).build());
+        }
+
+        SpendingProfileService profileService = mock(SpendingProfileService.class);
+        SpendingProfileRepository repository = mock(SpendingProfileRepository.class);
+        when(profileService.windowPeriods()).thenReturn(List.of("2026-09"));
+        when(repository.streamByPeriodIn(any())).thenReturn(profiles.stream());
+        SimilarSpenderIndex index = new SimilarSpenderIndex(profileService, repository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+        assertEquals(users, index.size());
+
+        List<SpendingVector> vectors = profiles.stream()
+                .map(profile -> SpendingVector.of(List.of(profile), 1, new HashMap<>()))
+                .collect(Collectors.toList());
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            int queryUser = random.nextInt(users);
+            SpendingVector query = vectors.get(queryUser);
+
+            List<Double> exact = new ArrayList<>();
+            for (int user = 0; user < users; user++) {
+                if (user != queryUser) {
+                    exact.add(query.cosine(vectors.get(user)));
+                }
+            }
+            exact.sort(Comparator.reverseOrder());
+            double kthSimilarity = exact.get(k - 1);
+
+            List<SimilarSpenderIndex.Neighbour> found = index.findSimilar(profiles.get(queryUser).getUserId(), query, k);
+            assertEquals(k, found.size());
+            recall += found.stream().filter(neighbour -> neighbour.getSimilarity() >= kthSimilarity - 1e-12).count() / (double) k;
+        }
+        assertTrue(recall / queries >= 0.8, "recall " + recall / queries);
+    }
+
+    @Test
+    void neverReturnsTheQueryingUser() {
+        SpendingProfileService profileService = mock(SpendingProfileService.class);
+        SpendingProfileRepository repository = mock(SpendingProfileRepository.class);
+        when(profileService.windowPeriods()).thenReturn(List.of("2026-09"));
+        SpendingProfile profile = SpendingProfile.builder().userId("me").period("2026-09")
+                .categoryTotals(Map.of("groceries", 100.0)).build();
+        when(repository.streamByPeriodIn(any())).thenReturn(List.of(profile).stream());
+        SimilarSpenderIndex index = new SimilarSpenderIndex(profileService, repository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+
+        assertTrue(index.findSimilar("me", SpendingVector.of(List.of(profile), 1, new HashMap<>()), 10).isEmpty());
+    }
+}
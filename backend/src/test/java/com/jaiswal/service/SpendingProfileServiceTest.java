@@ -0,0 +1,71 @@
+package com.jaiswal.service;
+
+import com.jaiswal.event.ReceiptChangedEvent;
+import com.jaiswal.job.JobLockService;
+import com.jaiswal.model.document.Category;
+import com.jaiswal.model.document.SpendingProfile;
+import com.jaiswal.repository.AggregationRunRepository;
+import com.jaiswal.repository.CategoryRepository;
+import com.jaiswal.repository.ReceiptRepository;
+import com.jaiswal.repository.SpendingProfileRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SpendingProfileServiceTest {
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final SpendingProfileService service = new SpendingProfileService(mock(SpendingProfileRepository.class),
+            mock(ReceiptRepository.class), categoryRepository, mock(AggregationRunRepository.class),
+            mock(JobLockService.class), mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "profileMonths", 3);
+        when(categoryRepository.findById("groceries")).thenReturn(Optional.of(Category.builder().name("Groceries").build()));
+        when(categoryRepository.findById("custom")).thenReturn(Optional.of(Category.builder().name("Cat food for Max").build()));
+    }
+
+    @Test
+    void profilesAreKeyedBySharedCategories() {
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-1", null, snapshot("groceries", "40.00")));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-2", null, snapshot("custom", "12.00")));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-3", null, snapshot("deleted", "5.00")));
+        service.onReceiptChanged(new ReceiptChangedEvent("user-1", "receipt-4", null, snapshot(null, "3.00")));
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(4)).upsert(any(Query.class), updates.capture(), eq(SpendingProfile.class));
+        assertEquals(Set.of("categoryTotals.groceries"), inc(updates.getAllValues().get(0)).keySet());
+        for (Update update : updates.getAllValues().subList(1, 4)) {
+            assertEquals(Set.of("categoryTotals." + CommunityAggregate.OTHER_CATEGORY), inc(update).keySet());
+        }
+    }
+
+    private Document inc(Update update) {
+        return update.getUpdateObject().get("$inc", Document.class);
+    }
+
+    private ReceiptChangedEvent.Snapshot snapshot(String categoryId, String amount) {
+        return ReceiptChangedEvent.Snapshot.builder()
+                .date(LocalDate.now())
+                .categoryId(categoryId)
+                .totalAmount(new BigDecimal(amount))
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.jaiswal.service;
+
+import com.jaiswal.model.dto.AnalyticsDTO;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendDownsamplingTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void choosesTheFinestResolutionWithinTheBudget() {
+        assertEquals(TrendDownsampling.Resolution.DAY,
+                TrendDownsampling.Resolution.choose(START, START.plusDays(89), 90));
+        assertEquals(TrendDownsampling.Resolution.WEEK,
+                TrendDownsampling.Resolution.choose(START, START.plusDays(90), 90));
+        assertEquals(TrendDownsampling.Resolution.MONTH,
+                TrendDownsampling.Resolution.choose(START, START.plusYears(5), 180));
+        // Nothing fits ten years in 24 points; months are the coarsest
+        assertEquals(TrendDownsampling.Resolution.MONTH,
+                TrendDownsampling.Resolution.choose(START, START.plusYears(10), 24));
+    }
+
+    @Test
+    void bucketsSumIntoMondayWeeksAndMonths() {
+        // 2024-01-01 is a Monday
+        List<AnalyticsDTO.SpendingTrend> daily = daily(60, day -> 10.0);
+
+        List<AnalyticsDTO.SpendingTrend> weeks = TrendDownsampling.bucket(daily, TrendDownsampling.Resolution.WEEK);
+        assertEquals(9, weeks.size());
+        assertEquals(START.plusWeeks(1), weeks.get(1).getDate());
+        assertEquals(0, new BigDecimal("70.00").compareTo(weeks.get(1).getAmount()));
+        assertEquals(7, weeks.get(1).getTransactionCount());
+        assertEquals("WEEK", weeks.get(1).getResolution());
+
+        List<AnalyticsDTO.SpendingTrend> months = TrendDownsampling.bucket(daily, TrendDownsampling.Resolution.MONTH);
+        assertEquals(2, months.size());
+        assertEquals(0, new BigDecimal("310.00").compareTo(months.get(0).getAmount()));
+        assertEquals(LocalDate.of(2024, 2, 1), months.get(1).getDate());
+        assertEquals(29, months.get(1).getTransactionCount());
+    }
+
+    @Test
+    void lttbKeepsEndpointsAndPeaksWithinTheThreshold() {
+        List<AnalyticsDTO.SpendingTrend> daily = daily(1000, day -> day == 437 ? 5000.0 : 20 + day % 7);
+
+        List<AnalyticsDTO.SpendingTrend> sampled = TrendDownsampling.lttb(daily, 100);
+
+        assertEquals(100, sampled.size());
+        assertSame(daily.get(0), sampled.get(0));
+        assertSame(daily.get(999), sampled.get(99));
+        assertTrue(sampled.contains(daily.get(437)));
+        for (int i = 1; i < sampled.size(); i++) {
+            assertTrue(sampled.get(i).getDate().isAfter(sampled.get(i - 1).getDate()));
+        }
+    }
+
+    @Test
+    void lttbReturnsShortSeriesUnchanged() {
+        List<AnalyticsDTO.SpendingTrend> daily = daily(30, day -> 1.0);
+        assertSame(daily, TrendDownsampling.lttb(daily, 30));
+    }
+
+    private List<AnalyticsDTO.SpendingTrend> daily(int days, IntToDoubleFunction amount) {
+        List<AnalyticsDTO.SpendingTrend> points = new ArrayList<>();
+        for (int day = 0; day < days; day++) {
+            points.add(AnalyticsDTO.SpendingTrend.builder()
+                    .date(START.plusDays(day))
+                    .amount(BigDecimal.valueOf(amount.applyAsDouble(day)).setScale(2))
+                    .transactionCount(1)
+                    .build());
+        }
+        return points;
+    }
+}